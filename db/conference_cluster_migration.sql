@@ -0,0 +1,23 @@
+-- ========================================
+-- 多节点会议室目录 - 数据库迁移脚本
+-- conference.store=database 时使用：房间号归属和成员在各节点间共享
+-- ========================================
+
+USE sipex;
+
+-- 活跃会议室（房间号 -> 所属节点）
+CREATE TABLE IF NOT EXISTS conference_rooms (
+    room_id VARCHAR(50) PRIMARY KEY COMMENT '会议室ID',
+    owner_node VARCHAR(100) NOT NULL COMMENT '所属节点地址',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    INDEX idx_owner_node (owner_node)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='活跃会议室目录';
+
+-- 活跃会议室成员
+CREATE TABLE IF NOT EXISTS conference_room_members (
+    room_id VARCHAR(50) NOT NULL COMMENT '会议室ID',
+    username VARCHAR(50) NOT NULL COMMENT '参与者用户名',
+    joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '加入时间',
+    PRIMARY KEY (room_id, username),
+    INDEX idx_username (username)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='活跃会议室成员';
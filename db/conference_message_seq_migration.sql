@@ -0,0 +1,10 @@
+-- ========================================
+-- 会议室消息序号 - 数据库迁移脚本
+-- 内存中每个会议室只保留最近的消息，更早的按序号从数据库读取
+-- ========================================
+
+USE sipex;
+
+ALTER TABLE conference_messages
+    ADD COLUMN seq BIGINT NULL COMMENT '会议室内的消息序号' AFTER room_id,
+    ADD INDEX idx_room_seq (room_id, seq);
@@ -8,13 +8,19 @@ public class ClientConfig {
     public static final String WS_URL = "ws://" + SERVER_HOST + ":" + SERVER_PORT + "/ws";
 
     // Kamailio配置
-    public static final String KAMAILIO_HOST = "10.129.174.156";
+    // -Dsip.proxy.host 可指向sip-server的内嵌注册服务器/代理（sip.embedded.enabled=true）
+    public static final String KAMAILIO_HOST = System.getProperty("sip.proxy.host", "10.129.174.156");
     public static final int KAMAILIO_PORT = 5060;
+    public static final int KAMAILIO_TLS_PORT = 5061;
     public static final String SIP_DOMAIN = KAMAILIO_HOST;
 
     // 本地SIP配置
     public static String LOCAL_IP = getLocalIP(); // 动态获取本地IP
     public static final int LOCAL_SIP_PORT = 5070; // 客户端监听端口
+    // 首选SIP传输：默认udp，可用 -Dsip.transport=tcp|tls 改为面向连接的传输，连接失败时按目的地回退UDP
+    public static final String SIP_TRANSPORT = System.getProperty("sip.transport", "udp");
+    // TLS需要用 -Djavax.net.ssl.keyStore（及keyStorePassword）指定密钥库，没有配置时不创建TLS监听点
+    public static final boolean TLS_CONFIGURED = System.getProperty("javax.net.ssl.keyStore") != null;
     
     private static String getLocalIP() {
         try {
@@ -1,5 +1,8 @@
 package com.sipex.client.config;
 
+import com.sipex.client.service.ContactResolver;
+
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -16,8 +19,16 @@ public class P2PConfig {
         System.out.println("P2P注册: " + username + " -> " + fullAddress);
     }
     
-    public static String getUserAddress(String username) {
-        return userRegistry.get(username.toLowerCase());
+    /**
+     * 先查手工注册的地址，没有再向服务器异步解析（带缓存），不阻塞调用线程；查不到时结果为null
+     */
+    public static CompletableFuture<String> getUserAddress(String username) {
+        String address = userRegistry.get(username.toLowerCase());
+        if (address != null) {
+            return CompletableFuture.completedFuture(address);
+        }
+        return ContactResolver.resolveAsync(username).thenApply(info ->
+                info == null || info.getSipHost() == null ? null : info.getSipHost() + ":" + info.getSipPort());
     }
     
     public static void printRegistry() {
@@ -0,0 +1,149 @@
+package com.sipex.client.media;
+
+import java.util.function.Consumer;
+
+/**
+ * 音频抖动缓冲区
+ * 按RTP序列号重排音频帧，冗余块（RED）可以在帧被判定丢失之前补齐空缺
+ */
+public class AudioJitterBuffer {
+
+    private static final int CAPACITY = 32; // 必须是2的幂
+    private static final int MASK = CAPACITY - 1;
+
+    private final byte[][] frames = new byte[CAPACITY][];
+    private final int[] frameSeqs = new int[CAPACITY];
+    private final boolean[] recoveredFlags = new boolean[CAPACITY];
+
+    // 判定丢包前允许等待的帧数
+    private volatile int depth;
+
+    private boolean started = false;
+    private int nextSeq;     // 下一个待输出的扩展序列号
+    private int highestSeq;  // 已收到的最大扩展序列号
+
+    // 统计
+    private long playedFrames = 0;
+    private long recoveredFrames = 0;
+    private long lostFrames = 0;
+    private long lateFrames = 0;
+
+    public AudioJitterBuffer(int depth) {
+        this.depth = Math.max(1, Math.min(depth, CAPACITY / 2));
+    }
+
+    /**
+     * 设置缓冲深度（帧数）
+     */
+    public void setDepth(int depth) {
+        this.depth = Math.max(1, Math.min(depth, CAPACITY / 2));
+    }
+
+    /**
+     * 放入一帧
+     *
+     * @param seq16     16位RTP序列号
+     * @param frame     帧数据
+     * @param redundant 是否来自RED冗余块
+     */
+    public synchronized void put(int seq16, byte[] frame, boolean redundant) {
+        int seq = extend(seq16 & 0xFFFF);
+
+        if (!started) {
+            started = true;
+            nextSeq = seq;
+            highestSeq = seq;
+        }
+
+        if (seq < nextSeq) {
+            // 已经输出或判定丢失，冗余块重复到达属正常情况
+            if (!redundant) {
+                lateFrames++;
+            }
+            return;
+        }
+
+        if (seq - nextSeq >= CAPACITY) {
+            // 跳变过大（对端重启或长时间断流），重新同步
+            clear();
+            nextSeq = seq;
+            highestSeq = seq;
+        }
+
+        int slot = seq & MASK;
+        if (frames[slot] != null && frameSeqs[slot] == seq) {
+            return; // 重复帧
+        }
+        frames[slot] = frame;
+        frameSeqs[slot] = seq;
+        recoveredFlags[slot] = redundant;
+
+        if (seq > highestSeq) {
+            highestSeq = seq;
+        }
+    }
+
+    /**
+     * 输出所有可以播放的帧
+     * 连续的帧立即输出；空缺超过缓冲深度仍未补齐时输出null表示丢帧
+     */
+    public synchronized void drain(Consumer<byte[]> sink) {
+        if (!started) {
+            return;
+        }
+        while (nextSeq <= highestSeq) {
+            int slot = nextSeq & MASK;
+            if (frames[slot] != null && frameSeqs[slot] == nextSeq) {
+                byte[] frame = frames[slot];
+                frames[slot] = null;
+                if (recoveredFlags[slot]) {
+                    recoveredFrames++;
+                }
+                playedFrames++;
+                nextSeq++;
+                sink.accept(frame);
+            } else if (highestSeq - nextSeq >= depth) {
+                lostFrames++;
+                nextSeq++;
+                sink.accept(null);
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 将16位序列号扩展为相对最大序列号的连续整数（处理回绕）
+     */
+    private int extend(int seq16) {
+        if (!started) {
+            return seq16;
+        }
+        int delta = (short) (seq16 - (highestSeq & 0xFFFF));
+        return highestSeq + delta;
+    }
+
+    private void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            frames[i] = null;
+        }
+    }
+
+    // ========== 统计 ==========
+
+    public synchronized long getPlayedFrames() {
+        return playedFrames;
+    }
+
+    public synchronized long getRecoveredFrames() {
+        return recoveredFrames;
+    }
+
+    public synchronized long getLostFrames() {
+        return lostFrames;
+    }
+
+    public synchronized long getLateFrames() {
+        return lateFrames;
+    }
+}
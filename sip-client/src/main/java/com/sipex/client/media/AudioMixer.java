@@ -3,8 +3,8 @@ package com.sipex.client.media;
 import javax.sound.sampled.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -14,16 +14,35 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class AudioMixer implements Runnable {
     
-    private final List<BlockingQueue<byte[]>> audioQueues;
+    private final Map<Integer, AudioSource> audioSources;
+    private int nextSourceId = 0;
     private SourceDataLine speaker;
     private volatile boolean running = false;
     
     private static final int SAMPLE_RATE = 8000;
     private static final int FRAME_SIZE = 160; // 20ms @ 8kHz
     private static final int BUFFER_SIZE = FRAME_SIZE * 2; // 16-bit samples
+    private static final int SPEAKER_BUFFER_SIZE = BUFFER_SIZE * 4;
+    private static final int MAX_CONCEAL_FRAMES = 3;  // 某一路断流超过60ms视为静默，不再隐藏
+    private static final int MAX_BACKLOG_FRAMES = 3;  // 单路积压超过3帧时丢弃最旧的，防止延迟累积
+    
+    /**
+     * 单路音频源
+     */
+    private static class AudioSource {
+        final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>(100);
+        final G711Plc plc = new G711Plc();
+        final byte[] concealBuffer = new byte[BUFFER_SIZE];
+        int missedFrames = MAX_CONCEAL_FRAMES; // 尚未收到数据时不做隐藏
+        boolean hasFrame;
+        
+        boolean isActive() {
+            return missedFrames < MAX_CONCEAL_FRAMES;
+        }
+    }
     
     public AudioMixer() {
-        this.audioQueues = new ArrayList<>();
+        this.audioSources = new LinkedHashMap<>();
         initializeSpeaker();
     }
     
@@ -40,7 +59,7 @@ public class AudioMixer implements Runnable {
             }
             
             speaker = (SourceDataLine) AudioSystem.getLine(info);
-            speaker.open(format, BUFFER_SIZE * 4);
+            speaker.open(format, SPEAKER_BUFFER_SIZE);
         } catch (Exception e) {
             System.err.println("初始化扬声器失败: " + e.getMessage());
             e.printStackTrace();
@@ -49,30 +68,34 @@ public class AudioMixer implements Runnable {
     
     /**
      * 添加音频源
+     * @return 音频源ID（移除其他音频源后保持不变）
      */
     public synchronized int addAudioSource() {
-        BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>(100);
-        audioQueues.add(queue);
-        System.out.println("添加音频源，当前总数: " + audioQueues.size());
-        return audioQueues.size() - 1;
+        int sourceId = nextSourceId++;
+        audioSources.put(sourceId, new AudioSource());
+        System.out.println("添加音频源，当前总数: " + audioSources.size());
+        return sourceId;
     }
     
     /**
      * 移除音频源
      */
-    public synchronized void removeAudioSource(int index) {
-        if (index >= 0 && index < audioQueues.size()) {
-            audioQueues.remove(index);
-            System.out.println("移除音频源，剩余: " + audioQueues.size());
+    public synchronized void removeAudioSource(int sourceId) {
+        if (audioSources.remove(sourceId) != null) {
+            System.out.println("移除音频源，剩余: " + audioSources.size());
         }
     }
     
     /**
      * 添加音频数据到指定源
      */
-    public void addAudioData(int sourceIndex, byte[] audioData) {
-        if (sourceIndex >= 0 && sourceIndex < audioQueues.size()) {
-            BlockingQueue<byte[]> queue = audioQueues.get(sourceIndex);
+    public void addAudioData(int sourceId, byte[] audioData) {
+        AudioSource source;
+        synchronized (this) {
+            source = audioSources.get(sourceId);
+        }
+        if (source != null) {
+            BlockingQueue<byte[]> queue = source.queue;
             if (!queue.offer(audioData)) {
                 // 队列满，丢弃旧数据
                 queue.poll();
@@ -116,14 +139,35 @@ public class AudioMixer implements Runnable {
                     mixedBuffer[i] = 0;
                 }
                 
-                // 从所有音频源读取数据并混音
                 boolean hasData = false;
+                boolean hasActiveSource = false;
                 synchronized (this) {
-                    for (BlockingQueue<byte[]> queue : audioQueues) {
-                        byte[] audioData = queue.poll();
-                        if (audioData != null && audioData.length == BUFFER_SIZE) {
+                    // 从所有音频源读取数据
+                    for (AudioSource source : audioSources.values()) {
+                        while (source.queue.size() > MAX_BACKLOG_FRAMES) {
+                            source.queue.poll();
+                        }
+                        byte[] audioData = source.queue.poll();
+                        source.hasFrame = audioData != null && audioData.length == BUFFER_SIZE;
+                        if (source.hasFrame) {
+                            source.plc.addGoodFrame(audioData, audioData.length);
+                            source.missedFrames = 0;
                             mixAudio(mixedBuffer, audioData);
                             hasData = true;
+                        } else if (source.isActive()) {
+                            hasActiveSource = true;
+                        }
+                    }
+                    
+                    // 某一路暂时没有数据：其他路正在播放，或扬声器即将播空时，用PLC补齐这一路
+                    if (hasActiveSource && (hasData || isSpeakerStarving())) {
+                        for (AudioSource source : audioSources.values()) {
+                            if (!source.hasFrame && source.isActive()
+                                    && source.plc.conceal(source.concealBuffer, BUFFER_SIZE)) {
+                                source.missedFrames++;
+                                mixAudio(mixedBuffer, source.concealBuffer);
+                                hasData = true;
+                            }
                         }
                     }
                 }
@@ -144,6 +188,13 @@ public class AudioMixer implements Runnable {
         }
     }
     
+    /**
+     * 扬声器缓冲区中剩余不足一帧
+     */
+    private boolean isSpeakerStarving() {
+        return speaker.isOpen() && speaker.available() >= speaker.getBufferSize() - BUFFER_SIZE;
+    }
+    
     /**
      * 混音算法
      * 将两路音频混合（简单相加后归一化）
@@ -178,7 +229,7 @@ public class AudioMixer implements Runnable {
      * 获取活跃音频源数量
      */
     public synchronized int getSourceCount() {
-        return audioQueues.size();
+        return audioSources.size();
     }
 }
 
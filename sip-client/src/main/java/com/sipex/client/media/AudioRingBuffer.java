@@ -0,0 +1,202 @@
+package com.sipex.client.media;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者/多消费者音频环形缓冲区
+ * 槽位预先分配，生产者直接写入槽位后发布序号，每个消费者按自己的进度读取，互不阻塞。
+ * 消费者落后超过一圈时跳到最新数据，并记录溢出次数和丢弃的帧数
+ */
+public class AudioRingBuffer {
+
+    private final int capacity;
+    private final int mask;
+    private final int frameBytes;
+    private final byte[][] slots;
+    private final int[] lengths;
+    // 每个槽位当前保存的帧序号，写入过程中为-1（用于读取后校验，类似seqlock）
+    private final AtomicLongArray slotSequences;
+    // 最后发布的帧序号
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private long claimed = -1;
+
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param capacity   槽位数量，必须是2的幂
+     * @param frameBytes 每帧最大字节数
+     */
+    public AudioRingBuffer(int capacity, int frameBytes) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity必须是2的幂: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.frameBytes = frameBytes;
+        this.slots = new byte[capacity][frameBytes];
+        this.lengths = new int[capacity];
+        this.slotSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slotSequences.set(i, -1);
+        }
+    }
+
+    // ========== 生产者（仅限单线程调用） ==========
+
+    /**
+     * 申请下一个槽位，返回的数组可直接写入，写完后调用publish
+     */
+    public byte[] claim() {
+        claimed = cursor.get() + 1;
+        int slot = (int) (claimed & mask);
+        slotSequences.set(slot, -1);
+        // 保证读者先看到-1再看到新写入的数据
+        VarHandle.storeStoreFence();
+        return slots[slot];
+    }
+
+    /**
+     * 发布已写入的槽位并唤醒等待中的消费者
+     */
+    public void publish(int length) {
+        int slot = (int) (claimed & mask);
+        lengths[slot] = Math.min(length, frameBytes);
+        slotSequences.set(slot, claimed);
+        cursor.set(claimed);
+        for (Consumer consumer : consumers) {
+            Thread waiter = consumer.waiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    // ========== 消费者 ==========
+
+    /**
+     * 创建一个从最新位置开始读取的消费者
+     */
+    public Consumer newConsumer() {
+        Consumer consumer = new Consumer(cursor.get() + 1);
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    public void removeConsumer(Consumer consumer) {
+        consumers.remove(consumer);
+        consumer.close();
+    }
+
+    public int getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * 环形缓冲区的一个读取游标，只能由一个线程使用
+     */
+    public class Consumer {
+
+        private long nextSequence;
+        private volatile Thread waiter;
+        private volatile boolean closed = false;
+
+        // 统计
+        private volatile long framesRead = 0;
+        private volatile long overruns = 0;
+        private volatile long droppedFrames = 0;
+
+        private Consumer(long startSequence) {
+            this.nextSequence = startSequence;
+        }
+
+        /**
+         * 读取下一帧到dst，没有新数据时最多等待timeout
+         *
+         * @return 帧长度；超时返回0，消费者已关闭返回-1
+         */
+        public int read(byte[] dst, long timeout, TimeUnit unit) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!closed) {
+                long published = cursor.get();
+                if (published >= nextSequence) {
+                    if (published - nextSequence >= capacity) {
+                        skipTo(published);
+                        continue;
+                    }
+                    int slot = (int) (nextSequence & mask);
+                    if (slotSequences.get(slot) != nextSequence) {
+                        // 槽位已被生产者覆盖
+                        skipTo(cursor.get());
+                        continue;
+                    }
+                    int length = lengths[slot];
+                    System.arraycopy(slots[slot], 0, dst, 0, length);
+                    // 拷贝的普通读不能重排到下面的校验之后
+                    VarHandle.acquireFence();
+                    if (slotSequences.get(slot) != nextSequence) {
+                        // 拷贝期间被覆盖，数据不可用
+                        skipTo(cursor.get());
+                        continue;
+                    }
+                    nextSequence++;
+                    framesRead++;
+                    return length;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return 0;
+                }
+                waiter = Thread.currentThread();
+                if (cursor.get() < nextSequence && !closed) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                waiter = null;
+            }
+            return -1;
+        }
+
+        /**
+         * 落后太多时跳到最新一帧
+         */
+        private void skipTo(long latest) {
+            long target = Math.max(latest, nextSequence);
+            overruns++;
+            droppedFrames += target - nextSequence;
+            nextSequence = target;
+        }
+
+        /**
+         * 当前积压的帧数
+         */
+        public long getBacklog() {
+            return Math.max(0, cursor.get() + 1 - nextSequence);
+        }
+
+        public long getFramesRead() {
+            return framesRead;
+        }
+
+        public long getOverruns() {
+            return overruns;
+        }
+
+        public long getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        void close() {
+            closed = true;
+            Thread t = waiter;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.sipex.client.media;
 
-import com.sipex.client.config.ClientConfig;
 import javafx.scene.image.ImageView;
 
 import java.net.InetAddress;
@@ -14,23 +13,22 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ConferenceMediaManager {
     
     private String localIp;
-    private int baseAudioPort;
-    private int baseVideoPort;
 
-    // 端口池管理
-    private final Set<Integer> allocatedPorts = ConcurrentHashMap.newKeySet();
-    private final Object portLock = new Object();
+    // 预绑定的RTP端口池
+    private RtpPortAllocator portAllocator;
     
     // 参与者连接管理
     private final Map<String, ParticipantConnection> participants;
     
+    // 已发出SDP、等待对端应答的参与者（端口和接收器已就绪）
+    private final Map<String, ParticipantConnection> preparedParticipants;
+    
     // 音频混音器
     private AudioMixer audioMixer;
     
-    // 本地音频和视频发送器、接收器
+    // 本地音频采集和视频预览
     private SharedAudioCapture sharedAudioCapture;
-    private RtpVideoSender localVideoSender;
-    private RtpVideoReceiver localVideoReceiver;
+    private LocalVideoPreview localVideoPreview;
     
     // 视频显示映射
     private final Map<String, ImageView> videoViews;
@@ -43,8 +41,8 @@ public class ConferenceMediaManager {
         String remoteIp;
         int remoteAudioPort;
         int remoteVideoPort;
-        int localAudioPort;
-        int localVideoPort;
+        RtpPortAllocator.PortPair audioPorts;
+        RtpPortAllocator.PortPair videoPorts;
         
         RtpAudioForwarder audioForwarder;
         RtpAudioReceiver audioReceiver;
@@ -57,15 +55,14 @@ public class ConferenceMediaManager {
     public ConferenceMediaManager() {
         this.participants = new ConcurrentHashMap<>();
         this.videoViews = new ConcurrentHashMap<>();
+        this.preparedParticipants = new ConcurrentHashMap<>();
 
         try {
             // 获取本地IP
             localIp = InetAddress.getLocalHost().getHostAddress();
 
-            // 分配基础RTP端口
-            Random random = new Random();
-            baseAudioPort = ClientConfig.RTP_PORT_START + random.nextInt(1000) * 10;
-            baseVideoPort = baseAudioPort + 1000;
+            // 预先绑定RTP端口池
+            portAllocator = RtpPortAllocator.getInstance();
 
             // 初始化音频混音器
             audioMixer = new AudioMixer();
@@ -78,8 +75,6 @@ public class ConferenceMediaManager {
 
             System.out.println("会议媒体管理器初始化完成");
             System.out.println("本地IP: " + localIp);
-            System.out.println("基础音频端口: " + baseAudioPort);
-            System.out.println("基础视频端口: " + baseVideoPort);
 
         } catch (Exception e) {
             System.err.println("初始化会议媒体管理器失败: " + e.getMessage());
@@ -88,12 +83,45 @@ public class ConferenceMediaManager {
     }
     
     /**
-     * 创建SDP offer（用于群聊）
+     * 为参与者准备媒体并返回SDP（offer或answer）
+     * 在发出SDP之前就租用端口、启动音频接收器并占用混音器通道，
+     * 对端收到SDP后发出的第一个RTP包即可播放
      */
-    public String createSdpOffer(boolean includeVideo, int participantIndex) {
-        int audioPort = baseAudioPort + participantIndex * 2;
-        int videoPort = baseVideoPort + participantIndex * 2;
+    public String prepareParticipant(String username, boolean includeVideo) throws Exception {
+        ParticipantConnection conn = participants.get(username);
+        if (conn == null) {
+            conn = preparedParticipants.computeIfAbsent(username, k -> {
+                ParticipantConnection c = new ParticipantConnection();
+                c.username = k;
+                return c;
+            });
+        }
         
+        synchronized (conn) {
+            try {
+                if (conn.audioPorts == null) {
+                    conn.audioPorts = portAllocator.lease();
+                }
+                if (includeVideo && conn.videoPorts == null) {
+                    conn.videoPorts = portAllocator.lease();
+                }
+                if (conn.audioReceiver == null) {
+                    startAudioReceiver(conn);
+                }
+            } catch (Exception e) {
+                preparedParticipants.remove(username);
+                releaseConnection(conn);
+                throw e;
+            }
+            return buildSdp(conn.audioPorts.getPort(),
+                includeVideo ? conn.videoPorts.getPort() : 0, includeVideo);
+        }
+    }
+    
+    /**
+     * 生成SDP
+     */
+    private String buildSdp(int audioPort, int videoPort, boolean includeVideo) {
         StringBuilder sdp = new StringBuilder();
         sdp.append("v=0\r\n");
         sdp.append("o=- ").append(System.currentTimeMillis()).append(" ")
@@ -103,9 +131,12 @@ public class ConferenceMediaManager {
         sdp.append("t=0 0\r\n");
         
         // 音频流
-        sdp.append("m=audio ").append(audioPort).append(" RTP/AVP 0 8 101\r\n");
+        sdp.append("m=audio ").append(audioPort).append(" RTP/AVP 0 8 ")
+           .append(RedCodec.PAYLOAD_TYPE).append(" 101\r\n");
         sdp.append("a=rtpmap:0 PCMU/8000\r\n");
         sdp.append("a=rtpmap:8 PCMA/8000\r\n");
+        sdp.append("a=rtpmap:").append(RedCodec.PAYLOAD_TYPE).append(" red/8000\r\n");
+        sdp.append("a=fmtp:").append(RedCodec.PAYLOAD_TYPE).append(" 0/0/0\r\n");
         sdp.append("a=rtpmap:101 telephone-event/8000\r\n");
         sdp.append("a=sendrecv\r\n");
         
@@ -121,7 +152,21 @@ public class ConferenceMediaManager {
     }
     
     /**
-     * 添加参与者
+     * 占用混音器通道并启动音频接收器
+     */
+    private void startAudioReceiver(ParticipantConnection conn) throws Exception {
+        conn.audioMixerIndex = audioMixer.addAudioSource();
+        int mixerIndex = conn.audioMixerIndex;
+        
+        // 启动音频接收器（带回调，将数据传递给混音器）
+        conn.audioReceiver = new RtpAudioReceiver(conn.audioPorts.getRtpSocket(),
+            audioData -> audioMixer.addAudioData(mixerIndex, audioData));
+        conn.audioReceiver.start();
+    }
+    
+    /**
+     * 添加参与者（收到对端SDP后调用）
+     * 如果已经通过prepareParticipant准备过，只需启动发送方向
      */
     public void addParticipant(String username, String remoteSdp, boolean includeVideo) {
         // 检查参与者是否已存在
@@ -130,53 +175,68 @@ public class ConferenceMediaManager {
             return;
         }
         
-        try {
-            int participantIndex = participants.size();
-            
-            ParticipantConnection conn = new ParticipantConnection();
+        ParticipantConnection conn = preparedParticipants.remove(username);
+        if (conn == null) {
+            conn = new ParticipantConnection();
             conn.username = username;
-            conn.remoteIp = parseSdpIp(remoteSdp);
-            conn.remoteAudioPort = parseSdpAudioPort(remoteSdp);
-            // 分配端口，确保不冲突
-            conn.localAudioPort = findAvailablePort(baseAudioPort + (participantIndex + 1) * 2);
-            conn.localVideoPort = findAvailablePort(baseVideoPort + (participantIndex + 1) * 2);
-            
-            // 添加到混音器
-            conn.audioMixerIndex = audioMixer.addAudioSource();
-            
-            // 启动音频接收器（带回调，将数据传递给混音器）
-            conn.audioReceiver = new RtpAudioReceiver(conn.localAudioPort, 
-                audioData -> audioMixer.addAudioData(conn.audioMixerIndex, audioData));
-            conn.audioReceiver.start();
-            
-            // 为这个参与者创建音频转发器（发送共享音频到该参与者）
-            conn.audioForwarder = new RtpAudioForwarder(
-                conn.localAudioPort + 1, 
-                conn.remoteIp, 
-                conn.remoteAudioPort
-            );
-            conn.audioForwarder.start();
-            
-            System.out.println("为参与者 " + username + " 创建音频转发器: " + conn.remoteIp + ":" + conn.remoteAudioPort);
-            
-            // 处理视频
-            if (includeVideo && remoteSdp.contains("m=video")) {
-                conn.remoteVideoPort = parseSdpVideoPort(remoteSdp);
+        }
+        
+        try {
+            synchronized (conn) {
+                conn.remoteIp = parseSdpIp(remoteSdp);
+                conn.remoteAudioPort = parseSdpAudioPort(remoteSdp);
                 
-                // 启动视频接收器
-                ImageView videoView = videoViews.get(username);
-                if (videoView != null) {
-                    conn.videoReceiver = new RtpVideoReceiver(conn.localVideoPort, videoView);
-                    conn.videoReceiver.start();
+                // 未预先准备时从端口池租用（均已绑定，无需探测）
+                if (conn.audioPorts == null) {
+                    conn.audioPorts = portAllocator.lease();
+                }
+                if (conn.audioReceiver == null) {
+                    startAudioReceiver(conn);
                 }
                 
-                // 启动视频发送器
-                conn.videoSender = new RtpVideoSender(
-                    conn.localVideoPort + 1,
-                    conn.remoteIp,
-                    conn.remoteVideoPort
+                // 为这个参与者创建音频转发器（发送共享音频到该参与者）
+                conn.audioForwarder = new RtpAudioForwarder(
+                    conn.audioPorts.getRtpSocket(), 
+                    conn.remoteIp, 
+                    conn.remoteAudioPort
                 );
-                conn.videoSender.start();
+                // 对端支持RED时，根据本端观测到的丢包率动态开启冗余（假设链路双向对称）
+                int redPayloadType = parseSdpRedPayloadType(remoteSdp);
+                if (redPayloadType >= 0) {
+                    conn.audioForwarder.enableRed(redPayloadType);
+                    conn.audioReceiver.setLossListener(conn.audioForwarder::updateRedundancy);
+                }
+                conn.audioForwarder.start();
+                
+                System.out.println("为参与者 " + username + " 创建音频转发器: " + conn.remoteIp + ":" + conn.remoteAudioPort
+                    + (redPayloadType >= 0 ? " (支持RED)" : ""));
+                
+                // 处理视频
+                if (includeVideo && remoteSdp.contains("m=video")) {
+                    conn.remoteVideoPort = parseSdpVideoPort(remoteSdp);
+                    if (conn.videoPorts == null) {
+                        conn.videoPorts = portAllocator.lease();
+                    }
+                    
+                    // 启动视频接收器
+                    ImageView videoView = videoViews.get(username);
+                    if (videoView != null) {
+                        conn.videoReceiver = new RtpVideoReceiver(conn.videoPorts.getRtpSocket(), videoView);
+                        conn.videoReceiver.start();
+                    }
+                    
+                    // 启动视频发送器
+                    conn.videoSender = new RtpVideoSender(
+                        conn.videoPorts.getRtpSocket(),
+                        conn.remoteIp,
+                        conn.remoteVideoPort
+                    );
+                    conn.videoSender.start();
+                } else if (conn.videoPorts != null) {
+                    // 对端没有接受视频，归还视频端口
+                    portAllocator.release(conn.videoPorts);
+                    conn.videoPorts = null;
+                }
             }
             
             participants.put(username, conn);
@@ -186,6 +246,7 @@ public class ConferenceMediaManager {
         } catch (Exception e) {
             System.err.println("❌ 添加参与者失败: " + e.getMessage());
             e.printStackTrace();
+            releaseConnection(conn);
         }
     }
     
@@ -195,74 +256,81 @@ public class ConferenceMediaManager {
      */
     public void removeParticipant(String username) {
         ParticipantConnection conn = participants.remove(username);
+        if (conn == null) {
+            // 呼叫未建立（被拒绝或超时），释放预先准备的资源
+            conn = preparedParticipants.remove(username);
+        }
         if (conn != null) {
             try {
-                // 停止音频转发器
-                if (conn.audioForwarder != null) {
-                    try {
-                        conn.audioForwarder.stop();
-                    } catch (Exception e) {
-                        System.err.println("停止音频转发器失败: " + e.getMessage());
-                    }
-                    conn.audioForwarder = null;
-                }
-
-                // 停止音频接收器
-                if (conn.audioReceiver != null) {
-                    try {
-                        conn.audioReceiver.stop();
-                    } catch (Exception e) {
-                        System.err.println("停止音频接收器失败: " + e.getMessage());
-                    }
-                    conn.audioReceiver = null;
-                }
-
-                // 停止视频发送器
-                if (conn.videoSender != null) {
-                    try {
-                        conn.videoSender.stop();
-                    } catch (Exception e) {
-                        System.err.println("停止视频发送器失败: " + e.getMessage());
-                    }
-                    conn.videoSender = null;
-                }
+                releaseConnection(conn);
+                System.out.println("✅ 参与者 " + username + " 资源已清理");
 
-                // 停止视频接收器
-                if (conn.videoReceiver != null) {
-                    try {
-                        conn.videoReceiver.stop();
-                    } catch (Exception e) {
-                        System.err.println("停止视频接收器失败: " + e.getMessage());
-                    }
-                    conn.videoReceiver = null;
-                }
+            } catch (Exception e) {
+                System.err.println("移除参与者 " + username + " 时发生错误: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * 停止参与者的所有媒体流并归还端口
+     */
+    private void releaseConnection(ParticipantConnection conn) {
+        // 停止音频转发器
+        if (conn.audioForwarder != null) {
+            try {
+                conn.audioForwarder.stop();
+            } catch (Exception e) {
+                System.err.println("停止音频转发器失败: " + e.getMessage());
+            }
+            conn.audioForwarder = null;
+        }
 
-                // 从混音器移除
-                if (conn.audioMixerIndex >= 0) {
-                    try {
-                        audioMixer.removeAudioSource(conn.audioMixerIndex);
-                    } catch (Exception e) {
-                        System.err.println("从混音器移除音频源失败: " + e.getMessage());
-                    }
-                }
+        // 停止音频接收器
+        if (conn.audioReceiver != null) {
+            try {
+                conn.audioReceiver.stop();
+            } catch (Exception e) {
+                System.err.println("停止音频接收器失败: " + e.getMessage());
+            }
+            conn.audioReceiver = null;
+        }
 
-                // 释放端口
-                if (conn.localAudioPort > 0) {
-                    releasePort(conn.localAudioPort);
-                    releasePort(conn.localAudioPort + 1);
-                }
-                if (conn.localVideoPort > 0) {
-                    releasePort(conn.localVideoPort);
-                    releasePort(conn.localVideoPort + 1);
-                }
+        // 停止视频发送器
+        if (conn.videoSender != null) {
+            try {
+                conn.videoSender.stop();
+            } catch (Exception e) {
+                System.err.println("停止视频发送器失败: " + e.getMessage());
+            }
+            conn.videoSender = null;
+        }
 
-                System.out.println("✅ 参与者 " + username + " 资源已清理");
+        // 停止视频接收器
+        if (conn.videoReceiver != null) {
+            try {
+                conn.videoReceiver.stop();
+            } catch (Exception e) {
+                System.err.println("停止视频接收器失败: " + e.getMessage());
+            }
+            conn.videoReceiver = null;
+        }
 
+        // 从混音器移除
+        if (conn.audioMixerIndex >= 0) {
+            try {
+                audioMixer.removeAudioSource(conn.audioMixerIndex);
             } catch (Exception e) {
-                System.err.println("移除参与者 " + username + " 时发生错误: " + e.getMessage());
-                e.printStackTrace();
+                System.err.println("从混音器移除音频源失败: " + e.getMessage());
             }
+            conn.audioMixerIndex = -1;
         }
+
+        // 归还端口
+        portAllocator.release(conn.audioPorts);
+        portAllocator.release(conn.videoPorts);
+        conn.audioPorts = null;
+        conn.videoPorts = null;
     }
     
     /**
@@ -270,16 +338,20 @@ public class ConferenceMediaManager {
      */
     public void setVideoView(String username, ImageView imageView) {
         videoViews.put(username, imageView);
-        
-        // 如果是本地用户且本地视频发送器已启动，启动本地视频接收器
-        if (localVideoSender != null && localVideoReceiver == null) {
-            try {
-                localVideoReceiver = new RtpVideoReceiver(baseVideoPort + 1, imageView);
-                localVideoReceiver.start();
-                System.out.println("本地视频预览已启动");
-            } catch (Exception e) {
-                System.err.println("启动本地视频预览失败: " + e.getMessage());
-            }
+    }
+    
+    /**
+     * 设置本地视频预览控件，直接显示共享采集器的原始帧
+     */
+    public void setLocalVideoView(ImageView imageView) {
+        if (localVideoPreview != null) {
+            localVideoPreview.stop();
+        }
+        try {
+            localVideoPreview = new LocalVideoPreview(imageView);
+            localVideoPreview.start();
+        } catch (Exception e) {
+            System.err.println("启动本地视频预览失败: " + e.getMessage());
         }
     }
     
@@ -297,17 +369,6 @@ public class ConferenceMediaManager {
             System.err.println("启动共享音频采集器失败: " + e.getMessage());
         }
         
-        // 启动本地视频采集和预览
-        try {
-            // 创建本地视频发送器（发送到本地回环地址用于自己预览）
-            localVideoSender = new RtpVideoSender(baseVideoPort, "127.0.0.1", baseVideoPort + 1);
-            localVideoSender.start();
-            
-            System.out.println("本地视频采集已启动");
-        } catch (Exception e) {
-            System.err.println("启动本地视频失败: " + e.getMessage());
-        }
-        
         System.out.println("会议已启动");
     }
     
@@ -322,6 +383,9 @@ public class ConferenceMediaManager {
             for (String username : new ArrayList<>(participants.keySet())) {
                 removeParticipant(username);
             }
+            for (String username : new ArrayList<>(preparedParticipants.keySet())) {
+                removeParticipant(username);
+            }
 
             // 停止混音器
             if (audioMixer != null) {
@@ -343,24 +407,14 @@ public class ConferenceMediaManager {
                 }
             }
 
-            // 停止本地视频发送器
-            if (localVideoSender != null) {
+            // 停止本地视频预览
+            if (localVideoPreview != null) {
                 try {
-                    localVideoSender.stop();
+                    localVideoPreview.stop();
                 } catch (Exception e) {
-                    System.err.println("停止本地视频发送器失败: " + e.getMessage());
+                    System.err.println("停止本地视频预览失败: " + e.getMessage());
                 }
-                localVideoSender = null;
-            }
-
-            // 停止本地视频接收器
-            if (localVideoReceiver != null) {
-                try {
-                    localVideoReceiver.stop();
-                } catch (Exception e) {
-                    System.err.println("停止本地视频接收器失败: " + e.getMessage());
-                }
-                localVideoReceiver = null;
+                localVideoPreview = null;
             }
 
             // 清空视频视图映射
@@ -427,47 +481,19 @@ public class ConferenceMediaManager {
     }
     
     /**
-     * 查找可用端口（改进版：使用端口池和锁机制）
+     * 解析对端RED载荷类型，未协商时返回-1
      */
-    private int findAvailablePort(int startPort) {
-        synchronized (portLock) {
-            for (int port = startPort; port < startPort + 100; port += 2) {
-                // 检查端口是否已被分配
-                if (allocatedPorts.contains(port)) {
-                    continue;
-                }
-
-                // 检查端口是否真正可用
-                if (isPortAvailable(port)) {
-                    allocatedPorts.add(port);
-                    System.out.println("分配端口: " + port);
-                    return port;
+    private int parseSdpRedPayloadType(String sdp) {
+        String[] lines = sdp.split("\r\n");
+        for (String line : lines) {
+            if (line.startsWith("a=rtpmap:") && line.toLowerCase().contains(" red/8000")) {
+                try {
+                    return Integer.parseInt(line.substring(9, line.indexOf(' ')).trim());
+                } catch (NumberFormatException e) {
+                    return -1;
                 }
             }
-            throw new RuntimeException("无法找到可用端口，起始端口: " + startPort);
-        }
-    }
-
-    /**
-     * 释放端口
-     */
-    private void releasePort(int port) {
-        synchronized (portLock) {
-            if (allocatedPorts.remove(port)) {
-                System.out.println("释放端口: " + port);
-            }
-        }
-    }
-    
-    /**
-     * 检查端口是否可用
-     */
-    private boolean isPortAvailable(int port) {
-        try (java.net.DatagramSocket socket = new java.net.DatagramSocket(port)) {
-            return true;
-        } catch (Exception e) {
-            return false;
         }
+        return -1;
     }
 }
-
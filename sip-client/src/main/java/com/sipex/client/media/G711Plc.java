@@ -0,0 +1,292 @@
+package com.sipex.client.media;
+
+/**
+ * G.711 丢包隐藏（参照 ITU-T G.711 Appendix I）
+ * 丢帧时根据历史语音估计基音周期，重复最近的基音波形并做重叠相加平滑，
+ * 连续丢帧时逐步衰减，超过60ms后输出静音；恢复收包时与合成波形交叉淡入
+ *
+ * 输入输出均为 8kHz 16-bit 小端 PCM，每个实例对应一路音频流，非线程安全
+ */
+public class G711Plc {
+
+    private static final int PITCH_MIN = 40;                            // 5ms（200Hz）
+    private static final int PITCH_MAX = 120;                           // 15ms（66.7Hz）
+    private static final int PITCH_DIFF = PITCH_MAX - PITCH_MIN;
+    private static final int POVERLAP_MAX = PITCH_MAX >> 2;             // 最大重叠长度（1/4基音周期）
+    private static final int HISTORY_LEN = PITCH_MAX * 3 + POVERLAP_MAX; // 48.75ms历史
+    private static final int NDEC = 2;                                  // 粗搜索抽取因子
+    private static final int CORR_LEN = 160;                            // 20ms相关窗口
+    private static final int CORR_BUF_LEN = CORR_LEN + PITCH_MAX;
+    private static final float CORR_MIN_POWER = 250f;
+    private static final int EOVERLAP_INCR = 32;                        // 每多丢10ms，恢复时多淡入4ms
+    private static final int FRAME_SIZE = 80;                           // 内部按10ms处理
+    private static final float ATTEN_FAC = 0.2f;                        // 每10ms衰减20%
+    private static final float ATTEN_INCR = ATTEN_FAC / FRAME_SIZE;
+    private static final int MAX_ERASE_FRAMES = 6;                      // 60ms后静音
+
+    private final float[] history = new float[HISTORY_LEN];
+    private final float[] pitchBuf = new float[HISTORY_LEN];
+    private final float[] lastQ = new float[POVERLAP_MAX];
+    private final float[] work = new float[FRAME_SIZE];
+    private final float[] tmp = new float[FRAME_SIZE];
+
+    private int eraseCount = 0;
+    private int pitch;
+    private int pOverlap;
+    private int pOffset;
+    private int pitchBufLen;
+    private int pitchBufStart;
+    private boolean primed = false;
+
+    /**
+     * 处理一帧正常收到的音频
+     * 如果之前有丢帧，会就地修改pcm，把开头与合成波形交叉淡入
+     */
+    public void addGoodFrame(byte[] pcm, int length) {
+        int samples = length / 2;
+        for (int start = 0; start < samples; start += FRAME_SIZE) {
+            int n = Math.min(FRAME_SIZE, samples - start);
+            toFloat(pcm, start, work, n);
+            if (eraseCount > 0) {
+                int olen = pOverlap + (eraseCount - 1) * EOVERLAP_INCR;
+                if (olen > n) {
+                    olen = n;
+                }
+                getFeSpeech(tmp, olen);
+                overlapAddAtEnd(work, tmp, olen);
+                eraseCount = 0;
+                toPcm(work, pcm, start, olen);
+            }
+            saveSpeech(work, n);
+        }
+        primed = true;
+    }
+
+    /**
+     * 为一帧丢失的音频生成隐藏波形
+     *
+     * @return 是否生成了波形（尚未收到任何音频时返回false）
+     */
+    public boolean conceal(byte[] pcmOut, int length) {
+        if (!primed) {
+            return false;
+        }
+        int samples = length / 2;
+        for (int start = 0; start < samples; start += FRAME_SIZE) {
+            int n = Math.min(FRAME_SIZE, samples - start);
+            concealSubFrame(work, n);
+            toPcm(work, pcmOut, start, n);
+        }
+        return true;
+    }
+
+    /**
+     * 是否处于丢帧隐藏状态
+     */
+    public boolean isConcealing() {
+        return eraseCount > 0;
+    }
+
+    /**
+     * 连续隐藏的时长（毫秒）
+     */
+    public int getConcealedMillis() {
+        return eraseCount * 10;
+    }
+
+    private void concealSubFrame(float[] out, int n) {
+        if (eraseCount == 0) {
+            // 第一次丢帧：估计基音并准备基音缓冲区
+            System.arraycopy(history, 0, pitchBuf, 0, HISTORY_LEN);
+            pitch = findPitch();
+            pOverlap = pitch >> 2;
+            System.arraycopy(pitchBuf, HISTORY_LEN - pOverlap, lastQ, 0, pOverlap);
+            pOffset = 0;
+            pitchBufLen = pitch;
+            pitchBufStart = HISTORY_LEN - pitchBufLen;
+            overlapAdd(lastQ, pitchBuf, pitchBufStart - pOverlap, pitchBuf, HISTORY_LEN - pOverlap, pOverlap);
+            // 历史中最后1/4周期替换为平滑后的波形
+            System.arraycopy(pitchBuf, HISTORY_LEN - pOverlap, history, HISTORY_LEN - pOverlap, pOverlap);
+            getFeSpeech(out, n);
+        } else if (eraseCount == 1 || eraseCount == 2) {
+            // 第二、三个10ms：多取一个基音周期，减少重复感
+            int saveOffset = pOffset;
+            getFeSpeech(tmp, pOverlap);
+            pOffset = saveOffset;
+            while (pOffset > pitch) {
+                pOffset -= pitch;
+            }
+            pitchBufLen += pitch;
+            pitchBufStart = HISTORY_LEN - pitchBufLen;
+            overlapAdd(lastQ, pitchBuf, pitchBufStart - pOverlap, pitchBuf, HISTORY_LEN - pOverlap, pOverlap);
+            getFeSpeech(out, n);
+            overlapAdd(tmp, out, 0, out, 0, Math.min(pOverlap, n));
+            scaleSpeech(out, n);
+        } else if (eraseCount >= MAX_ERASE_FRAMES) {
+            for (int i = 0; i < n; i++) {
+                out[i] = 0f;
+            }
+        } else {
+            getFeSpeech(out, n);
+            scaleSpeech(out, n);
+        }
+        eraseCount++;
+        saveSpeech(out, n);
+    }
+
+    /**
+     * 归一化互相关搜索基音周期（先2:1抽取粗搜，再在最佳点附近精搜）
+     */
+    private int findPitch() {
+        int l = HISTORY_LEN - CORR_LEN;
+        int r = HISTORY_LEN - CORR_BUF_LEN;
+
+        // 粗搜索
+        int rp = r;
+        float energy = 0f;
+        float corr = 0f;
+        for (int i = 0; i < CORR_LEN; i += NDEC) {
+            energy += pitchBuf[rp + i] * pitchBuf[rp + i];
+            corr += pitchBuf[rp + i] * pitchBuf[l + i];
+        }
+        float bestCorr = corr / (float) Math.sqrt(Math.max(energy, CORR_MIN_POWER));
+        int bestMatch = 0;
+        for (int j = NDEC; j <= PITCH_DIFF; j += NDEC) {
+            energy -= pitchBuf[rp] * pitchBuf[rp];
+            energy += pitchBuf[rp + CORR_LEN] * pitchBuf[rp + CORR_LEN];
+            rp += NDEC;
+            corr = 0f;
+            for (int i = 0; i < CORR_LEN; i += NDEC) {
+                corr += pitchBuf[rp + i] * pitchBuf[l + i];
+            }
+            corr /= (float) Math.sqrt(Math.max(energy, CORR_MIN_POWER));
+            if (corr >= bestCorr) {
+                bestCorr = corr;
+                bestMatch = j;
+            }
+        }
+
+        // 精搜索
+        int j = Math.max(bestMatch - (NDEC - 1), 0);
+        int k = Math.min(bestMatch + (NDEC - 1), PITCH_DIFF);
+        rp = r + j;
+        energy = 0f;
+        corr = 0f;
+        for (int i = 0; i < CORR_LEN; i++) {
+            energy += pitchBuf[rp + i] * pitchBuf[rp + i];
+            corr += pitchBuf[rp + i] * pitchBuf[l + i];
+        }
+        bestCorr = corr / (float) Math.sqrt(Math.max(energy, CORR_MIN_POWER));
+        bestMatch = j;
+        for (j++; j <= k; j++) {
+            energy -= pitchBuf[rp] * pitchBuf[rp];
+            energy += pitchBuf[rp + CORR_LEN] * pitchBuf[rp + CORR_LEN];
+            rp++;
+            corr = 0f;
+            for (int i = 0; i < CORR_LEN; i++) {
+                corr += pitchBuf[rp + i] * pitchBuf[l + i];
+            }
+            corr /= (float) Math.sqrt(Math.max(energy, CORR_MIN_POWER));
+            if (corr > bestCorr) {
+                bestCorr = corr;
+                bestMatch = j;
+            }
+        }
+        return PITCH_MAX - bestMatch;
+    }
+
+    /**
+     * 从基音缓冲区循环取出合成波形
+     */
+    private void getFeSpeech(float[] out, int size) {
+        int pos = 0;
+        while (size > 0) {
+            int cnt = Math.min(pitchBufLen - pOffset, size);
+            System.arraycopy(pitchBuf, pitchBufStart + pOffset, out, pos, cnt);
+            pOffset += cnt;
+            if (pOffset == pitchBufLen) {
+                pOffset = 0;
+            }
+            pos += cnt;
+            size -= cnt;
+        }
+    }
+
+    /**
+     * 按丢帧时长线性衰减
+     */
+    private void scaleSpeech(float[] out, int n) {
+        float g = 1f - (eraseCount - 1) * ATTEN_FAC;
+        for (int i = 0; i < n; i++) {
+            out[i] *= Math.max(g, 0f);
+            g -= ATTEN_INCR;
+        }
+    }
+
+    private void saveSpeech(float[] s, int n) {
+        System.arraycopy(history, n, history, 0, HISTORY_LEN - n);
+        System.arraycopy(s, 0, history, HISTORY_LEN - n, n);
+    }
+
+    /**
+     * 三角窗重叠相加：o = l * (1→0) + r * (0→1)
+     */
+    private void overlapAdd(float[] l, float[] r, int rOffset, float[] o, int oOffset, int cnt) {
+        if (cnt <= 0) {
+            return;
+        }
+        float incr = 1f / cnt;
+        float lw = 1f - incr;
+        float rw = incr;
+        for (int i = 0; i < cnt; i++) {
+            o[oOffset + i] = clamp(lw * l[i] + rw * r[rOffset + i]);
+            lw -= incr;
+            rw += incr;
+        }
+    }
+
+    /**
+     * 恢复收包时，将衰减后的合成波形淡出、真实语音淡入
+     */
+    private void overlapAddAtEnd(float[] s, float[] f, int cnt) {
+        if (cnt <= 0) {
+            return;
+        }
+        float incr = 1f / cnt;
+        float gain = Math.max(1f - (eraseCount - 1) * ATTEN_FAC, 0f);
+        float incrg = incr * gain;
+        float lw = (1f - incr) * gain;
+        float rw = incr;
+        for (int i = 0; i < cnt; i++) {
+            s[i] = clamp(lw * f[i] + rw * s[i]);
+            lw -= incrg;
+            rw += incr;
+        }
+    }
+
+    private static float clamp(float v) {
+        if (v > 32767f) {
+            return 32767f;
+        }
+        if (v < -32768f) {
+            return -32768f;
+        }
+        return v;
+    }
+
+    private static void toFloat(byte[] pcm, int sampleOffset, float[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            int b = (sampleOffset + i) * 2;
+            out[i] = (short) ((pcm[b] & 0xFF) | (pcm[b + 1] << 8));
+        }
+    }
+
+    private static void toPcm(float[] in, byte[] pcm, int sampleOffset, int n) {
+        for (int i = 0; i < n; i++) {
+            int sample = Math.round(in[i]);
+            int b = (sampleOffset + i) * 2;
+            pcm[b] = (byte) (sample & 0xFF);
+            pcm[b + 1] = (byte) ((sample >> 8) & 0xFF);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.sipex.client.media;
+
+import javafx.scene.image.ImageView;
+
+/**
+ * 本地视频预览
+ * 直接订阅共享视频采集器的原始帧，按预览尺寸渲染，不经过JPEG编码和RTP回环
+ */
+public class LocalVideoPreview implements SharedVideoCapture.FrameListener {
+
+    private final VideoRenderScheduler renderer;
+    private volatile boolean running = false;
+
+    public LocalVideoPreview(ImageView view) {
+        this.renderer = new VideoRenderScheduler(view);
+    }
+
+    public void start() {
+        if (!running) {
+            running = true;
+            SharedVideoCapture.getInstance().addListener(this);
+            System.out.println("本地视频预览已启动");
+        }
+    }
+
+    public void stop() {
+        if (running) {
+            running = false;
+            SharedVideoCapture.getInstance().removeListener(this);
+            renderer.clear();
+            System.out.println("本地视频预览已停止（渲染 " + renderer.getRenderedFrames()
+                + " 帧，丢弃 " + renderer.getDroppedFrames() + " 帧）");
+        }
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        if (running) {
+            renderer.submit(frame.getImage());
+        }
+    }
+}
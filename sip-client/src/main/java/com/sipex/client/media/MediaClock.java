@@ -0,0 +1,91 @@
+package com.sipex.client.media;
+
+/**
+ * 媒体时钟
+ * 所有媒体定时统一使用单调递增的System.nanoTime，不受系统时间调整影响
+ */
+public final class MediaClock {
+
+    private static final long EPOCH = System.nanoTime();
+
+    private MediaClock() {
+    }
+
+    /**
+     * 当前媒体时间（纳秒，从进程启动时起算）
+     */
+    public static long nanoTime() {
+        return System.nanoTime() - EPOCH;
+    }
+
+    public static long millis() {
+        return nanoTime() / 1_000_000L;
+    }
+
+    /**
+     * 将媒体时间换算为RTP时间戳
+     *
+     * @param clockRate RTP时钟频率（音频8000，视频90000）
+     */
+    public static int toRtpTimestamp(long mediaNanos, int clockRate) {
+        return (int) (mediaNanos / 1_000L * clockRate / 1_000_000L);
+    }
+
+    /**
+     * 设备时钟漂移测量
+     * 比较设备实际产生的采样数与媒体时钟经过的时间，得到设备时钟的偏差（ppm）
+     */
+    public static class DriftMeter {
+
+        private static final long REPORT_INTERVAL_NANOS = 30_000_000_000L; // 30秒报告一次
+
+        private final String name;
+        private final int sampleRate;
+        private long startNanos = -1;
+        private long lastReportNanos;
+        private long samples = 0;
+        private volatile double driftPpm = 0;
+
+        public DriftMeter(String name, int sampleRate) {
+            this.name = name;
+            this.sampleRate = sampleRate;
+        }
+
+        /**
+         * 记录设备交付的采样数
+         */
+        public void onSamples(int count) {
+            long now = nanoTime();
+            if (startNanos < 0) {
+                // 第一次读取包含设备启动延迟，从读完之后开始计时
+                startNanos = now;
+                lastReportNanos = now;
+                return;
+            }
+            samples += count;
+            long elapsed = now - startNanos;
+            if (elapsed <= 0) {
+                return;
+            }
+            double deviceSeconds = (double) samples / sampleRate;
+            double clockSeconds = elapsed / 1e9;
+            driftPpm = (deviceSeconds - clockSeconds) / clockSeconds * 1e6;
+
+            if (now - lastReportNanos >= REPORT_INTERVAL_NANOS) {
+                lastReportNanos = now;
+                System.out.println(String.format("⏱ %s 时钟漂移: %.0f ppm（%.1f秒内偏差 %.1fms）",
+                    name, driftPpm, clockSeconds, (deviceSeconds - clockSeconds) * 1000));
+            }
+        }
+
+        public double getDriftPpm() {
+            return driftPpm;
+        }
+
+        public void reset() {
+            startNanos = -1;
+            samples = 0;
+            driftPpm = 0;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.sipex.client.media;
 
 import com.sipex.client.config.ClientConfig;
+import com.sipex.client.util.CallSetupTracer;
 import javafx.scene.image.ImageView;
 
 import java.net.InetAddress;
@@ -38,6 +39,9 @@ public class MediaManager {
     }
 
     public String createSdpOffer(boolean includeVideo) {
+        // 每次呼叫（主叫发INVITE、被叫应答）都从生成SDP开始计时
+        CallSetupTracer.getInstance().begin();
+
         StringBuilder sdp = new StringBuilder();
         sdp.append("v=0\r\n");
         sdp.append("o=- ").append(System.currentTimeMillis()).append(" ").append(System.currentTimeMillis()).append(" IN IP4 ").append(localIp).append("\r\n");
@@ -60,6 +64,7 @@ public class MediaManager {
             sdp.append("a=sendrecv\r\n");
         }
 
+        CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.SDP_BUILD);
         return sdp.toString();
     }
 
@@ -105,6 +110,7 @@ public class MediaManager {
                 throw e;
             }
             
+            CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.STREAM_START);
             System.out.println("✅ 真实RTP音频流已启动！");
             
         } catch (Exception e) {
@@ -234,6 +240,7 @@ public class MediaManager {
      */
     public void stopStreams() {
         System.out.println("停止所有媒体流...");
+        CallSetupTracer.getInstance().end();
         
         if (audioSender != null) {
             audioSender.stop();
@@ -0,0 +1,221 @@
+package com.sipex.client.media;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * 媒体任务调度器（哈希时间轮）
+ * 周期任务按绝对截止时间调度（下一次 = 上一次截止时间 + 周期），执行耗时不会累积成漂移；
+ * 任务执行超过一个周期时跳过错过的轮次，而不是连续补发
+ */
+public class MediaScheduler {
+
+    private static MediaScheduler instance;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final int WHEEL_SIZE = 512; // 必须是2的幂，约1秒一圈
+    private static final int WORKER_THREADS = 2;
+
+    private final List<LinkedList<MediaTask>> wheel;
+    private final Queue<MediaTask> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final ExecutorService workers;
+    private final long startNanos;
+    private long currentTick = 0;
+
+    private MediaScheduler() {
+        wheel = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new LinkedList<>());
+        }
+        AtomicInteger workerIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(WORKER_THREADS, r -> {
+            Thread t = new Thread(r, "Media-Worker-" + workerIndex.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MAX_PRIORITY);
+            return t;
+        });
+        startNanos = MediaClock.nanoTime();
+
+        Thread timer = new Thread(this::runWheel, "Media-Scheduler");
+        timer.setDaemon(true);
+        timer.setPriority(Thread.MAX_PRIORITY);
+        timer.start();
+    }
+
+    public static synchronized MediaScheduler getInstance() {
+        if (instance == null) {
+            instance = new MediaScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * 按固定周期执行任务，首次在一个周期后执行
+     *
+     * @param task 参数为本次执行的计划时间（MediaClock纳秒）
+     */
+    public MediaTask schedulePeriodic(String name, long period, TimeUnit unit, LongConsumer task) {
+        long periodNanos = unit.toNanos(period);
+        MediaTask mediaTask = new MediaTask(name, task, periodNanos, MediaClock.nanoTime() + periodNanos);
+        pendingTasks.add(mediaTask);
+        return mediaTask;
+    }
+
+    /**
+     * 延迟执行一次
+     */
+    public MediaTask schedule(String name, long delay, TimeUnit unit, Runnable task) {
+        MediaTask mediaTask = new MediaTask(name, deadline -> task.run(), 0,
+            MediaClock.nanoTime() + unit.toNanos(delay));
+        pendingTasks.add(mediaTask);
+        return mediaTask;
+    }
+
+    /**
+     * 时间轮线程：每个tick按绝对时间推进
+     */
+    private void runWheel() {
+        while (true) {
+            long tickDeadline = startNanos + (currentTick + 1) * TICK_NANOS;
+            long wait = tickDeadline - MediaClock.nanoTime();
+            while (wait > 0) {
+                LockSupport.parkNanos(wait);
+                wait = tickDeadline - MediaClock.nanoTime();
+            }
+
+            transferPendingTasks();
+            expireTasks(wheel.get((int) (currentTick & (WHEEL_SIZE - 1))));
+            currentTick++;
+        }
+    }
+
+    private void transferPendingTasks() {
+        MediaTask task;
+        while ((task = pendingTasks.poll()) != null) {
+            if (task.cancelled.get()) {
+                continue;
+            }
+            long ticks = (task.deadline - startNanos + TICK_NANOS - 1) / TICK_NANOS;
+            // 已经过期的任务放在当前tick立即执行
+            ticks = Math.max(ticks, currentTick);
+            task.remainingRounds = (ticks - currentTick) / WHEEL_SIZE;
+            wheel.get((int) (ticks & (WHEEL_SIZE - 1))).add(task);
+        }
+    }
+
+    private void expireTasks(LinkedList<MediaTask> bucket) {
+        Iterator<MediaTask> it = bucket.iterator();
+        while (it.hasNext()) {
+            MediaTask task = it.next();
+            if (task.cancelled.get()) {
+                it.remove();
+            } else if (task.remainingRounds <= 0) {
+                it.remove();
+                workers.execute(task::execute);
+            } else {
+                task.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * 已调度的媒体任务，可取消并查询调度统计
+     */
+    public class MediaTask {
+
+        private final String name;
+        private final LongConsumer action;
+        private final long periodNanos;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private volatile long deadline;
+        private long remainingRounds;
+
+        // 统计
+        private volatile long runs = 0;
+        private volatile long skipped = 0;
+        private volatile long maxLatenessNanos = 0;
+        private volatile long totalLatenessNanos = 0;
+
+        private MediaTask(String name, LongConsumer action, long periodNanos, long deadline) {
+            this.name = name;
+            this.action = action;
+            this.periodNanos = periodNanos;
+            this.deadline = deadline;
+        }
+
+        private void execute() {
+            if (cancelled.get()) {
+                return;
+            }
+            long scheduled = deadline;
+            long lateness = MediaClock.nanoTime() - scheduled;
+            if (lateness > maxLatenessNanos) {
+                maxLatenessNanos = lateness;
+            }
+            totalLatenessNanos += Math.max(lateness, 0);
+            runs++;
+
+            try {
+                action.accept(scheduled);
+            } catch (Exception e) {
+                System.err.println("媒体任务执行错误 [" + name + "]: " + e.getMessage());
+            }
+
+            if (periodNanos > 0 && !cancelled.get()) {
+                long next = scheduled + periodNanos;
+                long now = MediaClock.nanoTime();
+                if (now - next >= periodNanos) {
+                    // 执行超时一个周期以上，跳过已经错过的周期，保持原有相位
+                    long missed = (now - next) / periodNanos;
+                    skipped += missed;
+                    next += missed * periodNanos;
+                }
+                deadline = next;
+                pendingTasks.add(this);
+            }
+        }
+
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true) && periodNanos > 0 && runs > 0) {
+                System.out.println("媒体任务结束 [" + name + "] " + getStats());
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getMaxLatenessMicros() {
+            return maxLatenessNanos / 1000;
+        }
+
+        public long getAverageLatenessMicros() {
+            long count = runs;
+            return count == 0 ? 0 : totalLatenessNanos / count / 1000;
+        }
+
+        public String getStats() {
+            return "执行 " + runs + " 次, 跳过 " + skipped + " 次, 平均延迟 "
+                + getAverageLatenessMicros() + "us, 最大延迟 " + getMaxLatenessMicros() + "us";
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.sipex.client.media;
+
+/**
+ * RFC 2198 冗余音频（RED）载荷编解码
+ * 每个RTP包携带当前帧（主块）以及之前的1~2帧（冗余块），接收端可用冗余块恢复丢失的帧
+ */
+public class RedCodec {
+
+    // SDP中协商的RED动态载荷类型
+    public static final int PAYLOAD_TYPE = 99;
+
+    // 最多携带的冗余帧数
+    public static final int MAX_REDUNDANCY = 2;
+
+    private static final int MAX_TS_OFFSET = 0x3FFF;   // 14位时间戳偏移
+    private static final int MAX_BLOCK_LENGTH = 0x3FF; // 10位块长度
+
+    /**
+     * 冗余块回调
+     */
+    public interface BlockHandler {
+        /**
+         * @param payloadType 块的载荷类型
+         * @param tsOffset    相对主块的时间戳偏移（主块为0）
+         * @param data        数据数组
+         * @param offset      块在数组中的起始位置
+         * @param length      块长度
+         */
+        void onBlock(int payloadType, int tsOffset, byte[] data, int offset, int length);
+    }
+
+    private RedCodec() {
+    }
+
+    /**
+     * 计算编码后的载荷长度
+     */
+    public static int encodedLength(int primaryLength, int[] redundantLengths, int redundantCount) {
+        int length = 1 + primaryLength;
+        for (int i = 0; i < redundantCount; i++) {
+            length += 4 + redundantLengths[i];
+        }
+        return length;
+    }
+
+    /**
+     * 编码RED载荷
+     * 冗余块按从旧到新的顺序排列，最后是主块
+     *
+     * @return 写入out的字节数
+     */
+    public static int encode(byte[] out, int outOffset, int blockPayloadType,
+                             byte[][] redundant, int[] redundantLengths, int[] tsOffsets, int redundantCount,
+                             byte[] primary, int primaryLength) {
+        int pos = outOffset;
+        int pt = blockPayloadType & 0x7F;
+
+        // 冗余块头：F(1) | PT(7) | 时间戳偏移(14) | 块长度(10)
+        for (int i = 0; i < redundantCount; i++) {
+            int tsOffset = Math.min(tsOffsets[i], MAX_TS_OFFSET);
+            int length = Math.min(redundantLengths[i], MAX_BLOCK_LENGTH);
+            out[pos++] = (byte) (0x80 | pt);
+            out[pos++] = (byte) (tsOffset >> 6);
+            out[pos++] = (byte) (((tsOffset & 0x3F) << 2) | (length >> 8));
+            out[pos++] = (byte) length;
+        }
+
+        // 主块头：F(1)=0 | PT(7)
+        out[pos++] = (byte) pt;
+
+        for (int i = 0; i < redundantCount; i++) {
+            int length = Math.min(redundantLengths[i], MAX_BLOCK_LENGTH);
+            System.arraycopy(redundant[i], 0, out, pos, length);
+            pos += length;
+        }
+        System.arraycopy(primary, 0, out, pos, primaryLength);
+        pos += primaryLength;
+
+        return pos - outOffset;
+    }
+
+    /**
+     * 解码RED载荷，依次回调每个块（冗余块在前，主块最后）
+     *
+     * @return 是否为合法的RED载荷
+     */
+    public static boolean decode(byte[] data, int offset, int length, BlockHandler handler) {
+        int end = offset + length;
+        int pos = offset;
+
+        // 先统计冗余块头
+        int headers = 0;
+        while (pos < end && (data[pos] & 0x80) != 0) {
+            if (pos + 4 > end || headers >= MAX_REDUNDANCY) {
+                return false;
+            }
+            pos += 4;
+            headers++;
+        }
+        if (pos >= end) {
+            return false;
+        }
+        int primaryPt = data[pos] & 0x7F;
+        int dataPos = pos + 1;
+
+        // 依次取出冗余块
+        int headerPos = offset;
+        for (int i = 0; i < headers; i++) {
+            int pt = data[headerPos] & 0x7F;
+            int tsOffset = ((data[headerPos + 1] & 0xFF) << 6) | ((data[headerPos + 2] & 0xFF) >> 2);
+            int blockLength = ((data[headerPos + 2] & 0x03) << 8) | (data[headerPos + 3] & 0xFF);
+            if (dataPos + blockLength > end) {
+                return false;
+            }
+            handler.onBlock(pt, tsOffset, data, dataPos, blockLength);
+            dataPos += blockLength;
+            headerPos += 4;
+        }
+
+        // 剩余部分为主块
+        handler.onBlock(primaryPt, 0, data, dataPos, end - dataPos);
+        return true;
+    }
+}
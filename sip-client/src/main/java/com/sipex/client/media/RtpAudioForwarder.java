@@ -4,15 +4,13 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.nio.ByteBuffer;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RTP音频转发器
  * 不采集音频，只负责将接收到的音频数据通过RTP发送
  */
-public class RtpAudioForwarder implements Runnable, SharedAudioCapture.AudioDataListener {
+public class RtpAudioForwarder implements Runnable {
 
     private final DatagramSocket socket;
     private final InetAddress remoteAddress;
@@ -22,24 +20,96 @@ public class RtpAudioForwarder implements Runnable, SharedAudioCapture.AudioData
     private long timestamp = 0;
     private final int ssrc; // 随机生成的源标识符
     
-    private final BlockingQueue<byte[]> audioQueue;
+    private AudioRingBuffer.Consumer audioConsumer;
+    
+    // 发送路径的缓冲区全部预分配，每帧不再分配内存
+    private final byte[] pcmBuffer = new byte[MAX_FRAME_BYTES * 2];
+    private final byte[] ulawBuffer = new byte[MAX_FRAME_BYTES];
+    private final byte[] packetBuffer = new byte[12 + MAX_FRAME_BYTES * (RedCodec.MAX_REDUNDANCY + 1) + 4 * RedCodec.MAX_REDUNDANCY + 1];
+    private final DatagramPacket packet;
+    private final byte[][] redBlocks = new byte[RedCodec.MAX_REDUNDANCY][];
+    private final int[] redBlockLengths = new int[RedCodec.MAX_REDUNDANCY];
+    private final int[] redTsOffsets = new int[RedCodec.MAX_REDUNDANCY];
+    
+    // RED冗余（RFC 2198），-1表示对端未协商RED
+    private volatile int redPayloadType = -1;
+    private volatile int redundancyLevel = 0;
+    private double smoothedLoss = 0;
+    
+    // 最近发送的帧（history[0]为上一帧），用作冗余块
+    private final byte[][] history = new byte[RedCodec.MAX_REDUNDANCY][MAX_FRAME_BYTES];
+    private final int[] historyLengths = new int[RedCodec.MAX_REDUNDANCY];
+    private final long[] historyTimestamps = new long[RedCodec.MAX_REDUNDANCY];
+    private int historyCount = 0;
     
     // RTP参数
     private static final int PAYLOAD_TYPE = 0; // PCMU (G.711 μ-law)
+    private static final int MAX_FRAME_BYTES = 512;
+    
+    // 根据丢包率调整冗余度的阈值（带迟滞，避免频繁切换）
+    private static final double LOSS_ENABLE_RED = 0.03;
+    private static final double LOSS_DOUBLE_RED = 0.10;
+    private static final double LOSS_DISABLE_RED = 0.01;
+    private static final double LOSS_SMOOTHING = 0.3;
 
     public RtpAudioForwarder(int localPort, String remoteHost, int remotePort) throws Exception {
-        this.socket = new DatagramSocket(localPort);
+        this(new DatagramSocket(localPort), remoteHost, remotePort);
+    }
+
+    /**
+     * 使用已绑定的socket（来自RtpPortAllocator）
+     */
+    public RtpAudioForwarder(DatagramSocket socket, String remoteHost, int remotePort) throws Exception {
+        this.socket = socket;
         this.remoteAddress = InetAddress.getByName(remoteHost);
         this.remotePort = remotePort;
         this.ssrc = (int) (Math.random() * Integer.MAX_VALUE);
-        this.audioQueue = new LinkedBlockingQueue<>(100);
+        this.packet = new DatagramPacket(packetBuffer, packetBuffer.length, remoteAddress, remotePort);
+    }
+
+    /**
+     * 对端SDP中协商了RED时调用，之后可根据丢包率动态开启冗余
+     */
+    public void enableRed(int payloadType) {
+        this.redPayloadType = payloadType;
+    }
+    
+    /**
+     * 根据观测到的丢包率调整冗余度
+     * 网络良好时不携带冗余，不额外占用带宽
+     */
+    public void updateRedundancy(double lossRate) {
+        if (redPayloadType < 0) {
+            return;
+        }
+        smoothedLoss = smoothedLoss * (1 - LOSS_SMOOTHING) + lossRate * LOSS_SMOOTHING;
+        
+        int level = redundancyLevel;
+        if (smoothedLoss >= LOSS_DOUBLE_RED) {
+            level = 2;
+        } else if (smoothedLoss >= LOSS_ENABLE_RED) {
+            level = 1;
+        } else if (smoothedLoss < LOSS_DISABLE_RED) {
+            level = 0;
+        }
+        // 1%~3%之间保持当前冗余度
+        
+        if (level != redundancyLevel) {
+            System.out.println("RED冗余度调整: " + redundancyLevel + " -> " + level
+                + String.format(" (丢包率 %.1f%%)", smoothedLoss * 100));
+            redundancyLevel = level;
+        }
+    }
+    
+    public int getRedundancyLevel() {
+        return redundancyLevel;
     }
 
     public void start() {
         running = true;
         
-        // 注册到共享音频采集器
-        SharedAudioCapture.getInstance().addListener(this);
+        // 订阅共享音频采集器
+        audioConsumer = SharedAudioCapture.getInstance().subscribe();
         
         // 启动发送线程
         new Thread(this, "RTP-Audio-Forwarder").start();
@@ -49,8 +119,10 @@ public class RtpAudioForwarder implements Runnable, SharedAudioCapture.AudioData
     public void stop() {
         running = false;
         
-        // 从共享音频采集器注销
-        SharedAudioCapture.getInstance().removeListener(this);
+        // 取消订阅共享音频采集器
+        if (audioConsumer != null) {
+            SharedAudioCapture.getInstance().unsubscribe(audioConsumer);
+        }
         
         if (socket != null && !socket.isClosed()) {
             socket.close();
@@ -58,36 +130,31 @@ public class RtpAudioForwarder implements Runnable, SharedAudioCapture.AudioData
         System.out.println("❌ RTP音频转发器已停止");
     }
     
-    @Override
-    public void onAudioData(byte[] audioData) {
-        // 将音频数据加入队列
-        if (!audioQueue.offer(audioData)) {
-            // 队列满了，丢弃最旧的数据
-            audioQueue.poll();
-            audioQueue.offer(audioData);
-        }
-    }
-
     @Override
     public void run() {
+        AudioRingBuffer.Consumer consumer = audioConsumer;
         while (running) {
             try {
-                // 从队列获取音频数据
-                byte[] pcmData = audioQueue.take();
+                // 从环形缓冲区读取音频数据
+                int pcmLength = consumer.read(pcmBuffer, 100, TimeUnit.MILLISECONDS);
+                if (pcmLength < 0) {
+                    break;
+                }
+                if (pcmLength == 0) {
+                    continue;
+                }
                 
                 // PCM转G.711 μ-law
-                byte[] ulawData = new byte[pcmData.length / 2];
-                for (int i = 0; i < ulawData.length; i++) {
+                int ulawLength = pcmLength / 2;
+                for (int i = 0; i < ulawLength; i++) {
                     // 从16位PCM提取样本
-                    short sample = (short) ((pcmData[i * 2] & 0xFF) | ((pcmData[i * 2 + 1] & 0xFF) << 8));
-                    ulawData[i] = linearToUlaw(sample);
+                    short sample = (short) ((pcmBuffer[i * 2] & 0xFF) | ((pcmBuffer[i * 2 + 1] & 0xFF) << 8));
+                    ulawBuffer[i] = linearToUlaw(sample);
                 }
 
                 // 创建RTP包
-                sendRtpPacket(ulawData);
+                sendRtpPacket(ulawBuffer, ulawLength);
                 
-            } catch (InterruptedException e) {
-                break;
             } catch (Exception e) {
                 if (running) {
                     System.err.println("RTP音频转发错误: " + e.getMessage());
@@ -99,38 +166,86 @@ public class RtpAudioForwarder implements Runnable, SharedAudioCapture.AudioData
     /**
      * 发送RTP包
      */
-    private void sendRtpPacket(byte[] payload) throws IOException {
+    private void sendRtpPacket(byte[] payload, int length) throws IOException {
+        int level = Math.min(redundancyLevel, historyCount);
+        boolean useRed = redPayloadType >= 0 && level > 0;
+        
+        int payloadLength = length;
+        if (useRed) {
+            // 冗余块按从旧到新排列
+            for (int i = 0; i < level; i++) {
+                int h = level - 1 - i;
+                redBlocks[i] = history[h];
+                redBlockLengths[i] = historyLengths[h];
+                redTsOffsets[i] = (int) (timestamp - historyTimestamps[h]);
+            }
+            payloadLength = RedCodec.encodedLength(length, redBlockLengths, level);
+        }
+        
         // RTP头（12字节）
-        ByteBuffer rtpHeader = ByteBuffer.allocate(12 + payload.length);
+        byte[] buf = packetBuffer;
         
         // 版本(2) + 填充(1) + 扩展(1) + CSRC计数(4)
-        rtpHeader.put((byte) 0x80);
+        buf[0] = (byte) 0x80;
         
         // 标记(1) + 载荷类型(7)
-        rtpHeader.put((byte) PAYLOAD_TYPE);
+        buf[1] = (byte) (useRed ? redPayloadType : PAYLOAD_TYPE);
         
         // 序列号
-        rtpHeader.putShort((short) (sequenceNumber++ & 0xFFFF));
+        int seq = sequenceNumber++ & 0xFFFF;
+        buf[2] = (byte) (seq >> 8);
+        buf[3] = (byte) seq;
         
         // 时间戳
-        rtpHeader.putInt((int) timestamp);
-        timestamp += payload.length; // 每个样本递增
+        int ts = (int) timestamp;
+        buf[4] = (byte) (ts >> 24);
+        buf[5] = (byte) (ts >> 16);
+        buf[6] = (byte) (ts >> 8);
+        buf[7] = (byte) ts;
         
         // SSRC
-        rtpHeader.putInt(ssrc);
+        buf[8] = (byte) (ssrc >> 24);
+        buf[9] = (byte) (ssrc >> 16);
+        buf[10] = (byte) (ssrc >> 8);
+        buf[11] = (byte) ssrc;
         
         // 载荷
-        rtpHeader.put(payload);
+        if (useRed) {
+            RedCodec.encode(buf, 12, PAYLOAD_TYPE,
+                redBlocks, redBlockLengths, redTsOffsets, level, payload, length);
+        } else {
+            System.arraycopy(payload, 0, buf, 12, length);
+        }
         
-        // 发送数据包
-        byte[] packetData = rtpHeader.array();
-        DatagramPacket packet = new DatagramPacket(
-            packetData, packetData.length, 
-            remoteAddress, remotePort
-        );
+        // 记录历史帧供后续包携带冗余
+        rememberFrame(payload, length, timestamp);
+        timestamp += length; // 每个样本递增
         
+        // 发送数据包
+        packet.setLength(12 + payloadLength);
         socket.send(packet);
     }
+    
+    /**
+     * 保存最近发送的帧（复用预分配的缓冲区）
+     */
+    private void rememberFrame(byte[] payload, int length, long frameTimestamp) {
+        if (length > MAX_FRAME_BYTES) {
+            historyCount = 0;
+            return;
+        }
+        byte[] oldest = history[history.length - 1];
+        for (int i = history.length - 1; i > 0; i--) {
+            history[i] = history[i - 1];
+            historyLengths[i] = historyLengths[i - 1];
+            historyTimestamps[i] = historyTimestamps[i - 1];
+        }
+        System.arraycopy(payload, 0, oldest, 0, length);
+        history[0] = oldest;
+        historyLengths[0] = length;
+        historyTimestamps[0] = frameTimestamp;
+        historyCount = Math.min(historyCount + 1, history.length);
+    }
 
     /**
      * 线性PCM转G.711 μ-law (简化算法)
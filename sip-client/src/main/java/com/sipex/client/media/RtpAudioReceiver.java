@@ -1,9 +1,12 @@
 package com.sipex.client.media;
 
+import com.sipex.client.util.CallSetupTracer;
+
 import javax.sound.sampled.*;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.nio.ByteBuffer;
+import java.util.function.DoubleConsumer;
 
 /**
  * RTP音频接收器 - 接收RTP包并通过扬声器播放
@@ -14,10 +17,26 @@ public class RtpAudioReceiver implements Runnable {
     private SourceDataLine speaker;
     private volatile boolean running = false;
     private AudioDataCallback audioDataCallback;
+    private boolean firstPacketReceived = false;
+
+    // 抖动缓冲区（按序列号重排，RED冗余块在此补齐丢帧）
+    private final AudioJitterBuffer jitterBuffer = new AudioJitterBuffer(DEFAULT_JITTER_DEPTH);
+    
+    // 丢包隐藏：仍然丢失的帧用基音重复波形代替，避免播放出现咔哒声
+    private final G711Plc plc = new G711Plc();
+    private int lastFrameBytes = 320;
+
+    // 丢包率回调（用于发送端动态开启RED）
+    private DoubleConsumer lossListener;
+    private long reportedPlayed = 0;
+    private long reportedRecovered = 0;
+    private long reportedLost = 0;
 
     // RTP参数
     private static final int SAMPLE_RATE = 8000;
     private static final int BUFFER_SIZE = 1024;
+    private static final int DEFAULT_JITTER_DEPTH = 2;      // 帧（40ms），有PLC兜底可以用较小的缓冲
+    private static final int LOSS_REPORT_INTERVAL = 50;     // 每50帧（1秒）汇报一次丢包率
 
     public RtpAudioReceiver(int localPort) throws Exception {
         this.socket = new DatagramSocket(localPort);
@@ -25,7 +44,14 @@ public class RtpAudioReceiver implements Runnable {
     }
     
     public RtpAudioReceiver(int localPort, AudioDataCallback callback) throws Exception {
-        this.socket = new DatagramSocket(localPort);
+        this(new DatagramSocket(localPort), callback);
+    }
+    
+    /**
+     * 使用已绑定的socket（来自RtpPortAllocator）
+     */
+    public RtpAudioReceiver(DatagramSocket socket, AudioDataCallback callback) throws Exception {
+        this.socket = socket;
         this.audioDataCallback = callback;
         // 如果有回调，不初始化扬声器（数据将通过回调传递）
         if (callback == null) {
@@ -46,6 +72,14 @@ public class RtpAudioReceiver implements Runnable {
         speaker.open(format);
     }
 
+    /**
+     * 设置丢包率监听器
+     * 汇报的是RED恢复之前的网络丢包率，避免恢复成功后又关闭冗余造成来回震荡
+     */
+    public void setLossListener(DoubleConsumer lossListener) {
+        this.lossListener = lossListener;
+    }
+
     public void start() {
         running = true;
         if (speaker != null) {
@@ -77,38 +111,40 @@ public class RtpAudioReceiver implements Runnable {
                 // 接收RTP包
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 socket.receive(packet);
+                if (!firstPacketReceived) {
+                    firstPacketReceived = true;
+                    CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.FIRST_RTP_RECEIVED);
+                }
                 
                 // 解析RTP头（12字节）
                 ByteBuffer bb = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
                 
                 byte b0 = bb.get();
                 byte b1 = bb.get();
-                short seq = bb.getShort();
+                int payloadType = b1 & 0x7F;
+                int seq = bb.getShort() & 0xFFFF;
                 int timestamp = bb.getInt();
                 int ssrc = bb.getInt();
                 
-                // 提取payload
                 int payloadLength = packet.getLength() - 12;
-                byte[] payload = new byte[payloadLength];
-                bb.get(payload);
-                
-                // G.711 μ-law解码为PCM
-                byte[] pcmData = new byte[payloadLength * 2];
-                for (int i = 0; i < payloadLength; i++) {
-                    short sample = ulawToLinear(payload[i]);
-                    pcmData[i * 2] = (byte) (sample & 0xFF);
-                    pcmData[i * 2 + 1] = (byte) ((sample >> 8) & 0xFF);
+                if (payloadLength <= 0) {
+                    continue;
                 }
                 
-                // 播放音频或通过回调传递数据
-                if (audioDataCallback != null) {
-                    // 通过回调传递数据（用于混音器）
-                    audioDataCallback.onAudioData(pcmData);
-                } else if (speaker != null) {
-                    // 直接播放
-                    speaker.write(pcmData, 0, pcmData.length);
+                if (payloadType == RedCodec.PAYLOAD_TYPE) {
+                    // RED载荷：拆出冗余块和主块，分别按序列号放入抖动缓冲区
+                    putRedPayload(seq, packet.getData(), 12, payloadLength);
+                } else {
+                    // 提取payload
+                    byte[] payload = new byte[payloadLength];
+                    bb.get(payload);
+                    jitterBuffer.put(seq, payload, false);
                 }
                 
+                // 输出已就绪的帧
+                jitterBuffer.drain(this::playFrame);
+                reportLoss();
+                
             } catch (Exception e) {
                 if (running) {
                     System.err.println("RTP接收错误: " + e.getMessage());
@@ -117,6 +153,108 @@ public class RtpAudioReceiver implements Runnable {
         }
     }
 
+    /**
+     * 拆分RED载荷
+     * 冗余块的序列号 = 主块序列号 - 时间戳偏移 / 每帧样本数
+     */
+    private void putRedPayload(int primarySeq, byte[] data, int offset, int length) {
+        int[] tsOffsets = new int[RedCodec.MAX_REDUNDANCY];
+        byte[][] blocks = new byte[RedCodec.MAX_REDUNDANCY][];
+        byte[][] last = new byte[1][];
+        int[] lastTsOffset = {0};
+        int[] count = {0};
+        
+        boolean valid = RedCodec.decode(data, offset, length, (pt, tsOffset, blockData, blockOffset, blockLength) -> {
+            // 上一个块不是最后一个，所以是冗余块；放不下的冗余块直接跳过
+            if (last[0] != null && count[0] < blocks.length) {
+                tsOffsets[count[0]] = lastTsOffset[0];
+                blocks[count[0]] = last[0];
+                count[0]++;
+            }
+            byte[] block = new byte[blockLength];
+            System.arraycopy(blockData, blockOffset, block, 0, blockLength);
+            last[0] = block;
+            lastTsOffset[0] = tsOffset;
+        });
+        if (!valid || last[0] == null) {
+            return;
+        }
+        
+        // 最后一个块（F=0）是主块
+        byte[] primary = last[0];
+        jitterBuffer.put(primarySeq, primary, false);
+        
+        int samplesPerFrame = primary.length;
+        if (samplesPerFrame == 0) {
+            return;
+        }
+        for (int i = 0; i < count[0]; i++) {
+            int framesBack = tsOffsets[i] / samplesPerFrame;
+            if (framesBack > 0 && blocks[i].length > 0) {
+                jitterBuffer.put(primarySeq - framesBack, blocks[i], true);
+            }
+        }
+    }
+    
+    /**
+     * 播放一帧（null表示该帧丢失，由PLC生成隐藏波形）
+     */
+    private void playFrame(byte[] payload) {
+        byte[] pcmData;
+        if (payload == null) {
+            pcmData = new byte[lastFrameBytes];
+            if (!plc.conceal(pcmData, pcmData.length)) {
+                return;
+            }
+        } else {
+            // G.711 μ-law解码为PCM
+            pcmData = new byte[payload.length * 2];
+            for (int i = 0; i < payload.length; i++) {
+                short sample = ulawToLinear(payload[i]);
+                pcmData[i * 2] = (byte) (sample & 0xFF);
+                pcmData[i * 2 + 1] = (byte) ((sample >> 8) & 0xFF);
+            }
+            plc.addGoodFrame(pcmData, pcmData.length);
+            lastFrameBytes = pcmData.length;
+        }
+        
+        // 播放音频或通过回调传递数据
+        if (audioDataCallback != null) {
+            // 通过回调传递数据（用于混音器）
+            audioDataCallback.onAudioData(pcmData);
+        } else if (speaker != null) {
+            // 直接播放
+            speaker.write(pcmData, 0, pcmData.length);
+        }
+    }
+    
+    /**
+     * 周期性汇报网络丢包率（恢复帧 + 丢失帧）/ 总帧数
+     */
+    private void reportLoss() {
+        if (lossListener == null) {
+            return;
+        }
+        long played = jitterBuffer.getPlayedFrames();
+        long recovered = jitterBuffer.getRecoveredFrames();
+        long lost = jitterBuffer.getLostFrames();
+        
+        long total = (played - reportedPlayed) + (lost - reportedLost);
+        if (total < LOSS_REPORT_INTERVAL) {
+            return;
+        }
+        long networkLost = (recovered - reportedRecovered) + (lost - reportedLost);
+        reportedPlayed = played;
+        reportedRecovered = recovered;
+        reportedLost = lost;
+        
+        lossListener.accept((double) networkLost / total);
+    }
+    
+    public AudioJitterBuffer getJitterBuffer() {
+        return jitterBuffer;
+    }
+
     /**
      * G.711 μ-law转线性PCM (简化算法)
      */
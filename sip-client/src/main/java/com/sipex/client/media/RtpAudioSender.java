@@ -1,5 +1,7 @@
 package com.sipex.client.media;
 
+import com.sipex.client.util.CallSetupTracer;
+
 import javax.sound.sampled.*;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -163,13 +165,16 @@ public class RtpAudioSender implements Runnable {
     public void run() {
         int frameSize = (int)(actualSampleRate / 50); // 20ms的采样数
         byte[] audioBuffer = new byte[frameSize * actualFormat.getFrameSize()];
+        MediaClock.DriftMeter driftMeter = new MediaClock.DriftMeter("麦克风", actualSampleRate);
         
         while (running) {
             try {
-                // 从麦克风读取音频数据
+                // 从麦克风读取音频数据，read会阻塞到凑满一帧，发送节奏由设备时钟决定
                 int bytesRead = microphone.read(audioBuffer, 0, audioBuffer.length);
                 
                 if (bytesRead > 0) {
+                    driftMeter.onSamples(bytesRead / actualFormat.getFrameSize());
+                    
                     // 转换为G.711 μ-law (适应不同的采样率和位深)
                     byte[] payload = convertToUlaw(audioBuffer, bytesRead);
                     
@@ -181,13 +186,13 @@ public class RtpAudioSender implements Runnable {
                         rtpPacket, rtpPacket.length, remoteAddress, remotePort
                     );
                     socket.send(packet);
+                    if (sequenceNumber == 0) {
+                        CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.FIRST_RTP_SENT);
+                    }
                     
                     // 更新RTP头信息
                     sequenceNumber++;
                     timestamp += frameSize;
-                    
-                    // 控制发送速率 (20ms per frame)
-                    Thread.sleep(20);
                 }
             } catch (Exception e) {
                 if (running) {
@@ -0,0 +1,167 @@
+package com.sipex.client.media;
+
+import com.sipex.client.config.ClientConfig;
+
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * RTP端口对分配器
+ * 启动时在 RTP_PORT_START..RTP_PORT_END 内预先绑定一批偶/奇端口对，
+ * 建立媒体流时直接租用已绑定的socket，不再逐个探测端口；
+ * 归还后由后台线程补充新的端口对
+ */
+public class RtpPortAllocator {
+
+    private static RtpPortAllocator instance;
+
+    // 会议最多5人，每人音频、视频各一对，留一些余量
+    private static final int POOL_SIZE = 16;
+
+    private final BlockingQueue<PortPair> pool = new LinkedBlockingQueue<>();
+    private final ExecutorService refiller;
+    private final Object bindLock = new Object();
+    private int nextPort;
+
+    /**
+     * 一对相邻端口：偶数端口收发RTP（写入SDP），奇数端口留给RTCP
+     * RTP的发送和接收用同一个socket，对端（以及NAT）看到的源端口就是SDP里的端口（对称RTP）
+     */
+    public static class PortPair {
+        private final DatagramSocket rtpSocket;
+        private final DatagramSocket rtcpSocket;
+
+        private PortPair(DatagramSocket rtpSocket, DatagramSocket rtcpSocket) {
+            this.rtpSocket = rtpSocket;
+            this.rtcpSocket = rtcpSocket;
+        }
+
+        public int getPort() {
+            return rtpSocket.getLocalPort();
+        }
+
+        public DatagramSocket getRtpSocket() {
+            return rtpSocket;
+        }
+
+        public DatagramSocket getRtcpSocket() {
+            return rtcpSocket;
+        }
+
+        private void close() {
+            rtpSocket.close();
+            rtcpSocket.close();
+        }
+    }
+
+    private RtpPortAllocator() {
+        // 从随机位置开始，同一台机器上的多个客户端不会争抢同一段端口
+        int pairs = (ClientConfig.RTP_PORT_END - ClientConfig.RTP_PORT_START) / 2;
+        nextPort = ClientConfig.RTP_PORT_START + new Random().nextInt(pairs) * 2;
+
+        refiller = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "RTP-Port-Refill");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long start = System.currentTimeMillis();
+        refill();
+        System.out.println("RTP端口池已就绪: " + pool.size() + " 对，耗时 "
+            + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    public static synchronized RtpPortAllocator getInstance() {
+        if (instance == null) {
+            instance = new RtpPortAllocator();
+        }
+        return instance;
+    }
+
+    /**
+     * 租用一对已绑定的端口，池为空时当场绑定
+     */
+    public PortPair lease() {
+        PortPair pair = pool.poll();
+        if (pair == null) {
+            System.out.println("⚠️ RTP端口池已空，同步绑定端口");
+            pair = bindNextPair();
+            if (pair == null) {
+                throw new RuntimeException("无法分配RTP端口: "
+                    + ClientConfig.RTP_PORT_START + "-" + ClientConfig.RTP_PORT_END);
+            }
+        }
+        refiller.execute(this::refill);
+        return pair;
+    }
+
+    /**
+     * 归还端口对
+     * 使用该端口对的媒体流停止时已经关闭了socket，这里确保关闭并补充新的端口对
+     */
+    public void release(PortPair pair) {
+        if (pair == null) {
+            return;
+        }
+        pair.close();
+        refiller.execute(this::refill);
+    }
+
+    /**
+     * 补充端口池到目标大小
+     */
+    private void refill() {
+        while (pool.size() < POOL_SIZE) {
+            PortPair pair = bindNextPair();
+            if (pair == null) {
+                break;
+            }
+            pool.offer(pair);
+        }
+    }
+
+    /**
+     * 从游标位置起寻找下一对可绑定的偶/奇端口，最多扫描整个范围一遍
+     */
+    private PortPair bindNextPair() {
+        synchronized (bindLock) {
+            int range = ClientConfig.RTP_PORT_END - ClientConfig.RTP_PORT_START;
+            for (int attempts = 0; attempts < range / 2; attempts++) {
+                int port = nextPort;
+                nextPort += 2;
+                if (nextPort + 1 > ClientConfig.RTP_PORT_END) {
+                    nextPort = ClientConfig.RTP_PORT_START;
+                }
+
+                DatagramSocket even = null;
+                try {
+                    even = new DatagramSocket(port);
+                    DatagramSocket odd = new DatagramSocket(port + 1);
+                    return new PortPair(even, odd);
+                } catch (SocketException e) {
+                    // 端口被占用，继续尝试下一对
+                    if (even != null) {
+                        even.close();
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 关闭所有空闲端口（用于应用退出时）
+     */
+    public void shutdown() {
+        PortPair pair;
+        while ((pair = pool.poll()) != null) {
+            pair.close();
+        }
+        refiller.shutdownNow();
+    }
+}
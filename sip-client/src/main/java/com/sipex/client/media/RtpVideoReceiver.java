@@ -1,7 +1,5 @@
 package com.sipex.client.media;
 
-import javafx.application.Platform;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
 import javax.imageio.ImageIO;
@@ -19,14 +17,21 @@ public class RtpVideoReceiver implements Runnable {
 
     private final DatagramSocket socket;
     private volatile boolean running = false;
-    private ImageView displayView; // JavaFX ImageView用于显示
+    private final VideoRenderScheduler renderer; // 渲染到JavaFX ImageView
     private ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream();
 
     private static final int BUFFER_SIZE = 2048;
 
     public RtpVideoReceiver(int localPort, ImageView displayView) throws Exception {
-        this.socket = new DatagramSocket(localPort);
-        this.displayView = displayView;
+        this(new DatagramSocket(localPort), displayView);
+    }
+
+    /**
+     * 使用已绑定的socket（来自RtpPortAllocator）
+     */
+    public RtpVideoReceiver(DatagramSocket socket, ImageView displayView) {
+        this.socket = socket;
+        this.renderer = new VideoRenderScheduler(displayView);
     }
 
     public void start() {
@@ -93,18 +98,9 @@ public class RtpVideoReceiver implements Runnable {
             ByteArrayInputStream bais = new ByteArrayInputStream(jpegData);
             BufferedImage bufferedImage = ImageIO.read(bais);
             
-            if (bufferedImage != null && displayView != null) {
-                // 转换为JavaFX Image并在UI线程显示
-                Platform.runLater(() -> {
-                    try {
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        ImageIO.write(bufferedImage, "png", baos);
-                        Image image = new Image(new ByteArrayInputStream(baos.toByteArray()));
-                        displayView.setImage(image);
-                    } catch (Exception e) {
-                        // 忽略显示错误
-                    }
-                });
+            if (bufferedImage != null) {
+                // 只渲染最新一帧，UI线程繁忙时丢弃旧帧
+                renderer.submit(bufferedImage);
             }
         } catch (Exception e) {
             // 忽略解码错误
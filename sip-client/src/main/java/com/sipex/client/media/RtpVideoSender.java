@@ -1,11 +1,5 @@
 package com.sipex.client.media;
 
-import com.github.sarxos.webcam.Webcam;
-
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -13,9 +7,9 @@ import java.nio.ByteBuffer;
 
 /**
  * RTP视频发送器 - 支持摄像头和屏幕捕获
- * 可以通过setVideoSource()切换视频源
+ * 帧来自共享视频采集器，可以通过setVideoSource()切换视频源
  */
-public class RtpVideoSender implements Runnable {
+public class RtpVideoSender implements SharedVideoCapture.FrameListener {
 
     private final DatagramSocket socket;
     private final InetAddress remoteAddress;
@@ -24,16 +18,10 @@ public class RtpVideoSender implements Runnable {
     private int sequenceNumber = 0;
     private long timestamp = 0;
     private final int ssrc;
-    private Robot robot; // 用于屏幕捕获
-    private Webcam webcam; // 摄像头
-    private VideoSource videoSource = VideoSource.WEBCAM; // 默认使用摄像头
 
     // RTP参数
     private static final int PAYLOAD_TYPE = 26; // JPEG
-    private static final int FPS = 15; // 15帧/秒
-    private static final int FRAME_INTERVAL = 1000 / FPS; // 66ms
-    private static final int VIDEO_WIDTH = 640;
-    private static final int VIDEO_HEIGHT = 480;
+    private static final int RTP_CLOCK_RATE = 90000;
     private static final int MTU = 1400; // 最大传输单元
 
     public enum VideoSource {
@@ -42,57 +30,37 @@ public class RtpVideoSender implements Runnable {
     }
 
     public RtpVideoSender(int localPort, String remoteHost, int remotePort) throws Exception {
-        this.socket = new DatagramSocket(localPort);
+        this(new DatagramSocket(localPort), remoteHost, remotePort);
+    }
+
+    /**
+     * 使用已绑定的socket（来自RtpPortAllocator）
+     */
+    public RtpVideoSender(DatagramSocket socket, String remoteHost, int remotePort) throws Exception {
+        this.socket = socket;
         this.remoteAddress = InetAddress.getByName(remoteHost);
         this.remotePort = remotePort;
         this.ssrc = (int) (Math.random() * Integer.MAX_VALUE);
-        this.robot = new Robot(); // 屏幕捕获
-        
-        // 初始化摄像头
-        try {
-            webcam = Webcam.getDefault();
-            if (webcam != null) {
-                Dimension size = new Dimension(VIDEO_WIDTH, VIDEO_HEIGHT);
-                webcam.setViewSize(size);
-                System.out.println("✅ 检测到摄像头: " + webcam.getName());
-            } else {
-                System.out.println("⚠️ 未检测到摄像头，将使用屏幕捕获");
-                videoSource = VideoSource.SCREEN;
-            }
-        } catch (Exception e) {
-            System.out.println("⚠️ 摄像头初始化失败，将使用屏幕捕获: " + e.getMessage());
-            videoSource = VideoSource.SCREEN;
-        }
     }
 
     /**
-     * 设置视频源
+     * 设置视频源（所有发送器和本地预览共用同一个视频源）
      */
     public void setVideoSource(VideoSource source) {
-        this.videoSource = source;
-        System.out.println("切换视频源到: " + (source == VideoSource.WEBCAM ? "摄像头" : "屏幕捕获"));
+        SharedVideoCapture.getInstance().setVideoSource(source);
     }
 
     public void start() {
         running = true;
-        
-        // 如果使用摄像头，先打开
-        if (videoSource == VideoSource.WEBCAM && webcam != null && !webcam.isOpen()) {
-            webcam.open();
-        }
-        
-        new Thread(this, "RTP-Video-Sender").start();
+        SharedVideoCapture capture = SharedVideoCapture.getInstance();
+        capture.addListener(this);
         System.out.println("✅ RTP视频发送器已启动: " + remoteAddress + ":" + remotePort);
-        System.out.println("   视频源: " + (videoSource == VideoSource.WEBCAM ? "摄像头" : "屏幕捕获"));
+        System.out.println("   视频源: " + (capture.getVideoSource() == VideoSource.WEBCAM ? "摄像头" : "屏幕捕获"));
     }
 
     public void stop() {
         running = false;
-        
-        // 关闭摄像头
-        if (webcam != null && webcam.isOpen()) {
-            webcam.close();
-        }
+        SharedVideoCapture.getInstance().removeListener(this);
         
         if (socket != null && !socket.isClosed()) {
             socket.close();
@@ -100,55 +68,36 @@ public class RtpVideoSender implements Runnable {
         System.out.println("❌ RTP视频发送器已停止");
     }
 
+    /**
+     * 发送一帧
+     */
     @Override
-    public void run() {
-        Rectangle screenRect = new Rectangle(0, 0, VIDEO_WIDTH, VIDEO_HEIGHT);
-        
-        while (running) {
-            try {
-                long startTime = System.currentTimeMillis();
-                
-                // 根据视频源捕获图像
-                BufferedImage frame;
-                if (videoSource == VideoSource.WEBCAM && webcam != null && webcam.isOpen()) {
-                    // 从摄像头捕获
-                    frame = webcam.getImage();
-                    if (frame == null) {
-                        Thread.sleep(FRAME_INTERVAL);
-                        continue;
-                    }
-                } else {
-                    // 从屏幕捕获
-                    frame = robot.createScreenCapture(screenRect);
-                }
-                
-                // 调整大小并转换为JPEG
-                BufferedImage resized = resizeImage(frame, VIDEO_WIDTH, VIDEO_HEIGHT);
-                byte[] jpegData = imageToJpeg(resized);
-                
-                // 分片发送（如果超过MTU）
-                if (jpegData.length <= MTU) {
-                    // 单个包
-                    byte[] rtpPacket = buildRtpPacket(jpegData, true);
-                    sendPacket(rtpPacket);
-                } else {
-                    // 分片发送
-                    sendFragmented(jpegData);
-                }
-                
-                sequenceNumber++;
-                timestamp += 90000 / FPS; // 90kHz时钟
-                
-                // 控制帧率
-                long elapsed = System.currentTimeMillis() - startTime;
-                if (elapsed < FRAME_INTERVAL) {
-                    Thread.sleep(FRAME_INTERVAL - elapsed);
-                }
-                
-            } catch (Exception e) {
-                if (running) {
-                    System.err.println("RTP视频发送错误: " + e.getMessage());
-                }
+    public void onFrame(VideoFrame frame) {
+        if (!running) {
+            return;
+        }
+        try {
+            // 时间戳取自采集时间，跳帧时接收端也能得到正确的帧间隔
+            timestamp = MediaClock.toRtpTimestamp(frame.getCaptureTime(), RTP_CLOCK_RATE) & 0xFFFFFFFFL;
+            
+            // JPEG编码结果由所有发送器共享
+            byte[] jpegData = frame.getJpeg();
+            
+            // 分片发送（如果超过MTU）
+            if (jpegData.length <= MTU) {
+                // 单个包
+                byte[] rtpPacket = buildRtpPacket(jpegData, true);
+                sendPacket(rtpPacket);
+            } else {
+                // 分片发送
+                sendFragmented(jpegData);
+            }
+            
+            sequenceNumber++;
+            
+        } catch (Exception e) {
+            if (running) {
+                System.err.println("RTP视频发送错误: " + e.getMessage());
             }
         }
     }
@@ -200,25 +149,4 @@ public class RtpVideoSender implements Runnable {
         DatagramPacket packet = new DatagramPacket(data, data.length, remoteAddress, remotePort);
         socket.send(packet);
     }
-
-    /**
-     * 调整图像大小
-     */
-    private BufferedImage resizeImage(BufferedImage original, int width, int height) {
-        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = resized.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g.drawImage(original, 0, 0, width, height, null);
-        g.dispose();
-        return resized;
-    }
-
-    /**
-     * 将图像转换为JPEG字节数组
-     */
-    private byte[] imageToJpeg(BufferedImage image) throws Exception {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, "jpg", baos);
-        return baos.toByteArray();
-    }
 }
@@ -1,31 +1,29 @@
 package com.sipex.client.media;
 
 import javax.sound.sampled.*;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 共享音频采集器
- * 只使用一个麦克风采集线程，将数据分发给多个监听器
+ * 只使用一个麦克风采集线程，采集数据直接写入环形缓冲区，
+ * 各订阅者按自己的节奏读取，慢的订阅者不会拖慢麦克风读取
  */
 public class SharedAudioCapture implements Runnable {
     
     private static SharedAudioCapture instance;
-    private final List<AudioDataListener> listeners;
+    private final AudioRingBuffer ringBuffer;
+    private int subscriberCount = 0;
     private TargetDataLine microphone;
     private volatile boolean running = false;
+    private final MediaClock.DriftMeter driftMeter = new MediaClock.DriftMeter("共享麦克风", SAMPLE_RATE);
     
     // 音频参数
     private static final int SAMPLE_RATE = 8000;
     private static final int FRAME_SIZE = 160; // 20ms @ 8kHz
     private static final int BUFFER_SIZE = FRAME_SIZE * 2; // 16-bit samples
-    
-    public interface AudioDataListener {
-        void onAudioData(byte[] audioData);
-    }
+    private static final int RING_CAPACITY = 16; // 320ms
     
     private SharedAudioCapture() {
-        this.listeners = new CopyOnWriteArrayList<>();
+        this.ringBuffer = new AudioRingBuffer(RING_CAPACITY, BUFFER_SIZE);
         initializeMicrophone();
     }
     
@@ -57,25 +55,32 @@ public class SharedAudioCapture implements Runnable {
     }
     
     /**
-     * 添加音频数据监听器
+     * 订阅采集数据，返回从最新位置开始读取的消费者
      */
-    public void addListener(AudioDataListener listener) {
-        listeners.add(listener);
+    public synchronized AudioRingBuffer.Consumer subscribe() {
+        AudioRingBuffer.Consumer consumer = ringBuffer.newConsumer();
+        subscriberCount++;
         
-        // 如果这是第一个监听器，启动采集
-        if (listeners.size() == 1 && !running) {
+        // 如果这是第一个订阅者，启动采集
+        if (subscriberCount == 1 && !running) {
             start();
         }
+        return consumer;
     }
     
     /**
-     * 移除音频数据监听器
+     * 取消订阅
      */
-    public void removeListener(AudioDataListener listener) {
-        listeners.remove(listener);
+    public synchronized void unsubscribe(AudioRingBuffer.Consumer consumer) {
+        ringBuffer.removeConsumer(consumer);
+        if (consumer.getOverruns() > 0) {
+            System.out.println("音频订阅者溢出 " + consumer.getOverruns() + " 次，丢弃 "
+                + consumer.getDroppedFrames() + " 帧");
+        }
+        subscriberCount = Math.max(0, subscriberCount - 1);
         
-        // 如果没有监听器了，停止采集
-        if (listeners.isEmpty() && running) {
+        // 如果没有订阅者了，停止采集
+        if (subscriberCount == 0 && running) {
             stop();
         }
     }
@@ -108,25 +113,16 @@ public class SharedAudioCapture implements Runnable {
     
     @Override
     public void run() {
-        byte[] buffer = new byte[BUFFER_SIZE];
-        
+        driftMeter.reset();
         while (running) {
             try {
-                // 从麦克风读取数据
-                int bytesRead = microphone.read(buffer, 0, buffer.length);
+                // 直接读入环形缓冲区的槽位，无需额外拷贝
+                byte[] slot = ringBuffer.claim();
+                int bytesRead = microphone.read(slot, 0, BUFFER_SIZE);
                 
                 if (bytesRead > 0) {
-                    // 分发给所有监听器
-                    byte[] audioData = new byte[bytesRead];
-                    System.arraycopy(buffer, 0, audioData, 0, bytesRead);
-                    
-                    for (AudioDataListener listener : listeners) {
-                        try {
-                            listener.onAudioData(audioData);
-                        } catch (Exception e) {
-                            System.err.println("音频数据分发错误: " + e.getMessage());
-                        }
-                    }
+                    ringBuffer.publish(bytesRead);
+                    driftMeter.onSamples(bytesRead / 2);
                 }
                 
             } catch (Exception e) {
@@ -140,8 +136,8 @@ public class SharedAudioCapture implements Runnable {
     /**
      * 强制停止（用于应用退出时）
      */
-    public void forceStop() {
-        listeners.clear();
+    public synchronized void forceStop() {
+        subscriberCount = 0;
         stop();
         if (microphone != null && microphone.isOpen()) {
             microphone.close();
@@ -0,0 +1,177 @@
+package com.sipex.client.media;
+
+import com.github.sarxos.webcam.Webcam;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享视频采集器
+ * 摄像头/屏幕只由这里打开一次，按固定帧率采集原始帧分发给所有订阅者
+ * （RTP发送器、本地预览），由媒体调度器驱动
+ */
+public class SharedVideoCapture {
+
+    private static SharedVideoCapture instance;
+
+    private final List<FrameListener> listeners = new CopyOnWriteArrayList<>();
+    private Robot robot; // 用于屏幕捕获
+    private Webcam webcam; // 摄像头
+    private volatile RtpVideoSender.VideoSource videoSource = RtpVideoSender.VideoSource.WEBCAM;
+    private MediaScheduler.MediaTask captureTask;
+
+    private static final int FPS = 15;
+    private static final long FRAME_INTERVAL_NANOS = 1_000_000_000L / FPS;
+    public static final int VIDEO_WIDTH = 640;
+    public static final int VIDEO_HEIGHT = 480;
+
+    public interface FrameListener {
+        /**
+         * 在媒体调度线程上回调，实现应尽快返回
+         */
+        void onFrame(VideoFrame frame);
+    }
+
+    private SharedVideoCapture() {
+        try {
+            robot = new Robot();
+        } catch (AWTException e) {
+            System.err.println("⚠️ 屏幕捕获不可用: " + e.getMessage());
+        }
+
+        // 初始化摄像头
+        try {
+            webcam = Webcam.getDefault();
+            if (webcam != null) {
+                webcam.setViewSize(new Dimension(VIDEO_WIDTH, VIDEO_HEIGHT));
+                System.out.println("✅ 检测到摄像头: " + webcam.getName());
+            } else {
+                System.out.println("⚠️ 未检测到摄像头，将使用屏幕捕获");
+                videoSource = RtpVideoSender.VideoSource.SCREEN;
+            }
+        } catch (Exception e) {
+            System.out.println("⚠️ 摄像头初始化失败，将使用屏幕捕获: " + e.getMessage());
+            videoSource = RtpVideoSender.VideoSource.SCREEN;
+        }
+    }
+
+    public static synchronized SharedVideoCapture getInstance() {
+        if (instance == null) {
+            instance = new SharedVideoCapture();
+        }
+        return instance;
+    }
+
+    /**
+     * 添加帧监听器，第一个监听器加入时开始采集
+     */
+    public synchronized void addListener(FrameListener listener) {
+        listeners.add(listener);
+        if (captureTask == null) {
+            start();
+        }
+    }
+
+    /**
+     * 移除帧监听器，没有监听器时停止采集并释放摄像头
+     */
+    public synchronized void removeListener(FrameListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && captureTask != null) {
+            stop();
+        }
+    }
+
+    /**
+     * 设置视频源
+     */
+    public synchronized void setVideoSource(RtpVideoSender.VideoSource source) {
+        this.videoSource = source;
+        if (source == RtpVideoSender.VideoSource.WEBCAM && captureTask != null && webcam != null && !webcam.isOpen()) {
+            webcam.open();
+        }
+        System.out.println("切换视频源到: " + (source == RtpVideoSender.VideoSource.WEBCAM ? "摄像头" : "屏幕捕获"));
+    }
+
+    public RtpVideoSender.VideoSource getVideoSource() {
+        return videoSource;
+    }
+
+    private void start() {
+        if (videoSource == RtpVideoSender.VideoSource.WEBCAM && webcam != null && !webcam.isOpen()) {
+            webcam.open();
+        }
+        captureTask = MediaScheduler.getInstance().schedulePeriodic(
+            "Video-Capture", FRAME_INTERVAL_NANOS, TimeUnit.NANOSECONDS, this::captureFrame);
+        System.out.println("✅ 共享视频采集器已启动，视频源: "
+            + (videoSource == RtpVideoSender.VideoSource.WEBCAM ? "摄像头" : "屏幕捕获"));
+    }
+
+    private void stop() {
+        captureTask.cancel();
+        captureTask = null;
+        if (webcam != null && webcam.isOpen()) {
+            webcam.close();
+        }
+        System.out.println("❌ 共享视频采集器已停止");
+    }
+
+    /**
+     * 采集一帧并分发
+     *
+     * @param frameTime 本帧的计划时间
+     */
+    private void captureFrame(long frameTime) {
+        BufferedImage captured;
+        if (videoSource == RtpVideoSender.VideoSource.WEBCAM && webcam != null && webcam.isOpen()) {
+            // 从摄像头捕获
+            captured = webcam.getImage();
+        } else if (robot != null) {
+            // 从屏幕捕获
+            captured = robot.createScreenCapture(new Rectangle(0, 0, VIDEO_WIDTH, VIDEO_HEIGHT));
+        } else {
+            return;
+        }
+        if (captured == null) {
+            return;
+        }
+
+        VideoFrame frame = new VideoFrame(resizeImage(captured, VIDEO_WIDTH, VIDEO_HEIGHT), frameTime);
+        for (FrameListener listener : listeners) {
+            try {
+                listener.onFrame(frame);
+            } catch (Exception e) {
+                System.err.println("视频帧分发错误: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 调整图像大小
+     */
+    private BufferedImage resizeImage(BufferedImage original, int width, int height) {
+        if (original.getWidth() == width && original.getHeight() == height
+                && original.getType() == BufferedImage.TYPE_INT_RGB) {
+            return original;
+        }
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(original, 0, 0, width, height, null);
+        g.dispose();
+        return resized;
+    }
+
+    /**
+     * 强制停止（用于应用退出时）
+     */
+    public synchronized void forceStop() {
+        listeners.clear();
+        if (captureTask != null) {
+            stop();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.sipex.client.media;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 一帧采集到的原始视频
+ * 发布后不再修改；JPEG编码结果会缓存，多个发送器共享同一次编码
+ */
+public class VideoFrame {
+
+    private final BufferedImage image;
+    private final long captureTime; // MediaClock纳秒
+    private byte[] jpeg;
+
+    public VideoFrame(BufferedImage image, long captureTime) {
+        this.image = image;
+        this.captureTime = captureTime;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public long getCaptureTime() {
+        return captureTime;
+    }
+
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * 获取JPEG编码数据（首次调用时编码）
+     */
+    public synchronized byte[] getJpeg() throws IOException {
+        if (jpeg == null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(32 * 1024);
+            ImageIO.write(image, "jpg", baos);
+            jpeg = baos.toByteArray();
+        }
+        return jpeg;
+    }
+}
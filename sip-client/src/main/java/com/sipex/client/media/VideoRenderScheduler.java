@@ -0,0 +1,141 @@
+package com.sipex.client.media;
+
+import javafx.application.Platform;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 视频渲染调度器（每个ImageView一个）
+ * 解码/采集线程提交帧，UI线程只渲染最新的一帧，UI繁忙时旧帧直接丢弃；
+ * 像素通过PixelWriter写入复用的WritableImage，不再经过PNG编解码
+ */
+public class VideoRenderScheduler {
+
+    private final ImageView view;
+    private final int maxWidth;
+    private final int maxHeight;
+
+    // 待渲染的最新帧，以及UI线程用完后归还的空闲缓冲区
+    private final AtomicReference<Pixels> pending = new AtomicReference<>();
+    private final AtomicReference<Pixels> spare = new AtomicReference<>();
+
+    // 以下只在提交线程使用
+    private BufferedImage staging;
+
+    // 以下只在UI线程使用
+    private WritableImage image;
+
+    private final AtomicLong renderedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    private static class Pixels {
+        final int width;
+        final int height;
+        final int[] data;
+
+        Pixels(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.data = new int[width * height];
+        }
+    }
+
+    /**
+     * @param maxWidth  渲染宽度上限，0表示使用原始尺寸
+     * @param maxHeight 渲染高度上限，0表示使用原始尺寸
+     */
+    public VideoRenderScheduler(ImageView view, int maxWidth, int maxHeight) {
+        this.view = view;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * 按ImageView的显示尺寸渲染
+     */
+    public VideoRenderScheduler(ImageView view) {
+        this(view, (int) view.getFitWidth(), (int) view.getFitHeight());
+    }
+
+    /**
+     * 提交一帧，可在任意线程调用（同一时间只应有一个提交线程）
+     */
+    public void submit(BufferedImage frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (maxWidth > 0 && maxHeight > 0 && (width > maxWidth || height > maxHeight)) {
+            // 保持宽高比缩放到显示尺寸
+            double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+            width = Math.max(1, (int) (width * scale));
+            height = Math.max(1, (int) (height * scale));
+        }
+
+        if (staging == null || staging.getWidth() != width || staging.getHeight() != height) {
+            staging = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        Graphics2D g = staging.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(frame, 0, 0, width, height, null);
+        g.dispose();
+
+        Pixels pixels = spare.getAndSet(null);
+        if (pixels == null || pixels.width != width || pixels.height != height) {
+            pixels = new Pixels(width, height);
+        }
+        int[] source = ((DataBufferInt) staging.getRaster().getDataBuffer()).getData();
+        System.arraycopy(source, 0, pixels.data, 0, pixels.data.length);
+
+        Pixels replaced = pending.getAndSet(pixels);
+        if (replaced != null) {
+            // UI线程还没来得及渲染上一帧，丢弃旧帧（已有渲染任务在排队）
+            droppedFrames.incrementAndGet();
+            spare.set(replaced);
+        } else {
+            Platform.runLater(this::render);
+        }
+    }
+
+    /**
+     * 在UI线程渲染最新帧
+     */
+    private void render() {
+        Pixels pixels = pending.getAndSet(null);
+        if (pixels == null) {
+            return;
+        }
+        if (image == null || (int) image.getWidth() != pixels.width || (int) image.getHeight() != pixels.height) {
+            image = new WritableImage(pixels.width, pixels.height);
+            view.setImage(image);
+        }
+        image.getPixelWriter().setPixels(0, 0, pixels.width, pixels.height,
+            PixelFormat.getIntArgbPreInstance(), pixels.data, 0, pixels.width);
+        renderedFrames.incrementAndGet();
+        spare.set(pixels);
+    }
+
+    /**
+     * 清空显示
+     */
+    public void clear() {
+        pending.set(null);
+        Platform.runLater(() -> {
+            image = null;
+            view.setImage(null);
+        });
+    }
+
+    public long getRenderedFrames() {
+        return renderedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+}
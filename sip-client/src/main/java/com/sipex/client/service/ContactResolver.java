@@ -0,0 +1,153 @@
+package com.sipex.client.service;
+
+import com.sipex.client.config.ClientConfig;
+import com.sipex.client.util.ApiTypes;
+import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.ContactInfoDTO;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户名 -> SIP联系地址解析（带TTL的本地缓存）
+ * 命中缓存不走网络；查不到的用户也缓存一小段时间，避免反复请求服务器。
+ * 服务器推送地址变化时调用 onContactChanged 更新缓存
+ */
+public class ContactResolver {
+
+    private static final long NEGATIVE_TTL_MILLIS = 10 * 1000;
+    private static final Type CONTACT_TYPE = ApiTypes.of(ContactInfoDTO.class);
+
+    private static class Entry {
+        final ContactInfoDTO info; // null 表示用户不在线
+        final long expiresAt;
+
+        Entry(ContactInfoDTO info, long expiresAt) {
+            this.info = info;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 解析用户地址，不在线或请求失败返回null
+     */
+    public static ContactInfoDTO resolve(String username) {
+        String key = username.toLowerCase();
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            return entry.info;
+        }
+
+        try {
+            ApiResponse<ContactInfoDTO> response = HttpClientService.get("/api/contacts/" + username, CONTACT_TYPE);
+            ContactInfoDTO info = response.getCode() == 200 ? response.getData() : null;
+            put(key, info);
+            return info;
+        } catch (Exception e) {
+            System.err.println("解析联系地址失败: " + username + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 异步解析用户地址，不阻塞调用线程（可以在FX线程上调用）；不在线或请求失败时结果为null
+     */
+    public static CompletableFuture<ContactInfoDTO> resolveAsync(String username) {
+        String key = username.toLowerCase();
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            return CompletableFuture.completedFuture(entry.info);
+        }
+
+        return HttpClientService.<ContactInfoDTO>getAsync("/api/contacts/" + username, CONTACT_TYPE)
+            .handle((response, error) -> {
+                if (error != null) {
+                    System.err.println("解析联系地址失败: " + username + " - " + error.getMessage());
+                    return null;
+                }
+                ContactInfoDTO info = response.getCode() == 200 ? response.getData() : null;
+                put(key, info);
+                return info;
+            });
+    }
+
+    /**
+     * 只在对方和本机处于同一局域网时给出地址（否则为null），用于绕过代理直接呼叫
+     */
+    public static CompletableFuture<ContactInfoDTO> resolveDirectAsync(String username) {
+        return resolveAsync(username).thenApply(ContactResolver::directOnly);
+    }
+
+    private static ContactInfoDTO directOnly(ContactInfoDTO info) {
+        if (info == null || info.getSipContact() == null || !isSameLan(info.getSipHost())) {
+            return null;
+        }
+        return info;
+    }
+
+    /**
+     * 异步上报本机地址（登录注册后调用），不阻塞调用线程；失败只打日志
+     */
+    public static CompletableFuture<Void> publishAsync(ContactInfoDTO info) {
+        return HttpClientService.<ContactInfoDTO>postAsync("/api/contacts", info, CONTACT_TYPE)
+            .handle((response, error) -> {
+                if (error != null) {
+                    System.err.println("上报联系地址失败: " + error.getMessage());
+                } else if (response.getCode() != 200) {
+                    System.err.println("上报联系地址失败: " + response.getMessage());
+                }
+                return null;
+            });
+    }
+
+    /**
+     * 服务器推送的地址变化：版本号不比缓存新的忽略，地址为空的视为下线
+     */
+    public static void onContactChanged(ContactInfoDTO info) {
+        if (info == null || info.getUsername() == null) {
+            return;
+        }
+        String key = info.getUsername().toLowerCase();
+        Entry entry = cache.get(key);
+        if (entry != null && entry.info != null && entry.info.getVersion() != null && info.getVersion() != null
+                && entry.info.getVersion() > info.getVersion()) {
+            return;
+        }
+        put(key, info.getSipContact() != null ? info : null);
+    }
+
+    public static void invalidate(String username) {
+        cache.remove(username.toLowerCase());
+    }
+
+    public static void clear() {
+        cache.clear();
+    }
+
+    private static void put(String key, ContactInfoDTO info) {
+        long ttl = NEGATIVE_TTL_MILLIS;
+        if (info != null && info.getTtlSeconds() != null) {
+            ttl = info.getTtlSeconds() * 1000L;
+        }
+        cache.put(key, new Entry(info, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * 简单判断：IPv4前三段相同视为同一局域网（/24）
+     */
+    public static boolean isSameLan(String host) {
+        if (host == null || ClientConfig.LOCAL_IP == null) {
+            return false;
+        }
+        int a = host.lastIndexOf('.');
+        int b = ClientConfig.LOCAL_IP.lastIndexOf('.');
+        if (a < 0 || b < 0 || host.chars().filter(c -> c == '.').count() != 3) {
+            return false;
+        }
+        return host.substring(0, a).equals(ClientConfig.LOCAL_IP.substring(0, b));
+    }
+}
@@ -1,8 +1,8 @@
 package com.sipex.client.service;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.sipex.client.config.ClientConfig;
+import com.sipex.client.util.ApiTypes;
 import com.sipex.client.util.GsonUtil;
 import com.sipex.common.dto.ApiResponse;
 import okhttp3.*;
@@ -11,6 +11,8 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class HttpClientService {
@@ -23,50 +25,174 @@ public class HttpClientService {
     private static final Gson gson = GsonUtil.getGson();
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
 
-    public static <T> ApiResponse<T> post(String endpoint, Object body, Type responseType) throws IOException {
-        String json = gson.toJson(body);
-        RequestBody requestBody = RequestBody.create(json, JSON);
+    // 正在进行的GET，相同的请求共用一次网络调用
+    private static final Map<String, InFlight> inFlightGets = new ConcurrentHashMap<>();
 
-        Request request = new Request.Builder()
-                .url(ClientConfig.SERVER_URL + endpoint)
-                .post(requestBody)
-                .build();
+    /**
+     * 一次共享的GET调用；所有订阅者都取消后才取消底层调用
+     */
+    private static class InFlight {
+        private final CompletableFuture<ApiResponse<?>> shared = new CompletableFuture<>();
+        private int subscribers;
+        private boolean abandoned;
+
+        @SuppressWarnings("unchecked")
+        synchronized <T> CompletableFuture<ApiResponse<T>> subscribe() {
+            if (abandoned) {
+                return null;
+            }
+            subscribers++;
+            CompletableFuture<ApiResponse<T>> caller = new CompletableFuture<>();
+            shared.whenComplete((result, error) -> {
+                if (error != null) {
+                    caller.completeExceptionally(error);
+                } else {
+                    caller.complete((ApiResponse<T>) result);
+                }
+            });
+            caller.whenComplete((result, error) -> {
+                if (caller.isCancelled()) {
+                    unsubscribe();
+                }
+            });
+            return caller;
+        }
 
-        try (Response response = client.newCall(request).execute()) {
+        private synchronized void unsubscribe() {
+            if (--subscribers == 0 && !shared.isDone()) {
+                abandoned = true;
+                shared.cancel(false);
+            }
+        }
+    }
+
+    public static <T> ApiResponse<T> post(String endpoint, Object body, Type responseType) throws IOException {
+        try (Response response = client.newCall(postRequest(endpoint, body)).execute()) {
             String responseBody = response.body().string();
             return gson.fromJson(responseBody, responseType);
         }
     }
 
     public static <T> ApiResponse<T> get(String endpoint, Type responseType) throws IOException {
-        Request request = new Request.Builder()
-                .url(ClientConfig.SERVER_URL + endpoint)
-                .get()
-                .build();
-
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = client.newCall(getRequest(endpoint)).execute()) {
             String responseBody = response.body().string();
             return gson.fromJson(responseBody, responseType);
         }
     }
 
     public static ApiResponse<Map<String, String>> uploadFile(File file) throws IOException {
+        try (Response response = client.newCall(uploadRequest(file)).execute()) {
+            String responseBody = response.body().string();
+            return gson.fromJson(responseBody, ApiTypes.STRING_MAP);
+        }
+    }
+
+    /**
+     * 异步GET；同一endpoint和响应类型的请求在完成前只发一次，结果共享给所有调用方（不要修改返回的数据）。
+     * 取消返回的future只影响自己，所有调用方都取消时底层请求才取消
+     */
+    public static <T> CompletableFuture<ApiResponse<T>> getAsync(String endpoint, Type responseType) {
+        String key = endpoint + "|" + responseType.getTypeName();
+        while (true) {
+            InFlight created = new InFlight();
+            InFlight inFlight = inFlightGets.putIfAbsent(key, created);
+            if (inFlight == null) {
+                inFlight = created;
+                start(key, created, endpoint, responseType);
+            }
+            CompletableFuture<ApiResponse<T>> caller = inFlight.subscribe();
+            if (caller != null) {
+                return caller;
+            }
+            // 刚被所有人放弃的调用，换一个新的
+            inFlightGets.remove(key, inFlight);
+        }
+    }
+
+    /**
+     * 异步POST；取消返回的future会取消HTTP调用
+     */
+    public static <T> CompletableFuture<ApiResponse<T>> postAsync(String endpoint, Object body, Type responseType) {
+        return enqueue(postRequest(endpoint, body), responseType);
+    }
+
+    public static CompletableFuture<ApiResponse<Map<String, String>>> uploadFileAsync(File file) {
+        return enqueue(uploadRequest(file), ApiTypes.STRING_MAP);
+    }
+
+    private static void start(String key, InFlight inFlight, String endpoint, Type responseType) {
+        CompletableFuture<ApiResponse<Object>> call = enqueue(getRequest(endpoint), responseType);
+        call.whenComplete((result, error) -> {
+            inFlightGets.remove(key, inFlight);
+            if (error != null) {
+                inFlight.shared.completeExceptionally(error);
+            } else {
+                inFlight.shared.complete(result);
+            }
+        });
+        inFlight.shared.whenComplete((result, error) -> {
+            if (inFlight.shared.isCancelled()) {
+                inFlightGets.remove(key, inFlight);
+                call.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * 用OkHttp的调度线程执行请求，不阻塞调用线程
+     */
+    private static <T> CompletableFuture<ApiResponse<T>> enqueue(Request request, Type responseType) {
+        Call call = client.newCall(request);
+        CompletableFuture<ApiResponse<T>> future = new CompletableFuture<>();
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    future.complete(gson.fromJson(body.string(), responseType));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private static Request getRequest(String endpoint) {
+        return new Request.Builder()
+                .url(ClientConfig.SERVER_URL + endpoint)
+                .get()
+                .build();
+    }
+
+    private static Request postRequest(String endpoint, Object body) {
+        RequestBody requestBody = RequestBody.create(gson.toJson(body), JSON);
+        return new Request.Builder()
+                .url(ClientConfig.SERVER_URL + endpoint)
+                .post(requestBody)
+                .build();
+    }
+
+    private static Request uploadRequest(File file) {
         RequestBody fileBody = RequestBody.create(file, MediaType.parse("application/octet-stream"));
         RequestBody requestBody = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
                 .addFormDataPart("file", file.getName(), fileBody)
                 .build();
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(ClientConfig.SERVER_URL + "/api/files/upload")
                 .post(requestBody)
                 .build();
-
-        try (Response response = client.newCall(request).execute()) {
-            String responseBody = response.body().string();
-            Type type = new TypeToken<ApiResponse<Map<String, String>>>(){}.getType();
-            return gson.fromJson(responseBody, type);
-        }
     }
 }
-
@@ -1,36 +1,40 @@
 package com.sipex.client.service;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.sipex.client.util.ApiTypes;
 import com.sipex.common.dto.ApiResponse;
 import com.sipex.common.dto.MessageDTO;
 import com.sipex.common.entity.Message;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class MessageService {
 
-    private static final Gson gson = new Gson();
-
     public static void sendMessage(MessageDTO messageDTO) throws IOException {
-        Type type = new TypeToken<ApiResponse<Message>>(){}.getType();
-        HttpClientService.post("/api/messages", messageDTO, type);
+        HttpClientService.post("/api/messages", messageDTO, ApiTypes.MESSAGE);
+    }
+
+    public static CompletableFuture<ApiResponse<Message>> sendMessageAsync(MessageDTO messageDTO) {
+        return HttpClientService.postAsync("/api/messages", messageDTO, ApiTypes.MESSAGE);
     }
 
     public static List<Message> getChatHistory(String user1, String user2, int limit) throws IOException {
-        Type type = new TypeToken<ApiResponse<List<Message>>>(){}.getType();
-        String endpoint = String.format("/api/messages/history?user1=%s&user2=%s&limit=%d", user1, user2, limit);
-        ApiResponse<List<Message>> response = HttpClientService.get(endpoint, type);
+        ApiResponse<List<Message>> response = HttpClientService.get(historyEndpoint(user1, user2, limit), ApiTypes.MESSAGE_LIST);
         return response.getData();
     }
 
+    public static CompletableFuture<ApiResponse<List<Message>>> getChatHistoryAsync(String user1, String user2, int limit) {
+        return HttpClientService.getAsync(historyEndpoint(user1, user2, limit), ApiTypes.MESSAGE_LIST);
+    }
+
     public static List<Message> getUnreadMessages(String username) throws IOException {
-        Type type = new TypeToken<ApiResponse<List<Message>>>(){}.getType();
         String endpoint = String.format("/api/messages/unread?username=%s", username);
-        ApiResponse<List<Message>> response = HttpClientService.get(endpoint, type);
+        ApiResponse<List<Message>> response = HttpClientService.get(endpoint, ApiTypes.MESSAGE_LIST);
         return response.getData();
     }
-}
 
+    private static String historyEndpoint(String user1, String user2, int limit) {
+        return String.format("/api/messages/history?user1=%s&user2=%s&limit=%d", user1, user2, limit);
+    }
+}
@@ -0,0 +1,367 @@
+package com.sipex.client.service;
+
+import com.google.gson.Gson;
+import com.sipex.client.config.ClientConfig;
+import com.sipex.client.util.GsonUtil;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 客户端唯一的STOMP over WebSocket长连接
+ * 同一目的地的多个订阅者共用一个STOMP订阅；断线后按退避间隔自动重连，重连成功后重新订阅并通知各订阅者补齐断线期间的数据。
+ * 回调在单独的分发线程上按到达顺序执行（不在FX线程，也不阻塞WebSocket读线程），更新界面需要自己 Platform.runLater
+ */
+public class StompClient {
+
+    private static final StompClient INSTANCE = new StompClient();
+
+    // SockJS端点同时提供原生WebSocket传输
+    private static final String ENDPOINT = ClientConfig.WS_URL + "/websocket";
+    private static final int CONNECTION_LOST_TIMEOUT_SECONDS = 20;
+    private static final long MIN_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 30 * 1000;
+
+    private final Gson gson = GsonUtil.getGson();
+    private final AtomicInteger subscriptionIds = new AtomicInteger();
+
+    // 目的地 -> 订阅
+    private final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Stomp-Dispatch");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Stomp-Reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Connection connection;
+    private volatile boolean connected;   // 已收到CONNECTED帧
+    private volatile boolean running;     // connect() 之后、disconnect() 之前
+    private long reconnectDelay = MIN_RECONNECT_DELAY_MS;
+    private boolean everConnected;
+
+    /**
+     * 一个STOMP订阅（同一目的地的所有处理器共享）
+     */
+    private static class Destination {
+        final String id;
+        final String destination;
+        final List<Handler<?>> handlers = new CopyOnWriteArrayList<>();
+
+        Destination(String id, String destination) {
+            this.id = id;
+            this.destination = destination;
+        }
+    }
+
+    private static class Handler<T> {
+        final Type type;
+        final Consumer<T> onMessage;
+        final Runnable onResume;
+
+        Handler(Type type, Consumer<T> onMessage, Runnable onResume) {
+            this.type = type;
+            this.onMessage = onMessage;
+            this.onResume = onResume;
+        }
+    }
+
+    /**
+     * 订阅句柄，调用 unsubscribe 取消
+     */
+    public class Subscription {
+        private final String destination;
+        private final Handler<?> handler;
+
+        private Subscription(String destination, Handler<?> handler) {
+            this.destination = destination;
+            this.handler = handler;
+        }
+
+        public void unsubscribe() {
+            removeHandler(destination, handler);
+        }
+    }
+
+    private StompClient() {
+    }
+
+    public static StompClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 建立连接（已经在连接或已连接时什么也不做）
+     */
+    public synchronized void connect() {
+        if (running) {
+            return;
+        }
+        running = true;
+        reconnectDelay = MIN_RECONNECT_DELAY_MS;
+        openConnection();
+    }
+
+    /**
+     * 断开并停止重连（退出登录时调用），订阅保留，下次connect后恢复
+     */
+    public synchronized void disconnect() {
+        running = false;
+        connected = false;
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            if (current.isOpen()) {
+                current.send("DISCONNECT\n\n\0");
+            }
+            current.close();
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * 订阅目的地，消息体按type反序列化
+     */
+    public <T> Subscription subscribe(String destination, Type type, Consumer<T> onMessage) {
+        return subscribe(destination, type, onMessage, null);
+    }
+
+    /**
+     * 订阅目的地；onResume在断线重连、重新订阅之后调用，用于补拉断线期间错过的数据
+     */
+    public <T> Subscription subscribe(String destination, Type type, Consumer<T> onMessage, Runnable onResume) {
+        Handler<T> handler = new Handler<>(type, onMessage, onResume);
+        boolean created;
+        synchronized (this) {
+            Destination dest = destinations.get(destination);
+            created = dest == null;
+            if (created) {
+                dest = new Destination("sub-" + subscriptionIds.incrementAndGet(), destination);
+                destinations.put(destination, dest);
+            }
+            dest.handlers.add(handler);
+            if (created && connected) {
+                sendSubscribe(dest);
+            }
+        }
+        return new Subscription(destination, handler);
+    }
+
+    private synchronized void removeHandler(String destination, Handler<?> handler) {
+        Destination dest = destinations.get(destination);
+        if (dest == null || !dest.handlers.remove(handler) || !dest.handlers.isEmpty()) {
+            return;
+        }
+        destinations.remove(destination);
+        Connection current = connection;
+        if (connected && current != null) {
+            current.send("UNSUBSCRIBE\nid:" + dest.id + "\n\n\0");
+        }
+    }
+
+    private void sendSubscribe(Destination dest) {
+        Connection current = connection;
+        if (current != null) {
+            current.send("SUBSCRIBE\nid:" + dest.id + "\ndestination:" + dest.destination + "\n\n\0");
+        }
+    }
+
+    private synchronized void openConnection() {
+        if (!running) {
+            return;
+        }
+        try {
+            Connection next = new Connection(new URI(ENDPOINT));
+            next.setConnectionLostTimeout(CONNECTION_LOST_TIMEOUT_SECONDS);
+            connection = next;
+            next.connect();
+        } catch (Exception e) {
+            System.err.println("STOMP连接失败: " + e.getMessage());
+            scheduleReconnect();
+        }
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (!running) {
+            return;
+        }
+        long delay = reconnectDelay;
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MS);
+        System.out.println("🔌 STOMP " + delay + "ms 后重连");
+        reconnector.schedule(this::openConnection, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 收到CONNECTED：重新订阅全部目的地，重连的情况下通知订阅者补数据
+     */
+    private void onConnected(Connection source) {
+        boolean resumed;
+        synchronized (this) {
+            if (source != connection) {
+                return;
+            }
+            connected = true;
+            reconnectDelay = MIN_RECONNECT_DELAY_MS;
+            resumed = everConnected;
+            everConnected = true;
+            for (Destination dest : destinations.values()) {
+                sendSubscribe(dest);
+            }
+        }
+        System.out.println("✅ STOMP已连接" + (resumed ? "（重连）" : "") + ", 订阅数: " + destinations.size());
+
+        if (resumed) {
+            for (Destination dest : destinations.values()) {
+                for (Handler<?> handler : dest.handlers) {
+                    if (handler.onResume != null) {
+                        dispatcher.execute(() -> runSafely(handler.onResume));
+                    }
+                }
+            }
+        }
+    }
+
+    private void onDisconnected(Connection source, String reason) {
+        synchronized (this) {
+            if (source != connection) {
+                return;
+            }
+            connected = false;
+            connection = null;
+        }
+        System.out.println("🔌 STOMP连接断开: " + reason);
+        scheduleReconnect();
+    }
+
+    /**
+     * 一个WebSocket消息里可能有多个帧，帧以NUL结尾；单独的换行是心跳
+     */
+    private void onRawMessage(Connection source, String raw) {
+        int start = 0;
+        while (start < raw.length()) {
+            int end = raw.indexOf('\0', start);
+            if (end < 0) {
+                end = raw.length();
+            }
+            String frame = raw.substring(start, end);
+            start = end + 1;
+            if (!frame.trim().isEmpty()) {
+                onFrame(source, frame);
+            }
+        }
+    }
+
+    private void onFrame(Connection source, String frame) {
+        // 去掉心跳换行
+        int offset = 0;
+        while (offset < frame.length() && (frame.charAt(offset) == '\n' || frame.charAt(offset) == '\r')) {
+            offset++;
+        }
+        int headerEnd = frame.indexOf("\n\n", offset);
+        String head = headerEnd < 0 ? frame.substring(offset) : frame.substring(offset, headerEnd);
+        String body = headerEnd < 0 ? "" : frame.substring(headerEnd + 2);
+
+        String[] lines = head.split("\r?\n");
+        String command = lines[0].trim();
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                // 重复的头以第一个为准
+                headers.putIfAbsent(lines[i].substring(0, colon), lines[i].substring(colon + 1));
+            }
+        }
+
+        switch (command) {
+            case "CONNECTED":
+                onConnected(source);
+                break;
+            case "MESSAGE":
+                dispatch(headers.get("destination"), body);
+                break;
+            case "ERROR":
+                System.err.println("STOMP错误: " + headers.get("message") + " " + body);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void dispatch(String destination, String body) {
+        Destination dest = destination != null ? destinations.get(destination) : null;
+        if (dest == null) {
+            return;
+        }
+        for (Handler<?> handler : dest.handlers) {
+            dispatcher.execute(() -> deliver(handler, body));
+        }
+    }
+
+    private <T> void deliver(Handler<T> handler, String body) {
+        try {
+            T payload = gson.fromJson(body, handler.type);
+            handler.onMessage.accept(payload);
+        } catch (Exception e) {
+            System.err.println("处理STOMP消息失败: " + e.getMessage());
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.err.println("STOMP重连回调失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一次WebSocket连接；断开后不复用，重连时新建
+     */
+    private class Connection extends WebSocketClient {
+
+        Connection(URI uri) {
+            super(uri);
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            send("CONNECT\naccept-version:1.1,1.2\nhost:" + ClientConfig.SERVER_HOST + "\nheart-beat:0,0\n\n\0");
+        }
+
+        @Override
+        public void onMessage(String message) {
+            onRawMessage(this, message);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            onDisconnected(this, code + " " + reason);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            System.err.println("STOMP连接异常: " + e.getMessage());
+        }
+    }
+}
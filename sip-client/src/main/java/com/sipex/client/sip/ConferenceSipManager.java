@@ -1,17 +1,20 @@
 package com.sipex.client.sip;
 
 import com.sipex.client.config.ClientConfig;
+import com.sipex.common.sip.SipStackProfile;
 
 import javax.sip.*;
 import javax.sip.address.Address;
 import javax.sip.address.AddressFactory;
 import javax.sip.address.SipURI;
 import javax.sip.header.*;
+import javax.sip.message.Message;
 import javax.sip.message.MessageFactory;
 import javax.sip.message.Request;
 import javax.sip.message.Response;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 群聊会议SIP管理器
@@ -36,7 +39,11 @@ public class ConferenceSipManager implements SipListener {
     // 回调接口
     private ConferenceCallListener callListener;
     
-    private long cseq = 1;
+    // 多个INVITE会并行发出
+    private final AtomicLong cseq = new AtomicLong(1);
+    
+    // 每个参与者一个Call-ID，回调按Call-ID串行、参与者之间并行处理
+    private SipEventDispatcher dispatcher;
     
     /**
      * 群聊呼叫监听器
@@ -46,6 +53,10 @@ public class ConferenceSipManager implements SipListener {
         void onParticipantConnected(String username, String sdp);
         void onParticipantDisconnected(String username);
         void onIncomingConferenceCall(String caller, String sdp, ServerTransaction transaction, Request request);
+        /**
+         * 呼叫被拒绝（>=400）或超时未应答
+         */
+        void onParticipantFailed(String username, int statusCode, String reason);
     }
     
     public ConferenceSipManager(ConferenceCallListener callListener) {
@@ -70,9 +81,9 @@ public class ConferenceSipManager implements SipListener {
         sipFactory.setPathName("gov.nist");
         
         // 创建SipStack
-        Properties properties = new Properties();
-        properties.setProperty("javax.sip.STACK_NAME", "ConferenceClient-" + username + "-" + System.currentTimeMillis());
-        properties.setProperty("gov.nist.javax.sip.TRACE_LEVEL", "0");
+        SipStackProfile profile = SipStackProfile.current();
+        Properties properties = profile.toProperties(
+            "ConferenceClient-" + username + "-" + System.currentTimeMillis(), "conference_" + username);
         
         sipStack = sipFactory.createSipStack(properties);
         
@@ -86,6 +97,7 @@ public class ConferenceSipManager implements SipListener {
         listeningPoint = sipStack.createListeningPoint(ClientConfig.LOCAL_IP, port, "udp");
         
         // 创建SipProvider
+        dispatcher = new SipEventDispatcher("Conference-Sip", profile.getDispatcherThreads());
         sipProvider = sipStack.createSipProvider(listeningPoint);
         sipProvider.addSipListener(this);
         
@@ -99,7 +111,7 @@ public class ConferenceSipManager implements SipListener {
     }
     
     /**
-     * 向参与者发起呼叫
+     * 向参与者发起呼叫（线程安全，可并行调用）
      */
     public void inviteParticipant(String targetUsername, String sdp) throws Exception {
         // 创建请求URI
@@ -131,7 +143,7 @@ public class ConferenceSipManager implements SipListener {
         CallIdHeader callIdHeader = sipProvider.getNewCallId();
         
         // 创建CSeq
-        CSeqHeader cSeqHeader = headerFactory.createCSeqHeader(cseq++, Request.INVITE);
+        CSeqHeader cSeqHeader = headerFactory.createCSeqHeader(cseq.getAndIncrement(), Request.INVITE);
         
         // 创建MaxForwards
         MaxForwardsHeader maxForwards = headerFactory.createMaxForwardsHeader(70);
@@ -202,17 +214,33 @@ public class ConferenceSipManager implements SipListener {
         Request request = requestEvent.getRequest();
         ServerTransaction serverTransaction = requestEvent.getServerTransaction();
         
-        try {
-            if (serverTransaction == null) {
+        // ACK不需要响应
+        if (request.getMethod().equals(Request.ACK)) {
+            return;
+        }
+        
+        // 在协议栈线程上创建服务端事务，重传直接被事务吸收
+        if (serverTransaction == null) {
+            try {
                 serverTransaction = sipProvider.getNewServerTransaction(request);
+            } catch (TransactionAlreadyExistsException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("创建服务端事务失败: " + e.getMessage());
+                return;
             }
-            
+        }
+        
+        ServerTransaction transaction = serverTransaction;
+        dispatcher.dispatch(getCallId(request), () -> handleRequest(request, transaction));
+    }
+    
+    private void handleRequest(Request request, ServerTransaction serverTransaction) {
+        try {
             if (request.getMethod().equals(Request.INVITE)) {
                 handleIncomingInvite(request, serverTransaction);
             } else if (request.getMethod().equals(Request.BYE)) {
                 handleBye(request, serverTransaction);
-            } else if (request.getMethod().equals(Request.ACK)) {
-                // ACK不需要响应
             }
         } catch (Exception e) {
             System.err.println("处理请求失败: " + e.getMessage());
@@ -270,6 +298,10 @@ public class ConferenceSipManager implements SipListener {
     
     @Override
     public void processResponse(ResponseEvent responseEvent) {
+        dispatcher.dispatch(getCallId(responseEvent.getResponse()), () -> handleResponse(responseEvent));
+    }
+    
+    private void handleResponse(ResponseEvent responseEvent) {
         Response response = responseEvent.getResponse();
         ClientTransaction clientTransaction = responseEvent.getClientTransaction();
         
@@ -286,6 +318,12 @@ public class ConferenceSipManager implements SipListener {
                 handleOkResponse(response, clientTransaction);
             } else if (statusCode >= 400) {
                 System.err.println("呼叫失败: " + statusCode + " " + response.getReasonPhrase());
+                CSeqHeader cseqHeader = (CSeqHeader) response.getHeader(CSeqHeader.NAME);
+                if (Request.INVITE.equals(cseqHeader.getMethod()) && callListener != null) {
+                    ToHeader toHeader = (ToHeader) response.getHeader(ToHeader.NAME);
+                    callListener.onParticipantFailed(extractUsername(toHeader.getAddress()),
+                        statusCode, response.getReasonPhrase());
+                }
             }
         } catch (Exception e) {
             System.err.println("处理响应失败: " + e.getMessage());
@@ -304,23 +342,14 @@ public class ConferenceSipManager implements SipListener {
             
             // 获取对方用户名
             ToHeader toHeader = (ToHeader) response.getHeader(ToHeader.NAME);
-            String username = toHeader.getAddress().getURI().toString();
-            if (username.contains("sip:")) {
-                username = username.substring(4);
-                if (username.contains("@")) {
-                    username = username.substring(0, username.indexOf("@"));
-                }
-            }
+            String username = extractUsername(toHeader.getAddress());
             
-            // 检查是否已经连接过（防止重复处理）
-            if (participantDialogs.containsKey(username)) {
+            // 保存Dialog，已经连接过则忽略（防止重复处理）
+            if (participantDialogs.putIfAbsent(username, dialog) != null) {
                 System.out.println("⚠️  参与者 " + username + " 已连接过，忽略重复的 OK 响应");
                 return;
             }
             
-            // 保存Dialog
-            participantDialogs.put(username, dialog);
-            
             // 获取SDP
             String sdp = new String((byte[]) response.getContent());
             
@@ -336,6 +365,36 @@ public class ConferenceSipManager implements SipListener {
     @Override
     public void processTimeout(TimeoutEvent timeoutEvent) {
         System.err.println("请求超时");
+        ClientTransaction transaction = timeoutEvent.getClientTransaction();
+        if (transaction == null || callListener == null) {
+            return;
+        }
+        Request request = transaction.getRequest();
+        if (Request.INVITE.equals(request.getMethod())) {
+            ToHeader toHeader = (ToHeader) request.getHeader(ToHeader.NAME);
+            String target = extractUsername(toHeader.getAddress());
+            dispatcher.dispatch(getCallId(request), () ->
+                callListener.onParticipantFailed(target, Response.REQUEST_TIMEOUT, "Request Timeout"));
+        }
+    }
+    
+    private String getCallId(Message message) {
+        CallIdHeader header = (CallIdHeader) message.getHeader(CallIdHeader.NAME);
+        return header != null ? header.getCallId() : null;
+    }
+    
+    /**
+     * 从SIP地址中提取用户名
+     */
+    private String extractUsername(Address address) {
+        String username = address.getURI().toString();
+        if (username.contains("sip:")) {
+            username = username.substring(4);
+            if (username.contains("@")) {
+                username = username.substring(0, username.indexOf("@"));
+            }
+        }
+        return username;
     }
     
     @Override
@@ -367,6 +426,9 @@ public class ConferenceSipManager implements SipListener {
                 sipStack.deleteListeningPoint(listeningPoint);
             }
             sipStack.stop();
+            if (dispatcher != null) {
+                dispatcher.shutdown();
+            }
             System.out.println("群聊SIP管理器已关闭");
         } catch (Exception e) {
             System.err.println("关闭SIP管理器失败: " + e.getMessage());
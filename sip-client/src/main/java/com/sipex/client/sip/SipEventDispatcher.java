@@ -0,0 +1,135 @@
+package com.sipex.client.sip;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SIP事件分发器
+ * 把SipListener回调从协议栈线程交给有界线程池处理：
+ * 同一个Call-ID（同一个对话）的事件串行、按到达顺序执行，不同对话之间并行，
+ * 这样某个对话里耗时的回调（解析SDP、启动媒体、弹UI）不会拖慢其它对话的信令
+ */
+public class SipEventDispatcher {
+
+    private static final int MAX_BATCH = 16;        // 每次最多连续处理同一对话的事件数，之后让出线程
+    private static final int QUEUE_CAPACITY = 256;  // 线程池等待队列
+
+    private final String name;
+    private final ThreadPoolExecutor pool;
+
+    // Call-ID -> 该对话待处理的事件，队列处理完后移除
+    private final Map<String, DialogQueue> queues = new HashMap<>();
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    private static class DialogQueue {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean scheduled = false;
+    }
+
+    public SipEventDispatcher(String name, int threads) {
+        this.name = name;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 按Call-ID分发事件
+     * 线程池满时在调用线程（协议栈线程）上直接处理，对协议栈形成背压
+     */
+    public void dispatch(String callId, Runnable task) {
+        String key = callId != null ? callId : "";
+        DialogQueue queue;
+        synchronized (queues) {
+            queue = queues.computeIfAbsent(key, k -> new DialogQueue());
+            queue.tasks.add(task);
+            dispatched.incrementAndGet();
+            if (queue.scheduled) {
+                return;
+            }
+            queue.scheduled = true;
+        }
+
+        DialogQueue q = queue;
+        try {
+            pool.execute(() -> drain(key, q));
+        } catch (RejectedExecutionException e) {
+            callerRuns.incrementAndGet();
+            drain(key, q);
+        }
+    }
+
+    private void drain(String key, DialogQueue queue) {
+        int processed = 0;
+        while (true) {
+            if (processed == MAX_BATCH) {
+                // 还有积压，重新排队让其它对话也能得到执行；线程池满则继续在当前线程处理
+                try {
+                    pool.execute(() -> drain(key, queue));
+                    return;
+                } catch (RejectedExecutionException e) {
+                    processed = 0;
+                }
+            }
+
+            Runnable task;
+            synchronized (queues) {
+                task = queue.tasks.poll();
+                if (task == null) {
+                    queue.scheduled = false;
+                    queues.remove(key);
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                System.err.println("[" + name + "] SIP事件处理异常: " + t.getMessage());
+                t.printStackTrace();
+            }
+            processed++;
+        }
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRuns.get();
+    }
+
+    public int getActiveDialogCount() {
+        synchronized (queues) {
+            return queues.size();
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(2, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.sipex.client.sip;
 
 import com.sipex.client.config.ClientConfig;
+import com.sipex.client.service.ContactResolver;
+import com.sipex.client.util.CallSetupTracer;
+import com.sipex.common.dto.ContactInfoDTO;
+import com.sipex.common.sip.SipStackProfile;
+import gov.nist.javax.sip.ListeningPointExt;
 import gov.nist.javax.sip.header.UserAgent;
 
 import javax.sip.*;
@@ -8,10 +13,19 @@ import javax.sip.address.Address;
 import javax.sip.address.AddressFactory;
 import javax.sip.address.SipURI;
 import javax.sip.header.*;
+import javax.sip.message.Message;
 import javax.sip.message.MessageFactory;
 import javax.sip.message.Request;
 import javax.sip.message.Response;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SipManager implements SipListener {
 
@@ -30,10 +44,60 @@ public class SipManager implements SipListener {
     private Map<String, Dialog> activeDialogs = new HashMap<>();
     private SipCallListener callListener;
     private SipMessageListener messageListener;
-    private Dialog currentCallDialog; // 当前通话的Dialog
+    private volatile Dialog currentCallDialog; // 当前通话的Dialog（由分发线程写入）
+
+    // 回调交给按Call-ID串行的线程池处理，不占用协议栈线程
+    private final SipStackProfile profile = SipStackProfile.current();
+    private final SipEventDispatcher dispatcher = new SipEventDispatcher("Sip-Event", profile.getDispatcherThreads());
 
     private long cseq = 1;
 
+    // 传输选择（首选TCP/TLS，按目的地回退UDP）
+    private final SipTransportSelector transportSelector = new SipTransportSelector(ClientConfig.SIP_TRANSPORT);
+    private ScheduledExecutorService keepAliveExecutor;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+    private static final int MESSAGE_HEADER_OVERHEAD = 500; // 估算的请求头字节数
+    private static final int DIRECT_INVITE_TIMEOUT_SECONDS = 3; // 直连INVITE等待对端首个响应的时间
+
+    // 局域网直连的INVITE（Call-ID -> 重发所需信息），超时或失败时改走代理
+    private final Map<String, DirectAttempt> directAttempts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService directTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Sip-DirectTimer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 联系人 -> 聊天会话（复用Call-ID，CSeq递增）
+    private final Map<String, ChatSession> chatSessions = new ConcurrentHashMap<>();
+
+    private static class ChatSession {
+        final CallIdHeader callId;
+        final String fromTag = String.valueOf(System.currentTimeMillis());
+        final AtomicLong cseq = new AtomicLong(1);
+
+        ChatSession(CallIdHeader callId) {
+            this.callId = callId;
+        }
+    }
+
+    private static class DirectAttempt {
+        final String toUser;
+        final String sdp;
+        final ClientTransaction transaction;
+        volatile ScheduledFuture<?> timer;
+        volatile boolean reached; // 已收到对端的临时响应
+
+        DirectAttempt(String toUser, String sdp, ClientTransaction transaction) {
+            this.toUser = toUser;
+            this.sdp = sdp;
+            this.transaction = transaction;
+        }
+    }
+
+    private interface RequestBuilder {
+        Request build(String transport) throws Exception;
+    }
+
     public SipManager(SipCallListener callListener, SipMessageListener messageListener) {
         this.callListener = callListener;
         this.messageListener = messageListener;
@@ -47,12 +111,9 @@ public class SipManager implements SipListener {
         SipFactory sipFactory = SipFactory.getInstance();
         sipFactory.setPathName("gov.nist");
 
-        // 创建SipStack
-        Properties properties = new Properties();
-        properties.setProperty("javax.sip.STACK_NAME", "SipClient-" + username);
-        properties.setProperty("gov.nist.javax.sip.TRACE_LEVEL", "32");
-        properties.setProperty("gov.nist.javax.sip.DEBUG_LOG", "siplog_" + username + ".txt");
-        properties.setProperty("gov.nist.javax.sip.SERVER_LOG", "sipserver_" + username + ".txt");
+        // 创建SipStack（跟踪级别、线程池、事务表等见SipStackProfile）
+        Properties properties = profile.toProperties("SipClient-" + username, username);
+        System.out.println("SIP协议栈配置档: " + profile);
 
         sipStack = sipFactory.createSipStack(properties);
 
@@ -66,6 +127,16 @@ public class SipManager implements SipListener {
         System.out.println("=== 客户端SIP监听端口: " + randomPort + " ===");
         listeningPoint = sipStack.createListeningPoint(ClientConfig.LOCAL_IP, randomPort, "udp");
         sipProvider = sipStack.createSipProvider(listeningPoint);
+
+        // 同端口再开TCP（大消息和首选TCP时使用），TLS需要配置密钥库
+        addListeningPoint(randomPort, SipTransportSelector.TCP);
+        if (SipTransportSelector.TLS.equals(transportSelector.getPreferred())) {
+            if (ClientConfig.TLS_CONFIGURED) {
+                addListeningPoint(randomPort + 1, SipTransportSelector.TLS);
+            } else {
+                System.err.println("⚠️  首选TLS但没有配置 -Djavax.net.ssl.keyStore，不创建TLS监听点，改用UDP");
+            }
+        }
         sipProvider.addSipListener(this);
 
         // 创建联系地址
@@ -74,117 +145,201 @@ public class SipManager implements SipListener {
         contactAddress = addressFactory.createAddress(contactURI);
     }
 
-    public void register() throws Exception {
-        // 创建Request URI
-        SipURI requestURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
-
-        // 创建From Header
-        SipURI fromURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
-        Address fromAddress = addressFactory.createAddress(fromURI);
-        fromAddress.setDisplayName(username);
-        FromHeader fromHeader = headerFactory.createFromHeader(fromAddress, String.valueOf(System.currentTimeMillis()));
-
-        // 创建To Header
-        SipURI toURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
-        Address toAddress = addressFactory.createAddress(toURI);
-        ToHeader toHeader = headerFactory.createToHeader(toAddress, null);
-
-        // 创建Via Header
-        ViaHeader viaHeader = headerFactory.createViaHeader(
-                listeningPoint.getIPAddress(),
-                listeningPoint.getPort(),
-                "udp",
-                null);
-
-        // 创建Call-ID
-        callIdHeader = sipProvider.getNewCallId();
-
-        // 创建CSeq
-        CSeqHeader cseqHeader = headerFactory.createCSeqHeader(cseq++, Request.REGISTER);
-
-        // 创建Max-Forwards
-        MaxForwardsHeader maxForwards = headerFactory.createMaxForwardsHeader(70);
-
-        // 创建Contact Header
-        ContactHeader contactHeader = headerFactory.createContactHeader(contactAddress);
-
-        // 创建REGISTER请求
-        Request request = messageFactory.createRequest(
-                requestURI,
-                Request.REGISTER,
-                callIdHeader,
-                cseqHeader,
-                fromHeader,
-                toHeader,
-                Collections.singletonList(viaHeader),
-                maxForwards);
-
-        request.addHeader(contactHeader);
-
-        // 设置Expires
-        ExpiresHeader expiresHeader = headerFactory.createExpiresHeader(3600);
-        request.addHeader(expiresHeader);
+    private void addListeningPoint(int port, String transport) {
+        try {
+            sipProvider.addListeningPoint(sipStack.createListeningPoint(ClientConfig.LOCAL_IP, port, transport));
+        } catch (Exception e) {
+            System.err.println("⚠️  创建" + transport.toUpperCase() + "监听点失败，该传输不可用: " + e.getMessage());
+        }
+    }
 
-        // 发送请求
-        sipProvider.sendRequest(request);
-        System.out.println("发送REGISTER请求到 " + requestURI);
+    public void register() throws Exception {
+        ClientTransaction transaction = sendWithFallback(transport -> {
+            // 创建Request URI
+            SipURI requestURI = createRegistrarUri(username, transport);
+
+            // 创建From Header
+            SipURI fromURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
+            Address fromAddress = addressFactory.createAddress(fromURI);
+            fromAddress.setDisplayName(username);
+            FromHeader fromHeader = headerFactory.createFromHeader(fromAddress, String.valueOf(System.currentTimeMillis()));
+
+            // 创建To Header
+            SipURI toURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
+            Address toAddress = addressFactory.createAddress(toURI);
+            ToHeader toHeader = headerFactory.createToHeader(toAddress, null);
+
+            // 创建Call-ID
+            callIdHeader = sipProvider.getNewCallId();
+
+            // 创建CSeq
+            CSeqHeader cseqHeader = headerFactory.createCSeqHeader(cseq++, Request.REGISTER);
+
+            // 创建Max-Forwards
+            MaxForwardsHeader maxForwards = headerFactory.createMaxForwardsHeader(70);
+
+            // 创建REGISTER请求
+            Request request = messageFactory.createRequest(
+                    requestURI,
+                    Request.REGISTER,
+                    callIdHeader,
+                    cseqHeader,
+                    fromHeader,
+                    toHeader,
+                    Collections.singletonList(createViaHeader(transport)),
+                    maxForwards);
+
+            // 注册的Contact带上传输，来电复用同一条连接
+            request.addHeader(createContactHeader(transport));
+
+            // 设置Expires
+            ExpiresHeader expiresHeader = headerFactory.createExpiresHeader(3600);
+            request.addHeader(expiresHeader);
+            return request;
+        }, 0);
+
+        String transport = ((ViaHeader) transaction.getRequest().getHeader(ViaHeader.NAME)).getTransport().toLowerCase();
+        System.out.println("发送REGISTER请求到 " + transaction.getRequest().getRequestURI() + " (" + transport + ")");
+        startKeepAlive(transport);
     }
 
     public void sendMessage(String toUser, String messageContent) throws Exception {
-        // 创建Request URI
-        SipURI requestURI = addressFactory.createSipURI(toUser, ClientConfig.SIP_DOMAIN);
-
-        // 创建From Header
-        SipURI fromURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
-        Address fromAddress = addressFactory.createAddress(fromURI);
-        FromHeader fromHeader = headerFactory.createFromHeader(fromAddress, String.valueOf(System.currentTimeMillis()));
-
-        // 创建To Header
-        SipURI toURI = addressFactory.createSipURI(toUser, ClientConfig.SIP_DOMAIN);
-        Address toAddress = addressFactory.createAddress(toURI);
-        ToHeader toHeader = headerFactory.createToHeader(toAddress, null);
-
-        // 创建Via Header
-        ViaHeader viaHeader = headerFactory.createViaHeader(
-                listeningPoint.getIPAddress(),
-                listeningPoint.getPort(),
-                "udp",
-                null);
-
-        // 创建新的Call-ID
-        CallIdHeader messageCallId = sipProvider.getNewCallId();
+        // 同一联系人的消息复用Call-ID和From tag，CSeq递增，突发消息在同一条连接上连续发出
+        ChatSession session = chatSessions.computeIfAbsent(toUser, k -> new ChatSession(sipProvider.getNewCallId()));
+        int size = messageContent.getBytes(java.nio.charset.StandardCharsets.UTF_8).length + MESSAGE_HEADER_OVERHEAD;
+
+        ClientTransaction transaction = sendWithFallback(transport -> {
+            // 创建Request URI
+            SipURI requestURI = createRegistrarUri(toUser, transport);
+
+            // 创建From Header
+            SipURI fromURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
+            Address fromAddress = addressFactory.createAddress(fromURI);
+            FromHeader fromHeader = headerFactory.createFromHeader(fromAddress, session.fromTag);
+
+            // 创建To Header
+            SipURI toURI = addressFactory.createSipURI(toUser, ClientConfig.SIP_DOMAIN);
+            Address toAddress = addressFactory.createAddress(toURI);
+            ToHeader toHeader = headerFactory.createToHeader(toAddress, null);
+
+            // 创建CSeq
+            CSeqHeader cseqHeader = headerFactory.createCSeqHeader(session.cseq.getAndIncrement(), Request.MESSAGE);
+
+            // 创建Max-Forwards
+            MaxForwardsHeader maxForwards = headerFactory.createMaxForwardsHeader(70);
+
+            // 创建MESSAGE请求
+            Request request = messageFactory.createRequest(
+                    requestURI,
+                    Request.MESSAGE,
+                    (CallIdHeader) session.callId.clone(),
+                    cseqHeader,
+                    fromHeader,
+                    toHeader,
+                    Collections.singletonList(createViaHeader(transport)),
+                    maxForwards);
+
+            // 添加Content-Type
+            ContentTypeHeader contentTypeHeader = headerFactory.createContentTypeHeader("text", "plain");
+            request.setContent(messageContent, contentTypeHeader);
+            return request;
+        }, size);
+
+        String transport = ((ViaHeader) transaction.getRequest().getHeader(ViaHeader.NAME)).getTransport();
+        System.out.println("发送MESSAGE到 " + toUser + " (" + transport + "): " + messageContent);
+    }
 
-        // 创建CSeq
-        CSeqHeader cseqHeader = headerFactory.createCSeqHeader(1L, Request.MESSAGE);
+    /**
+     * 发起呼叫；先异步解析对方地址（缓存未命中时要请求服务器），解析完成后再发INVITE，可以在FX线程上调用
+     */
+    public CompletableFuture<Void> makeCall(String toUser, String sdp) {
+        return ContactResolver.resolveDirectAsync(toUser).thenAccept(contact -> {
+            try {
+                sendInvite(toUser, sdp, contact);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
 
-        // 创建Max-Forwards
-        MaxForwardsHeader maxForwards = headerFactory.createMaxForwardsHeader(70);
+    private void sendInvite(String toUser, String sdp, ContactInfoDTO contact) throws Exception {
+        // 同一局域网内直接发给对方的Contact，不经过代理；发送失败、超时或对方回408/5xx时再走代理
+        ClientTransaction inviteTransaction = null;
+        if (contact != null) {
+            try {
+                String transport = contact.getTransport() != null && sipProvider.getListeningPoint(contact.getTransport()) != null
+                        ? contact.getTransport() : SipTransportSelector.UDP;
+                SipURI requestURI = (SipURI) addressFactory.createURI(contact.getSipContact());
+                inviteTransaction = sipProvider.getNewClientTransaction(createInvite(toUser, sdp, requestURI, transport));
+                String callId = getCallId(inviteTransaction.getRequest());
+                DirectAttempt attempt = new DirectAttempt(toUser, sdp, inviteTransaction);
+                directAttempts.put(callId, attempt);
+                attempt.timer = directTimer.schedule(
+                        () -> dispatcher.dispatch(callId, () -> {
+                            if (!attempt.reached) {
+                                fallbackToProxy(callId, "超时");
+                            }
+                        }),
+                        DIRECT_INVITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                inviteTransaction.sendRequest();
+                System.out.println("局域网直连呼叫: " + toUser + " -> " + contact.getSipContact());
+            } catch (Exception e) {
+                System.err.println("直连呼叫失败，改走代理: " + e.getMessage());
+                if (inviteTransaction != null) {
+                    cancelDirectAttempt(getCallId(inviteTransaction.getRequest()));
+                }
+                ContactResolver.invalidate(toUser);
+                inviteTransaction = null;
+            }
+        }
+        if (inviteTransaction == null) {
+            sendInviteViaProxy(toUser, sdp);
+        }
+        CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.INVITE_SENT);
 
-        // 创建MESSAGE请求
-        Request request = messageFactory.createRequest(
-                requestURI,
-                Request.MESSAGE,
-                messageCallId,
-                cseqHeader,
-                fromHeader,
-                toHeader,
-                Collections.singletonList(viaHeader),
-                maxForwards);
+        System.out.println("发送INVITE到 " + toUser);
+    }
 
-        // 添加Content-Type
-        ContentTypeHeader contentTypeHeader = headerFactory.createContentTypeHeader("text", "plain");
-        request.setContent(messageContent, contentTypeHeader);
+    private void sendInviteViaProxy(String toUser, String sdp) throws Exception {
+        // Request URI指向Kamailio代理
+        sendWithFallback(transport -> createInvite(toUser, sdp, createRegistrarUri(toUser, transport), transport),
+                sdp.length() + MESSAGE_HEADER_OVERHEAD);
+    }
 
-        // 发送请求
-        sipProvider.sendRequest(request);
-        System.out.println("发送MESSAGE到 " + toUser + ": " + messageContent);
+    private DirectAttempt cancelDirectAttempt(String callId) {
+        DirectAttempt attempt = callId != null ? directAttempts.remove(callId) : null;
+        if (attempt != null && attempt.timer != null) {
+            attempt.timer.cancel(false);
+        }
+        return attempt;
     }
 
-    public void makeCall(String toUser, String sdp) throws Exception {
-        // 创建Request URI - 指向Kamailio代理
-        SipURI requestURI = addressFactory.createSipURI(toUser, ClientConfig.SIP_DOMAIN);
-        requestURI.setPort(5060); // 确保使用Kamailio端口
+    /**
+     * 直连的INVITE没有结果时改由代理重发；在该Call-ID的分发线程上调用，同一次尝试只会回退一次
+     */
+    private void fallbackToProxy(String callId, String reason) {
+        DirectAttempt attempt = cancelDirectAttempt(callId);
+        if (attempt == null) {
+            return;
+        }
+        System.err.println("直连呼叫" + reason + "，改走代理: " + attempt.toUser);
+        ContactResolver.invalidate(attempt.toUser);
+        try {
+            attempt.transaction.terminate();
+        } catch (Exception ignored) {
+            // 事务已经结束
+        }
+        try {
+            sendInviteViaProxy(attempt.toUser, attempt.sdp);
+        } catch (Exception e) {
+            System.err.println("经代理呼叫失败: " + e.getMessage());
+            if (callListener != null) {
+                callListener.onCallEnded();
+            }
+        }
+    }
 
+    private Request createInvite(String toUser, String sdp, SipURI requestURI, String transport) throws Exception {
         // 创建From Header
         SipURI fromURI = addressFactory.createSipURI(username, ClientConfig.SIP_DOMAIN);
         Address fromAddress = addressFactory.createAddress(fromURI);
@@ -195,13 +350,6 @@ public class SipManager implements SipListener {
         Address toAddress = addressFactory.createAddress(toURI);
         ToHeader toHeader = headerFactory.createToHeader(toAddress, null);
 
-        // 创建Via Header
-        ViaHeader viaHeader = headerFactory.createViaHeader(
-                listeningPoint.getIPAddress(),
-                listeningPoint.getPort(),
-                "udp",
-                null);
-
         // 创建Call-ID
         CallIdHeader inviteCallId = sipProvider.getNewCallId();
 
@@ -211,9 +359,6 @@ public class SipManager implements SipListener {
         // 创建Max-Forwards
         MaxForwardsHeader maxForwards = headerFactory.createMaxForwardsHeader(70);
 
-        // 创建Contact Header
-        ContactHeader contactHeader = headerFactory.createContactHeader(contactAddress);
-
         // 创建INVITE请求
         Request request = messageFactory.createRequest(
                 requestURI,
@@ -222,20 +367,116 @@ public class SipManager implements SipListener {
                 cseqHeader,
                 fromHeader,
                 toHeader,
-                Collections.singletonList(viaHeader),
+                Collections.singletonList(createViaHeader(transport)),
                 maxForwards);
 
-        request.addHeader(contactHeader);
+        request.addHeader(createContactHeader(transport));
 
         // 添加SDP
         ContentTypeHeader contentTypeHeader = headerFactory.createContentTypeHeader("application", "sdp");
         request.setContent(sdp, contentTypeHeader);
+        return request;
+    }
 
-        // 发送请求
-        ClientTransaction inviteTransaction = sipProvider.getNewClientTransaction(request);
-        inviteTransaction.sendRequest();
+    /**
+     * 本机的联系地址（首选传输的监听点），登录后上报给服务器供其他用户解析
+     */
+    public ContactInfoDTO getLocalContactInfo() {
+        String transport = transportSelector.getPreferred();
+        ListeningPoint lp = sipProvider.getListeningPoint(transport);
+        if (lp == null) {
+            transport = SipTransportSelector.UDP;
+            lp = listeningPoint;
+        }
+        String contact = "sip:" + username + "@" + lp.getIPAddress() + ":" + lp.getPort();
+        if (!SipTransportSelector.UDP.equals(transport)) {
+            contact += ";transport=" + transport;
+        }
 
-        System.out.println("发送INVITE到 " + toUser);
+        ContactInfoDTO info = new ContactInfoDTO();
+        info.setUsername(username);
+        info.setSipContact(contact);
+        info.setTransport(transport);
+        info.setMediaHost(ClientConfig.LOCAL_IP);
+        return info;
+    }
+
+    /**
+     * 按下一跳选择传输并发送；面向连接的传输建连失败时记下该目的地，立即用UDP重发
+     */
+    private ClientTransaction sendWithFallback(RequestBuilder builder, int messageSize) throws Exception {
+        String transport = transportSelector.select(ClientConfig.KAMAILIO_HOST, messageSize);
+        if (sipProvider.getListeningPoint(transport) == null) {
+            transport = SipTransportSelector.UDP;
+        }
+
+        try {
+            ClientTransaction transaction = sipProvider.getNewClientTransaction(builder.build(transport));
+            transaction.sendRequest();
+            return transaction;
+        } catch (SipException e) {
+            if (SipTransportSelector.UDP.equals(transport)) {
+                throw e;
+            }
+            transportSelector.onFailure(ClientConfig.KAMAILIO_HOST, transport);
+            ClientTransaction transaction = sipProvider.getNewClientTransaction(builder.build(SipTransportSelector.UDP));
+            transaction.sendRequest();
+            return transaction;
+        }
+    }
+
+    private SipURI createRegistrarUri(String user, String transport) throws Exception {
+        SipURI uri = addressFactory.createSipURI(user, ClientConfig.SIP_DOMAIN);
+        if (SipTransportSelector.TLS.equals(transport)) {
+            uri.setPort(ClientConfig.KAMAILIO_TLS_PORT);
+        } else {
+            uri.setPort(ClientConfig.KAMAILIO_PORT);
+        }
+        if (!SipTransportSelector.UDP.equals(transport)) {
+            uri.setTransportParam(transport);
+        }
+        return uri;
+    }
+
+    private ViaHeader createViaHeader(String transport) throws Exception {
+        ListeningPoint lp = sipProvider.getListeningPoint(transport);
+        return headerFactory.createViaHeader(lp.getIPAddress(), lp.getPort(), transport, null);
+    }
+
+    private ContactHeader createContactHeader(String transport) throws Exception {
+        ListeningPoint lp = sipProvider.getListeningPoint(transport);
+        SipURI contactURI = addressFactory.createSipURI(username, lp.getIPAddress());
+        contactURI.setPort(lp.getPort());
+        if (!SipTransportSelector.UDP.equals(transport)) {
+            contactURI.setTransportParam(transport);
+        }
+        return headerFactory.createContactHeader(addressFactory.createAddress(contactURI));
+    }
+
+    /**
+     * 面向连接的传输定时发送CRLF心跳（RFC 5626），保持到注册服务器的连接不被NAT或对端回收
+     */
+    private synchronized void startKeepAlive(String transport) {
+        if (keepAliveExecutor != null || SipTransportSelector.UDP.equals(transport)) {
+            return;
+        }
+        keepAliveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Sip-KeepAlive");
+            t.setDaemon(true);
+            return t;
+        });
+        keepAliveExecutor.scheduleAtFixedRate(() -> {
+            int port = SipTransportSelector.TLS.equals(transport) ? ClientConfig.KAMAILIO_TLS_PORT : ClientConfig.KAMAILIO_PORT;
+            if (transportSelector.isFallenBack(ClientConfig.KAMAILIO_HOST)) {
+                return;
+            }
+            try {
+                ListeningPointExt lp = (ListeningPointExt) sipProvider.getListeningPoint(transport);
+                lp.sendHeartbeat(ClientConfig.KAMAILIO_HOST, port);
+            } catch (Exception e) {
+                transportSelector.onFailure(ClientConfig.KAMAILIO_HOST, transport);
+            }
+        }, KEEP_ALIVE_SECONDS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
     }
 
     @Override
@@ -245,14 +486,27 @@ public class SipManager implements SipListener {
 
         System.out.println("收到请求: " + request.getMethod());
 
+        // 服务端事务在协议栈线程上创建，重传的请求会被事务吸收，不会重复分发
+        if (serverTransaction == null && !request.getMethod().equals(Request.ACK)) {
+            try {
+                serverTransaction = sipProvider.getNewServerTransaction(request);
+            } catch (TransactionAlreadyExistsException e) {
+                System.out.println("忽略重传请求: " + request.getMethod());
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+
+        ServerTransaction transaction = serverTransaction;
+        dispatcher.dispatch(getCallId(request), () -> handleRequest(request, transaction));
+    }
+
+    private void handleRequest(Request request, ServerTransaction serverTransaction) {
         try {
             if (request.getMethod().equals(Request.INVITE)) {
-                // 处理来电
-                if (serverTransaction == null) {
-                    serverTransaction = sipProvider.getNewServerTransaction(request);
-                }
-
-                // 发送180 Ringing
+                // 处理来电，发送180 Ringing
                 Response ringingResponse = messageFactory.createResponse(Response.RINGING, request);
                 serverTransaction.sendResponse(ringingResponse);
 
@@ -275,9 +529,6 @@ public class SipManager implements SipListener {
 
                 // 发送200 OK
                 Response okResponse = messageFactory.createResponse(Response.OK, request);
-                if (serverTransaction == null) {
-                    serverTransaction = sipProvider.getNewServerTransaction(request);
-                }
                 serverTransaction.sendResponse(okResponse);
 
                 // 通知上层应用
@@ -287,9 +538,6 @@ public class SipManager implements SipListener {
             } else if (request.getMethod().equals(Request.BYE)) {
                 // 处理挂断
                 Response okResponse = messageFactory.createResponse(Response.OK, request);
-                if (serverTransaction == null) {
-                    serverTransaction = sipProvider.getNewServerTransaction(request);
-                }
                 serverTransaction.sendResponse(okResponse);
 
                 if (callListener != null) {
@@ -303,9 +551,31 @@ public class SipManager implements SipListener {
 
     @Override
     public void processResponse(ResponseEvent responseEvent) {
+        dispatcher.dispatch(getCallId(responseEvent.getResponse()), () -> handleResponse(responseEvent));
+    }
+
+    private void handleResponse(ResponseEvent responseEvent) {
         Response response = responseEvent.getResponse();
         System.out.println("收到响应: " + response.getStatusCode());
 
+        String callId = getCallId(response);
+        DirectAttempt attempt = callId != null ? directAttempts.get(callId) : null;
+        if (attempt != null) {
+            int status = response.getStatusCode();
+            if (status < 200) {
+                // 对端已经收到，不再按超时回退
+                attempt.reached = true;
+                if (attempt.timer != null) {
+                    attempt.timer.cancel(false);
+                }
+            } else if (status == Response.REQUEST_TIMEOUT || status >= 500) {
+                fallbackToProxy(callId, "失败(" + status + ")");
+                return;
+            } else {
+                cancelDirectAttempt(callId);
+            }
+        }
+
         try {
             if (response.getStatusCode() == Response.UNAUTHORIZED || response.getStatusCode() == Response.PROXY_AUTHENTICATION_REQUIRED) {
                 // 处理认证
@@ -313,12 +583,15 @@ public class SipManager implements SipListener {
             } else if (response.getStatusCode() == Response.OK) {
                 CSeqHeader cseq = (CSeqHeader) response.getHeader(CSeqHeader.NAME);
                 if (cseq.getMethod().equals(Request.INVITE)) {
+                    CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.ANSWERED);
+
                     // 呼叫成功，发送ACK
                     Dialog dialog = responseEvent.getDialog();
                     currentCallDialog = dialog; // 保存Dialog用于挂断
                     
                     Request ackRequest = dialog.createAck(cseq.getSeqNumber());
                     dialog.sendAck(ackRequest);
+                    CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.ACK_SENT);
 
                     // 提取SDP
                     String sdp = new String((byte[]) response.getContent());
@@ -329,6 +602,7 @@ public class SipManager implements SipListener {
                     System.out.println("注册成功");
                 }
             } else if (response.getStatusCode() == Response.RINGING) {
+                CallSetupTracer.getInstance().mark(CallSetupTracer.Phase.RINGING);
                 if (callListener != null) {
                     callListener.onRinging();
                 }
@@ -338,6 +612,11 @@ public class SipManager implements SipListener {
         }
     }
 
+    private String getCallId(Message message) {
+        CallIdHeader header = (CallIdHeader) message.getHeader(CallIdHeader.NAME);
+        return header != null ? header.getCallId() : null;
+    }
+
     private void handleAuthentication(ResponseEvent responseEvent) throws Exception {
         Response challenge = responseEvent.getResponse();
         Request oldRequest = responseEvent.getClientTransaction().getRequest();
@@ -349,11 +628,28 @@ public class SipManager implements SipListener {
     @Override
     public void processTimeout(TimeoutEvent timeoutEvent) {
         System.out.println("请求超时");
+        ClientTransaction transaction = timeoutEvent.getClientTransaction();
+        if (transaction != null) {
+            Request request = transaction.getRequest();
+            SipURI requestURI = (SipURI) request.getRequestURI();
+            if (!ClientConfig.KAMAILIO_HOST.equals(requestURI.getHost())) {
+                // 直连的对端没响应，缓存的地址可能已过时；直连的INVITE改走代理重发
+                ToHeader to = (ToHeader) request.getHeader(ToHeader.NAME);
+                ContactResolver.invalidate(((SipURI) to.getAddress().getURI()).getUser());
+                String callId = getCallId(request);
+                dispatcher.dispatch(callId, () -> fallbackToProxy(callId, "超时"));
+                return;
+            }
+            // 面向连接的传输上超时，后续请求回退UDP
+            ViaHeader via = (ViaHeader) request.getHeader(ViaHeader.NAME);
+            transportSelector.onFailure(ClientConfig.KAMAILIO_HOST, via.getTransport());
+        }
     }
 
     @Override
     public void processIOException(IOExceptionEvent exceptionEvent) {
         System.out.println("IO异常: " + exceptionEvent.toString());
+        transportSelector.onFailure(exceptionEvent.getHost(), exceptionEvent.getTransport());
     }
 
     @Override
@@ -391,9 +687,17 @@ public class SipManager implements SipListener {
     }
 
     public void shutdown() {
+        synchronized (this) {
+            if (keepAliveExecutor != null) {
+                keepAliveExecutor.shutdownNow();
+                keepAliveExecutor = null;
+            }
+        }
+        directTimer.shutdownNow();
         if (sipStack != null) {
             sipStack.stop();
         }
+        dispatcher.shutdown();
     }
 
     public String getUsername() {
@@ -0,0 +1,194 @@
+package com.sipex.client.sip;
+
+import com.sipex.common.sip.SipStackProfile;
+
+import javax.sip.*;
+import javax.sip.address.Address;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.SipURI;
+import javax.sip.header.*;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SIP协议栈配置档压测工具
+ * 在本机起一对协议栈（发送端 + 应答端，UDP回环），分别测每个配置档下 REGISTER 和 MESSAGE 的吞吐量
+ *
+ * 用法：java com.sipex.client.sip.SipProfileBenchmark [每轮请求数] [并发窗口]
+ */
+public class SipProfileBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int BASE_PORT = 15060;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        System.out.println("========== SIP配置档压测 ==========");
+        System.out.println("每轮请求数: " + requests + "，并发窗口: " + window);
+
+        int port = BASE_PORT;
+        for (SipStackProfile profile : SipStackProfile.values()) {
+            BenchmarkPair pair = new BenchmarkPair(profile, port, port + 1);
+            port += 2;
+            try {
+                // 预热，让JIT和事务表进入稳定状态
+                pair.run(Request.REGISTER, Math.min(500, requests), window);
+
+                double registers = pair.run(Request.REGISTER, requests, window);
+                double messages = pair.run(Request.MESSAGE, requests, window);
+                System.out.printf("%-12s REGISTER: %8.0f 次/秒    MESSAGE: %8.0f 次/秒    失败: %d%n",
+                    profile, registers, messages, pair.failures.get());
+            } finally {
+                pair.stop();
+            }
+        }
+    }
+
+    /**
+     * 一对回环协议栈：client发请求，server对每个请求回200 OK
+     */
+    private static class BenchmarkPair implements SipListener {
+        private final SipStack clientStack;
+        private final SipStack serverStack;
+        private final SipProvider clientProvider;
+        private final SipProvider serverProvider;
+        private final AddressFactory addressFactory;
+        private final HeaderFactory headerFactory;
+        private final MessageFactory messageFactory;
+        private final int serverPort;
+
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger cseq = new AtomicInteger(1);
+        private volatile Semaphore inFlight;
+        private volatile CountDownLatch done;
+
+        BenchmarkPair(SipStackProfile profile, int clientPort, int serverPort) throws Exception {
+            this.serverPort = serverPort;
+            SipFactory sipFactory = SipFactory.getInstance();
+            sipFactory.setPathName("gov.nist");
+
+            clientStack = sipFactory.createSipStack(profile.toProperties("Bench-Client-" + profile, "bench_client"));
+            serverStack = sipFactory.createSipStack(profile.toProperties("Bench-Server-" + profile, "bench_server"));
+            addressFactory = sipFactory.createAddressFactory();
+            headerFactory = sipFactory.createHeaderFactory();
+            messageFactory = sipFactory.createMessageFactory();
+
+            clientProvider = clientStack.createSipProvider(clientStack.createListeningPoint(HOST, clientPort, "udp"));
+            serverProvider = serverStack.createSipProvider(serverStack.createListeningPoint(HOST, serverPort, "udp"));
+            clientProvider.addSipListener(this);
+            serverProvider.addSipListener(this);
+        }
+
+        /**
+         * 发送count个请求，窗口内最多window个未完成，返回每秒完成数
+         */
+        double run(String method, int count, int window) throws Exception {
+            inFlight = new Semaphore(window);
+            done = new CountDownLatch(count);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                inFlight.acquire();
+                clientProvider.getNewClientTransaction(createRequest(method, i)).sendRequest();
+            }
+            if (!done.await(60, TimeUnit.SECONDS)) {
+                System.err.println("⚠️  " + method + " 未在60秒内全部完成，剩余 " + done.getCount());
+            }
+            long elapsed = System.nanoTime() - start;
+            return (count - done.getCount()) * 1_000_000_000.0 / elapsed;
+        }
+
+        private Request createRequest(String method, int index) throws Exception {
+            String user = "bench" + (index % 100);
+            SipURI requestURI = addressFactory.createSipURI(user, HOST + ":" + serverPort);
+            Address fromAddress = addressFactory.createAddress(addressFactory.createSipURI(user, HOST));
+            FromHeader fromHeader = headerFactory.createFromHeader(fromAddress, String.valueOf(index));
+            ToHeader toHeader = headerFactory.createToHeader(
+                addressFactory.createAddress(addressFactory.createSipURI(user, HOST)), null);
+            ListeningPoint lp = clientProvider.getListeningPoint("udp");
+            ViaHeader viaHeader = headerFactory.createViaHeader(lp.getIPAddress(), lp.getPort(), "udp", null);
+
+            Request request = messageFactory.createRequest(
+                requestURI,
+                method,
+                clientProvider.getNewCallId(),
+                headerFactory.createCSeqHeader((long) cseq.getAndIncrement(), method),
+                fromHeader,
+                toHeader,
+                Collections.singletonList(viaHeader),
+                headerFactory.createMaxForwardsHeader(70));
+
+            if (Request.MESSAGE.equals(method)) {
+                ContentTypeHeader contentType = headerFactory.createContentTypeHeader("text", "plain");
+                request.setContent("benchmark message " + index, contentType);
+            } else {
+                request.addHeader(headerFactory.createExpiresHeader(3600));
+            }
+            return request;
+        }
+
+        @Override
+        public void processRequest(RequestEvent requestEvent) {
+            try {
+                Request request = requestEvent.getRequest();
+                ServerTransaction transaction = requestEvent.getServerTransaction();
+                if (transaction == null) {
+                    transaction = serverProvider.getNewServerTransaction(request);
+                }
+                transaction.sendResponse(messageFactory.createResponse(Response.OK, request));
+            } catch (TransactionAlreadyExistsException e) {
+                // 重传，事务会自己处理
+            } catch (Exception e) {
+                failures.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void processResponse(ResponseEvent responseEvent) {
+            if (responseEvent.getResponse().getStatusCode() >= 200) {
+                complete(responseEvent.getResponse().getStatusCode() >= 300);
+            }
+        }
+
+        @Override
+        public void processTimeout(TimeoutEvent timeoutEvent) {
+            if (!timeoutEvent.isServerTransaction()) {
+                complete(true);
+            }
+        }
+
+        private void complete(boolean failed) {
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            inFlight.release();
+            done.countDown();
+        }
+
+        @Override
+        public void processIOException(IOExceptionEvent exceptionEvent) {
+            failures.incrementAndGet();
+        }
+
+        @Override
+        public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
+        }
+
+        @Override
+        public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
+        }
+
+        void stop() {
+            clientStack.stop();
+            serverStack.stop();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.sipex.client.sip;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SIP传输选择（按下一跳协商）
+ * 优先使用配置的传输（tcp/tls），连接失败的目的地回退到UDP一段时间后再重试；
+ * 配置为UDP时，超过路径MTU的请求按RFC 3261 18.1.1改走TCP，避免IP分片丢包
+ */
+public class SipTransportSelector {
+
+    public static final String UDP = "udp";
+    public static final String TCP = "tcp";
+    public static final String TLS = "tls";
+
+    private static final int UDP_SIZE_LIMIT = 1300;              // 字节，超过则改用TCP
+    private static final long FALLBACK_RETRY_MS = 5 * 60 * 1000; // 回退UDP后多久再尝试面向连接的传输
+
+    private final String preferred;
+
+    // 下一跳主机 -> 回退到UDP的截止时间（同一主机的UDP/TCP/TLS端口视为同一目的地）
+    private final Map<String, Long> fallbackUntil = new ConcurrentHashMap<>();
+
+    public SipTransportSelector(String preferred) {
+        String transport = preferred == null ? UDP : preferred.trim().toLowerCase();
+        if (!TCP.equals(transport) && !TLS.equals(transport)) {
+            transport = UDP;
+        }
+        this.preferred = transport;
+    }
+
+    /**
+     * 为发往某个下一跳的请求选择传输
+     *
+     * @param messageSize 请求的大致字节数（不确定时传0）
+     */
+    public String select(String host, int messageSize) {
+        if (isFallenBack(host)) {
+            return UDP;
+        }
+        if (UDP.equals(preferred) && messageSize > UDP_SIZE_LIMIT) {
+            return TCP;
+        }
+        return preferred;
+    }
+
+    /**
+     * 面向连接的传输失败（连接被拒、IO异常、超时），该目的地暂时回退UDP
+     */
+    public void onFailure(String host, String transport) {
+        if (transport == null || UDP.equalsIgnoreCase(transport)) {
+            return;
+        }
+        Long previous = fallbackUntil.put(host, System.currentTimeMillis() + FALLBACK_RETRY_MS);
+        if (previous == null) {
+            System.err.println("⚠️  " + transport.toUpperCase() + " 连接 " + host + " 失败，暂时回退UDP");
+        }
+    }
+
+    public boolean isFallenBack(String host) {
+        Long until = fallbackUntil.get(host);
+        if (until == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() >= until) {
+            fallbackUntil.remove(host, until);
+            return false;
+        }
+        return true;
+    }
+
+    public String getPreferred() {
+        return preferred;
+    }
+}
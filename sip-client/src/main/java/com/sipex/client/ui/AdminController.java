@@ -1,8 +1,8 @@
 package com.sipex.client.ui;
 
-import com.google.gson.reflect.TypeToken;
 import com.sipex.client.service.HttpClientService;
-import com.sipex.common.dto.ApiResponse;
+import com.sipex.client.util.ApiTypes;
+import com.sipex.client.util.RequestScope;
 import com.sipex.common.entity.CallLog;
 import com.sipex.common.entity.Group;
 import com.sipex.common.entity.User;
@@ -91,74 +91,68 @@ public class AdminController {
     }
 
     private void loadStatistics() {
-        try {
-            var type = new TypeToken<ApiResponse<Map<String, Object>>>(){}.getType();
-            ApiResponse<Map<String, Object>> response = HttpClientService.get("/api/admin/statistics", type);
-            
-            if (response.getCode() == 200 && response.getData() != null) {
-                Map<String, Object> stats = response.getData();
-                totalUsersLabel.setText(stats.get("totalUsers").toString());
-                totalMessagesLabel.setText(stats.get("totalMessages").toString());
-                todayMessagesLabel.setText(stats.get("todayMessages").toString());
-                
-                Object duration = stats.get("todayCallDuration");
-                long durationSeconds = duration instanceof Double ? ((Double) duration).longValue() : (Long) duration;
-                todayCallDurationLabel.setText(durationSeconds + "秒");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        HttpClientService.<Map<String, Object>>getAsync("/api/admin/statistics", ApiTypes.OBJECT_MAP)
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    RequestScope.unwrap(error).printStackTrace();
+                    return;
+                }
+                if (response.getCode() == 200 && response.getData() != null) {
+                    Map<String, Object> stats = response.getData();
+                    totalUsersLabel.setText(stats.get("totalUsers").toString());
+                    totalMessagesLabel.setText(stats.get("totalMessages").toString());
+                    todayMessagesLabel.setText(stats.get("todayMessages").toString());
+
+                    Object duration = stats.get("todayCallDuration");
+                    long durationSeconds = duration instanceof Double ? ((Double) duration).longValue() : (Long) duration;
+                    todayCallDurationLabel.setText(durationSeconds + "秒");
+                }
+            }, RequestScope.FX);
     }
 
     private void loadUsers() {
-        try {
-            var type = new TypeToken<ApiResponse<List<User>>>(){}.getType();
-            ApiResponse<List<User>> response = HttpClientService.get("/api/admin/users", type);
-
-            if (response.getCode() == 200 && response.getData() != null) {
-                usersTableView.setItems(FXCollections.observableArrayList(response.getData()));
-                System.out.println("✅ 成功加载 " + response.getData().size() + " 个用户");
-            } else {
-                System.err.println("❌ 加载用户失败: code=" + response.getCode() + ", message=" + response.getMessage());
-            }
-        } catch (Exception e) {
-            System.err.println("❌ 加载用户异常:");
-            e.printStackTrace();
-        }
+        HttpClientService.<List<User>>getAsync("/api/admin/users", ApiTypes.USER_LIST)
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    System.err.println("❌ 加载用户异常:");
+                    RequestScope.unwrap(error).printStackTrace();
+                } else if (response.getCode() == 200 && response.getData() != null) {
+                    usersTableView.setItems(FXCollections.observableArrayList(response.getData()));
+                    System.out.println("✅ 成功加载 " + response.getData().size() + " 个用户");
+                } else {
+                    System.err.println("❌ 加载用户失败: code=" + response.getCode() + ", message=" + response.getMessage());
+                }
+            }, RequestScope.FX);
     }
 
     private void loadGroups() {
-        try {
-            var type = new TypeToken<ApiResponse<List<Group>>>(){}.getType();
-            ApiResponse<List<Group>> response = HttpClientService.get("/api/admin/groups", type);
-
-            if (response.getCode() == 200 && response.getData() != null) {
-                groupsTableView.setItems(FXCollections.observableArrayList(response.getData()));
-                System.out.println("✅ 成功加载 " + response.getData().size() + " 个群组");
-            } else {
-                System.err.println("❌ 加载群组失败: code=" + response.getCode() + ", message=" + response.getMessage());
-            }
-        } catch (Exception e) {
-            System.err.println("❌ 加载群组异常:");
-            e.printStackTrace();
-        }
+        HttpClientService.<List<Group>>getAsync("/api/admin/groups", ApiTypes.GROUP_LIST)
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    System.err.println("❌ 加载群组异常:");
+                    RequestScope.unwrap(error).printStackTrace();
+                } else if (response.getCode() == 200 && response.getData() != null) {
+                    groupsTableView.setItems(FXCollections.observableArrayList(response.getData()));
+                    System.out.println("✅ 成功加载 " + response.getData().size() + " 个群组");
+                } else {
+                    System.err.println("❌ 加载群组失败: code=" + response.getCode() + ", message=" + response.getMessage());
+                }
+            }, RequestScope.FX);
     }
 
     private void loadCallLogs() {
-        try {
-            var type = new TypeToken<ApiResponse<List<CallLog>>>(){}.getType();
-            ApiResponse<List<CallLog>> response = HttpClientService.get("/api/admin/calls", type);
-
-            if (response.getCode() == 200 && response.getData() != null) {
-                callLogsTableView.setItems(FXCollections.observableArrayList(response.getData()));
-                System.out.println("✅ 成功加载 " + response.getData().size() + " 条通话记录");
-            } else {
-                System.err.println("❌ 加载通话记录失败: code=" + response.getCode() + ", message=" + response.getMessage());
-            }
-        } catch (Exception e) {
-            System.err.println("❌ 加载通话记录异常:");
-            e.printStackTrace();
-        }
+        HttpClientService.<List<CallLog>>getAsync("/api/admin/calls", ApiTypes.CALL_LOG_LIST)
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    System.err.println("❌ 加载通话记录异常:");
+                    RequestScope.unwrap(error).printStackTrace();
+                } else if (response.getCode() == 200 && response.getData() != null) {
+                    callLogsTableView.setItems(FXCollections.observableArrayList(response.getData()));
+                    System.out.println("✅ 成功加载 " + response.getData().size() + " 条通话记录");
+                } else {
+                    System.err.println("❌ 加载通话记录失败: code=" + response.getCode() + ", message=" + response.getMessage());
+                }
+            }, RequestScope.FX);
     }
 
     @FXML
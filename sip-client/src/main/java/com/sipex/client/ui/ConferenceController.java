@@ -1,11 +1,15 @@
 package com.sipex.client.ui;
 
-import com.google.gson.Gson;
 import com.sipex.client.config.ClientConfig;
 import com.sipex.client.media.ConferenceMediaManager;
 import com.sipex.client.service.HttpClientService;
+import com.sipex.client.service.StompClient;
+import com.sipex.client.util.ApiTypes;
+import com.sipex.client.util.RequestScope;
 import com.sipex.client.sip.ConferenceSipManager;
-import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.ConferenceEventDTO;
+import com.sipex.common.dto.ConferenceEventsResponse;
+import com.sipex.common.dto.ConferenceMessageDTO;
 import com.sipex.common.dto.ConferenceRequest;
 import com.sipex.common.dto.ConferenceResponse;
 import javafx.application.Platform;
@@ -19,6 +23,8 @@ import javax.sip.ServerTransaction;
 import javax.sip.message.Request;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 群聊会议控制器
@@ -45,14 +51,33 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
     private boolean isMuted = false;
     private boolean isVideoEnabled = true;
 
-    // 消息轮询定时器
-    private Timer messagePolltimer;
-    private int lastMessageCount = 0;
+    // 会议室消息（只在FX线程访问）
+    private static final int MAX_CHAT_MESSAGES = 50;
+    private final List<ConferenceMessageDTO> chatMessages = new ArrayList<>();
     
     // 参与者视频显示映射
     private final Map<String, VBox> participantVideoBoxes = new ConcurrentHashMap<>();
     
-    private Timer pollTimer; // 定时轮询参与者列表
+    // 会议室事件流的推送订阅
+    private final List<StompClient.Subscription> subscriptions = new ArrayList<>();
+
+    // 已应用的最后一个事件序号；补拉期间收到的事件先缓存（都只在FX线程访问）
+    private long lastSeq = 0;
+    private boolean catchingUp = false;
+    private final List<ConferenceEventDTO> pendingEvents = new ArrayList<>();
+    
+    // 正在呼叫、尚未应答的参与者，避免重复邀请
+    private final Set<String> pendingInvites = ConcurrentHashMap.newKeySet();
+
+    // 本窗口发出的未完成请求，离开会议时取消
+    private final RequestScope requests = new RequestScope();
+    
+    // 并行发起INVITE
+    private final ExecutorService inviteExecutor = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "Conference-Invite");
+        t.setDaemon(true);
+        return t;
+    });
     
     public void initialize() {
         System.out.println("群聊会议控制器初始化...");
@@ -88,58 +113,56 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
         try {
             // 初始化SIP管理器
             sipManager.initialize(username, "");
-            
-            // 调用服务器API创建会议室
-            ConferenceRequest request = new ConferenceRequest();
-            request.setUsername(username);
-            request.setAction("create");
-            
-            var responseType = com.google.gson.reflect.TypeToken.getParameterized(
-                ApiResponse.class, 
-                ConferenceResponse.class
-            ).getType();
-            
-            ApiResponse<ConferenceResponse> apiResponse = HttpClientService.post(
-                "/api/conference/create",
-                request,
-                responseType
-            );
-            
-            if (apiResponse.getCode() == 200) {
+        } catch (Exception e) {
+            showError("创建会议室失败: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+
+        // 调用服务器API创建会议室，响应回到FX线程处理
+        ConferenceRequest request = new ConferenceRequest();
+        request.setUsername(username);
+        request.setAction("create");
+
+        requests.track(HttpClientService.<ConferenceResponse>postAsync("/api/conference/create", request, ApiTypes.CONFERENCE))
+            .whenCompleteAsync((apiResponse, error) -> {
+                if (error != null) {
+                    if (!RequestScope.isCancelled(error)) {
+                        showError("创建会议室失败: " + RequestScope.unwrap(error).getMessage());
+                    }
+                    return;
+                }
+                if (apiResponse.getCode() != 200) {
+                    showError("创建会议室失败: " + apiResponse.getMessage());
+                    return;
+                }
+
                 ConferenceResponse conferenceData = apiResponse.getData();
                 currentRoomId = conferenceData.getRoomId();
-                
-                Platform.runLater(() -> {
-                    roomIdLabel.setText("会议室: " + currentRoomId);
-                    statusLabel.setText("会议室已创建，等待其他人加入...");
-                    updateParticipantList(conferenceData.getParticipants());
-                });
-                
-                // 启动会议
-                mediaManager.startConference();
-                
+
+                roomIdLabel.setText("会议室: " + currentRoomId);
+                statusLabel.setText("会议室已创建，等待其他人加入...");
+                updateParticipantList(conferenceData.getParticipants());
+
+                try {
+                    // 启动会议
+                    mediaManager.startConference();
+                } catch (Exception e) {
+                    showError("创建会议室失败: " + e.getMessage());
+                    e.printStackTrace();
+                    return;
+                }
+
                 // 为自己创建视频显示框
-                Platform.runLater(() -> {
-                    VBox localVideoBox = createVideoBox(username + " (我)");
-                    participantVideoBoxes.put(username, localVideoBox);
-                    updateVideoGrid();
-                });
-                
-                // 开始轮询参与者列表
-                startPolling();
+                VBox localVideoBox = createVideoBox(username + " (我)");
+                participantVideoBoxes.put(username, localVideoBox);
+                updateVideoGrid();
 
-                // 开始轮询消息
-                startMessagePolling();
+                // 订阅参与者变化和会议消息
+                subscribeRoom();
 
                 System.out.println("✅ 会议室创建成功: " + currentRoomId);
-            } else {
-                showError("创建会议室失败: " + apiResponse.getMessage());
-            }
-            
-        } catch (Exception e) {
-            showError("创建会议室失败: " + e.getMessage());
-            e.printStackTrace();
-        }
+            }, RequestScope.FX);
     }
     
     /**
@@ -152,127 +175,195 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
         try {
             // 初始化SIP管理器
             sipManager.initialize(username, "");
-            
-            // 调用服务器API加入会议室
-            ConferenceRequest request = new ConferenceRequest();
-            request.setUsername(username);
-            request.setRoomId(roomId);
-            request.setAction("join");
-            
-            var responseType = com.google.gson.reflect.TypeToken.getParameterized(
-                ApiResponse.class,
-                ConferenceResponse.class
-            ).getType();
-            
-            ApiResponse<ConferenceResponse> apiResponse = HttpClientService.post(
-                "/api/conference/join",
-                request,
-                responseType
-            );
-            
-            if (apiResponse.getCode() == 200) {
-                ConferenceResponse conferenceData = apiResponse.getData();
-                
-                Platform.runLater(() -> {
-                    roomIdLabel.setText("会议室: " + currentRoomId);
-                    statusLabel.setText("正在连接到其他参与者...");
-                    updateParticipantList(conferenceData.getParticipants());
-                });
-                
-                // 启动会议
-                mediaManager.startConference();
-                
-                // 为自己创建视频显示框
-                Platform.runLater(() -> {
-                    VBox localVideoBox = createVideoBox(username + " (我)");
-                    participantVideoBoxes.put(username, localVideoBox);
-                    updateVideoGrid();
-                });
-                
-                // 向所有已存在的参与者发起呼叫
-                for (String participant : conferenceData.getParticipants()) {
-                    if (!participant.equals(username)) {
-                        inviteParticipant(participant);
+        } catch (Exception e) {
+            showError("加入会议室失败: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+
+        // 调用服务器API加入会议室，响应回到FX线程处理
+        ConferenceRequest request = new ConferenceRequest();
+        request.setUsername(username);
+        request.setRoomId(roomId);
+        request.setAction("join");
+
+        requests.track(HttpClientService.<ConferenceResponse>postAsync("/api/conference/join", request, ApiTypes.CONFERENCE))
+            .whenCompleteAsync((apiResponse, error) -> {
+                if (error != null) {
+                    if (!RequestScope.isCancelled(error)) {
+                        showError("加入会议室失败: " + RequestScope.unwrap(error).getMessage());
                     }
+                    return;
                 }
-                
-                // 开始轮询参与者列表
-                startPolling();
+                if (apiResponse.getCode() != 200) {
+                    showError("加入会议室失败: " + apiResponse.getMessage());
+                    return;
+                }
+
+                ConferenceResponse conferenceData = apiResponse.getData();
+
+                roomIdLabel.setText("会议室: " + currentRoomId);
+                statusLabel.setText("正在连接到其他参与者...");
+                updateParticipantList(conferenceData.getParticipants());
 
-                // 开始轮询消息
-                startMessagePolling();
+                try {
+                    // 启动会议
+                    mediaManager.startConference();
+                } catch (Exception e) {
+                    showError("加入会议室失败: " + e.getMessage());
+                    e.printStackTrace();
+                    return;
+                }
+
+                // 为自己创建视频显示框
+                VBox localVideoBox = createVideoBox(username + " (我)");
+                participantVideoBoxes.put(username, localVideoBox);
+                updateVideoGrid();
+
+                // 并行向所有已存在的参与者发起呼叫
+                inviteParticipants(conferenceData.getParticipants());
+
+                // 订阅参与者变化和会议消息
+                subscribeRoom();
 
                 System.out.println("✅ 加入会议室成功: " + currentRoomId);
-            } else {
-                showError("加入会议室失败: " + apiResponse.getMessage());
+            }, RequestScope.FX);
+    }
+    
+    /**
+     * 并行呼叫所有尚未连接的参与者
+     */
+    private void inviteParticipants(Collection<String> participants) {
+        for (String participant : participants) {
+            if (participant.equals(currentUsername) || participantVideoBoxes.containsKey(participant)) {
+                continue;
+            }
+            // 已经在呼叫中的不再重复发起
+            if (pendingInvites.add(participant)) {
+                inviteExecutor.execute(() -> inviteParticipant(participant));
             }
-            
-        } catch (Exception e) {
-            showError("加入会议室失败: " + e.getMessage());
-            e.printStackTrace();
         }
     }
     
     /**
      * 向参与者发起呼叫
+     * 发出offer之前媒体端口和接收器已经就绪
      */
     private void inviteParticipant(String username) {
         try {
-            int participantIndex = participantVideoBoxes.size();
-            String sdp = mediaManager.createSdpOffer(true, participantIndex);
+            String sdp = mediaManager.prepareParticipant(username, true);
             sipManager.inviteParticipant(username, sdp);
         } catch (Exception e) {
             System.err.println("呼叫参与者失败: " + e.getMessage());
             e.printStackTrace();
+            pendingInvites.remove(username);
+            mediaManager.removeParticipant(username);
         }
     }
     
     /**
-     * 开始轮询参与者列表
+     * 订阅会议室事件流，订阅建立后从序号0补拉一次；断线重连后从上次收到的序号继续
      */
-    private void startPolling() {
-        pollTimer = new Timer("Conference-Poller", true);
-        pollTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                pollParticipants();
-            }
-        }, 2000, 2000); // 每2秒轮询一次
+    private void subscribeRoom() {
+        StompClient stomp = StompClient.getInstance();
+        stomp.connect();
+        subscriptions.add(stomp.<ConferenceEventDTO>subscribe("/topic/conference/" + currentRoomId, ConferenceEventDTO.class,
+            event -> Platform.runLater(() -> onEvent(event)),
+            () -> Platform.runLater(this::catchUp)));
+        catchUp();
     }
-    
+
     /**
-     * 轮询参与者列表
+     * 收到一个事件（FX线程）：重复的丢弃，连续的直接应用，出现空洞先缓存再补拉
      */
-    private void pollParticipants() {
-        try {
-            var responseType = com.google.gson.reflect.TypeToken.getParameterized(
-                ApiResponse.class,
-                ConferenceResponse.class
-            ).getType();
-            
-            ApiResponse<ConferenceResponse> apiResponse = HttpClientService.get(
-                "/api/conference/" + currentRoomId,
-                responseType
-            );
-            
-            if (apiResponse.getCode() == 200) {
-                ConferenceResponse data = apiResponse.getData();
-                Platform.runLater(() -> {
+    private void onEvent(ConferenceEventDTO event) {
+        if (catchingUp) {
+            pendingEvents.add(event);
+            return;
+        }
+        if (event.getSeq() <= lastSeq) {
+            return;
+        }
+        if (event.getSeq() == lastSeq + 1) {
+            applyEvent(event);
+            lastSeq = event.getSeq();
+        } else {
+            pendingEvents.add(event);
+            catchUp();
+        }
+    }
+
+    private void applyEvent(ConferenceEventDTO event) {
+        switch (event.getType()) {
+            case ConferenceEventDTO.PARTICIPANT_JOINED:
+            case ConferenceEventDTO.PARTICIPANT_LEFT:
+                updateParticipantList(event.getParticipants());
+                // 新参与者并行发起呼叫
+                inviteParticipants(event.getParticipants());
+                break;
+            case ConferenceEventDTO.MESSAGE_ADDED:
+                chatMessages.add(event.getMessage());
+                if (chatMessages.size() > MAX_CHAT_MESSAGES) {
+                    chatMessages.remove(0);
+                }
+                updateChatArea(chatMessages);
+                break;
+            case ConferenceEventDTO.ROOM_CLOSED:
+                statusLabel.setText("会议室已关闭");
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 补拉lastSeq之后的事件（FX线程）；服务器已不保留时用返回的快照重建
+     */
+    private void catchUp() {
+        if (catchingUp) {
+            return;
+        }
+        catchingUp = true;
+        String endpoint = "/api/conference/" + currentRoomId + "/events?afterSeq=" + lastSeq;
+        requests.track(HttpClientService.<ConferenceEventsResponse>getAsync(endpoint, ApiTypes.CONFERENCE_EVENTS))
+            .whenCompleteAsync((apiResponse, error) -> {
+                catchingUp = false;
+                if (error != null) {
+                    if (!RequestScope.isCancelled(error)) {
+                        System.err.println("补拉会议事件失败: " + RequestScope.unwrap(error).getMessage());
+                    }
+                    return;
+                }
+                if (apiResponse.getCode() != 200 || apiResponse.getData() == null) {
+                    System.err.println("补拉会议事件失败: " + apiResponse.getMessage());
+                    return;
+                }
+
+                ConferenceEventsResponse data = apiResponse.getData();
+                if (data.isTruncated()) {
+                    chatMessages.clear();
+                    chatMessages.addAll(data.getMessages());
+                    updateChatArea(chatMessages);
                     updateParticipantList(data.getParticipants());
-                });
-                
-                // 检查是否有新参与者加入
-                for (String participant : data.getParticipants()) {
-                    if (!participant.equals(currentUsername) && 
-                        !participantVideoBoxes.containsKey(participant)) {
-                        // 新参与者，发起呼叫
-                        inviteParticipant(participant);
+                    inviteParticipants(data.getParticipants());
+                    lastSeq = data.getLastSeq();
+                } else {
+                    for (ConferenceEventDTO event : data.getEvents()) {
+                        if (event.getSeq() == lastSeq + 1) {
+                            applyEvent(event);
+                            lastSeq = event.getSeq();
+                        }
                     }
                 }
-            }
-        } catch (Exception e) {
-            System.err.println("轮询参与者失败: " + e.getMessage());
-        }
+
+                // 补拉期间推送来的事件按序号重新处理
+                List<ConferenceEventDTO> pending = new ArrayList<>(pendingEvents);
+                pendingEvents.clear();
+                pending.sort(Comparator.comparingLong(ConferenceEventDTO::getSeq));
+                for (ConferenceEventDTO event : pending) {
+                    onEvent(event);
+                }
+            }, RequestScope.FX);
     }
     
     /**
@@ -354,6 +445,8 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
         String videoKey = username;
         if (username.contains(" (我)")) {
             videoKey = username.replace(" (我)", "");  // 移除"(我)"标识
+            // 本地预览直接使用采集的原始帧
+            mediaManager.setLocalVideoView(videoView);
         }
         mediaManager.setVideoView(videoKey, videoView);
         
@@ -371,6 +464,7 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
     
     @Override
     public void onParticipantConnected(String username, String sdp) {
+        pendingInvites.remove(username);
         Platform.runLater(() -> {
             statusLabel.setText(username + " 已连接");
 
@@ -412,13 +506,25 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
         });
     }
     
+    @Override
+    public void onParticipantFailed(String username, int statusCode, String reason) {
+        pendingInvites.remove(username);
+        // 对方可能同时呼叫了我们并已建立连接，此时保留已有的媒体流
+        if (participantVideoBoxes.containsKey(username)) {
+            return;
+        }
+        // 释放为该呼叫准备的媒体资源，下次轮询时会重新呼叫
+        mediaManager.removeParticipant(username);
+        Platform.runLater(() -> {
+            statusLabel.setText("呼叫 " + username + " 失败: " + statusCode + " " + reason);
+        });
+    }
+    
     @Override
     public void onIncomingConferenceCall(String caller, String sdp, ServerTransaction transaction, Request request) {
         // 自动接受群聊呼叫
         Platform.runLater(() -> {
             try {
-                int participantIndex;
-
                 // 使用同步块防止并发问题
                 synchronized(participantVideoBoxes) {
                     // 创建视频显示框
@@ -427,11 +533,10 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
                         participantVideoBoxes.put(caller, videoBox);
                         updateVideoGrid();
                     }
-                    participantIndex = participantVideoBoxes.size() - 1;
                 }
 
                 // 创建应答SDP
-                String answerSdp = mediaManager.createSdpOffer(sdp.contains("m=video"), participantIndex);
+                String answerSdp = mediaManager.prepareParticipant(caller, sdp.contains("m=video"));
 
                 // 发送200 OK
                 javax.sip.message.Response okResponse = sipManager.getMessageFactory().createResponse(
@@ -497,32 +602,29 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
      */
     private void leaveConference() {
         try {
-            // 停止轮询
-            if (pollTimer != null) {
-                pollTimer.cancel();
+            // 取消推送订阅
+            for (StompClient.Subscription subscription : subscriptions) {
+                subscription.unsubscribe();
             }
+            subscriptions.clear();
+            inviteExecutor.shutdownNow();
+            pendingInvites.clear();
 
-            // 停止消息轮询
-            if (messagePolltimer != null) {
-                messagePolltimer.cancel();
-            }
+            // 窗口要关了，未返回的请求结果不再需要
+            requests.cancelAll();
 
-            // 通知服务器离开
+            // 通知服务器离开（不等待结果）
             ConferenceRequest request = new ConferenceRequest();
             request.setUsername(currentUsername);
             request.setRoomId(currentRoomId);
             request.setAction("leave");
 
-            var responseType = com.google.gson.reflect.TypeToken.getParameterized(
-                ApiResponse.class,
-                ConferenceResponse.class
-            ).getType();
-
-            HttpClientService.post(
-                "/api/conference/leave",
-                request,
-                responseType
-            );
+            HttpClientService.postAsync("/api/conference/leave", request, ApiTypes.CONFERENCE)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        System.err.println("通知服务器离开失败: " + RequestScope.unwrap(error).getMessage());
+                    }
+                });
 
             // 停止所有SIP连接
             sipManager.hangupAll();
@@ -558,30 +660,24 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
 
         try {
             // 创建消息DTO
-            var messageDTO = new com.sipex.common.dto.ConferenceMessageDTO();
+            var messageDTO = new ConferenceMessageDTO();
             messageDTO.setRoomId(currentRoomId);
             messageDTO.setFromUser(currentUsername);
             messageDTO.setContent(content);
             messageDTO.setMessageType("text");
 
-            // 发送到服务器
-            var responseType = com.google.gson.reflect.TypeToken.getParameterized(
-                ApiResponse.class,
-                com.sipex.common.dto.ConferenceMessageDTO.class
-            ).getType();
-
-            HttpClientService.post(
-                "/api/conference/" + currentRoomId + "/message",
-                messageDTO,
-                responseType
-            );
+            // 发送到服务器，自己的消息也会通过订阅推送回来
+            requests.track(HttpClientService.postAsync("/api/conference/" + currentRoomId + "/message", messageDTO, ApiTypes.CONFERENCE_MESSAGE))
+                .whenCompleteAsync((response, error) -> {
+                    if (error != null && !RequestScope.isCancelled(error)) {
+                        System.err.println("发送消息失败: " + RequestScope.unwrap(error).getMessage());
+                        statusLabel.setText("发送消息失败");
+                    }
+                }, RequestScope.FX);
 
             // 清空输入框
             messageInput.clear();
 
-            // 立即刷新消息
-            refreshMessages();
-
         } catch (Exception e) {
             System.err.println("发送消息失败: " + e.getMessage());
             e.printStackTrace();
@@ -591,57 +687,10 @@ public class ConferenceController implements ConferenceSipManager.ConferenceCall
         }
     }
 
-    /**
-     * 启动消息轮询
-     */
-    private void startMessagePolling() {
-        messagePolltimer = new Timer("Message-Poller", true);
-        messagePolltimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                refreshMessages();
-            }
-        }, 1000, 1000); // 每1秒轮询一次
-    }
-
-    /**
-     * 刷新消息列表
-     */
-    private void refreshMessages() {
-        try {
-            var responseType = com.google.gson.reflect.TypeToken.getParameterized(
-                ApiResponse.class,
-                com.google.gson.reflect.TypeToken.getParameterized(
-                    List.class,
-                    com.sipex.common.dto.ConferenceMessageDTO.class
-                ).getType()
-            ).getType();
-
-            ApiResponse<?> apiResponse = HttpClientService.get(
-                "/api/conference/" + currentRoomId + "/messages?limit=50",
-                responseType
-            );
-
-            if (apiResponse.getCode() == 200) {
-                @SuppressWarnings("unchecked")
-                List<com.sipex.common.dto.ConferenceMessageDTO> messages =
-                    (List<com.sipex.common.dto.ConferenceMessageDTO>) apiResponse.getData();
-
-                // 只有新消息才更新UI
-                if (messages.size() != lastMessageCount) {
-                    lastMessageCount = messages.size();
-                    Platform.runLater(() -> updateChatArea(messages));
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("刷新消息失败: " + e.getMessage());
-        }
-    }
-
     /**
      * 更新聊天区域
      */
-    private void updateChatArea(List<com.sipex.common.dto.ConferenceMessageDTO> messages) {
+    private void updateChatArea(List<ConferenceMessageDTO> messages) {
         StringBuilder sb = new StringBuilder();
         for (var message : messages) {
             String sender = message.getFromUser();
@@ -1,15 +1,21 @@
 package com.sipex.client.ui;
 
-import com.google.gson.reflect.TypeToken;
 import com.sipex.client.config.ClientConfig;
 import com.sipex.client.media.MediaManager;
+import com.sipex.client.service.ContactResolver;
 import com.sipex.client.service.HttpClientService;
 import com.sipex.client.service.MessageService;
+import com.sipex.client.service.StompClient;
+import com.sipex.client.util.ApiTypes;
 import com.sipex.client.util.GsonUtil;
+import com.sipex.client.util.RequestScope;
+import com.sipex.client.util.CallSetupTracer;
 import com.sipex.client.sip.SipCallListener;
 import com.sipex.client.sip.SipManager;
 import com.sipex.client.sip.SipMessageListener;
 import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.CallRequest;
+import com.sipex.common.dto.ContactInfoDTO;
 import com.sipex.common.dto.LoginRequest;
 import com.sipex.common.dto.MessageDTO;
 import com.sipex.common.entity.Group;
@@ -32,8 +38,10 @@ import javax.sip.message.Response;
 import java.io.File;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class MainController implements SipCallListener, SipMessageListener {
 
@@ -70,6 +78,16 @@ public class MainController implements SipCallListener, SipMessageListener {
     private boolean inCall = false; // 通话状态标志
     private javax.sip.Dialog currentDialog; // 当前通话的Dialog
 
+    private final RequestScope chatRequests = new RequestScope(); // 当前会话发出的请求
+
+    // 推送订阅（目的地 -> 订阅），只在FX线程访问
+    private final Map<String, StompClient.Subscription> contactSubscriptions = new HashMap<>();
+    private final Map<String, StompClient.Subscription> groupSubscriptions = new HashMap<>();
+
+    // 最近显示过的私聊消息（发送者+内容 -> 显示时间），用于SIP和推送去重
+    private static final long DUPLICATE_WINDOW_MS = 10 * 1000;
+    private final Map<String, Long> recentIncoming = new HashMap<>();
+
     @FXML
     public void initialize() {
         // 初始化SIP和媒体管理器
@@ -118,12 +136,22 @@ public class MainController implements SipCallListener, SipMessageListener {
             return;
         }
 
-        try {
-            // 登录到服务器
-            LoginRequest loginRequest = new LoginRequest(username, password);
-            var type = new TypeToken<ApiResponse<Map<String, Object>>>(){}.getType();
-            ApiResponse<Map<String, Object>> response = HttpClientService.post("/api/auth/login", loginRequest, type);
+        // 登录到服务器，响应回到FX线程处理
+        loginButton.setDisable(true);
+        LoginRequest loginRequest = new LoginRequest(username, password);
+        HttpClientService.<Map<String, Object>>postAsync("/api/auth/login", loginRequest, ApiTypes.OBJECT_MAP)
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    loginButton.setDisable(false);
+                    showAlert("错误", "登录失败: " + RequestScope.unwrap(error).getMessage());
+                    return;
+                }
+                onLoginResponse(response, username, password);
+            }, RequestScope.FX);
+    }
 
+    private void onLoginResponse(ApiResponse<Map<String, Object>> response, String username, String password) {
+        try {
             if (response.getCode() == 200) {
                 Map<String, Object> data = response.getData();
                 // 使用Gson解析User对象
@@ -144,6 +172,10 @@ public class MainController implements SipCallListener, SipMessageListener {
                 sipManager.initialize(username, password);
                 sipManager.register();
                 sipStatusLabel.setText("已注册");
+                publishContact();
+
+                // 建立推送连接，订阅私聊消息和来电通知
+                subscribePersonalQueues();
 
                 // 加载联系人和群组
                 loadContacts();
@@ -161,47 +193,129 @@ public class MainController implements SipCallListener, SipMessageListener {
 
                 showAlert("成功", "登录成功！");
             } else {
+                loginButton.setDisable(false);
                 showAlert("错误", response.getMessage());
             }
         } catch (Exception e) {
             e.printStackTrace();
+            loginButton.setDisable(false);
             showAlert("错误", "登录失败: " + e.getMessage());
         }
     }
 
     private void loadContacts() {
-        try {
-            var type = new TypeToken<ApiResponse<List<User>>>(){}.getType();
-            ApiResponse<List<User>> response = HttpClientService.get(
-                "/api/users/" + currentUser.getId() + "/friends", 
-                type
-            );
-            if (response.getCode() == 200 && response.getData() != null) {
-                Platform.runLater(() -> {
-                    contactListView.getItems().clear();
-                    contactListView.getItems().addAll(response.getData());
-                });
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        HttpClientService.<List<User>>getAsync("/api/users/" + currentUser.getId() + "/friends", ApiTypes.USER_LIST)
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    System.err.println("加载联系人失败: " + RequestScope.unwrap(error).getMessage());
+                } else if (response.getCode() == 200 && response.getData() != null) {
+                    contactListView.getItems().setAll(response.getData());
+                    subscribeContacts(response.getData());
+                }
+            }, RequestScope.FX);
     }
 
     private void loadGroups() {
-        try {
-            var type = new TypeToken<ApiResponse<List<Group>>>(){}.getType();
-            ApiResponse<List<Group>> response = HttpClientService.get(
-                "/api/groups/user/" + currentUser.getId(), 
-                type
-            );
-            if (response.getCode() == 200 && response.getData() != null) {
-                Platform.runLater(() -> {
-                    groupListView.getItems().clear();
-                    groupListView.getItems().addAll(response.getData());
-                });
+        HttpClientService.<List<Group>>getAsync("/api/groups/user/" + currentUser.getId(), ApiTypes.GROUP_LIST)
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    System.err.println("加载群组失败: " + RequestScope.unwrap(error).getMessage());
+                } else if (response.getCode() == 200 && response.getData() != null) {
+                    groupListView.getItems().setAll(response.getData());
+                    subscribeGroups(response.getData());
+                }
+            }, RequestScope.FX);
+    }
+
+    /**
+     * 订阅发给自己的私聊消息和来电通知；断线重连后重新加载当前会话
+     */
+    private void subscribePersonalQueues() {
+        StompClient stomp = StompClient.getInstance();
+        stomp.connect();
+        String me = currentUser.getUsername();
+        stomp.<Message>subscribe("/queue/user/" + me, Message.class,
+            message -> Platform.runLater(() -> showIncomingMessage(message.getFromUser(), message.getContent())),
+            () -> Platform.runLater(this::reloadCurrentChat));
+        stomp.<CallRequest>subscribe("/queue/call/" + me, CallRequest.class,
+            request -> System.out.println("📞 来电通知: " + request.getCaller() + " (" + request.getCallType() + ")"));
+    }
+
+    /**
+     * 订阅好友的联系地址变化，更新直连地址缓存
+     */
+    private void subscribeContacts(List<User> friends) {
+        Set<String> current = new HashSet<>();
+        for (User friend : friends) {
+            current.add("/topic/contact/" + friend.getUsername());
+        }
+        resubscribe(contactSubscriptions, current, destination ->
+            StompClient.getInstance().<ContactInfoDTO>subscribe(destination, ContactInfoDTO.class, ContactResolver::onContactChanged));
+    }
+
+    /**
+     * 订阅所在群组的消息
+     */
+    private void subscribeGroups(List<Group> groups) {
+        Set<String> current = new HashSet<>();
+        for (Group group : groups) {
+            current.add("/topic/group/" + group.getId());
+        }
+        resubscribe(groupSubscriptions, current, destination ->
+            StompClient.getInstance().<Message>subscribe(destination, Message.class,
+                message -> Platform.runLater(() -> onGroupMessage(message))));
+    }
+
+    /**
+     * 列表刷新后只增删有变化的订阅
+     */
+    private void resubscribe(Map<String, StompClient.Subscription> subscriptions, Set<String> destinations,
+                             java.util.function.Function<String, StompClient.Subscription> subscriber) {
+        subscriptions.entrySet().removeIf(entry -> {
+            if (destinations.contains(entry.getKey())) {
+                return false;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            entry.getValue().unsubscribe();
+            return true;
+        });
+        for (String destination : destinations) {
+            subscriptions.computeIfAbsent(destination, subscriber);
+        }
+    }
+
+    /**
+     * 私聊消息可能经SIP MESSAGE和服务器推送各到一次，短时间内相同的只显示一次
+     */
+    private void showIncomingMessage(String sender, String content) {
+        long now = System.currentTimeMillis();
+        recentIncoming.values().removeIf(shownAt -> now - shownAt > DUPLICATE_WINDOW_MS);
+        if (recentIncoming.putIfAbsent(sender + "\n" + content, now) != null) {
+            return;
+        }
+
+        // 如果当前正在和发送者聊天，显示消息
+        if (currentContact != null && currentContact.getUsername().equals(sender)) {
+            Message msg = new Message(null, sender, currentUser.getUsername(), content, "TEXT", null, false, false, java.time.LocalDateTime.now());
+            messageListView.getItems().add(formatMessage(msg));
+        }
+
+        // 显示通知
+        showAlert("新消息", sender + ": " + content);
+    }
+
+    private void onGroupMessage(Message message) {
+        // 自己发的已经在发送时显示过
+        if (currentGroup == null || message.getFromUser().equals(currentUser.getUsername())) {
+            return;
+        }
+        if (currentGroup.getId().toString().equals(message.getToUser())) {
+            messageListView.getItems().add(formatMessage(message));
+        }
+    }
+
+    private void reloadCurrentChat() {
+        if (currentContact != null) {
+            loadChatHistory(currentContact.getUsername());
         }
     }
 
@@ -209,6 +323,8 @@ public class MainController implements SipCallListener, SipMessageListener {
     private void handleContactClick() {
         currentContact = contactListView.getSelectionModel().getSelectedItem();
         currentGroup = null;
+        // 切换会话，丢弃上一个会话还没回来的请求
+        chatRequests.cancelAll();
         if (currentContact != null) {
             chatTitleLabel.setText("与 " + currentContact.getUsername() + " 的聊天");
             contactInfoLabel.setText(
@@ -224,6 +340,7 @@ public class MainController implements SipCallListener, SipMessageListener {
     private void handleGroupClick() {
         currentGroup = groupListView.getSelectionModel().getSelectedItem();
         currentContact = null;
+        chatRequests.cancelAll();
         if (currentGroup != null) {
             chatTitleLabel.setText("群聊: " + currentGroup.getGroupName());
             contactInfoLabel.setText(
@@ -235,22 +352,24 @@ public class MainController implements SipCallListener, SipMessageListener {
     }
 
     private void loadChatHistory(String contactUsername) {
-        try {
-            List<Message> messages = MessageService.getChatHistory(
-                currentUser.getUsername(), 
-                contactUsername, 
-                50
-            );
-            Platform.runLater(() -> {
+        messageListView.getItems().clear();
+        chatRequests.track(MessageService.getChatHistoryAsync(currentUser.getUsername(), contactUsername, 50))
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    if (!RequestScope.isCancelled(error)) {
+                        System.err.println("加载聊天记录失败: " + RequestScope.unwrap(error).getMessage());
+                    }
+                    return;
+                }
+                if (response.getCode() != 200 || response.getData() == null) {
+                    return;
+                }
                 messageListView.getItems().clear();
-                for (Message msg : messages) {
+                for (Message msg : response.getData()) {
                     String displayText = formatMessage(msg);
                     messageListView.getItems().add(0, displayText);
                 }
-            });
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+            }, RequestScope.FX);
     }
 
     private String formatMessage(Message msg) {
@@ -288,7 +407,11 @@ public class MainController implements SipCallListener, SipMessageListener {
             messageDTO.setType("TEXT");
             messageDTO.setIsGroup(isGroup);
 
-            MessageService.sendMessage(messageDTO);
+            MessageService.sendMessageAsync(messageDTO).whenComplete((response, error) -> {
+                if (error != null) {
+                    System.err.println("保存消息失败: " + RequestScope.unwrap(error).getMessage());
+                }
+            });
 
             // 显示在界面上
             String displayText = formatMessage(new Message(
@@ -327,15 +450,21 @@ public class MainController implements SipCallListener, SipMessageListener {
     }
 
     private void uploadAndSendFile(File file, String type) {
-        try {
-            // 上传文件到服务器
-            ApiResponse<Map<String, String>> uploadResponse = HttpClientService.uploadFile(file);
-            if (uploadResponse.getCode() == 200) {
-                // 获取文件URL并发送消息
+        if (currentContact == null && currentGroup == null) {
+            showAlert("提示", "请先选择联系人或群组");
+            return;
+        }
+        // 接收方在选择文件时确定，上传过程中切换会话不影响
+        String toUser = currentContact != null ? currentContact.getUsername() : currentGroup.getId().toString();
+        boolean isGroup = currentGroup != null;
+
+        // 上传文件到服务器，拿到URL后再保存消息
+        HttpClientService.uploadFileAsync(file)
+            .thenCompose(uploadResponse -> {
+                if (uploadResponse.getCode() != 200) {
+                    throw new IllegalStateException(uploadResponse.getMessage());
+                }
                 String fileUrl = uploadResponse.getData().get("url");
-                
-                String toUser = currentContact != null ? currentContact.getUsername() : currentGroup.getId().toString();
-                boolean isGroup = currentGroup != null;
 
                 MessageDTO messageDTO = new MessageDTO();
                 messageDTO.setFromUser(currentUser.getUsername());
@@ -344,15 +473,16 @@ public class MainController implements SipCallListener, SipMessageListener {
                 messageDTO.setType(type);
                 messageDTO.setFileUrl(fileUrl);
                 messageDTO.setIsGroup(isGroup);
-
-                MessageService.sendMessage(messageDTO);
-
-                showAlert("成功", "文件发送成功");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            showAlert("错误", "文件发送失败: " + e.getMessage());
-        }
+                return MessageService.sendMessageAsync(messageDTO);
+            })
+            .whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    RequestScope.unwrap(error).printStackTrace();
+                    showAlert("错误", "文件发送失败: " + RequestScope.unwrap(error).getMessage());
+                } else {
+                    showAlert("成功", "文件发送成功");
+                }
+            }, RequestScope.FX);
     }
 
     @FXML
@@ -367,8 +497,16 @@ public class MainController implements SipCallListener, SipMessageListener {
             mediaManager.stopStreams();
             
             String sdp = mediaManager.createSdpOffer(false);
-            sipManager.makeCall(currentContact.getUsername(), sdp);
-            showAlert("呼叫", "正在呼叫 " + currentContact.getUsername() + "...");
+            String callee = currentContact.getUsername();
+            // 解析对方地址可能要请求服务器，不在FX线程上等待
+            sipManager.makeCall(callee, sdp).whenCompleteAsync((result, error) -> {
+                if (error != null) {
+                    RequestScope.unwrap(error).printStackTrace();
+                    showAlert("错误", "发起呼叫失败: " + RequestScope.unwrap(error).getMessage());
+                } else {
+                    showAlert("呼叫", "正在呼叫 " + callee + "...");
+                }
+            }, RequestScope.FX);
         } catch (Exception e) {
             e.printStackTrace();
             showAlert("错误", "发起呼叫失败: " + e.getMessage());
@@ -387,8 +525,16 @@ public class MainController implements SipCallListener, SipMessageListener {
             mediaManager.stopStreams();
             
             String sdp = mediaManager.createSdpOffer(true);
-            sipManager.makeCall(currentContact.getUsername(), sdp);
-            showAlert("呼叫", "正在视频呼叫 " + currentContact.getUsername() + "...");
+            String callee = currentContact.getUsername();
+            // 解析对方地址可能要请求服务器，不在FX线程上等待
+            sipManager.makeCall(callee, sdp).whenCompleteAsync((result, error) -> {
+                if (error != null) {
+                    RequestScope.unwrap(error).printStackTrace();
+                    showAlert("错误", "发起视频呼叫失败: " + RequestScope.unwrap(error).getMessage());
+                } else {
+                    showAlert("呼叫", "正在视频呼叫 " + callee + "...");
+                }
+            }, RequestScope.FX);
         } catch (Exception e) {
             e.printStackTrace();
             showAlert("错误", "发起视频呼叫失败: " + e.getMessage());
@@ -422,6 +568,7 @@ public class MainController implements SipCallListener, SipMessageListener {
             
             // 停止媒体流
             mediaManager.stopStreams();
+            reportCallSetupMetrics();
             
             // 更新UI
             inCall = false;
@@ -587,23 +734,34 @@ public class MainController implements SipCallListener, SipMessageListener {
             remoteVideoView.setVisible(false);
             currentDialog = null;
             mediaManager.stopStreams();
+            reportCallSetupMetrics();
             statusLabel.setText("已连接");
         });
     }
 
+    /**
+     * 后台上报本机SIP联系地址，其他用户据此直接解析
+     */
+    private void publishContact() {
+        ContactResolver.publishAsync(sipManager.getLocalContactInfo());
+    }
+
+    /**
+     * 通话结束后打印并上报呼叫建立延迟统计
+     */
+    private void reportCallSetupMetrics() {
+        CallSetupTracer tracer = CallSetupTracer.getInstance();
+        System.out.println("📊 呼叫建立延迟统计:\n" + tracer.dump());
+        if (currentUser == null) {
+            return;
+        }
+        tracer.reportAsync(currentUser.getUsername());
+    }
+
     // SipMessageListener接口实现
     @Override
     public void onMessageReceived(String sender, String content) {
-        Platform.runLater(() -> {
-            // 如果当前正在和发送者聊天，显示消息
-            if (currentContact != null && currentContact.getUsername().equals(sender)) {
-                Message msg = new Message(null, sender, currentUser.getUsername(), content, "TEXT", null, false, false, java.time.LocalDateTime.now());
-                messageListView.getItems().add(formatMessage(msg));
-            }
-            
-            // 显示通知
-            showAlert("新消息", sender + ": " + content);
-        });
+        Platform.runLater(() -> showIncomingMessage(sender, content));
     }
 
     private void showAlert(String title, String content) {
@@ -693,7 +851,7 @@ public class MainController implements SipCallListener, SipMessageListener {
         TextInputDialog dialog = new TextInputDialog();
         dialog.setTitle("加入会议室");
         dialog.setHeaderText("输入会议室号");
-        dialog.setContentText("请输入会议室号（如：ROOM-1234）：");
+        dialog.setContentText("请输入会议室号（如：ROOM-123456）：");
         
         dialog.showAndWait().ifPresent(roomId -> {
             if (roomId.trim().isEmpty()) {
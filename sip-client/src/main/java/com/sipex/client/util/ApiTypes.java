@@ -0,0 +1,52 @@
+package com.sipex.client.util;
+
+import com.google.gson.reflect.TypeToken;
+import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.ConferenceEventsResponse;
+import com.sipex.common.dto.ConferenceMessageDTO;
+import com.sipex.common.dto.ConferenceResponse;
+import com.sipex.common.entity.CallLog;
+import com.sipex.common.entity.Group;
+import com.sipex.common.entity.Message;
+import com.sipex.common.entity.User;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ApiResponse&lt;T&gt; 的反序列化类型缓存
+ * 常用类型做成常量，其余按数据类型缓存，不用每次调用都创建匿名TypeToken
+ */
+public class ApiTypes {
+
+    private static final Map<Type, Type> cache = new ConcurrentHashMap<>();
+
+    public static final Type VOID = of(Void.class);
+    public static final Type OBJECT_MAP = of(new TypeToken<Map<String, Object>>(){}.getType());
+    public static final Type STRING_MAP = of(new TypeToken<Map<String, String>>(){}.getType());
+    public static final Type USER_LIST = listOf(User.class);
+    public static final Type GROUP_LIST = listOf(Group.class);
+    public static final Type MESSAGE = of(Message.class);
+    public static final Type MESSAGE_LIST = listOf(Message.class);
+    public static final Type CALL_LOG_LIST = listOf(CallLog.class);
+    public static final Type CONFERENCE = of(ConferenceResponse.class);
+    public static final Type CONFERENCE_MESSAGE = of(ConferenceMessageDTO.class);
+    public static final Type CONFERENCE_MESSAGE_LIST = listOf(ConferenceMessageDTO.class);
+    public static final Type CONFERENCE_EVENTS = of(ConferenceEventsResponse.class);
+
+    /**
+     * ApiResponse&lt;dataType&gt;
+     */
+    public static Type of(Type dataType) {
+        return cache.computeIfAbsent(dataType, t -> TypeToken.getParameterized(ApiResponse.class, t).getType());
+    }
+
+    /**
+     * ApiResponse&lt;List&lt;elementType&gt;&gt;
+     */
+    public static Type listOf(Class<?> elementType) {
+        return of(TypeToken.getParameterized(List.class, elementType).getType());
+    }
+}
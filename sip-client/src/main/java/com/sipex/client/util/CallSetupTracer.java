@@ -0,0 +1,155 @@
+package com.sipex.client.util;
+
+import com.sipex.client.service.HttpClientService;
+import com.sipex.common.dto.CallSetupMetricsDTO;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 呼叫建立延迟追踪
+ * 记录从生成SDP到第一个RTP包收发的各阶段时间点（相对呼叫开始），
+ * 一次呼叫完成后汇总到各阶段的延迟直方图，可打印或上报服务器
+ */
+public class CallSetupTracer {
+
+    /**
+     * 呼叫建立阶段
+     */
+    public enum Phase {
+        SDP_BUILD,          // SDP生成完成
+        INVITE_SENT,        // INVITE已发出
+        RINGING,            // 收到180
+        ANSWERED,           // 收到200 OK
+        ACK_SENT,           // ACK已发出
+        STREAM_START,       // 媒体流已启动
+        FIRST_RTP_SENT,     // 发出第一个RTP包
+        FIRST_RTP_RECEIVED  // 收到第一个RTP包
+    }
+
+    private static final CallSetupTracer instance = new CallSetupTracer();
+
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+
+    // 当前呼叫（一对一通话同一时间只有一个）
+    private long startNanos = 0;
+    private final Map<Phase, Long> currentMarks = new EnumMap<>(Phase.class);
+    private boolean active = false;
+
+    private CallSetupTracer() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public static CallSetupTracer getInstance() {
+        return instance;
+    }
+
+    /**
+     * 开始追踪一次新的呼叫，未完成的上一次呼叫按已有阶段汇总
+     */
+    public synchronized void begin() {
+        if (active) {
+            complete();
+        }
+        startNanos = System.nanoTime();
+        currentMarks.clear();
+        active = true;
+    }
+
+    /**
+     * 记录阶段时间点，同一阶段只记录第一次；没有进行中的呼叫时忽略
+     */
+    public synchronized void mark(Phase phase) {
+        if (!active || currentMarks.containsKey(phase)) {
+            return;
+        }
+        currentMarks.put(phase, (System.nanoTime() - startNanos) / 1_000_000L);
+
+        // 双向媒体都已打通，本次呼叫建立完成
+        if (currentMarks.containsKey(Phase.FIRST_RTP_SENT) && currentMarks.containsKey(Phase.FIRST_RTP_RECEIVED)) {
+            complete();
+        }
+    }
+
+    /**
+     * 呼叫结束（挂断、失败），按已有阶段汇总
+     */
+    public synchronized void end() {
+        if (active) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        active = false;
+        StringBuilder sb = new StringBuilder("⏱ 呼叫建立耗时:");
+        for (Map.Entry<Phase, Long> entry : currentMarks.entrySet()) {
+            histograms.get(entry.getKey()).record(entry.getValue());
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+        }
+        System.out.println(sb);
+    }
+
+    /**
+     * 打印各阶段延迟分布
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-20s %6s %8s %8s %8s %8s%n", "阶段", "次数", "平均", "P50", "P95", "最大"));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram h = histograms.get(phase);
+            sb.append(String.format("%-20s %6d %6dms %6dms %6dms %6dms%n", phase, h.getCount(),
+                h.getMeanMs(), h.getPercentileMs(50), h.getPercentileMs(95), h.getMaxMs()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成上报数据
+     */
+    public CallSetupMetricsDTO snapshot(String username) {
+        List<Long> bounds = new ArrayList<>();
+        for (long bound : LatencyHistogram.BUCKET_BOUNDS_MS) {
+            bounds.add(bound);
+        }
+
+        List<CallSetupMetricsDTO.PhaseLatency> phases = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram h = histograms.get(phase);
+            if (h.getCount() == 0) {
+                continue;
+            }
+            phases.add(new CallSetupMetricsDTO.PhaseLatency(phase.name(), h.getCount(), h.getMeanMs(),
+                h.getPercentileMs(50), h.getPercentileMs(95), h.getMaxMs(), h.getBucketCounts()));
+        }
+
+        String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return new CallSetupMetricsDTO(username, now, bounds, phases);
+    }
+
+    /**
+     * 异步上报到服务器，不阻塞调用线程（可以在UI线程调用）；失败只打日志
+     */
+    public CompletableFuture<Void> reportAsync(String username) {
+        CallSetupMetricsDTO metrics = snapshot(username);
+        if (metrics.getPhases().isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return HttpClientService.<Void>postAsync("/api/calls/setup-metrics", metrics, ApiTypes.VOID)
+            .handle((response, error) -> {
+                if (error != null) {
+                    System.err.println("上报呼叫建立统计失败: " + error.getMessage());
+                } else if (response == null || response.getCode() != 200) {
+                    System.err.println("上报呼叫建立统计失败: " + (response != null ? response.getMessage() : "无响应"));
+                }
+                return null;
+            });
+    }
+}
@@ -12,22 +12,24 @@ import java.time.format.DateTimeFormatter;
 public class GsonUtil {
     
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Gson线程安全，全局共用一个，避免每次调用重新构建类型适配器
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(LocalDateTime.class, (JsonDeserializer<LocalDateTime>) (json, typeOfT, context) -> {
+            String dateTimeStr = json.getAsString();
+            // 处理多种可能的时间格式
+            if (dateTimeStr.contains("T")) {
+                return LocalDateTime.parse(dateTimeStr.replace("Z", ""));
+            } else {
+                return LocalDateTime.parse(dateTimeStr, FORMATTER);
+            }
+        })
+        .registerTypeAdapter(LocalDateTime.class, (JsonSerializer<LocalDateTime>) (src, typeOfSrc, context) -> 
+            new JsonPrimitive(src.format(FORMATTER))
+        )
+        .create();
     
     public static Gson getGson() {
-        return new GsonBuilder()
-            .registerTypeAdapter(LocalDateTime.class, (JsonDeserializer<LocalDateTime>) (json, typeOfT, context) -> {
-                String dateTimeStr = json.getAsString();
-                // 处理多种可能的时间格式
-                if (dateTimeStr.contains("T")) {
-                    return LocalDateTime.parse(dateTimeStr.replace("Z", ""));
-                } else {
-                    return LocalDateTime.parse(dateTimeStr, FORMATTER);
-                }
-            })
-            .registerTypeAdapter(LocalDateTime.class, (JsonSerializer<LocalDateTime>) (src, typeOfSrc, context) -> 
-                new JsonPrimitive(src.format(FORMATTER))
-            )
-            .create();
+        return GSON;
     }
 }
-
@@ -0,0 +1,73 @@
+package com.sipex.client.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 延迟直方图（对数分桶，单位毫秒）
+ * 只记录计数，不保存样本，百分位按桶上界估算
+ */
+public class LatencyHistogram {
+
+    // 各桶上界（毫秒），最后一个桶收集超出范围的样本
+    public static final long[] BUCKET_BOUNDS_MS = {
+        5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000
+    };
+
+    private final long[] counts = new long[BUCKET_BOUNDS_MS.length + 1];
+    private long count = 0;
+    private long sumMs = 0;
+    private long maxMs = 0;
+
+    public synchronized void record(long millis) {
+        long value = Math.max(0, millis);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && value > BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        count++;
+        sumMs += value;
+        maxMs = Math.max(maxMs, value);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMeanMs() {
+        return count == 0 ? 0 : sumMs / count;
+    }
+
+    public synchronized long getMaxMs() {
+        return maxMs;
+    }
+
+    /**
+     * 估算百分位（返回所在桶的上界，最后一个桶返回最大值）
+     *
+     * @param percentile 0~100
+     */
+    public synchronized long getPercentileMs(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return i < BUCKET_BOUNDS_MS.length ? Math.min(BUCKET_BOUNDS_MS[i], maxMs) : maxMs;
+            }
+        }
+        return maxMs;
+    }
+
+    public synchronized List<Long> getBucketCounts() {
+        List<Long> result = new ArrayList<>(counts.length);
+        for (long c : counts) {
+            result.add(c);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package com.sipex.client.util;
+
+import javafx.application.Platform;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 一个视图发出的未完成请求
+ * 视图切换（换联系人、关闭窗口）时 cancelAll，旧请求的结果不会再回写到新视图上
+ */
+public class RequestScope {
+
+    // 在FX线程上执行回调
+    public static final Executor FX = Platform::runLater;
+
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 登记请求；要登记HttpClientService直接返回的future，取消它才会取消底层HTTP调用
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        pending.add(future);
+        future.whenComplete((result, error) -> pending.remove(future));
+        return future;
+    }
+
+    public void cancelAll() {
+        for (CompletableFuture<?> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+
+    /**
+     * 回调里的异常是否只是因为请求被取消
+     */
+    public static boolean isCancelled(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof CancellationException;
+    }
+
+    /**
+     * 去掉CompletionException外壳，拿到真正的异常
+     */
+    public static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
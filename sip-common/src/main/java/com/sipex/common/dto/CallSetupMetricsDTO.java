@@ -0,0 +1,36 @@
+package com.sipex.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 呼叫建立延迟统计DTO（客户端上报）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CallSetupMetricsDTO {
+    private String username;                // 上报用户
+    private String reportTime;              // 上报时间
+    private List<Long> bucketBoundsMs;      // 直方图各桶上界（毫秒），最后一个桶为溢出桶
+    private List<PhaseLatency> phases;      // 各阶段延迟
+
+    /**
+     * 单个阶段的延迟分布（从开始呼叫起算）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PhaseLatency {
+        private String phase;               // 阶段：SDP_BUILD, INVITE_SENT, RINGING ...
+        private long count;                 // 样本数
+        private long meanMs;                // 平均值
+        private long p50Ms;                 // 中位数（按桶估算）
+        private long p95Ms;                 // 95分位（按桶估算）
+        private long maxMs;                 // 最大值
+        private List<Long> bucketCounts;    // 各桶计数
+    }
+}
@@ -0,0 +1,29 @@
+package com.sipex.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 会议室事件
+ * 每个会议室内seq从1开始连续递增，客户端据此发现漏掉的事件并按seq补拉
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConferenceEventDTO {
+    public static final String PARTICIPANT_JOINED = "PARTICIPANT_JOINED";
+    public static final String PARTICIPANT_LEFT = "PARTICIPANT_LEFT";
+    public static final String MESSAGE_ADDED = "MESSAGE_ADDED";
+    public static final String ROOM_CLOSED = "ROOM_CLOSED";
+
+    private String roomId;                  // 会议室ID
+    private long seq;                       // 事件序号
+    private String type;                    // 事件类型
+    private String username;                // 加入/离开的用户
+    private ConferenceMessageDTO message;   // MESSAGE_ADDED 时的消息
+    private List<String> participants;      // 事件发生后的参与者列表
+    private long timestamp;                 // 事件时间（毫秒）
+}
@@ -0,0 +1,23 @@
+package com.sipex.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 会议室事件补拉结果
+ * 请求的序号还在服务器保留的范围内时返回之后的事件；已经被淘汰时 truncated=true，改为返回当前快照
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConferenceEventsResponse {
+    private String roomId;                          // 会议室ID
+    private long lastSeq;                           // 当前最新序号
+    private boolean truncated;                      // 是否需要用快照重建
+    private List<ConferenceEventDTO> events;        // afterSeq之后的事件
+    private List<String> participants;              // 快照：参与者列表
+    private List<ConferenceMessageDTO> messages;    // 快照：最近的消息
+}
@@ -0,0 +1,131 @@
+package com.sipex.common.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会议室消息环形缓冲区（固定容量，线程安全）
+ * 按序号取模定位槽位：取尾部k条是O(k)，按序号查找是O(1)；写满后覆盖最旧的消息，更早的历史从数据库读取
+ */
+public class ConferenceMessageBuffer {
+
+    // 估算每条消息对象本身及字段引用的开销
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+
+    private final ConferenceMessageDTO[] slots;
+    private final long baseSeq;   // 不超过这个序号的消息不在缓冲区（恢复的会议室从这里继续编号）
+    private long lastSeq;         // 最新消息的序号，0表示还没有消息
+    private long estimatedBytes;  // 缓冲区内消息的估算内存占用
+
+    public ConferenceMessageBuffer(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * 从lastSeq之后继续编号的空缓冲区
+     */
+    public ConferenceMessageBuffer(int capacity, long lastSeq) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("容量必须大于0");
+        }
+        this.slots = new ConferenceMessageDTO[capacity];
+        this.baseSeq = lastSeq;
+        this.lastSeq = lastSeq;
+    }
+
+    /**
+     * 追加消息，分配序号并返回
+     */
+    public synchronized long append(ConferenceMessageDTO message) {
+        long seq = ++lastSeq;
+        message.setSeq(seq);
+        int index = indexOf(seq);
+        ConferenceMessageDTO evicted = slots[index];
+        if (evicted != null) {
+            estimatedBytes -= estimateBytes(evicted);
+        }
+        slots[index] = message;
+        estimatedBytes += estimateBytes(message);
+        return seq;
+    }
+
+    /**
+     * 按序号查找，不在缓冲区内返回null
+     */
+    public synchronized ConferenceMessageDTO get(long seq) {
+        if (seq < firstSeq() || seq > lastSeq) {
+            return null;
+        }
+        return slots[indexOf(seq)];
+    }
+
+    /**
+     * 最近的limit条（从旧到新）
+     */
+    public synchronized List<ConferenceMessageDTO> tail(int limit) {
+        long from = Math.max(firstSeq(), lastSeq - limit + 1);
+        return range(from, lastSeq);
+    }
+
+    /**
+     * 序号大于afterSeq的消息，最多limit条（从旧到新）；比缓冲区更早的部分不包含
+     */
+    public synchronized List<ConferenceMessageDTO> after(long afterSeq, int limit) {
+        long from = Math.max(firstSeq(), afterSeq + 1);
+        long to = Math.min(lastSeq, from + limit - 1);
+        return range(from, to);
+    }
+
+    /**
+     * 缓冲区内最旧消息的序号（缓冲区为空时为 lastSeq+1）
+     */
+    public synchronized long getFirstSeq() {
+        return firstSeq();
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    public synchronized int size() {
+        return (int) (lastSeq - firstSeq() + 1);
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private long firstSeq() {
+        return Math.max(baseSeq + 1, lastSeq - slots.length + 1);
+    }
+
+    private int indexOf(long seq) {
+        return (int) ((seq - 1) % slots.length);
+    }
+
+    private List<ConferenceMessageDTO> range(long from, long to) {
+        List<ConferenceMessageDTO> result = new ArrayList<>((int) Math.max(0, to - from + 1));
+        for (long seq = from; seq <= to; seq++) {
+            result.add(slots[indexOf(seq)]);
+        }
+        return result;
+    }
+
+    private static long estimateBytes(ConferenceMessageDTO message) {
+        return MESSAGE_OVERHEAD_BYTES
+                + stringBytes(message.getRoomId())
+                + stringBytes(message.getFromUser())
+                + stringBytes(message.getContent())
+                + stringBytes(message.getTimestamp())
+                + stringBytes(message.getMessageType());
+    }
+
+    private static long stringBytes(String value) {
+        // 对象头+数组头约40字节，字符按2字节估算
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+}
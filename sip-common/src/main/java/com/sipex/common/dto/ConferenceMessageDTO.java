@@ -16,4 +16,5 @@ public class ConferenceMessageDTO {
     private String content;         // 消息内容
     private String timestamp;       // 时间戳
     private String messageType;     // 消息类型：text, system
+    private Long seq;               // 会议室内的消息序号，从1递增
 }
@@ -11,6 +11,7 @@ import java.util.List;
 /**
  * 会议室数据模型
  * 用于临时会议室管理（不持久化到数据库）
+ * 非线程安全：服务端只在会议室自己的Actor里修改，消息缓冲区除外（可并发读）
  */
 @Data
 @NoArgsConstructor
@@ -21,12 +22,18 @@ public class ConferenceRoom {
     private LocalDateTime createdAt;                 // 创建时间
     private LocalDateTime lastActivityAt;            // 最后活动时间
     private int maxParticipants;                     // 最大参与者数量（默认5）
-    private List<ConferenceMessageDTO> messages;     // 会议室消息列表
-    
+    private ConferenceMessageBuffer messages;        // 最近的会议室消息（环形缓冲区）
+
+    public static final int DEFAULT_MESSAGE_CAPACITY = 200;
+
     public ConferenceRoom(String roomId) {
+        this(roomId, DEFAULT_MESSAGE_CAPACITY);
+    }
+
+    public ConferenceRoom(String roomId, int messageCapacity) {
         this.roomId = roomId;
         this.participants = new ArrayList<>();
-        this.messages = new ArrayList<>();
+        this.messages = new ConferenceMessageBuffer(messageCapacity);
         this.createdAt = LocalDateTime.now();
         this.lastActivityAt = LocalDateTime.now();
         this.maxParticipants = 5;
@@ -83,19 +90,29 @@ public class ConferenceRoom {
      * 添加消息
      */
     public void addMessage(ConferenceMessageDTO message) {
-        this.messages.add(message);
+        messages.append(message);
         updateActivity();
     }
 
     /**
-     * 获取最近的消息
+     * 恢复的会议室：消息从lastSeq之后继续编号，之前的消息只在数据库里
+     */
+    public void restoreMessageSeq(long lastSeq) {
+        this.messages = new ConferenceMessageBuffer(messages.getCapacity(), lastSeq);
+    }
+
+    /**
+     * 获取最近的消息（只含缓冲区内的）
      */
     public List<ConferenceMessageDTO> getRecentMessages(int limit) {
-        int size = messages.size();
-        if (size <= limit) {
-            return new ArrayList<>(messages);
-        }
-        return new ArrayList<>(messages.subList(size - limit, size));
+        return messages.tail(limit);
+    }
+
+    /**
+     * 获取序号大于afterSeq的消息，最多limit条（从旧到新，只含缓冲区内的）
+     */
+    public List<ConferenceMessageDTO> getMessagesAfter(long afterSeq, int limit) {
+        return messages.after(afterSeq, limit);
     }
 }
 
@@ -0,0 +1,24 @@
+package com.sipex.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用户联系地址DTO（用户名 -> 当前SIP Contact和媒体地址）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactInfoDTO {
+    private String username;        // 用户名
+    private String sipContact;      // SIP Contact URI，如 sip:alice@192.168.1.5:5123;transport=tcp
+    private String sipHost;         // Contact主机
+    private Integer sipPort;        // Contact端口
+    private String transport;       // udp / tcp / tls
+    private String mediaHost;       // 媒体（RTP）地址
+    private String source;          // 来源：LOGIN（客户端上报）/ REGISTER（内嵌注册服务器）
+    private Long version;           // 版本号，每次变化递增
+    private Long updatedAt;         // 更新时间（毫秒）
+    private Integer ttlSeconds;     // 客户端缓存有效期
+}
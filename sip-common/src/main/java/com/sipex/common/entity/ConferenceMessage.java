@@ -15,6 +15,7 @@ import java.time.LocalDateTime;
 public class ConferenceMessage {
     private Long id;
     private String roomId;              // 会议室ID
+    private Long seq;                   // 会议室内的消息序号
     private String fromUser;            // 发送者用户名
     private String content;             // 消息内容
     private String messageType;         // 消息类型: text, system
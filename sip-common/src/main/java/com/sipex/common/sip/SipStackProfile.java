@@ -0,0 +1,105 @@
+package com.sipex.common.sip;
+
+import java.util.Properties;
+
+/**
+ * SIP协议栈配置档
+ * 客户端的SipManager、ConferenceSipManager和压测工具共用，通过 -Dsip.profile=DEVELOPMENT|PRODUCTION 选择，默认PRODUCTION
+ *
+ * DEVELOPMENT：TRACE_LEVEL=32，每条消息同步写入 siplog_/sipserver_ 文件，便于抓包排查
+ * PRODUCTION：关闭消息跟踪和日志文件，放大线程池、事务表和套接字缓冲区，复用TCP连接
+ */
+public enum SipStackProfile {
+
+    DEVELOPMENT("32", true, 1, 2, 1000, 1000, 64 * 1024, 64 * 1024, 1, false),
+    PRODUCTION("0", false, 4, 4, 10000, 10000, 1024 * 1024, 256 * 1024, 4, true);
+
+    public static final String PROPERTY = "sip.profile";
+
+    private final String traceLevel;             // 协议栈跟踪级别
+    private final boolean logToFile;             // 是否写 DEBUG_LOG / SERVER_LOG 文件
+    private final int threadPoolSize;            // 协议栈消息处理线程数
+    private final int dispatcherThreads;         // 应用层回调分发线程数（SipEventDispatcher）
+    private final int maxServerTransactions;     // 服务端事务表上限
+    private final int maxClientTransactions;     // 客户端事务表上限
+    private final int receiveUdpBufferSize;      // UDP接收缓冲区（字节），突发请求排队在内核里
+    private final int sendUdpBufferSize;         // UDP发送缓冲区（字节）
+    private final int tcpPostParsingThreads;     // TCP解析后处理线程数
+    private final boolean cacheConnections;      // 复用TCP连接
+
+    SipStackProfile(String traceLevel, boolean logToFile, int threadPoolSize, int dispatcherThreads,
+                    int maxServerTransactions, int maxClientTransactions,
+                    int receiveUdpBufferSize, int sendUdpBufferSize,
+                    int tcpPostParsingThreads, boolean cacheConnections) {
+        this.traceLevel = traceLevel;
+        this.logToFile = logToFile;
+        this.threadPoolSize = threadPoolSize;
+        this.dispatcherThreads = dispatcherThreads;
+        this.maxServerTransactions = maxServerTransactions;
+        this.maxClientTransactions = maxClientTransactions;
+        this.receiveUdpBufferSize = receiveUdpBufferSize;
+        this.sendUdpBufferSize = sendUdpBufferSize;
+        this.tcpPostParsingThreads = tcpPostParsingThreads;
+        this.cacheConnections = cacheConnections;
+    }
+
+    /**
+     * 当前生效的配置档
+     */
+    public static SipStackProfile current() {
+        String name = System.getProperty(PROPERTY, PRODUCTION.name());
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("未知的SIP配置档: " + name + "，使用 " + PRODUCTION);
+            return PRODUCTION;
+        }
+    }
+
+    /**
+     * 生成协议栈属性
+     *
+     * @param stackName 协议栈名称（同一进程内唯一）
+     * @param logName   日志文件名后缀，仅DEVELOPMENT使用
+     */
+    public Properties toProperties(String stackName, String logName) {
+        Properties properties = new Properties();
+        properties.setProperty("javax.sip.STACK_NAME", stackName);
+        properties.setProperty("gov.nist.javax.sip.TRACE_LEVEL", traceLevel);
+        if (logToFile) {
+            properties.setProperty("gov.nist.javax.sip.DEBUG_LOG", "siplog_" + logName + ".txt");
+            properties.setProperty("gov.nist.javax.sip.SERVER_LOG", "sipserver_" + logName + ".txt");
+        } else {
+            properties.setProperty("gov.nist.javax.sip.LOG_MESSAGE_CONTENT", "false");
+        }
+
+        properties.setProperty("gov.nist.javax.sip.THREAD_POOL_SIZE", String.valueOf(threadPoolSize));
+        properties.setProperty("gov.nist.javax.sip.MAX_SERVER_TRANSACTIONS", String.valueOf(maxServerTransactions));
+        properties.setProperty("gov.nist.javax.sip.MAX_CLIENT_TRANSACTIONS", String.valueOf(maxClientTransactions));
+        properties.setProperty("gov.nist.javax.sip.RECEIVE_UDP_BUFFER_SIZE", String.valueOf(receiveUdpBufferSize));
+        properties.setProperty("gov.nist.javax.sip.SEND_UDP_BUFFER_SIZE", String.valueOf(sendUdpBufferSize));
+        properties.setProperty("gov.nist.javax.sip.TCP_POST_PARSING_THREAD_POOL_SIZE", String.valueOf(tcpPostParsingThreads));
+        properties.setProperty("gov.nist.javax.sip.CACHE_SERVER_CONNECTIONS", String.valueOf(cacheConnections));
+        properties.setProperty("gov.nist.javax.sip.CACHE_CLIENT_CONNECTIONS", String.valueOf(cacheConnections));
+
+        // 监听器只做分发，允许协议栈多线程并发回调
+        properties.setProperty("gov.nist.javax.sip.REENTRANT_LISTENER", "true");
+        return properties;
+    }
+
+    public int getDispatcherThreads() {
+        return dispatcherThreads;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public String getTraceLevel() {
+        return traceLevel;
+    }
+
+    public boolean isLogToFile() {
+        return logToFile;
+    }
+}
@@ -0,0 +1,363 @@
+package com.sipex.loadgen;
+
+import com.sipex.common.sip.SipStackProfile;
+
+import javax.sip.*;
+import javax.sip.address.Address;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.SipURI;
+import javax.sip.header.*;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 模拟UA池
+ * 若干个协议栈（每个一个本地端口）承载全部模拟用户，用户i固定使用第 i % stacks 个协议栈。
+ * 协议栈属性取自客户端的 SipStackProfile.PRODUCTION，与真实客户端一致。
+ * 同时作为被叫：收到INVITE/MESSAGE/BYE直接应答200
+ */
+public class AgentPool implements SipListener {
+
+    private static final String SDP =
+        "v=0\r\no=- 0 0 IN IP4 127.0.0.1\r\ns=loadgen\r\nc=IN IP4 127.0.0.1\r\nt=0 0\r\n"
+        + "m=audio 9 RTP/AVP 0\r\na=rtpmap:0 PCMU/8000\r\n";
+
+    private enum Kind { REGISTER, MESSAGE, INVITE, BYE }
+
+    /**
+     * 一个未完成的客户端事务
+     */
+    private static class Pending {
+        final Kind kind;
+        final ScenarioStats stats;
+        final ScenarioStats byeStats;   // 仅INVITE使用
+        final long intendedNanos;       // 计划发送时间，延迟从这里算起，避免发送端排队掩盖延迟
+        final SipProvider provider;     // 发出请求的协议栈，BYE沿用
+
+        Pending(Kind kind, ScenarioStats stats, ScenarioStats byeStats, long intendedNanos, SipProvider provider) {
+            this.kind = kind;
+            this.stats = stats;
+            this.byeStats = byeStats;
+            this.intendedNanos = intendedNanos;
+            this.provider = provider;
+        }
+    }
+
+    private final LoadConfig config;
+    private final SipStack[] stacks;
+    private final SipProvider[] providers;
+    private final AddressFactory addressFactory;
+    private final HeaderFactory headerFactory;
+    private final MessageFactory messageFactory;
+
+    // 每个用户的注册Call-ID固定，CSeq递增（符合注册服务器对刷新的要求）
+    private final CallIdHeader[] registerCallIds;
+    private final AtomicLongArray registerCseq;
+
+    private final Map<ClientTransaction, Pending> pending = new ConcurrentHashMap<>();
+    private final Semaphore outstanding;
+    private final ScheduledExecutorService byeScheduler;
+    private final AtomicLong tagCounter = new AtomicLong();
+
+    public AgentPool(LoadConfig config) throws Exception {
+        this.config = config;
+        this.stacks = new SipStack[config.stacks];
+        this.providers = new SipProvider[config.stacks];
+        this.registerCallIds = new CallIdHeader[config.users];
+        this.registerCseq = new AtomicLongArray(config.users);
+        this.outstanding = new Semaphore(config.maxOutstanding);
+        this.byeScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Loadgen-Bye");
+            t.setDaemon(true);
+            return t;
+        });
+
+        SipFactory sipFactory = SipFactory.getInstance();
+        sipFactory.setPathName("gov.nist");
+        addressFactory = sipFactory.createAddressFactory();
+        headerFactory = sipFactory.createHeaderFactory();
+        messageFactory = sipFactory.createMessageFactory();
+
+        for (int k = 0; k < config.stacks; k++) {
+            Properties properties = SipStackProfile.PRODUCTION.toProperties("Loadgen-" + k, "loadgen_" + k);
+            stacks[k] = sipFactory.createSipStack(properties);
+            int port = config.localPort + k;
+            providers[k] = stacks[k].createSipProvider(stacks[k].createListeningPoint(config.localHost, port, "udp"));
+            providers[k].addListeningPoint(stacks[k].createListeningPoint(config.localHost, port, "tcp"));
+            providers[k].addSipListener(this);
+        }
+
+        for (int i = 0; i < config.users; i++) {
+            registerCallIds[i] = providerOf(i).getNewCallId();
+        }
+    }
+
+    public static String username(int index) {
+        return String.format("load%05d", index);
+    }
+
+    private SipProvider providerOf(int user) {
+        return providers[user % providers.length];
+    }
+
+    /**
+     * 占用一个并发名额，满了则等待并记一次限流
+     */
+    public void acquire(ScenarioStats stats) throws InterruptedException {
+        if (!outstanding.tryAcquire()) {
+            stats.onThrottled();
+            outstanding.acquire();
+        }
+    }
+
+    /**
+     * 等待所有未完成事务结束
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        if (outstanding.tryAcquire(config.maxOutstanding, timeout, unit)) {
+            outstanding.release(config.maxOutstanding);
+            return true;
+        }
+        return false;
+    }
+
+    public int getOutstanding() {
+        return config.maxOutstanding - outstanding.availablePermits();
+    }
+
+    public void register(int user, ScenarioStats stats, long intendedNanos) {
+        try {
+            SipProvider provider = providerOf(user);
+            String name = username(user);
+            Request request = createRequest(provider, Request.REGISTER, name, name, registerCallIds[user],
+                registerCseq.incrementAndGet(user));
+            request.addHeader(createContactHeader(provider, name));
+            request.addHeader(headerFactory.createExpiresHeader(3600));
+            send(provider, request, new Pending(Kind.REGISTER, stats, null, intendedNanos, provider));
+        } catch (Exception e) {
+            fail(stats);
+        }
+    }
+
+    public void message(int from, int to, ScenarioStats stats, long intendedNanos) {
+        try {
+            SipProvider provider = providerOf(from);
+            Request request = createRequest(provider, Request.MESSAGE, username(from), username(to),
+                provider.getNewCallId(), 1);
+            ContentTypeHeader contentType = headerFactory.createContentTypeHeader("text", "plain");
+            request.setContent("loadgen message " + intendedNanos, contentType);
+            send(provider, request, new Pending(Kind.MESSAGE, stats, null, intendedNanos, provider));
+        } catch (Exception e) {
+            fail(stats);
+        }
+    }
+
+    /**
+     * 发起一次完整呼叫：INVITE -> 200 -> ACK -> 保持 -> BYE -> 200，整个过程占一个并发名额
+     */
+    public void call(int from, int to, ScenarioStats inviteStats, ScenarioStats byeStats, long intendedNanos) {
+        try {
+            SipProvider provider = providerOf(from);
+            Request request = createRequest(provider, Request.INVITE, username(from), username(to),
+                provider.getNewCallId(), 1);
+            request.addHeader(createContactHeader(provider, username(from)));
+            ContentTypeHeader contentType = headerFactory.createContentTypeHeader("application", "sdp");
+            request.setContent(SDP, contentType);
+            send(provider, request, new Pending(Kind.INVITE, inviteStats, byeStats, intendedNanos, provider));
+        } catch (Exception e) {
+            fail(inviteStats);
+        }
+    }
+
+    private void send(SipProvider provider, Request request, Pending p) {
+        ClientTransaction transaction;
+        try {
+            transaction = provider.getNewClientTransaction(request);
+        } catch (Exception e) {
+            fail(p.stats);
+            return;
+        }
+        pending.put(transaction, p);
+        try {
+            transaction.sendRequest();
+            p.stats.onSent();
+        } catch (Exception e) {
+            if (pending.remove(transaction) != null) {
+                fail(p.stats);
+            }
+        }
+    }
+
+    private void fail(ScenarioStats stats) {
+        stats.onSent();
+        stats.onFailure();
+        outstanding.release();
+    }
+
+    private void sendBye(SipProvider provider, Dialog dialog, ScenarioStats byeStats) {
+        long intended = System.nanoTime();
+        try {
+            Request bye = dialog.createRequest(Request.BYE);
+            ClientTransaction transaction = provider.getNewClientTransaction(bye);
+            pending.put(transaction, new Pending(Kind.BYE, byeStats, null, intended, provider));
+            byeStats.onSent();
+            dialog.sendRequest(transaction);
+        } catch (Exception e) {
+            byeStats.onFailure();
+            outstanding.release();
+        }
+    }
+
+    private Request createRequest(SipProvider provider, String method, String fromUser, String toUser,
+                                  CallIdHeader callId, long cseq) throws Exception {
+        String transport = config.transport;
+        SipURI requestURI = addressFactory.createSipURI(toUser, config.targetHost);
+        requestURI.setPort(config.targetPort);
+        if (!"udp".equals(transport)) {
+            requestURI.setTransportParam(transport);
+        }
+
+        Address fromAddress = addressFactory.createAddress(addressFactory.createSipURI(fromUser, config.targetHost));
+        FromHeader fromHeader = headerFactory.createFromHeader(fromAddress, "lg" + tagCounter.incrementAndGet());
+        Address toAddress = addressFactory.createAddress(addressFactory.createSipURI(toUser, config.targetHost));
+        ToHeader toHeader = headerFactory.createToHeader(toAddress, null);
+
+        ListeningPoint lp = provider.getListeningPoint(transport);
+        ViaHeader viaHeader = headerFactory.createViaHeader(lp.getIPAddress(), lp.getPort(), transport, null);
+
+        return messageFactory.createRequest(
+            requestURI,
+            method,
+            (CallIdHeader) callId.clone(),
+            headerFactory.createCSeqHeader(cseq, method),
+            fromHeader,
+            toHeader,
+            Collections.singletonList(viaHeader),
+            headerFactory.createMaxForwardsHeader(70));
+    }
+
+    private ContactHeader createContactHeader(SipProvider provider, String user) throws Exception {
+        ListeningPoint lp = provider.getListeningPoint(config.transport);
+        SipURI contactUri = addressFactory.createSipURI(user, lp.getIPAddress());
+        contactUri.setPort(lp.getPort());
+        if (!"udp".equals(config.transport)) {
+            contactUri.setTransportParam(config.transport);
+        }
+        return headerFactory.createContactHeader(addressFactory.createAddress(contactUri));
+    }
+
+    @Override
+    public void processResponse(ResponseEvent responseEvent) {
+        ClientTransaction transaction = responseEvent.getClientTransaction();
+        Response response = responseEvent.getResponse();
+        if (transaction == null || response.getStatusCode() < 200) {
+            return;
+        }
+        Pending p = pending.remove(transaction);
+        if (p == null) {
+            return;
+        }
+
+        long latency = System.nanoTime() - p.intendedNanos;
+        boolean ok = response.getStatusCode() < 300;
+        if (ok) {
+            p.stats.onSuccess(latency);
+        } else {
+            p.stats.onFailure();
+        }
+
+        if (p.kind == Kind.INVITE && ok) {
+            // 呼叫建立：回ACK，保持一段时间后挂断，名额在BYE完成后释放
+            try {
+                Dialog dialog = responseEvent.getDialog();
+                CSeqHeader cseq = (CSeqHeader) response.getHeader(CSeqHeader.NAME);
+                dialog.sendAck(dialog.createAck(cseq.getSeqNumber()));
+                byeScheduler.schedule(() -> sendBye(p.provider, dialog, p.byeStats), config.holdMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                p.byeStats.onSent();
+                p.byeStats.onFailure();
+                outstanding.release();
+            }
+            return;
+        }
+        outstanding.release();
+    }
+
+    @Override
+    public void processTimeout(TimeoutEvent timeoutEvent) {
+        if (timeoutEvent.isServerTransaction()) {
+            return;
+        }
+        Pending p = pending.remove(timeoutEvent.getClientTransaction());
+        if (p != null) {
+            p.stats.onFailure();
+            outstanding.release();
+        }
+    }
+
+    /**
+     * 作为被叫自动应答
+     */
+    @Override
+    public void processRequest(RequestEvent requestEvent) {
+        Request request = requestEvent.getRequest();
+        if (Request.ACK.equals(request.getMethod())) {
+            return;
+        }
+        try {
+            SipProvider provider = (SipProvider) requestEvent.getSource();
+            ServerTransaction transaction = requestEvent.getServerTransaction();
+            if (transaction == null) {
+                transaction = provider.getNewServerTransaction(request);
+            }
+
+            Response response = messageFactory.createResponse(Response.OK, request);
+            if (Request.INVITE.equals(request.getMethod())) {
+                ToHeader toHeader = (ToHeader) response.getHeader(ToHeader.NAME);
+                toHeader.setTag("lg" + tagCounter.incrementAndGet());
+                String callee = ((SipURI) request.getRequestURI()).getUser();
+                response.addHeader(createContactHeader(provider, callee != null ? callee : "loadgen"));
+                ContentTypeHeader contentType = headerFactory.createContentTypeHeader("application", "sdp");
+                response.setContent(SDP, contentType);
+            }
+            transaction.sendResponse(response);
+        } catch (TransactionAlreadyExistsException e) {
+            // 重传，由事务处理
+        } catch (Exception e) {
+            System.err.println("模拟UA应答失败: " + request.getMethod() + " - " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void processIOException(IOExceptionEvent exceptionEvent) {
+        System.err.println("IO异常: " + exceptionEvent.getHost() + ":" + exceptionEvent.getPort());
+    }
+
+    @Override
+    public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
+    }
+
+    @Override
+    public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
+    }
+
+    public void stop() {
+        byeScheduler.shutdownNow();
+        for (SipStack stack : stacks) {
+            if (stack != null) {
+                stack.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.sipex.loadgen;
+
+/**
+ * 压测参数（命令行 --key=value）
+ */
+public class LoadConfig {
+
+    String scenario = "all";          // register | message | call | all
+    String targetHost = "127.0.0.1";  // 注册服务器/代理地址
+    int targetPort = 5060;
+    boolean stub = false;             // 在本进程内启动桩服务器作为目标
+    String transport = "udp";         // udp | tcp
+    String localHost = "127.0.0.1";
+    int localPort = 16000;            // 模拟UA监听端口起点，每个协议栈占一个
+    int stacks = 4;                   // 协议栈数量，UA平均分布
+    int users = 1000;                 // 模拟UA数量
+    int rate = 500;                   // 每秒发起的事务（呼叫场景为每秒呼叫数）
+    int durationSeconds = 10;         // 每个场景持续时间
+    int maxOutstanding = 2000;        // 未完成事务上限，达到后发送端等待
+    int holdMillis = 100;             // 呼叫保持时长，之后发BYE
+
+    static LoadConfig parse(String[] args) {
+        LoadConfig config = new LoadConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            String[] kv = arg.substring(2).split("=", 2);
+            String key = kv[0];
+            String value = kv.length > 1 ? kv[1] : "true";
+            switch (key) {
+                case "scenario": config.scenario = value; break;
+                case "target": {
+                    String[] hostPort = value.split(":");
+                    config.targetHost = hostPort[0];
+                    if (hostPort.length > 1) {
+                        config.targetPort = Integer.parseInt(hostPort[1]);
+                    }
+                    break;
+                }
+                case "stub": config.stub = Boolean.parseBoolean(value); break;
+                case "transport": config.transport = value.toLowerCase(); break;
+                case "local-host": config.localHost = value; break;
+                case "local-port": config.localPort = Integer.parseInt(value); break;
+                case "stacks": config.stacks = Integer.parseInt(value); break;
+                case "users": config.users = Integer.parseInt(value); break;
+                case "rate": config.rate = Integer.parseInt(value); break;
+                case "duration": config.durationSeconds = Integer.parseInt(value); break;
+                case "max-outstanding": config.maxOutstanding = Integer.parseInt(value); break;
+                case "hold": config.holdMillis = Integer.parseInt(value); break;
+                case "help": usage(); System.exit(0); break;
+                default: throw new IllegalArgumentException("未知参数: --" + key);
+            }
+        }
+        if (config.stacks < 1 || config.users < config.stacks || config.rate < 1) {
+            throw new IllegalArgumentException("参数不合法: stacks>=1, users>=stacks, rate>=1");
+        }
+        return config;
+    }
+
+    static void usage() {
+        System.out.println("用法: java -jar sip-loadgen/target/sip-loadgen-1.0.0.jar [选项]（先 mvn -pl sip-loadgen -am package）");
+        System.out.println("  --scenario=register|message|call|all  压测场景（默认all，依次执行）");
+        System.out.println("  --target=host:port                    目标注册服务器/代理（默认127.0.0.1:5060）");
+        System.out.println("  --stub                                在本进程内启动桩服务器作为目标");
+        System.out.println("  --transport=udp|tcp                   传输（默认udp）");
+        System.out.println("  --users=N --stacks=K                  模拟UA数量和协议栈数量（默认1000/4）");
+        System.out.println("  --rate=R --duration=S                 每秒事务数和每个场景的秒数（默认500/10）");
+        System.out.println("  --max-outstanding=N                   未完成事务上限（默认2000）");
+        System.out.println("  --hold=MS                             呼叫保持时长（默认100ms）");
+        System.out.println("  --local-port=P                        UA监听端口起点（默认16000）");
+    }
+
+    @Override
+    public String toString() {
+        return "scenario=" + scenario + ", target=" + targetHost + ":" + targetPort + (stub ? " (stub)" : "")
+            + ", transport=" + transport + ", users=" + users + ", stacks=" + stacks
+            + ", rate=" + rate + "/s, duration=" + durationSeconds + "s";
+    }
+}
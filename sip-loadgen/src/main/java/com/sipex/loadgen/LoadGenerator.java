@@ -0,0 +1,152 @@
+package com.sipex.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SIP压测入口
+ * 在回环地址上用少量协议栈模拟大量UA，按固定速率（开环）发起注册风暴、MESSAGE洪泛、
+ * INVITE/200/ACK/BYE呼叫循环，输出每类事务的TPS、响应时间百分位和失败率。
+ * 目标可以是 sip-server 的内嵌注册服务器（sip.embedded.enabled=true），也可以用 --stub 在本进程内起桩服务器
+ */
+public class LoadGenerator {
+
+    private static final long DRAIN_TIMEOUT_SECONDS = 40; // 大于UDP事务超时（Timer F = 32s）
+
+    /**
+     * 按序号发起一次操作
+     */
+    private interface Operation {
+        void fire(long index, long intendedNanos);
+    }
+
+    private final LoadConfig config;
+    private final AgentPool pool;
+    private final List<ScenarioStats> results = new ArrayList<>();
+
+    public LoadGenerator(LoadConfig config, AgentPool pool) {
+        this.config = config;
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            LoadConfig.usage();
+            System.exit(1);
+            return;
+        }
+
+        System.out.println("========== SIP压测 ==========");
+        System.out.println(config);
+
+        StubRegistrar stub = config.stub ? new StubRegistrar(config.targetHost, config.targetPort) : null;
+        AgentPool pool = new AgentPool(config);
+        try {
+            new LoadGenerator(config, pool).run();
+        } finally {
+            pool.stop();
+            if (stub != null) {
+                System.out.println("桩服务器共应答: " + stub.getHandled());
+                stub.stop();
+            }
+        }
+    }
+
+    public void run() throws InterruptedException {
+        String scenario = config.scenario.toLowerCase();
+        boolean all = "all".equals(scenario);
+
+        if (all || "register".equals(scenario)) {
+            runRegisterStorm();
+        } else {
+            // MESSAGE和呼叫经代理路由，先让所有UA注册上
+            preRegister();
+        }
+        if (all || "message".equals(scenario)) {
+            runMessageFlood();
+        }
+        if (all || "call".equals(scenario)) {
+            runCallCycles();
+        }
+
+        System.out.println();
+        System.out.println(ScenarioStats.header());
+        for (ScenarioStats stats : results) {
+            System.out.println(stats.report());
+        }
+    }
+
+    private void preRegister() throws InterruptedException {
+        ScenarioStats stats = new ScenarioStats("预注册");
+        stats.start();
+        for (int user = 0; user < config.users; user++) {
+            pool.acquire(stats);
+            pool.register(user, stats, System.nanoTime());
+        }
+        pool.awaitIdle(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        stats.stop();
+        System.out.println("预注册完成: " + stats.getCompleted() + "/" + config.users);
+    }
+
+    private void runRegisterStorm() throws InterruptedException {
+        ScenarioStats stats = new ScenarioStats("REGISTER");
+        drive("注册风暴", stats, (i, intended) -> pool.register((int) (i % config.users), stats, intended));
+        results.add(stats);
+    }
+
+    private void runMessageFlood() throws InterruptedException {
+        ScenarioStats stats = new ScenarioStats("MESSAGE");
+        drive("MESSAGE洪泛", stats, (i, intended) -> {
+            int from = (int) (i % config.users);
+            int to = (from + 1) % config.users;
+            pool.message(from, to, stats, intended);
+        });
+        results.add(stats);
+    }
+
+    private void runCallCycles() throws InterruptedException {
+        ScenarioStats invites = new ScenarioStats("INVITE");
+        ScenarioStats byes = new ScenarioStats("BYE");
+        byes.start();
+        drive("呼叫循环", invites, (i, intended) -> {
+            int from = (int) (i % config.users);
+            int to = (from + config.users / 2) % config.users;
+            pool.call(from, to, invites, byes, intended);
+        });
+        byes.stop();
+        results.add(invites);
+        results.add(byes);
+    }
+
+    /**
+     * 开环驱动：第i个操作的计划时间为 start + i/rate，发送端落后时不补偿间隔，延迟仍按计划时间计算
+     */
+    private void drive(String title, ScenarioStats stats, Operation operation) throws InterruptedException {
+        System.out.println("▶ " + title + ": " + config.rate + "/s x " + config.durationSeconds + "s");
+
+        long intervalNanos = 1_000_000_000L / config.rate;
+        long total = (long) config.rate * config.durationSeconds;
+        stats.start();
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            pool.acquire(stats);
+            operation.fire(i, intended);
+        }
+
+        if (!pool.awaitIdle(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("⚠️  仍有 " + pool.getOutstanding() + " 个事务未完成");
+        }
+        stats.stop();
+    }
+}
@@ -0,0 +1,106 @@
+package com.sipex.loadgen;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个场景（或场景内单类事务）的统计
+ * 延迟按微秒保存全部样本，报告时排序取精确百分位
+ */
+public class ScenarioStats {
+
+    private static final int MAX_SAMPLES = 4_000_000;
+
+    private final String name;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    private long[] samples = new long[4096];
+    private int sampleCount = 0;
+
+    private long startNanos;
+    private long endNanos;
+
+    public ScenarioStats(String name) {
+        this.name = name;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public void stop() {
+        endNanos = System.nanoTime();
+    }
+
+    public void onSent() {
+        sent.incrementAndGet();
+    }
+
+    public void onThrottled() {
+        throttled.incrementAndGet();
+    }
+
+    /**
+     * @param latencyNanos 从计划发送时间到收到最终响应
+     */
+    public void onSuccess(long latencyNanos) {
+        succeeded.incrementAndGet();
+        record(latencyNanos / 1000);
+    }
+
+    public void onFailure() {
+        failed.incrementAndGet();
+    }
+
+    private synchronized void record(long micros) {
+        if (sampleCount == MAX_SAMPLES) {
+            return;
+        }
+        if (sampleCount == samples.length) {
+            samples = Arrays.copyOf(samples, Math.min(samples.length * 2, MAX_SAMPLES));
+        }
+        samples[sampleCount++] = micros;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getCompleted() {
+        return succeeded.get() + failed.get();
+    }
+
+    public static String header() {
+        return String.format("%-10s %9s %9s %9s %7s %10s %9s %9s %9s %9s %9s",
+            "事务", "发送", "成功", "失败", "失败率", "TPS", "P50(ms)", "P90(ms)", "P99(ms)", "最大(ms)", "限流");
+    }
+
+    public String report() {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(sorted);
+
+        long end = endNanos > 0 ? endNanos : System.nanoTime();
+        double seconds = Math.max(1, end - startNanos) / 1e9;
+        long total = sent.get();
+        double failureRate = total == 0 ? 0 : failed.get() * 100.0 / total;
+
+        return String.format("%-10s %9d %9d %9d %6.2f%% %10.1f %9.3f %9.3f %9.3f %9.3f %9d",
+            name, total, succeeded.get(), failed.get(), failureRate, succeeded.get() / seconds,
+            percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+            sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0, throttled.get());
+    }
+
+    private double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(sorted.length * p / 100.0) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+}
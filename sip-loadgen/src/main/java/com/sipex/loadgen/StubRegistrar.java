@@ -0,0 +1,124 @@
+package com.sipex.loadgen;
+
+import javax.sip.*;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.SipURI;
+import javax.sip.header.ContactHeader;
+import javax.sip.header.ContentTypeHeader;
+import javax.sip.header.HeaderFactory;
+import javax.sip.header.ToHeader;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地桩服务器：无状态地对所有请求直接应答
+ * REGISTER/MESSAGE/BYE/CANCEL回200，INVITE回带SDP的200，ACK忽略。
+ * 只衡量客户端协议栈本身，不经过任何路由
+ */
+public class StubRegistrar implements SipListener {
+
+    private static final String STUB_SDP =
+        "v=0\r\no=- 0 0 IN IP4 127.0.0.1\r\ns=stub\r\nc=IN IP4 127.0.0.1\r\nt=0 0\r\n"
+        + "m=audio 9 RTP/AVP 0\r\na=rtpmap:0 PCMU/8000\r\n";
+
+    private final SipStack sipStack;
+    private final SipProvider sipProvider;
+    private final AddressFactory addressFactory;
+    private final HeaderFactory headerFactory;
+    private final MessageFactory messageFactory;
+    private final String host;
+    private final int port;
+
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong tagCounter = new AtomicLong();
+
+    public StubRegistrar(String host, int port) throws Exception {
+        this.host = host;
+        this.port = port;
+
+        SipFactory sipFactory = SipFactory.getInstance();
+        sipFactory.setPathName("gov.nist");
+
+        Properties properties = new Properties();
+        properties.setProperty("javax.sip.STACK_NAME", "LoadgenStub");
+        properties.setProperty("javax.sip.AUTOMATIC_DIALOG_SUPPORT", "off");
+        properties.setProperty("gov.nist.javax.sip.TRACE_LEVEL", "0");
+        properties.setProperty("gov.nist.javax.sip.THREAD_POOL_SIZE", "8");
+        properties.setProperty("gov.nist.javax.sip.REENTRANT_LISTENER", "true");
+        properties.setProperty("gov.nist.javax.sip.RECEIVE_UDP_BUFFER_SIZE", String.valueOf(4 * 1024 * 1024));
+        sipStack = sipFactory.createSipStack(properties);
+
+        addressFactory = sipFactory.createAddressFactory();
+        headerFactory = sipFactory.createHeaderFactory();
+        messageFactory = sipFactory.createMessageFactory();
+
+        sipProvider = sipStack.createSipProvider(sipStack.createListeningPoint(host, port, "udp"));
+        sipProvider.addListeningPoint(sipStack.createListeningPoint(host, port, "tcp"));
+        sipProvider.addSipListener(this);
+        System.out.println("桩服务器已启动: " + host + ":" + port + " (udp/tcp)");
+    }
+
+    @Override
+    public void processRequest(RequestEvent requestEvent) {
+        Request request = requestEvent.getRequest();
+        if (Request.ACK.equals(request.getMethod())) {
+            return;
+        }
+        try {
+            Response response = messageFactory.createResponse(Response.OK, request);
+            ToHeader toHeader = (ToHeader) response.getHeader(ToHeader.NAME);
+            if (toHeader.getTag() == null && !Request.REGISTER.equals(request.getMethod())) {
+                toHeader.setTag("stub" + tagCounter.incrementAndGet());
+            }
+
+            if (Request.REGISTER.equals(request.getMethod())) {
+                ContactHeader contact = (ContactHeader) request.getHeader(ContactHeader.NAME);
+                if (contact != null) {
+                    response.addHeader(contact);
+                }
+            } else if (Request.INVITE.equals(request.getMethod())) {
+                SipURI contactUri = addressFactory.createSipURI("stub", host);
+                contactUri.setPort(port);
+                response.addHeader(headerFactory.createContactHeader(addressFactory.createAddress(contactUri)));
+                ContentTypeHeader contentType = headerFactory.createContentTypeHeader("application", "sdp");
+                response.setContent(STUB_SDP, contentType);
+            }
+
+            sipProvider.sendResponse(response);
+            handled.incrementAndGet();
+        } catch (Exception e) {
+            System.err.println("桩服务器应答失败: " + request.getMethod() + " - " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void processResponse(ResponseEvent responseEvent) {
+    }
+
+    @Override
+    public void processTimeout(TimeoutEvent timeoutEvent) {
+    }
+
+    @Override
+    public void processIOException(IOExceptionEvent exceptionEvent) {
+    }
+
+    @Override
+    public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
+    }
+
+    @Override
+    public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
+    }
+
+    public long getHandled() {
+        return handled.get();
+    }
+
+    public void stop() {
+        sipStack.stop();
+    }
+}
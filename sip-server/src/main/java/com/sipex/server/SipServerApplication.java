@@ -3,11 +3,13 @@ package com.sipex.server;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.sipex.server.mapper")
 @EnableScheduling
+@EnableAsync
 public class SipServerApplication {
     public static void main(String[] args) {
         SpringApplication.run(SipServerApplication.class, args);
@@ -16,6 +16,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.enableSimpleBroker("/topic", "/queue");
         // 客户端发送消息的前缀
         config.setApplicationDestinationPrefixes("/app");
+        // 同一会话按发布顺序投递，会议室事件的序号到客户端时保持递增
+        config.setPreservePublishOrder(true);
     }
 
     @Override
@@ -44,6 +44,9 @@ public class AdminController {
     @Autowired
     private UserActivityLogService activityLogService;
 
+    @Autowired
+    private ConferenceMessageService conferenceMessageService;
+
     @GetMapping("/statistics")
     public ApiResponse<Map<String, Object>> getStatistics() {
         try {
@@ -165,4 +168,15 @@ public class AdminController {
             return ApiResponse.error(e.getMessage());
         }
     }
+
+    /**
+     * 消息写入队列状态（队列深度、批量写入耗时）
+     */
+    @GetMapping("/write-stats")
+    public ApiResponse<Map<String, Object>> getWriteStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("messages", messageService.getWriteStats());
+        stats.put("conferenceMessages", conferenceMessageService.getWriteStats());
+        return ApiResponse.success(stats);
+    }
 }
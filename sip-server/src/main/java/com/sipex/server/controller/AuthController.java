@@ -4,6 +4,8 @@ import com.sipex.common.dto.ApiResponse;
 import com.sipex.common.dto.LoginRequest;
 import com.sipex.common.dto.RegisterRequest;
 import com.sipex.common.entity.User;
+import com.sipex.server.service.ConferenceService;
+import com.sipex.server.service.ContactResolutionService;
 import com.sipex.server.service.UserService;
 import com.sipex.server.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +24,12 @@ public class AuthController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private ContactResolutionService contactResolutionService;
+
+    @Autowired
+    private ConferenceService conferenceService;
+
     @PostMapping("/register")
     public ApiResponse<Map<String, Object>> register(@RequestBody RegisterRequest request) {
         try {
@@ -61,6 +69,8 @@ public class AuthController {
     public ApiResponse<Void> logout(@RequestParam String username) {
         try {
             userService.updateStatus(username, "OFFLINE");
+            contactResolutionService.remove(username);
+            conferenceService.leaveAllRooms(username);
             return ApiResponse.success(null);
         } catch (Exception e) {
             return ApiResponse.error(e.getMessage());
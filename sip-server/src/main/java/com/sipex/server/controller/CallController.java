@@ -2,8 +2,10 @@ package com.sipex.server.controller;
 
 import com.sipex.common.dto.ApiResponse;
 import com.sipex.common.dto.CallRequest;
+import com.sipex.common.dto.CallSetupMetricsDTO;
 import com.sipex.common.entity.CallLog;
 import com.sipex.server.service.CallLogService;
+import com.sipex.server.service.CallSetupMetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +19,9 @@ public class CallController {
     @Autowired
     private CallLogService callLogService;
 
+    @Autowired
+    private CallSetupMetricsService callSetupMetricsService;
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
@@ -62,5 +67,26 @@ public class CallController {
             return ApiResponse.error(e.getMessage());
         }
     }
-}
 
+    @PostMapping("/setup-metrics")
+    public ApiResponse<Void> reportSetupMetrics(@RequestBody CallSetupMetricsDTO metrics) {
+        try {
+            callSetupMetricsService.saveReport(metrics);
+            return ApiResponse.success(null);
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @GetMapping("/setup-metrics")
+    public ApiResponse<CallSetupMetricsDTO> getSetupMetrics(@RequestParam(required = false) String username) {
+        try {
+            if (username != null) {
+                return ApiResponse.success(callSetupMetricsService.getUserReport(username));
+            }
+            return ApiResponse.success(callSetupMetricsService.getSummary());
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+}
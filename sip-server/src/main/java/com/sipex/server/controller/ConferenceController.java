@@ -1,15 +1,28 @@
 package com.sipex.server.controller;
 
 import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.ConferenceEventDTO;
+import com.sipex.common.dto.ConferenceEventsResponse;
 import com.sipex.common.dto.ConferenceRequest;
 import com.sipex.common.dto.ConferenceResponse;
-import com.sipex.common.dto.ConferenceRoom;
 import com.sipex.common.dto.ConferenceMessageDTO;
+import com.sipex.server.service.ConferenceClusterService;
 import com.sipex.server.service.ConferenceService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 /**
  * 会议室控制器
@@ -19,84 +32,58 @@ import java.util.List;
 @RequestMapping("/api/conference")
 public class ConferenceController {
     
+    // 长轮询最长挂起时间
+    private static final long MAX_POLL_TIMEOUT_MS = 60 * 1000;
+    private static final long FORWARD_POLL_MARGIN_MS = 5000;
+
+    private static final ParameterizedTypeReference<ApiResponse<ConferenceResponse>> CONFERENCE_RESPONSE_TYPE =
+            new ParameterizedTypeReference<ApiResponse<ConferenceResponse>>() {};
+    private static final ParameterizedTypeReference<ApiResponse<ConferenceMessageDTO>> MESSAGE_TYPE =
+            new ParameterizedTypeReference<ApiResponse<ConferenceMessageDTO>>() {};
+    private static final ParameterizedTypeReference<ApiResponse<List<ConferenceMessageDTO>>> MESSAGE_LIST_TYPE =
+            new ParameterizedTypeReference<ApiResponse<List<ConferenceMessageDTO>>>() {};
+    private static final ParameterizedTypeReference<ApiResponse<ConferenceEventsResponse>> EVENTS_TYPE =
+            new ParameterizedTypeReference<ApiResponse<ConferenceEventsResponse>>() {};
+
     @Autowired
     private ConferenceService conferenceService;
+
+    @Autowired
+    private ConferenceClusterService cluster;
     
     /**
      * 创建会议室
      */
     @PostMapping("/create")
-    public ApiResponse<ConferenceResponse> createRoom(@RequestBody ConferenceRequest request) {
-        try {
-            ConferenceRoom room = conferenceService.createRoom(request.getUsername());
-            ConferenceResponse response = ConferenceResponse.success(
-                room.getRoomId(), 
-                room.getParticipants()
-            );
-            return ApiResponse.success(response);
-        } catch (Exception e) {
-            return ApiResponse.error(e.getMessage());
-        }
+    public CompletableFuture<ApiResponse<ConferenceResponse>> createRoom(@RequestBody ConferenceRequest request) {
+        return toResponse(() -> conferenceService.createRoom(request.getUsername()));
     }
     
     /**
      * 加入会议室
      */
     @PostMapping("/join")
-    public ApiResponse<ConferenceResponse> joinRoom(@RequestBody ConferenceRequest request) {
-        try {
-            ConferenceRoom room = conferenceService.joinRoom(
-                request.getRoomId(), 
-                request.getUsername()
-            );
-            ConferenceResponse response = ConferenceResponse.success(
-                room.getRoomId(), 
-                room.getParticipants()
-            );
-            return ApiResponse.success(response);
-        } catch (Exception e) {
-            return ApiResponse.error(e.getMessage());
-        }
+    public CompletableFuture<ApiResponse<ConferenceResponse>> joinRoom(@RequestBody ConferenceRequest request) {
+        return route(request.getRoomId(), HttpMethod.POST, "/api/conference/join", request, CONFERENCE_RESPONSE_TYPE,
+                () -> conferenceService.joinRoom(request.getRoomId(), request.getUsername()));
     }
     
     /**
      * 离开会议室
      */
     @PostMapping("/leave")
-    public ApiResponse<ConferenceResponse> leaveRoom(@RequestBody ConferenceRequest request) {
-        try {
-            ConferenceRoom room = conferenceService.leaveRoom(
-                request.getRoomId(), 
-                request.getUsername()
-            );
-            ConferenceResponse response = ConferenceResponse.success(
-                room.getRoomId(), 
-                room.getParticipants()
-            );
-            return ApiResponse.success(response);
-        } catch (Exception e) {
-            return ApiResponse.error(e.getMessage());
-        }
+    public CompletableFuture<ApiResponse<ConferenceResponse>> leaveRoom(@RequestBody ConferenceRequest request) {
+        return route(request.getRoomId(), HttpMethod.POST, "/api/conference/leave", request, CONFERENCE_RESPONSE_TYPE,
+                () -> conferenceService.leaveRoom(request.getRoomId(), request.getUsername()));
     }
     
     /**
      * 获取会议室参与者列表
      */
     @GetMapping("/{roomId}")
-    public ApiResponse<ConferenceResponse> getRoomInfo(@PathVariable String roomId) {
-        try {
-            ConferenceRoom room = conferenceService.getRoom(roomId);
-            if (room == null) {
-                return ApiResponse.error("会议室不存在");
-            }
-            ConferenceResponse response = ConferenceResponse.success(
-                room.getRoomId(), 
-                room.getParticipants()
-            );
-            return ApiResponse.success(response);
-        } catch (Exception e) {
-            return ApiResponse.error(e.getMessage());
-        }
+    public CompletableFuture<ApiResponse<ConferenceResponse>> getRoomInfo(@PathVariable String roomId) {
+        return route(roomId, HttpMethod.GET, "/api/conference/" + roomId, null, CONFERENCE_RESPONSE_TYPE,
+                () -> conferenceService.getRoom(roomId));
     }
     
     /**
@@ -108,6 +95,14 @@ public class ConferenceController {
         return ApiResponse.success(exists);
     }
     
+    /**
+     * 用户当前所在的会议室
+     */
+    @GetMapping("/user/{username}/rooms")
+    public ApiResponse<Set<String>> getUserRooms(@PathVariable String username) {
+        return ApiResponse.success(conferenceService.getRoomsOf(username));
+    }
+
     /**
      * 获取活跃会议室数量
      */
@@ -121,30 +116,151 @@ public class ConferenceController {
      * 发送会议室消息
      */
     @PostMapping("/{roomId}/message")
-    public ApiResponse<ConferenceMessageDTO> sendMessage(
+    public CompletableFuture<ApiResponse<ConferenceMessageDTO>> sendMessage(
             @PathVariable String roomId,
             @RequestBody ConferenceMessageDTO message) {
+        return route(roomId, HttpMethod.POST, "/api/conference/" + roomId + "/message", message, MESSAGE_TYPE,
+                () -> conferenceService.addMessage(roomId, message));
+    }
+
+    /**
+     * 获取会议室消息列表
+     * 带afterSeq时只返回序号更大的消息（增量），否则返回最近limit条
+     */
+    @GetMapping("/{roomId}/messages")
+    public CompletableFuture<ApiResponse<List<ConferenceMessageDTO>>> getMessages(
+            @PathVariable String roomId,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) Long afterSeq) {
+        String path = "/api/conference/" + roomId + "/messages?limit=" + limit + (afterSeq != null ? "&afterSeq=" + afterSeq : "");
+        return route(roomId, HttpMethod.GET, path, null, MESSAGE_LIST_TYPE,
+                () -> CompletableFuture.completedFuture(afterSeq != null
+                        ? conferenceService.getMessagesAfter(roomId, afterSeq, limit)
+                        : conferenceService.getMessages(roomId, limit)));
+    }
+
+    /**
+     * 长轮询会议室消息：有比afterSeq新的消息立即返回，否则挂起直到新消息到达或超时（超时返回空列表）
+     */
+    @GetMapping("/{roomId}/messages/poll")
+    public DeferredResult<ApiResponse<List<ConferenceMessageDTO>>> pollMessages(
+            @PathVariable String roomId,
+            @RequestParam long afterSeq,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "25000") long timeout) {
+        long timeoutMs = Math.max(1000, Math.min(timeout, MAX_POLL_TIMEOUT_MS));
+        if (!isForwarded() && !cluster.isLocal(roomId)) {
+            // 所属节点负责挂起，本节点多等一会儿以免先超时
+            DeferredResult<ApiResponse<List<ConferenceMessageDTO>>> forwarded =
+                    new DeferredResult<>(timeoutMs + FORWARD_POLL_MARGIN_MS, ApiResponse.success(Collections.emptyList()));
+            cluster.forward(roomId, HttpMethod.GET, "/api/conference/" + roomId + "/messages/poll?afterSeq=" + afterSeq
+                    + "&limit=" + limit + "&timeout=" + timeoutMs, null, MESSAGE_LIST_TYPE).thenAccept(forwarded::setResult);
+            return forwarded;
+        }
+
+        DeferredResult<ApiResponse<List<ConferenceMessageDTO>>> result =
+                new DeferredResult<>(timeoutMs, ApiResponse.success(Collections.emptyList()));
+        try {
+            CompletableFuture<List<ConferenceMessageDTO>> future = conferenceService.awaitMessagesAfter(roomId, afterSeq, limit);
+            future.whenComplete((messages, error) -> {
+                if (error != null) {
+                    result.setResult(ApiResponse.error(unwrap(error).getMessage()));
+                } else {
+                    result.setResult(ApiResponse.success(messages));
+                }
+            });
+            // 超时或连接断开时撤销等待
+            result.onCompletion(() -> future.cancel(false));
+        } catch (Exception e) {
+            result.setResult(ApiResponse.error(e.getMessage()));
+        }
+        return result;
+    }
+
+    /**
+     * 会议室消息缓冲区内存占用
+     */
+    @GetMapping("/buffer-stats")
+    public ApiResponse<Map<String, Object>> getBufferStats() {
         try {
-            ConferenceMessageDTO savedMessage = conferenceService.addMessage(roomId, message);
-            return ApiResponse.success(savedMessage);
+            return ApiResponse.success(conferenceService.getMessageBufferStats());
         } catch (Exception e) {
             return ApiResponse.error(e.getMessage());
         }
     }
 
     /**
-     * 获取会议室消息列表
+     * 补拉会议室事件（断线重连后从上次收到的序号继续）
      */
-    @GetMapping("/{roomId}/messages")
-    public ApiResponse<List<ConferenceMessageDTO>> getMessages(
+    @GetMapping("/{roomId}/events")
+    public CompletableFuture<ApiResponse<ConferenceEventsResponse>> getEvents(
             @PathVariable String roomId,
-            @RequestParam(defaultValue = "50") int limit) {
+            @RequestParam(defaultValue = "0") long afterSeq) {
+        return route(roomId, HttpMethod.GET, "/api/conference/" + roomId + "/events?afterSeq=" + afterSeq, null,
+                EVENTS_TYPE, () -> conferenceService.getEventsAfter(roomId, afterSeq));
+    }
+
+    /**
+     * 其他节点转发来的会议室事件，推送给连在本节点的订阅者
+     */
+    @PostMapping("/cluster/events")
+    public ApiResponse<Void> relayEvent(
+            @RequestHeader(value = ConferenceClusterService.SECRET_HEADER, required = false) String secret,
+            @RequestBody ConferenceEventDTO event) {
+        if (!cluster.isTrusted(secret)) {
+            return ApiResponse.error(403, "只接受集群节点推送的事件");
+        }
+        cluster.deliver(event);
+        return ApiResponse.success(null);
+    }
+
+    /**
+     * 多节点状态：节点列表、事件转发积压和丢弃次数
+     */
+    @GetMapping("/cluster/stats")
+    public ApiResponse<Map<String, Object>> getClusterStats() {
+        return ApiResponse.success(cluster.getStats());
+    }
+
+    /**
+     * 会议室在其他节点时把请求转发给所属节点，否则在本机执行
+     */
+    private <T> CompletableFuture<ApiResponse<T>> route(String roomId, HttpMethod method, String path, Object body,
+                                                      ParameterizedTypeReference<ApiResponse<T>> type,
+                                                      Supplier<CompletableFuture<T>> local) {
+        if (roomId != null && !isForwarded() && !cluster.isLocal(roomId)) {
+            return cluster.forward(roomId, method, path, body, type);
+        }
+        return toResponse(local);
+    }
+
+    /**
+     * 当前请求是其他节点转发来的（带转发头和正确的集群密钥），直接在本机处理
+     */
+    private boolean isForwarded() {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && attributes.getRequest().getHeader(ConferenceClusterService.FORWARDED_HEADER) != null
+                && cluster.isTrusted(attributes.getRequest().getHeader(ConferenceClusterService.SECRET_HEADER));
+    }
+
+    /**
+     * 会议室命令的结果转成响应；失败（包括会议室不存在、已满）返回错误信息
+     */
+    private <T> CompletableFuture<ApiResponse<T>> toResponse(Supplier<CompletableFuture<T>> command) {
         try {
-            List<ConferenceMessageDTO> messages = conferenceService.getMessages(roomId, limit);
-            return ApiResponse.success(messages);
+            return command.get().handle((result, error) -> error == null
+                    ? ApiResponse.success(result)
+                    : ApiResponse.error(unwrap(error).getMessage()));
         } catch (Exception e) {
-            return ApiResponse.error(e.getMessage());
+            return CompletableFuture.completedFuture(ApiResponse.error(e.getMessage()));
         }
     }
-}
 
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
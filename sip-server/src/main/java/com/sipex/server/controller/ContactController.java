@@ -0,0 +1,37 @@
+package com.sipex.server.controller;
+
+import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.ContactInfoDTO;
+import com.sipex.server.service.ContactResolutionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/contacts")
+public class ContactController {
+
+    @Autowired
+    private ContactResolutionService contactResolutionService;
+
+    @PostMapping
+    public ApiResponse<ContactInfoDTO> reportContact(@RequestBody ContactInfoDTO info) {
+        try {
+            return ApiResponse.success(contactResolutionService.report(info));
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{username}")
+    public ApiResponse<ContactInfoDTO> resolveContact(@PathVariable String username) {
+        try {
+            ContactInfoDTO info = contactResolutionService.resolve(username);
+            if (info == null) {
+                return ApiResponse.error(404, "用户不在线");
+            }
+            return ApiResponse.success(info);
+        } catch (Exception e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+}
@@ -69,10 +69,13 @@ public class MessageController {
         }
     }
 
-    @PutMapping("/{messageId}/read")
-    public ApiResponse<Void> markAsRead(@PathVariable Long messageId) {
+    /**
+     * 把fromUser发给toUser的私聊消息全部标记为已读（消息延迟写库，发送和推送时还没有id）
+     */
+    @PutMapping("/read")
+    public ApiResponse<Void> markConversationRead(@RequestParam String fromUser, @RequestParam String toUser) {
         try {
-            messageService.markAsRead(messageId);
+            messageService.markConversationRead(fromUser, toUser);
             return ApiResponse.success(null);
         } catch (Exception e) {
             return ApiResponse.error(e.getMessage());
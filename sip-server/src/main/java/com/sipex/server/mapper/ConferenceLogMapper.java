@@ -19,6 +19,10 @@ public interface ConferenceLogMapper {
             "WHERE room_id = #{roomId}")
     int updateByRoomId(ConferenceLog log);
 
+    @Update("UPDATE conference_logs SET ended_at = NOW(), duration = TIMESTAMPDIFF(SECOND, created_at, NOW()), " +
+            "status = 'EXPIRED' WHERE id = #{id}")
+    int expireById(Long id);
+
     @Update("UPDATE conference_logs SET total_messages = total_messages + 1 WHERE room_id = #{roomId}")
     int incrementMessageCount(String roomId);
 
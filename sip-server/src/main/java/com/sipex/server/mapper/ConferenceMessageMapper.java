@@ -3,19 +3,38 @@ package com.sipex.server.mapper;
 import com.sipex.common.entity.ConferenceMessage;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
 public interface ConferenceMessageMapper {
 
-    @Insert("INSERT INTO conference_messages (room_id, from_user, content, message_type) " +
-            "VALUES (#{roomId}, #{fromUser}, #{content}, #{messageType})")
+    @Insert("INSERT INTO conference_messages (room_id, seq, from_user, content, message_type) " +
+            "VALUES (#{roomId}, #{seq}, #{fromUser}, #{content}, #{messageType})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(ConferenceMessage message);
 
+    // 多行INSERT，由写入队列整批调用
+    @Insert("<script>INSERT INTO conference_messages (room_id, seq, from_user, content, message_type, created_at) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.roomId}, #{m.seq}, #{m.fromUser}, #{m.content}, #{m.messageType}, #{m.createdAt})" +
+            "</foreach></script>")
+    int insertBatch(@Param("messages") List<ConferenceMessage> messages);
+
     @Select("SELECT * FROM conference_messages WHERE room_id = #{roomId} ORDER BY created_at DESC LIMIT #{limit}")
     List<ConferenceMessage> findByRoomId(@Param("roomId") String roomId, @Param("limit") int limit);
 
+    // 房间号会复用，按本次会议室的创建时间过滤掉以前同名会议室的消息
+    @Select("SELECT * FROM conference_messages WHERE room_id = #{roomId} AND created_at >= #{since} " +
+            "AND seq > #{afterSeq} ORDER BY seq ASC LIMIT #{limit}")
+    List<ConferenceMessage> findByRoomIdAfterSeq(@Param("roomId") String roomId, @Param("since") LocalDateTime since,
+                                                 @Param("afterSeq") long afterSeq, @Param("limit") int limit);
+
+    @Select("SELECT * FROM conference_messages WHERE room_id = #{roomId} AND created_at >= #{since} " +
+            "AND seq < #{beforeSeq} ORDER BY seq DESC LIMIT #{limit}")
+    List<ConferenceMessage> findByRoomIdBeforeSeq(@Param("roomId") String roomId, @Param("since") LocalDateTime since,
+                                                  @Param("beforeSeq") long beforeSeq, @Param("limit") int limit);
+
     @Select("SELECT * FROM conference_messages WHERE from_user = #{username} ORDER BY created_at DESC LIMIT #{limit}")
     List<ConferenceMessage> findByUsername(@Param("username") String username, @Param("limit") int limit);
 
@@ -0,0 +1,36 @@
+package com.sipex.server.mapper;
+
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface ConferenceRoomMapper {
+
+    @Insert("INSERT IGNORE INTO conference_rooms (room_id, owner_node) VALUES (#{roomId}, #{ownerNode})")
+    int insert(@Param("roomId") String roomId, @Param("ownerNode") String ownerNode);
+
+    @Delete("DELETE FROM conference_rooms WHERE room_id = #{roomId}")
+    int delete(String roomId);
+
+    @Select("SELECT room_id FROM conference_rooms WHERE owner_node = #{ownerNode}")
+    List<String> findByOwner(String ownerNode);
+
+    @Select("SELECT COUNT(*) FROM conference_rooms WHERE room_id = #{roomId}")
+    int countByRoomId(String roomId);
+
+    @Select("SELECT COUNT(*) FROM conference_rooms")
+    int countAll();
+
+    @Insert("INSERT IGNORE INTO conference_room_members (room_id, username) VALUES (#{roomId}, #{username})")
+    int insertMember(@Param("roomId") String roomId, @Param("username") String username);
+
+    @Delete("DELETE FROM conference_room_members WHERE room_id = #{roomId} AND username = #{username}")
+    int deleteMember(@Param("roomId") String roomId, @Param("username") String username);
+
+    @Delete("DELETE FROM conference_room_members WHERE room_id = #{roomId}")
+    int deleteMembers(String roomId);
+
+    @Select("SELECT room_id FROM conference_room_members WHERE username = #{username}")
+    List<String> findRoomIdsByUsername(String username);
+}
@@ -3,6 +3,7 @@ package com.sipex.server.mapper;
 import com.sipex.common.entity.Message;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -13,6 +14,13 @@ public interface MessageMapper {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(Message message);
 
+    // 多行INSERT，由写入队列整批调用
+    @Insert("<script>INSERT INTO messages (from_user, to_user, content, type, file_url, is_group, is_read, created_at) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.fromUser}, #{m.toUser}, #{m.content}, #{m.type}, #{m.fileUrl}, #{m.isGroup}, #{m.isRead}, #{m.createdAt})" +
+            "</foreach></script>")
+    int insertBatch(@Param("messages") List<Message> messages);
+
     @Select("SELECT * FROM messages WHERE (from_user = #{user1} AND to_user = #{user2}) OR (from_user = #{user2} AND to_user = #{user1}) " +
             "ORDER BY created_at DESC LIMIT #{limit}")
     List<Message> findChatHistory(@Param("user1") String user1, @Param("user2") String user2, @Param("limit") int limit);
@@ -20,8 +28,11 @@ public interface MessageMapper {
     @Select("SELECT * FROM messages WHERE to_user = #{username} AND is_group = false AND is_read = false")
     List<Message> findUnreadMessages(String username);
 
-    @Update("UPDATE messages SET is_read = true WHERE id = #{id}")
-    int markAsRead(Long id);
+    // 消息是延迟批量写入的，发送时还没有id，已读按会话（发送方 -> 接收方）标记
+    @Update("UPDATE messages SET is_read = true WHERE from_user = #{fromUser} AND to_user = #{toUser} " +
+            "AND is_group = false AND is_read = false AND created_at <= #{before}")
+    int markConversationRead(@Param("fromUser") String fromUser, @Param("toUser") String toUser,
+                             @Param("before") LocalDateTime before);
 
     @Select("SELECT * FROM messages WHERE to_user = #{toUser} AND is_group = #{isGroup} ORDER BY created_at DESC")
     List<Message> findByToUser(@Param("toUser") String toUser, @Param("isGroup") boolean isGroup);
@@ -0,0 +1,94 @@
+package com.sipex.server.service;
+
+import com.sipex.common.dto.CallSetupMetricsDTO;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 呼叫建立延迟统计服务
+ * 客户端上报的是进程启动以来的累计直方图，这里只保留每个用户最新的一份，汇总时按桶合并
+ */
+@Service
+public class CallSetupMetricsService {
+
+    private final Map<String, CallSetupMetricsDTO> latestReports = new ConcurrentHashMap<>();
+
+    public void saveReport(CallSetupMetricsDTO report) {
+        if (report.getUsername() == null || report.getPhases() == null) {
+            throw new IllegalArgumentException("统计数据不完整");
+        }
+        latestReports.put(report.getUsername(), report);
+    }
+
+    public CallSetupMetricsDTO getUserReport(String username) {
+        return latestReports.get(username);
+    }
+
+    /**
+     * 合并所有用户的直方图（桶边界不一致的报告不参与合并）
+     */
+    public CallSetupMetricsDTO getSummary() {
+        List<Long> bounds = null;
+        Map<String, long[]> mergedBuckets = new LinkedHashMap<>();
+        Map<String, long[]> mergedTotals = new LinkedHashMap<>(); // count, sum, max
+
+        for (CallSetupMetricsDTO report : latestReports.values()) {
+            if (bounds == null) {
+                bounds = report.getBucketBoundsMs();
+            } else if (!bounds.equals(report.getBucketBoundsMs())) {
+                continue;
+            }
+            for (CallSetupMetricsDTO.PhaseLatency phase : report.getPhases()) {
+                long[] buckets = mergedBuckets.computeIfAbsent(phase.getPhase(),
+                    k -> new long[phase.getBucketCounts().size()]);
+                for (int i = 0; i < buckets.length && i < phase.getBucketCounts().size(); i++) {
+                    buckets[i] += phase.getBucketCounts().get(i);
+                }
+                long[] totals = mergedTotals.computeIfAbsent(phase.getPhase(), k -> new long[3]);
+                totals[0] += phase.getCount();
+                totals[1] += phase.getMeanMs() * phase.getCount();
+                totals[2] = Math.max(totals[2], phase.getMaxMs());
+            }
+        }
+
+        List<CallSetupMetricsDTO.PhaseLatency> phases = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : mergedBuckets.entrySet()) {
+            long[] buckets = entry.getValue();
+            long[] totals = mergedTotals.get(entry.getKey());
+            List<Long> bucketCounts = new ArrayList<>(buckets.length);
+            for (long c : buckets) {
+                bucketCounts.add(c);
+            }
+            long mean = totals[0] == 0 ? 0 : totals[1] / totals[0];
+            phases.add(new CallSetupMetricsDTO.PhaseLatency(entry.getKey(), totals[0], mean,
+                percentile(bounds, buckets, totals[0], totals[2], 50),
+                percentile(bounds, buckets, totals[0], totals[2], 95),
+                totals[2], bucketCounts));
+        }
+
+        String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return new CallSetupMetricsDTO("ALL", now, bounds != null ? bounds : new ArrayList<>(), phases);
+    }
+
+    private long percentile(List<Long> bounds, long[] buckets, long count, long max, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return i < bounds.size() ? Math.min(bounds.get(i), max) : max;
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,269 @@
+package com.sipex.server.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.ConferenceEventDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会议室多节点支持
+ * 会议室归属按房间号哈希到 conference.cluster.nodes 中的一个节点，发到其他节点的会议室请求转发给所属节点；
+ * 所属节点把会议室事件转发给其他节点，由它们推送给连在本节点的STOMP订阅者。
+ * 没有配置节点列表时是单节点模式，所有会议室都在本机。
+ * 节点之间的请求带共享密钥 conference.cluster.secret，不带或不匹配的不当作节点请求
+ */
+@Service
+public class ConferenceClusterService {
+
+    // 转发过来的请求带这个头，收到的节点直接在本机处理，避免节点配置不一致时来回转发
+    public static final String FORWARDED_HEADER = "X-Conference-Forwarded";
+    // 节点之间的请求（转发和事件推送）都带共享密钥
+    public static final String SECRET_HEADER = "X-Conference-Cluster-Secret";
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    // 要比长轮询最长挂起时间长
+    private static final int READ_TIMEOUT_MS = 70 * 1000;
+    // 每个节点最多积压的待转发事件，超过的丢弃（客户端会通过 /events?afterSeq 补拉）
+    private static final int RELAY_QUEUE_CAPACITY = 1000;
+
+    @Value("${conference.cluster.self:}")
+    private String self;
+
+    @Value("${conference.cluster.nodes:}")
+    private String nodesConfig;
+
+    @Value("${conference.cluster.secret:}")
+    private String secret;
+
+    @Value("${conference.store:memory}")
+    private String store;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<String> nodes = new ArrayList<>();
+
+    // 异步HTTP客户端：转发请求（包括挂起的长轮询）不占用线程，等待响应期间只占一个连接
+    private final ExecutorService httpExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "Conference-Forward");
+        t.setDaemon(true);
+        return t;
+    });
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MS))
+            .executor(httpExecutor)
+            .build();
+
+    // 每个节点一个单线程、有界队列，保证同一会议室的事件按顺序到达
+    private final Map<String, ThreadPoolExecutor> relayExecutors = new ConcurrentHashMap<>();
+    private final AtomicLong relayDropped = new AtomicLong();
+    private final AtomicLong relayFailed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        for (String node : nodesConfig.split(",")) {
+            if (!node.trim().isEmpty()) {
+                nodes.add(trimSlash(node.trim()));
+            }
+        }
+        self = trimSlash(self.trim());
+        if (!nodes.isEmpty() && !nodes.contains(self)) {
+            throw new IllegalStateException("conference.cluster.self 必须是 conference.cluster.nodes 中的一个: " + self);
+        }
+        // 内存目录只在本机可见，多个节点各自分配房间号会重复
+        if (isClustered() && !"database".equals(store)) {
+            throw new IllegalStateException("配置了多个会议室节点时 conference.store 必须为 database，当前为: " + store);
+        }
+        if (isClustered() && secret.isEmpty()) {
+            throw new IllegalStateException("配置了多个会议室节点时必须设置 conference.cluster.secret");
+        }
+
+        if (isClustered()) {
+            System.out.println("会议室多节点模式: 本节点 " + self + ", 共 " + nodes.size() + " 个节点");
+        }
+    }
+
+    public boolean isClustered() {
+        return nodes.size() > 1;
+    }
+
+    /**
+     * 本节点标识（单节点模式下为 local）
+     */
+    public String getSelf() {
+        return self.isEmpty() ? "local" : self;
+    }
+
+    /**
+     * 请求带的密钥是否是本集群的（单节点模式下一律不是）
+     */
+    public boolean isTrusted(String requestSecret) {
+        if (!isClustered() || requestSecret == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                requestSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String ownerOf(String roomId) {
+        return nodes.get(Math.floorMod(roomId.hashCode(), nodes.size()));
+    }
+
+    public boolean isLocal(String roomId) {
+        return !isClustered() || ownerOf(roomId).equals(self);
+    }
+
+    /**
+     * 把请求转发给会议室所属节点，path 包含查询参数
+     */
+    public <T> CompletableFuture<ApiResponse<T>> forward(String roomId, HttpMethod method, String path, Object body,
+                                                        ParameterizedTypeReference<ApiResponse<T>> type) {
+        String url = ownerOf(roomId) + path;
+        HttpRequest request;
+        try {
+            HttpRequest.BodyPublisher publisher = body == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(READ_TIMEOUT_MS))
+                    .header(FORWARDED_HEADER, self)
+                    .header(SECRET_HEADER, secret)
+                    .header("Content-Type", "application/json")
+                    .method(method.name(), publisher)
+                    .build();
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ApiResponse.error(500, "转发会议室请求失败: " + e.getMessage()));
+        }
+
+        JavaType responseType = objectMapper.getTypeFactory().constructType(type.getType());
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, error) -> {
+                    try {
+                        if (error != null) {
+                            throw error;
+                        }
+                        return objectMapper.<ApiResponse<T>>readValue(response.body(), responseType);
+                    } catch (Throwable e) {
+                        System.err.println("转发会议室请求失败: " + url + " - " + e.getMessage());
+                        return ApiResponse.<T>error(503, "会议室所在节点不可用");
+                    }
+                });
+    }
+
+    /**
+     * 把本节点会议室的事件转发给其他节点（在会议室Actor里调用，只是排队，不等待）
+     */
+    public void relay(ConferenceEventDTO event) {
+        if (!isClustered()) {
+            return;
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(event);
+        } catch (Exception e) {
+            System.err.println("序列化会议室事件失败: " + e.getMessage());
+            return;
+        }
+        for (String node : nodes) {
+            if (node.equals(self)) {
+                continue;
+            }
+            relayExecutors.computeIfAbsent(node, this::newRelayExecutor).execute(() -> {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/api/conference/cluster/events"))
+                        .timeout(Duration.ofMillis(CONNECT_TIMEOUT_MS * 2))
+                        .header(SECRET_HEADER, secret)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build();
+                try {
+                    httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                } catch (Exception e) {
+                    relayFailed.incrementAndGet();
+                    System.err.println("转发会议室事件失败: " + node + " - " + e.getMessage());
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 收到其他节点转发的会议室事件，推送给本节点的订阅者
+     */
+    public void deliver(ConferenceEventDTO event) {
+        messagingTemplate.convertAndSend("/topic/conference/" + event.getRoomId(), event);
+    }
+
+    /**
+     * 事件转发积压、丢弃和失败次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("self", getSelf());
+        stats.put("nodes", nodes);
+        Map<String, Integer> backlog = new LinkedHashMap<>();
+        relayExecutors.forEach((node, executor) -> backlog.put(node, executor.getQueue().size()));
+        stats.put("relayBacklog", backlog);
+        stats.put("relayDropped", relayDropped.get());
+        stats.put("relayFailed", relayFailed.get());
+        return stats;
+    }
+
+    private ThreadPoolExecutor newRelayExecutor(String node) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(RELAY_QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "Conference-Relay");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (task, executor) -> {
+                    // 节点太慢或不可用：丢弃事件，第一次和之后每1000次打一条日志
+                    if (relayDropped.getAndIncrement() % 1000 == 0) {
+                        System.err.println("转发会议室事件积压已满，丢弃事件: " + node + "（累计 " + relayDropped.get() + "）");
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutors.values().forEach(ExecutorService::shutdown);
+        httpExecutor.shutdown();
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
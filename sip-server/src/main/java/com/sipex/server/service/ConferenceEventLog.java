@@ -0,0 +1,71 @@
+package com.sipex.server.service;
+
+import com.sipex.common.dto.ConferenceEventDTO;
+import com.sipex.common.dto.ConferenceMessageDTO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个会议室的事件日志
+ * 序号连续递增，只保留最近 CAPACITY 条，供断线重连的客户端按序号补拉
+ */
+public class ConferenceEventLog {
+
+    private static final int CAPACITY = 500;
+
+    private final String roomId;
+    private final ArrayDeque<ConferenceEventDTO> events = new ArrayDeque<>();
+    private long lastSeq;
+
+    public ConferenceEventLog(String roomId) {
+        this(roomId, 0);
+    }
+
+    /**
+     * 从lastSeq之后继续编号（重启后恢复的会议室），之前的事件不可补拉
+     */
+    public ConferenceEventLog(String roomId, long lastSeq) {
+        this.roomId = roomId;
+        this.lastSeq = lastSeq;
+    }
+
+    /**
+     * 追加事件并分配序号
+     */
+    public synchronized ConferenceEventDTO append(String type, String username,
+                                                  ConferenceMessageDTO message, List<String> participants) {
+        ConferenceEventDTO event = new ConferenceEventDTO(roomId, ++lastSeq, type, username, message,
+                new ArrayList<>(participants), System.currentTimeMillis());
+        events.addLast(event);
+        if (events.size() > CAPACITY) {
+            events.removeFirst();
+        }
+        return event;
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * afterSeq之后的事件；afterSeq之后的事件已经有被淘汰的返回null
+     */
+    public synchronized List<ConferenceEventDTO> after(long afterSeq) {
+        List<ConferenceEventDTO> result = new ArrayList<>();
+        if (afterSeq >= lastSeq) {
+            return result;
+        }
+        long oldest = events.isEmpty() ? lastSeq + 1 : events.peekFirst().getSeq();
+        if (afterSeq < oldest - 1) {
+            return null;
+        }
+        for (ConferenceEventDTO event : events) {
+            if (event.getSeq() > afterSeq) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
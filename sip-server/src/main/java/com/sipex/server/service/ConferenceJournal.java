@@ -0,0 +1,561 @@
+package com.sipex.server.service;
+
+import com.sipex.common.dto.ConferenceEventDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 会议室状态日志（本地内存映射文件，只追加）
+ * 每个会议室事件追加一条记录：写入映射内存即返回，不经过数据库也不等待落盘，由 flush() 定期刷盘。
+ * 日志在两个段文件（.0/.1）之间轮换：文件写满或定期压缩时，把当前存活会议室的快照写入另一个段，
+ * 写完后再写段头的代数，启动时重放代数较大的那个段。不重命名、不截断仍被映射的文件（Windows上会失败）。
+ * 压缩时只在锁内复制会议室状态，写快照和刷盘都在锁外进行，期间追加的记录照常写当前段并另外暂存，
+ * 切换时补写到新段；段写满时交给后台线程压缩，不在会议室Actor里等磁盘
+ *
+ * 段头：[int 魔数][long 代数]；记录格式：[int 长度][byte 类型][内容]，长度为0表示后面没有记录。
+ * 先写内容和后面的0再写长度，写了一半的记录会被忽略
+ */
+public class ConferenceJournal {
+
+    private static final byte RECORD_SNAPSHOT = 1;
+    private static final byte RECORD_JOINED = 2;
+    private static final byte RECORD_LEFT = 3;
+    private static final byte RECORD_MESSAGE = 4;
+    private static final byte RECORD_CLOSED = 5;
+
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private static final int SEGMENT_MAGIC = 0x434A4E4C;
+    private static final int HEADER_BYTES = 12;
+
+    /**
+     * 日志里一个存活会议室的状态
+     */
+    public static class RoomState {
+        private final String roomId;
+        private final long createdAt;
+        private long lastEventSeq;
+        private long lastMessageSeq;
+        private final Set<String> participants = new LinkedHashSet<>();
+
+        RoomState(String roomId, long createdAt) {
+            this.roomId = roomId;
+            this.createdAt = createdAt;
+        }
+
+        public String getRoomId() {
+            return roomId;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getLastEventSeq() {
+            return lastEventSeq;
+        }
+
+        public long getLastMessageSeq() {
+            return lastMessageSeq;
+        }
+
+        public Set<String> getParticipants() {
+            return participants;
+        }
+
+        RoomState copy() {
+            RoomState copy = new RoomState(roomId, createdAt);
+            copy.lastEventSeq = lastEventSeq;
+            copy.lastMessageSeq = lastMessageSeq;
+            copy.participants.addAll(participants);
+            return copy;
+        }
+    }
+
+    // 旧版本的单文件日志，启动时迁移到段文件
+    private final Path legacyFile;
+    private final Path[] segments;
+    private final int minFileBytes;
+
+    // 存活会议室的当前状态，压缩时据此写快照
+    private final Map<String, RoomState> rooms = new LinkedHashMap<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    // 只由持有compactLock的线程使用
+    private final ByteBuffer snapshotScratch = ByteBuffer.allocate(MAX_RECORD_BYTES);
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int activeSegment = -1;
+    private long generation;
+    // 当前段已写满，记录只更新内存状态，等压缩后的快照
+    private boolean full;
+    // 压缩进行中时不为null：复制快照之后追加的记录，切换时补写到新段
+    private List<byte[]> pending;
+
+    // 同一时间只有一个压缩
+    private final Object compactLock = new Object();
+    private final AtomicBoolean compactRequested = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Conference-Journal-Compact");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ConferenceJournal(Path file, int minFileBytes) {
+        this.legacyFile = file;
+        this.segments = new Path[] {
+                file.resolveSibling(file.getFileName() + ".0"),
+                file.resolveSibling(file.getFileName() + ".1")
+        };
+        this.minFileBytes = minFileBytes;
+    }
+
+    /**
+     * 重放已有日志并压缩成新文件，返回需要恢复的会议室
+     */
+    public Collection<RoomState> open() throws IOException {
+        boolean migrating;
+        synchronized (this) {
+            migrating = load();
+        }
+        compact();
+        if (migrating) {
+            // 快照写进段文件后再删除旧文件
+            try {
+                Files.delete(legacyFile);
+            } catch (IOException e) {
+                System.err.println("删除旧的会议室日志失败: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            return new ArrayList<>(rooms.values());
+        }
+    }
+
+    /**
+     * 重放代数最大的段，没有段文件时重放旧版本的单文件日志；返回是否是从旧文件迁移
+     */
+    private boolean load() throws IOException {
+        Files.createDirectories(legacyFile.toAbsolutePath().getParent());
+        for (int i = 0; i < segments.length; i++) {
+            long segmentGeneration = readGeneration(segments[i]);
+            if (segmentGeneration > generation) {
+                generation = segmentGeneration;
+                activeSegment = i;
+            }
+        }
+        boolean migrating = activeSegment < 0 && Files.exists(legacyFile);
+        if (activeSegment >= 0) {
+            replay(segments[activeSegment], HEADER_BYTES);
+        } else if (migrating) {
+            replay(legacyFile, 0);
+        }
+        return migrating;
+    }
+
+    /**
+     * 记录一个会议室事件（在会议室Actor里调用）
+     */
+    public synchronized void append(ConferenceEventDTO event) {
+        if (mapped == null) {
+            return;
+        }
+        try {
+            RoomState state = apply(event);
+            if (state == null) {
+                return;
+            }
+            scratch.clear();
+            switch (event.getType()) {
+                case ConferenceEventDTO.PARTICIPANT_JOINED:
+                    scratch.put(RECORD_JOINED);
+                    break;
+                case ConferenceEventDTO.PARTICIPANT_LEFT:
+                    scratch.put(RECORD_LEFT);
+                    break;
+                case ConferenceEventDTO.MESSAGE_ADDED:
+                    scratch.put(RECORD_MESSAGE);
+                    break;
+                default:
+                    scratch.put(RECORD_CLOSED);
+                    break;
+            }
+            putString(scratch, event.getRoomId());
+            scratch.putLong(event.getSeq());
+            scratch.putLong(event.getTimestamp());
+            putString(scratch, event.getUsername());
+            scratch.putLong(state.lastMessageSeq);
+            if (pending != null) {
+                pending.add(Arrays.copyOf(scratch.array(), scratch.position()));
+            }
+            if (!full && !writeTo(mapped, scratch)) {
+                // 段满了：之后的事件先只记在内存状态里，后台压缩出的快照包含它们的结果
+                full = true;
+                System.err.println("会议室日志段已满，后台压缩");
+            }
+            if (full) {
+                requestCompact();
+            }
+        } catch (Exception e) {
+            System.err.println("写入会议室日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在后台线程压缩；已经有一个在排队时不重复提交
+     */
+    private void requestCompact() {
+        if (!compactRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactor.execute(() -> {
+                compactRequested.set(false);
+                try {
+                    compact();
+                } catch (Exception e) {
+                    System.err.println("会议室日志后台压缩失败: " + e.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            // 已关闭
+            compactRequested.set(false);
+        }
+    }
+
+    /**
+     * 只保留存活会议室的快照，写入另一个段文件后切换过去；失败时继续使用当前段。
+     * 只有复制状态和最后的切换持有锁，写文件和刷盘期间会议室照常追加事件
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            List<RoomState> snapshot = new ArrayList<>();
+            int target;
+            synchronized (this) {
+                for (RoomState state : rooms.values()) {
+                    snapshot.add(state.copy());
+                }
+                target = activeSegment == 0 ? 1 : 0;
+                pending = new ArrayList<>();
+            }
+
+            FileChannel targetChannel = null;
+            MappedByteBuffer targetMapped;
+            try {
+                long snapshotBytes = HEADER_BYTES + 4;
+                for (RoomState state : snapshot) {
+                    snapshotBytes += 4 + 1 + stringBytes(state.roomId) + 8 * 3 + 4;
+                    for (String username : state.participants) {
+                        snapshotBytes += stringBytes(username);
+                    }
+                }
+                // 至少留出和快照一样大的空间给后续追加
+                long size = Math.max(minFileBytes, snapshotBytes * 2);
+
+                targetChannel = FileChannel.open(segments[target], StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                targetMapped = targetChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                // 先作废段头，快照写完前这个段不会被当成最新的
+                targetMapped.putInt(0, 0);
+                targetMapped.putInt(HEADER_BYTES, 0);
+                targetMapped.position(HEADER_BYTES);
+                for (RoomState state : snapshot) {
+                    ByteBuffer record = snapshotScratch;
+                    record.clear();
+                    record.put(RECORD_SNAPSHOT);
+                    putString(record, state.roomId);
+                    record.putLong(state.createdAt);
+                    record.putLong(state.lastEventSeq);
+                    record.putLong(state.lastMessageSeq);
+                    record.putInt(state.participants.size());
+                    for (String username : state.participants) {
+                        putString(record, username);
+                    }
+                    if (!writeTo(targetMapped, record)) {
+                        throw new IOException("会议室快照超出文件大小");
+                    }
+                }
+                targetMapped.force();
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    pending = null;
+                }
+                if (targetChannel != null) {
+                    targetChannel.close();
+                }
+                throw e;
+            }
+
+            FileChannel oldChannel;
+            int rooms;
+            synchronized (this) {
+                // 补写复制快照之后追加的记录；放不下的不再写，它们的结果由下一次压缩的快照包含
+                boolean overflow = false;
+                for (byte[] bytes : pending) {
+                    ByteBuffer record = ByteBuffer.wrap(bytes);
+                    record.position(bytes.length);
+                    if (!writeTo(targetMapped, record)) {
+                        overflow = true;
+                        break;
+                    }
+                }
+                pending = null;
+                targetMapped.putInt(0, SEGMENT_MAGIC);
+                targetMapped.putLong(4, generation + 1);
+
+                oldChannel = channel;
+                channel = targetChannel;
+                mapped = targetMapped;
+                activeSegment = target;
+                generation++;
+                full = overflow;
+                rooms = snapshot.size();
+                if (overflow) {
+                    requestCompact();
+                }
+            }
+            // 刷盘在锁外，flush()也可能同时在刷
+            targetMapped.force();
+            if (oldChannel != null) {
+                oldChannel.close();
+            }
+            System.out.println("会议室日志已压缩: " + rooms + " 个会议室, 段 " + segments[target].getFileName());
+        }
+    }
+
+    /**
+     * 把映射内存刷到磁盘（定时调用）
+     */
+    public void flush() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            current = mapped;
+        }
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    public void close() {
+        compactor.shutdownNow();
+        boolean compactNeeded;
+        synchronized (this) {
+            compactNeeded = full && mapped != null;
+        }
+        if (compactNeeded) {
+            // 段写满后只记在内存里的事件，关闭前写进快照
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("关闭前压缩会议室日志失败: " + e.getMessage());
+            }
+        }
+        synchronized (compactLock) {
+            synchronized (this) {
+                if (mapped != null) {
+                    mapped.force();
+                    mapped = null;
+                }
+                try {
+                    if (channel != null) {
+                        channel.close();
+                        channel = null;
+                    }
+                } catch (IOException e) {
+                    System.err.println("关闭会议室日志失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public synchronized int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * 把record里已写入的内容作为一条记录写到buffer，后面跟一个0作为结束标记；空间不够时返回false
+     */
+    private static boolean writeTo(MappedByteBuffer buffer, ByteBuffer record) {
+        int length = record.position();
+        if (buffer.remaining() < 4 + length + 4) {
+            return false;
+        }
+        record.flip();
+        int position = buffer.position();
+        buffer.position(position + 4);
+        buffer.put(record);
+        buffer.putInt(buffer.position(), 0);
+        buffer.putInt(position, length);
+        return true;
+    }
+
+    /**
+     * 段头有效时返回代数，否则返回0
+     */
+    private static long readGeneration(Path segment) throws IOException {
+        if (!Files.exists(segment)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && in.read(header) > 0) {
+                // 读满段头
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != SEGMENT_MAGIC) {
+                return 0;
+            }
+            return header.getLong();
+        }
+    }
+
+    /**
+     * 读入堆内存后重放（不映射文件，之后可以删除或重写它）
+     */
+    private void replay(Path source, int offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(source));
+        buffer.position(Math.min(offset, buffer.limit()));
+        int records = 0;
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            buffer.position(buffer.position() + length);
+            try {
+                if (!replayRecord(record)) {
+                    break;
+                }
+            } catch (RuntimeException e) {
+                // 末尾记录不完整（停机时只写了一部分），之前的记录照常恢复
+                System.err.println("会议室日志第 " + (records + 1) + " 条记录损坏，停止重放: " + e);
+                break;
+            }
+            records++;
+        }
+        System.out.println("会议室日志重放 " + records + " 条记录, 存活会议室 " + rooms.size() + " 个");
+    }
+
+    private boolean replayRecord(ByteBuffer record) {
+        byte type = record.get();
+        String roomId = getString(record);
+        if (type == RECORD_SNAPSHOT) {
+            RoomState state = new RoomState(roomId, record.getLong());
+            state.lastEventSeq = record.getLong();
+            state.lastMessageSeq = record.getLong();
+            int count = record.getInt();
+            for (int i = 0; i < count; i++) {
+                state.participants.add(getString(record));
+            }
+            rooms.put(roomId, state);
+            return true;
+        }
+
+        ConferenceEventDTO event = new ConferenceEventDTO();
+        event.setRoomId(roomId);
+        event.setSeq(record.getLong());
+        event.setTimestamp(record.getLong());
+        event.setUsername(getString(record));
+        long messageSeq = record.getLong();
+        switch (type) {
+            case RECORD_JOINED:
+                event.setType(ConferenceEventDTO.PARTICIPANT_JOINED);
+                break;
+            case RECORD_LEFT:
+                event.setType(ConferenceEventDTO.PARTICIPANT_LEFT);
+                break;
+            case RECORD_MESSAGE:
+                event.setType(ConferenceEventDTO.MESSAGE_ADDED);
+                break;
+            case RECORD_CLOSED:
+                event.setType(ConferenceEventDTO.ROOM_CLOSED);
+                break;
+            default:
+                return false;
+        }
+        RoomState state = apply(event);
+        if (state != null && type == RECORD_MESSAGE) {
+            state.lastMessageSeq = messageSeq;
+        }
+        return true;
+    }
+
+    /**
+     * 按事件更新内存中的会议室状态，返回更新后的状态（会议室关闭时返回关闭前的）
+     */
+    private RoomState apply(ConferenceEventDTO event) {
+        RoomState state = rooms.get(event.getRoomId());
+        if (state == null) {
+            if (!ConferenceEventDTO.PARTICIPANT_JOINED.equals(event.getType())) {
+                return null;
+            }
+            // 会议室的第一个事件是创建者加入
+            state = new RoomState(event.getRoomId(), event.getTimestamp());
+            rooms.put(event.getRoomId(), state);
+        }
+        state.lastEventSeq = event.getSeq();
+        switch (event.getType()) {
+            case ConferenceEventDTO.PARTICIPANT_JOINED:
+                state.participants.add(event.getUsername());
+                break;
+            case ConferenceEventDTO.PARTICIPANT_LEFT:
+                state.participants.remove(event.getUsername());
+                break;
+            case ConferenceEventDTO.MESSAGE_ADDED:
+                if (event.getMessage() != null && event.getMessage().getSeq() != null) {
+                    state.lastMessageSeq = event.getMessage().getSeq();
+                }
+                break;
+            case ConferenceEventDTO.ROOM_CLOSED:
+                rooms.remove(event.getRoomId());
+                break;
+            default:
+                break;
+        }
+        return state;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static int stringBytes(String value) {
+        return 2 + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
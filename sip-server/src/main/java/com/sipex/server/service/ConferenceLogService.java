@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Predicate;
 
 @Service
 public class ConferenceLogService {
@@ -53,6 +54,19 @@ public class ConferenceLogService {
         }
     }
 
+    /**
+     * 服务重启后，会议室已经不存在的ACTIVE记录标记为过期，返回处理的条数
+     */
+    public int expireOrphanedLogs(Predicate<String> isLive) {
+        int expired = 0;
+        for (ConferenceLog log : conferenceLogMapper.findByStatus("ACTIVE")) {
+            if (!isLive.test(log.getRoomId())) {
+                expired += conferenceLogMapper.expireById(log.getId());
+            }
+        }
+        return expired;
+    }
+
     /**
      * 更新最大参与人数
      */
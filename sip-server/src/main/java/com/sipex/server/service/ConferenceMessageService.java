@@ -2,11 +2,17 @@ package com.sipex.server.service;
 
 import com.sipex.common.entity.ConferenceMessage;
 import com.sipex.server.mapper.ConferenceMessageMapper;
+import com.sipex.server.util.WriteBehindQueue;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ConferenceMessageService {
@@ -14,19 +20,76 @@ public class ConferenceMessageService {
     @Autowired
     private ConferenceMessageMapper messageMapper;
 
+    @Value("${write-behind.capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${write-behind.offer-timeout-ms:200}")
+    private long offerTimeoutMs;
+
+    private WriteBehindQueue<ConferenceMessage> writeQueue;
+
+    @PostConstruct
+    public void init() {
+        writeQueue = new WriteBehindQueue<>("Conference-Message-Writer", queueCapacity, batchSize, flushIntervalMs,
+                offerTimeoutMs, messageMapper::insertBatch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeQueue.stop(10000);
+    }
+
+    /**
+     * 保存消息：放入写入队列，由后台线程批量写库；队列满时抛异常
+     */
+    public void saveMessage(String roomId, long seq, String fromUser, String content, String messageType) {
+        writeQueue.offer(toEntity(roomId, seq, fromUser, content, messageType));
+    }
+
+    /**
+     * 预占写入队列的一个位置，队列满时最多等待offer-timeout-ms后抛异常；
+     * 在调用方线程上先占位置，会议室Actor里再用 saveReservedMessage() 放入，不会阻塞会议室线程
+     */
+    public void reserveSlot() {
+        writeQueue.reserve();
+    }
+
     /**
-     * 保存消息（异步）
+     * 归还预占了但没用上的位置（比如会议室已关闭）
      */
-    @Async
-    public void saveMessage(String roomId, String fromUser, String content, String messageType) {
+    public void releaseSlot() {
+        writeQueue.release();
+    }
+
+    /**
+     * 用预占的位置保存消息，不阻塞
+     */
+    public void saveReservedMessage(String roomId, long seq, String fromUser, String content, String messageType) {
+        writeQueue.offerReserved(toEntity(roomId, seq, fromUser, content, messageType));
+    }
+
+    private ConferenceMessage toEntity(String roomId, long seq, String fromUser, String content, String messageType) {
         ConferenceMessage message = new ConferenceMessage();
         message.setRoomId(roomId);
+        message.setSeq(seq);
         message.setFromUser(fromUser);
         message.setContent(content);
         message.setMessageType(messageType != null ? messageType : "text");
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
 
-        messageMapper.insert(message);
-        System.out.println("✅ 会议室消息已持久化: " + roomId + " - " + fromUser);
+    /**
+     * 写入队列深度和批量写入耗时
+     */
+    public Map<String, Object> getWriteStats() {
+        return writeQueue.getStats();
     }
 
     /**
@@ -36,6 +99,22 @@ public class ConferenceMessageService {
         return messageMapper.findByRoomId(roomId, limit);
     }
 
+    /**
+     * 查询会议室序号大于afterSeq的消息（从旧到新），since为会议室创建时间
+     */
+    public List<ConferenceMessage> getByRoomIdAfterSeq(String roomId, LocalDateTime since, long afterSeq, int limit) {
+        return messageMapper.findByRoomIdAfterSeq(roomId, since, afterSeq, limit);
+    }
+
+    /**
+     * 查询会议室序号小于beforeSeq的最近limit条消息（从旧到新）
+     */
+    public List<ConferenceMessage> getByRoomIdBeforeSeq(String roomId, LocalDateTime since, long beforeSeq, int limit) {
+        List<ConferenceMessage> messages = messageMapper.findByRoomIdBeforeSeq(roomId, since, beforeSeq, limit);
+        Collections.reverse(messages);
+        return messages;
+    }
+
     /**
      * 查询用户发送的消息
      */
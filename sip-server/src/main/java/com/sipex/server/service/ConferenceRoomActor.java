@@ -0,0 +1,267 @@
+package com.sipex.server.service;
+
+import com.sipex.common.dto.ConferenceEventDTO;
+import com.sipex.common.dto.ConferenceEventsResponse;
+import com.sipex.common.dto.ConferenceMessageBuffer;
+import com.sipex.common.dto.ConferenceMessageDTO;
+import com.sipex.common.dto.ConferenceRoom;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 单个会议室的Actor
+ * 会议室状态（参与者、消息、事件日志、挂起的长轮询）只由邮箱里的命令按提交顺序串行修改，不需要加锁；
+ * 所有会议室共用一个线程池，不同会议室的命令可以并行执行
+ */
+public class ConferenceRoomActor {
+
+    // 一次最多连续处理的命令数，处理完让出线程，避免繁忙的会议室占住线程
+    private static final int BATCH_SIZE = 32;
+
+    // 补拉结果被截断时快照中带的消息条数
+    private static final int SNAPSHOT_MESSAGE_LIMIT = 50;
+
+    private final ConferenceRoom room;
+    private final ConferenceEventLog eventLog;
+    private final Consumer<ConferenceEventDTO> publisher;
+    private final Executor executor;
+
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // 等待新消息的长轮询
+    private final List<CompletableFuture<List<ConferenceMessageDTO>>> messageWaiters = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    // 会议室最后活动时间的副本，给过期检查在邮箱外读取
+    private volatile LocalDateTime lastActivityAt;
+
+    public ConferenceRoomActor(ConferenceRoom room, Consumer<ConferenceEventDTO> publisher, Executor executor) {
+        this(room, 0, publisher, executor);
+    }
+
+    /**
+     * 事件序号从lastEventSeq之后继续（从日志恢复的会议室）
+     */
+    public ConferenceRoomActor(ConferenceRoom room, long lastEventSeq,
+                               Consumer<ConferenceEventDTO> publisher, Executor executor) {
+        this.room = room;
+        this.eventLog = new ConferenceEventLog(room.getRoomId(), lastEventSeq);
+        this.publisher = publisher;
+        this.executor = executor;
+        this.lastActivityAt = room.getLastActivityAt();
+    }
+
+    public String getRoomId() {
+        return room.getRoomId();
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return room.getCreatedAt();
+    }
+
+    /**
+     * 最近消息的缓冲区本身是线程安全的，读消息不用经过邮箱
+     */
+    public ConferenceMessageBuffer getMessages() {
+        return room.getMessages();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    /**
+     * 加入，返回加入后的参与者列表
+     */
+    public CompletableFuture<List<String>> join(String username) {
+        return ask(() -> {
+            if (room.isFull()) {
+                throw new RuntimeException("会议室已满");
+            }
+            if (!room.addParticipant(username)) {
+                throw new RuntimeException("加入会议室失败");
+            }
+            publish(ConferenceEventDTO.PARTICIPANT_JOINED, username, null);
+            return new ArrayList<>(room.getParticipants());
+        });
+    }
+
+    /**
+     * 离开，返回离开后的参与者列表；最后一个人离开时关闭会议室
+     */
+    public CompletableFuture<List<String>> leave(String username) {
+        return ask(() -> {
+            if (room.removeParticipant(username)) {
+                publish(ConferenceEventDTO.PARTICIPANT_LEFT, username, null);
+            }
+            if (room.isEmpty()) {
+                close();
+            }
+            return new ArrayList<>(room.getParticipants());
+        });
+    }
+
+    /**
+     * 当前参与者列表（同时刷新活动时间）
+     */
+    public CompletableFuture<List<String>> participants() {
+        return ask(() -> {
+            room.updateActivity();
+            return new ArrayList<>(room.getParticipants());
+        });
+    }
+
+    /**
+     * 添加消息：分配序号并交给persist，再写入缓冲区、推送并唤醒挂起的长轮询
+     */
+    public CompletableFuture<ConferenceMessageDTO> addMessage(ConferenceMessageDTO message,
+                                                              Consumer<ConferenceMessageDTO> persist) {
+        return ask(() -> {
+            // 先分配序号交给persist（写入队列，在会议室线程上执行，不能阻塞），它抛异常时消息不进缓冲区也不推送
+            message.setSeq(room.getMessages().getLastSeq() + 1);
+            persist.accept(message);
+            room.addMessage(message);
+            publish(ConferenceEventDTO.MESSAGE_ADDED, message.getFromUser(), message);
+            // 挂起的长轮询在登记时都没有更新的消息，这条就是它们要的
+            releaseWaiters(Collections.singletonList(message));
+            return message;
+        });
+    }
+
+    /**
+     * 最后活动时间早于deadline的关闭，返回关闭时的参与者列表，没有过期返回null。
+     * 判断和关闭在同一个命令里，不会和同时到达的加入、发消息交错
+     */
+    public CompletableFuture<List<String>> expireIfIdle(LocalDateTime deadline) {
+        return ask(() -> {
+            if (!room.getLastActivityAt().isBefore(deadline)) {
+                return null;
+            }
+            close();
+            return new ArrayList<>(room.getParticipants());
+        });
+    }
+
+    /**
+     * 有比afterSeq新的消息立即返回，否则挂起到下一条消息到达（会议室关闭时返回空列表）。
+     * 调用方不再等待时应取消返回的future
+     */
+    public CompletableFuture<List<ConferenceMessageDTO>> awaitMessagesAfter(long afterSeq, int limit) {
+        CompletableFuture<List<ConferenceMessageDTO>> waiter = new CompletableFuture<>();
+        waiter.whenComplete((messages, error) -> {
+            if (waiter.isCancelled()) {
+                tell(() -> messageWaiters.remove(waiter));
+            }
+        });
+        tell(() -> {
+            if (closed) {
+                waiter.complete(Collections.emptyList());
+                return;
+            }
+            List<ConferenceMessageDTO> newer = room.getMessagesAfter(afterSeq, limit);
+            if (!newer.isEmpty()) {
+                waiter.complete(newer);
+            } else if (!waiter.isDone()) {
+                messageWaiters.add(waiter);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * 补拉afterSeq之后的事件；已经淘汰出日志的返回当前快照
+     */
+    public CompletableFuture<ConferenceEventsResponse> eventsAfter(long afterSeq) {
+        return ask(() -> {
+            List<ConferenceEventDTO> events = eventLog.after(afterSeq);
+            if (events != null) {
+                return new ConferenceEventsResponse(room.getRoomId(), eventLog.getLastSeq(), false, events, null, null);
+            }
+            return new ConferenceEventsResponse(room.getRoomId(), eventLog.getLastSeq(), true, new ArrayList<>(),
+                    new ArrayList<>(room.getParticipants()), room.getRecentMessages(SNAPSHOT_MESSAGE_LIMIT));
+        });
+    }
+
+    private void close() {
+        closed = true;
+        publish(ConferenceEventDTO.ROOM_CLOSED, null, null);
+        releaseWaiters(Collections.emptyList());
+    }
+
+    private void publish(String type, String username, ConferenceMessageDTO message) {
+        publisher.accept(eventLog.append(type, username, message, room.getParticipants()));
+    }
+
+    private void releaseWaiters(List<ConferenceMessageDTO> messages) {
+        List<CompletableFuture<List<ConferenceMessageDTO>>> waiters = new ArrayList<>(messageWaiters);
+        messageWaiters.clear();
+        for (CompletableFuture<List<ConferenceMessageDTO>> waiter : waiters) {
+            waiter.complete(messages);
+        }
+    }
+
+    /**
+     * 提交命令；会议室关闭后提交的命令以"会议室不存在"失败
+     */
+    private <T> CompletableFuture<T> ask(Supplier<T> command) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        tell(() -> {
+            try {
+                if (closed) {
+                    throw new RuntimeException("会议室不存在");
+                }
+                T result = command.get();
+                lastActivityAt = room.getLastActivityAt();
+                future.complete(result);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private void tell(Runnable command) {
+        mailbox.add(command);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Runnable command = mailbox.poll();
+                if (command == null) {
+                    break;
+                }
+                try {
+                    command.run();
+                } catch (Exception e) {
+                    System.err.println("会议室 " + room.getRoomId() + " 处理命令失败: " + e.getMessage());
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            // 放下标志后邮箱里还有命令（没处理完或刚提交的），重新排队
+            if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.sipex.server.service;
+
+import com.sipex.common.dto.ConferenceEventDTO;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 活跃会议室登记表
+ * 房间号按序号经一个置换映射到 ROOM-100000..ROOM-999999：一圈之内不会重复，看起来也不连续，
+ * 转完一圈后跳过仍在使用的号码。同时维护用户 -> 所在会议室的索引，由会议室事件驱动更新
+ */
+public class ConferenceRoomRegistry {
+
+    private static final int ID_BASE = 100000;
+    private static final int ID_SPACE = 900000;
+    // 与ID_SPACE互质，序号乘上它再取模是一一映射
+    private static final long ID_STRIDE = 538247;
+
+    private final Map<String, ConferenceRoomActor> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> roomsByUser = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong(ThreadLocalRandom.current().nextInt(ID_SPACE));
+
+    /**
+     * 分配房间号并登记factory创建的会议室；factory返回null表示这个号码不能用，换下一个
+     */
+    public ConferenceRoomActor register(Function<String, ConferenceRoomActor> factory) {
+        for (int attempt = 0; attempt < ID_SPACE; attempt++) {
+            long n = sequence.getAndIncrement() % ID_SPACE;
+            String roomId = "ROOM-" + (ID_BASE + n * ID_STRIDE % ID_SPACE);
+            if (rooms.containsKey(roomId)) {
+                continue;
+            }
+            ConferenceRoomActor actor = factory.apply(roomId);
+            if (actor != null && rooms.putIfAbsent(roomId, actor) == null) {
+                return actor;
+            }
+        }
+        throw new RuntimeException("会议室数量已达上限");
+    }
+
+    /**
+     * 登记从日志恢复的会议室（沿用原来的房间号）
+     */
+    public void restore(ConferenceRoomActor actor, Collection<String> participants) {
+        rooms.put(actor.getRoomId(), actor);
+        for (String username : participants) {
+            addToIndex(username, actor.getRoomId());
+        }
+    }
+
+    public ConferenceRoomActor get(String roomId) {
+        return rooms.get(roomId);
+    }
+
+    public boolean contains(String roomId) {
+        return rooms.containsKey(roomId);
+    }
+
+    public int size() {
+        return rooms.size();
+    }
+
+    public Collection<ConferenceRoomActor> values() {
+        return rooms.values();
+    }
+
+    /**
+     * 用户当前所在的会议室
+     */
+    public Set<String> getRoomsOf(String username) {
+        Set<String> roomIds = roomsByUser.get(username);
+        return roomIds == null ? Collections.emptySet() : new HashSet<>(roomIds);
+    }
+
+    /**
+     * 会议室事件（在会议室Actor里按顺序调用）：更新用户索引，会议室关闭时注销
+     */
+    public void onEvent(ConferenceEventDTO event) {
+        switch (event.getType()) {
+            case ConferenceEventDTO.PARTICIPANT_JOINED:
+                addToIndex(event.getUsername(), event.getRoomId());
+                break;
+            case ConferenceEventDTO.PARTICIPANT_LEFT:
+                removeFromIndex(event.getUsername(), event.getRoomId());
+                break;
+            case ConferenceEventDTO.ROOM_CLOSED:
+                for (String username : event.getParticipants()) {
+                    removeFromIndex(username, event.getRoomId());
+                }
+                rooms.remove(event.getRoomId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addToIndex(String username, String roomId) {
+        roomsByUser.compute(username, (k, roomIds) -> {
+            if (roomIds == null) {
+                roomIds = ConcurrentHashMap.newKeySet();
+            }
+            roomIds.add(roomId);
+            return roomIds;
+        });
+    }
+
+    private void removeFromIndex(String username, String roomId) {
+        roomsByUser.computeIfPresent(username, (k, roomIds) -> {
+            roomIds.remove(roomId);
+            return roomIds.isEmpty() ? null : roomIds;
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.sipex.server.service;
+
+import java.util.Set;
+
+/**
+ * 会议室目录（房间号归属和成员），多个服务节点共享时用数据库实现
+ * 会议室本身的状态仍只在所属节点的Actor里；目录只负责房间号不重复、跨节点查询会议室是否存在和用户所在的会议室。
+ * 通过 conference.store 选择实现：memory（默认，单节点）或 database
+ */
+public interface ConferenceRoomStore {
+
+    /**
+     * 占用房间号，已被占用返回false
+     */
+    boolean claim(String roomId, String node);
+
+    /**
+     * 会议室关闭，释放房间号和成员记录
+     */
+    void release(String roomId);
+
+    /**
+     * 节点重启后只保留它恢复了的会议室，其余属于该节点的记录释放掉
+     */
+    void retainOwned(String node, Set<String> roomIds);
+
+    boolean exists(String roomId);
+
+    /**
+     * 所有节点的会议室总数
+     */
+    int count();
+
+    void addMember(String roomId, String username);
+
+    void removeMember(String roomId, String username);
+
+    /**
+     * 用户所在的会议室（所有节点）
+     */
+    Set<String> getRoomsOf(String username);
+}
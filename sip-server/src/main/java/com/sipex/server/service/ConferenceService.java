@@ -1,29 +1,85 @@
 package com.sipex.server.service;
 
+import com.sipex.common.dto.ApiResponse;
+import com.sipex.common.dto.ConferenceEventDTO;
+import com.sipex.common.dto.ConferenceEventsResponse;
+import com.sipex.common.dto.ConferenceMessageBuffer;
+import com.sipex.common.dto.ConferenceRequest;
+import com.sipex.common.dto.ConferenceResponse;
 import com.sipex.common.dto.ConferenceRoom;
 import com.sipex.common.dto.ConferenceMessageDTO;
+import com.sipex.common.entity.ConferenceMessage;
+import com.sipex.server.util.TimingWheel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 会议室服务
- * 使用内存存储管理临时会议室
+ * 使用内存存储管理临时会议室。每个会议室是一个Actor（见 ConferenceRoomActor），
+ * 加入、离开、发消息、过期都作为命令投递到会议室的邮箱串行执行，结果以future返回；
+ * 数据库记录在单独的线程池上做，不占用会议室线程
  */
 @Service
 public class ConferenceService {
 
-    // 内存存储会议室
-    private final Map<String, ConferenceRoom> activeRooms = new ConcurrentHashMap<>();
+    // 内存存储会议室（房间号分配、用户 -> 会议室索引）
+    private final ConferenceRoomRegistry activeRooms = new ConferenceRoomRegistry();
 
     // 会议室过期时间（30分钟）
     private static final int ROOM_EXPIRE_MINUTES = 30;
 
+    private static final ParameterizedTypeReference<ApiResponse<ConferenceResponse>> CONFERENCE_RESPONSE_TYPE =
+            new ParameterizedTypeReference<ApiResponse<ConferenceResponse>>() {};
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // 每个会议室内存中保留的消息条数，更早的从数据库读取
+    @Value("${conference.message-buffer-capacity:200}")
+    private int messageBufferCapacity;
+
+    // 所有会议室Actor共用的线程池
+    private final ExecutorService roomExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), namedThreads("Conference-Room-"));
+
+    // 会议室日志、参与记录、消息持久化等数据库操作
+    private final ExecutorService recordExecutor = Executors.newCachedThreadPool(namedThreads("Conference-Record-"));
+
+    // 会议室目录的写入（成员变化、释放房间号），单线程保证顺序
+    private final ExecutorService storeExecutor = Executors.newSingleThreadExecutor(namedThreads("Conference-Store-"));
+
+    // 会议室状态日志，重启后据此恢复会议室
+    @Value("${conference.journal-path:./data/conference.journal}")
+    private String journalPath;
+
+    private static final int JOURNAL_FILE_BYTES = 64 * 1024 * 1024;
+
+    private volatile ConferenceJournal journal;
+
+    // 会议室过期时间轮，1秒一格
+    private final TimingWheel<ConferenceRoomActor> expiryWheel =
+            new TimingWheel<>("Conference-Expiry", 1000, 512, this::onRoomDeadline);
+
     @Autowired
     private ConferenceLogService conferenceLogService;
 
@@ -36,193 +92,325 @@ public class ConferenceService {
     @Autowired
     private UserActivityLogService activityLogService;
 
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ConferenceRoomStore roomStore;
+
+    @Autowired
+    private ConferenceClusterService cluster;
+
     /**
-     * 创建会议室
+     * 从会议室日志恢复上次运行时的会议室，没能恢复的会议室记录标记为过期
      */
-    public ConferenceRoom createRoom(String username) {
-        String roomId = generateRoomId();
-        ConferenceRoom room = new ConferenceRoom(roomId);
-        room.addParticipant(username);
-        activeRooms.put(roomId, room);
+    @PostConstruct
+    public void restoreRooms() {
+        ConferenceJournal opened = new ConferenceJournal(Paths.get(journalPath), JOURNAL_FILE_BYTES);
+        Collection<ConferenceJournal.RoomState> states;
+        try {
+            states = opened.open();
+        } catch (IOException e) {
+            System.err.println("打开会议室日志失败，本次运行不记录会议室状态: " + e.getMessage());
+            states = Collections.emptyList();
+            opened = null;
+        }
 
-        System.out.println("创建会议室: " + roomId + ", 创建者: " + username);
+        Set<String> restored = new HashSet<>();
+        for (ConferenceJournal.RoomState state : states) {
+            if (state.getParticipants().isEmpty()) {
+                continue;
+            }
+            if (!cluster.isLocal(state.getRoomId())) {
+                System.err.println("会议室 " + state.getRoomId() + " 按当前节点配置不属于本节点，不再恢复");
+                continue;
+            }
+            ConferenceRoom room = new ConferenceRoom(state.getRoomId(), messageBufferCapacity);
+            room.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(state.getCreatedAt()), ZoneId.systemDefault()));
+            for (String username : state.getParticipants()) {
+                room.addParticipant(username);
+            }
+            room.restoreMessageSeq(state.getLastMessageSeq());
+            // 最后活动时间按恢复的时刻算，停机期间不计入空闲
 
-        // ✅ 新增：创建会议室记录
-        try {
-            conferenceLogService.createLog(roomId, username);
-            participantService.recordJoin(roomId, username, true, true);
-            activityLogService.log(username, "CREATE_CONFERENCE", "创建会议室: " + roomId);
-        } catch (Exception e) {
-            System.err.println("记录会议室创建失败: " + e.getMessage());
+            ConferenceRoomActor actor = new ConferenceRoomActor(room, state.getLastEventSeq(), this::onRoomEvent, roomExecutor);
+            activeRooms.restore(actor, room.getParticipants());
+            expiryWheel.schedule(actor, expiresAt(actor));
+            restored.add(state.getRoomId());
+        }
+        journal = opened;
+        if (!restored.isEmpty()) {
+            System.out.println("从会议室日志恢复了 " + restored.size() + " 个会议室");
         }
 
-        return room;
+        storeExecutor.execute(() -> {
+            try {
+                for (String roomId : restored) {
+                    roomStore.claim(roomId, cluster.getSelf());
+                }
+                roomStore.retainOwned(cluster.getSelf(), restored);
+                // 其他节点的会议室还在目录里，不能当成孤儿
+                int expired = conferenceLogService.expireOrphanedLogs(
+                        roomId -> restored.contains(roomId) || roomStore.exists(roomId));
+                if (expired > 0) {
+                    System.out.println("标记了 " + expired + " 条未结束的会议室记录为过期");
+                }
+            } catch (Exception e) {
+                System.err.println("处理未结束的会议室记录失败: " + e.getMessage());
+            }
+        });
     }
 
     /**
-     * 加入会议室
+     * 会议室日志定期刷盘
      */
-    public ConferenceRoom joinRoom(String roomId, String username) {
-        ConferenceRoom room = activeRooms.get(roomId);
-        if (room == null) {
-            throw new RuntimeException("会议室不存在");
-        }
-
-        if (room.isFull()) {
-            throw new RuntimeException("会议室已满");
+    @Scheduled(fixedRate = 1000)
+    public void flushJournal() {
+        ConferenceJournal current = journal;
+        if (current != null) {
+            current.flush();
         }
+    }
 
-        if (!room.addParticipant(username)) {
-            throw new RuntimeException("加入会议室失败");
+    /**
+     * 定期压缩会议室日志，只留存活会议室的快照
+     */
+    @Scheduled(fixedRate = 10 * 60 * 1000, initialDelay = 10 * 60 * 1000)
+    public void compactJournal() {
+        ConferenceJournal current = journal;
+        if (current == null) {
+            return;
         }
-
-        System.out.println("用户 " + username + " 加入会议室: " + roomId);
-
-        // ✅ 新增：记录参与者加入
         try {
-            participantService.recordJoin(roomId, username, true, true);
-            conferenceLogService.updateMaxParticipants(roomId, room.getParticipants().size());
-            activityLogService.log(username, "JOIN_CONFERENCE", "加入会议室: " + roomId);
-        } catch (Exception e) {
-            System.err.println("记录参与者加入失败: " + e.getMessage());
+            current.compact();
+        } catch (IOException e) {
+            System.err.println("压缩会议室日志失败: " + e.getMessage());
         }
+    }
+
+    /**
+     * 创建会议室
+     */
+    public CompletableFuture<ConferenceResponse> createRoom(String username) {
+        // 只用哈希到本节点的房间号，并在共享目录里占住
+        ConferenceRoomActor actor = activeRooms.register(roomId ->
+                cluster.isLocal(roomId) && roomStore.claim(roomId, cluster.getSelf())
+                        ? new ConferenceRoomActor(new ConferenceRoom(roomId, messageBufferCapacity), this::onRoomEvent, roomExecutor)
+                        : null);
+        expiryWheel.schedule(actor, expiresAt(actor));
+
+        String createdRoomId = actor.getRoomId();
+        return actor.join(username).thenApplyAsync(participants -> {
+            System.out.println("创建会议室: " + createdRoomId + ", 创建者: " + username);
+
+            // ✅ 新增：创建会议室记录
+            try {
+                conferenceLogService.createLog(createdRoomId, username);
+                participantService.recordJoin(createdRoomId, username, true, true);
+                activityLogService.log(username, "CREATE_CONFERENCE", "创建会议室: " + createdRoomId);
+            } catch (Exception e) {
+                System.err.println("记录会议室创建失败: " + e.getMessage());
+            }
 
-        return room;
+            return ConferenceResponse.success(createdRoomId, participants);
+        }, recordExecutor);
     }
 
     /**
-     * 离开会议室
+     * 加入会议室
      */
-    public ConferenceRoom leaveRoom(String roomId, String username) {
-        ConferenceRoom room = activeRooms.get(roomId);
-        if (room == null) {
-            throw new RuntimeException("会议室不存在");
-        }
+    public CompletableFuture<ConferenceResponse> joinRoom(String roomId, String username) {
+        return getActor(roomId).join(username).thenApplyAsync(participants -> {
+            System.out.println("用户 " + username + " 加入会议室: " + roomId);
 
-        room.removeParticipant(username);
-        System.out.println("用户 " + username + " 离开会议室: " + roomId);
+            // ✅ 新增：记录参与者加入
+            try {
+                participantService.recordJoin(roomId, username, true, true);
+                conferenceLogService.updateMaxParticipants(roomId, participants.size());
+                activityLogService.log(username, "JOIN_CONFERENCE", "加入会议室: " + roomId);
+            } catch (Exception e) {
+                System.err.println("记录参与者加入失败: " + e.getMessage());
+            }
 
-        // ✅ 新增：记录参与者离开
-        try {
-            participantService.recordLeave(roomId, username);
-            activityLogService.log(username, "LEAVE_CONFERENCE", "离开会议室: " + roomId);
-        } catch (Exception e) {
-            System.err.println("记录参与者离开失败: " + e.getMessage());
-        }
+            return ConferenceResponse.success(roomId, participants);
+        }, recordExecutor);
+    }
 
-        // 如果会议室为空，删除会议室
-        if (room.isEmpty()) {
-            activeRooms.remove(roomId);
-            System.out.println("会议室 " + roomId + " 已清空，已删除");
+    /**
+     * 离开会议室
+     */
+    public CompletableFuture<ConferenceResponse> leaveRoom(String roomId, String username) {
+        ConferenceRoomActor actor = getActor(roomId);
+        return actor.leave(username).thenApplyAsync(participants -> {
+            System.out.println("用户 " + username + " 离开会议室: " + roomId);
 
-            // ✅ 新增：结束会议室记录
+            // ✅ 新增：记录参与者离开
             try {
-                conferenceLogService.endLog(roomId, room.getParticipants().size());
+                participantService.recordLeave(roomId, username);
+                activityLogService.log(username, "LEAVE_CONFERENCE", "离开会议室: " + roomId);
             } catch (Exception e) {
-                System.err.println("结束会议室记录失败: " + e.getMessage());
+                System.err.println("记录参与者离开失败: " + e.getMessage());
+            }
+
+            // 如果会议室为空，删除会议室（只有让会议室变空的这次离开会看到空列表）
+            if (participants.isEmpty()) {
+                System.out.println("会议室 " + roomId + " 已清空，已删除");
+
+                // ✅ 新增：结束会议室记录
+                try {
+                    conferenceLogService.endLog(roomId, participants.size());
+                } catch (Exception e) {
+                    System.err.println("结束会议室记录失败: " + e.getMessage());
+                }
             }
-        }
 
-        return room;
+            return ConferenceResponse.success(roomId, participants);
+        }, recordExecutor);
     }
 
     /**
      * 获取会议室信息
      */
-    public ConferenceRoom getRoom(String roomId) {
-        ConferenceRoom room = activeRooms.get(roomId);
-        if (room != null) {
-            room.updateActivity();
-        }
-        return room;
+    public CompletableFuture<ConferenceResponse> getRoom(String roomId) {
+        return getActor(roomId).participants()
+                .thenApply(participants -> ConferenceResponse.success(roomId, participants));
     }
 
     /**
-     * 获取会议室参与者列表
+     * 检查会议室是否存在
      */
-    public List<String> getParticipants(String roomId) {
-        ConferenceRoom room = activeRooms.get(roomId);
-        if (room == null) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(room.getParticipants());
+    public boolean roomExists(String roomId) {
+        return activeRooms.contains(roomId) || roomStore.exists(roomId);
     }
 
     /**
-     * 检查会议室是否存在
+     * 用户所在的全部会议室（包括其他节点上的）
      */
-    public boolean roomExists(String roomId) {
-        return activeRooms.containsKey(roomId);
+    public Set<String> getRoomsOf(String username) {
+        Set<String> roomIds = new HashSet<>(activeRooms.getRoomsOf(username));
+        roomIds.addAll(roomStore.getRoomsOf(username));
+        return roomIds;
     }
 
     /**
-     * 生成房间号
+     * 离开用户所在的全部会议室（退出登录、断线时调用），其他节点上的转发给所属节点
      */
-    private String generateRoomId() {
-        Random random = new Random();
-        String roomId;
-        do {
-            int number = 1000 + random.nextInt(9000); // 1000-9999
-            roomId = "ROOM-" + number;
-        } while (activeRooms.containsKey(roomId));
-        return roomId;
+    public CompletableFuture<Void> leaveAllRooms(String username) {
+        List<CompletableFuture<?>> leaves = new ArrayList<>();
+        for (String roomId : getRoomsOf(username)) {
+            if (!cluster.isLocal(roomId)) {
+                leaves.add(cluster.forward(roomId, HttpMethod.POST, "/api/conference/leave",
+                        new ConferenceRequest(roomId, username, "leave"), CONFERENCE_RESPONSE_TYPE));
+                continue;
+            }
+            try {
+                leaves.add(leaveRoom(roomId, username));
+            } catch (Exception e) {
+                // 会议室刚好关闭
+            }
+        }
+        return CompletableFuture.allOf(leaves.toArray(new CompletableFuture[0]));
     }
 
     /**
-     * 定时清理过期会议室
-     * 每5分钟执行一次
+     * 会议室事件：写日志、更新登记表（用户索引、关闭注销），推送给本节点和其他节点的订阅者，再异步更新共享目录
      */
-    @Scheduled(fixedRate = 5 * 60 * 1000)
-    public void cleanupExpiredRooms() {
-        LocalDateTime now = LocalDateTime.now();
-        List<String> expiredRooms = new ArrayList<>();
-
-        for (Map.Entry<String, ConferenceRoom> entry : activeRooms.entrySet()) {
-            ConferenceRoom room = entry.getValue();
-            if (room.getLastActivityAt().plusMinutes(ROOM_EXPIRE_MINUTES).isBefore(now)) {
-                expiredRooms.add(entry.getKey());
+    private void onRoomEvent(ConferenceEventDTO event) {
+        ConferenceJournal current = journal;
+        if (current != null) {
+            current.append(event);
+        }
+        activeRooms.onEvent(event);
+        messagingTemplate.convertAndSend("/topic/conference/" + event.getRoomId(), event);
+        cluster.relay(event);
+        storeExecutor.execute(() -> updateStore(event));
+    }
+
+    private void updateStore(ConferenceEventDTO event) {
+        try {
+            switch (event.getType()) {
+                case ConferenceEventDTO.PARTICIPANT_JOINED:
+                    roomStore.addMember(event.getRoomId(), event.getUsername());
+                    break;
+                case ConferenceEventDTO.PARTICIPANT_LEFT:
+                    roomStore.removeMember(event.getRoomId(), event.getUsername());
+                    break;
+                case ConferenceEventDTO.ROOM_CLOSED:
+                    roomStore.release(event.getRoomId());
+                    break;
+                default:
+                    break;
             }
+        } catch (Exception e) {
+            System.err.println("更新会议室目录失败: " + e.getMessage());
         }
+    }
 
-        for (String roomId : expiredRooms) {
-            ConferenceRoom room = activeRooms.remove(roomId);
-            System.out.println("清理过期会议室: " + roomId);
+    private ConferenceRoomActor getActor(String roomId) {
+        ConferenceRoomActor actor = activeRooms.get(roomId);
+        if (actor == null) {
+            throw new RuntimeException("会议室不存在");
+        }
+        return actor;
+    }
+
+    /**
+     * 会议室到了时间轮上登记的截止时间
+     * 期间有过活动的按新的截止时间重新登记（活动时不碰时间轮，过期时才补登记），否则让会议室自己判断并关闭
+     */
+    private void onRoomDeadline(ConferenceRoomActor actor) {
+        if (actor.isClosed()) {
+            return;
+        }
+        long expiresAt = expiresAt(actor);
+        if (expiresAt > System.currentTimeMillis()) {
+            expiryWheel.schedule(actor, expiresAt);
+            return;
+        }
+
+        LocalDateTime deadline = LocalDateTime.now().minusMinutes(ROOM_EXPIRE_MINUTES);
+        actor.expireIfIdle(deadline).whenCompleteAsync((participants, error) -> {
+            if (error != null) {
+                // 会议室已经关闭
+                return;
+            }
+            if (participants == null) {
+                // 判断前刚好有新活动
+                expiryWheel.schedule(actor, expiresAt(actor));
+                return;
+            }
+            System.out.println("清理过期会议室: " + actor.getRoomId());
 
             // ✅ 新增：标记会议室为过期
             try {
-                if (room != null) {
-                    conferenceLogService.endLog(roomId, room.getParticipants().size());
-                }
+                conferenceLogService.endLog(actor.getRoomId(), participants.size());
             } catch (Exception e) {
                 System.err.println("标记过期会议室失败: " + e.getMessage());
             }
-        }
+        }, recordExecutor);
+    }
 
-        if (!expiredRooms.isEmpty()) {
-            System.out.println("清理了 " + expiredRooms.size() + " 个过期会议室");
-        }
+    private long expiresAt(ConferenceRoomActor actor) {
+        return actor.getLastActivityAt().plusMinutes(ROOM_EXPIRE_MINUTES)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     /**
      * 获取活跃会议室数量
      */
     public int getActiveRoomCount() {
-        return activeRooms.size();
+        return cluster.isClustered() ? roomStore.count() : activeRooms.size();
     }
 
     /**
      * 添加会议室消息
      */
-    public ConferenceMessageDTO addMessage(String roomId, ConferenceMessageDTO message) {
-        ConferenceRoom room = activeRooms.get(roomId);
-        if (room == null) {
-            throw new RuntimeException("会议室不存在");
-        }
+    public CompletableFuture<ConferenceMessageDTO> addMessage(String roomId, ConferenceMessageDTO message) {
+        ConferenceRoomActor actor = getActor(roomId);
 
         // 设置时间戳
         if (message.getTimestamp() == null || message.getTimestamp().isEmpty()) {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            message.setTimestamp(LocalDateTime.now().format(formatter));
+            message.setTimestamp(LocalDateTime.now().format(TIMESTAMP_FORMATTER));
         }
 
         // 设置消息类型（默认为text）
@@ -233,33 +421,160 @@ public class ConferenceService {
         // 设置roomId
         message.setRoomId(roomId);
 
-        // 添加到会议室（内存）
-        room.addMessage(message);
-
-        System.out.println("会议室 " + roomId + " 新消息: " + message.getFromUser() + ": " + message.getContent());
-
-        // ✅ 新增：异步持久化消息到数据库
+        // 在请求线程上预占写入队列的位置（队列满时在这里等待或发送失败），会议室线程里入队不会阻塞；
+        // 放入写入队列后再添加到会议室（内存）并推送
+        conferenceMessageService.reserveSlot();
+        AtomicBoolean persisted = new AtomicBoolean();
+        CompletableFuture<ConferenceMessageDTO> future;
         try {
-            conferenceMessageService.saveMessage(roomId, message.getFromUser(),
-                    message.getContent(), message.getMessageType());
-            conferenceLogService.incrementMessageCount(roomId);
-            participantService.incrementMessageCount(roomId, message.getFromUser());
-        } catch (Exception e) {
-            System.err.println("持久化消息失败: " + e.getMessage());
+            future = actor.addMessage(message, added -> {
+                conferenceMessageService.saveReservedMessage(roomId, added.getSeq(),
+                        added.getFromUser(), added.getContent(), added.getMessageType());
+                persisted.set(true);
+            });
+        } catch (RuntimeException e) {
+            conferenceMessageService.releaseSlot();
+            throw e;
         }
+        return future.whenComplete((added, error) -> {
+            if (error != null && !persisted.get()) {
+                conferenceMessageService.releaseSlot();
+            }
+        }).thenApply(added -> {
+            System.out.println("会议室 " + roomId + " 新消息: " + added.getFromUser() + ": " + added.getContent());
+
+            // 统计计数是@Async的，不会阻塞会议室线程
+            try {
+                conferenceLogService.incrementMessageCount(roomId);
+                participantService.incrementMessageCount(roomId, added.getFromUser());
+            } catch (Exception e) {
+                System.err.println("更新消息计数失败: " + e.getMessage());
+            }
 
-        return message;
+            return added;
+        });
+    }
+
+    /**
+     * 补拉afterSeq之后的事件；已经淘汰出日志的返回当前快照
+     */
+    public CompletableFuture<ConferenceEventsResponse> getEventsAfter(String roomId, long afterSeq) {
+        return getActor(roomId).eventsAfter(afterSeq);
     }
 
     /**
-     * 获取会议室消息
+     * 获取会议室最近limit条消息，缓冲区不够时从数据库补更早的
      */
     public List<ConferenceMessageDTO> getMessages(String roomId, int limit) {
-        ConferenceRoom room = activeRooms.get(roomId);
-        if (room == null) {
-            throw new RuntimeException("会议室不存在");
+        ConferenceRoomActor actor = getActor(roomId);
+
+        ConferenceMessageBuffer buffer = actor.getMessages();
+        List<ConferenceMessageDTO> recent = buffer.tail(limit);
+        long firstSeq = recent.isEmpty() ? buffer.getLastSeq() + 1 : recent.get(0).getSeq();
+        if (recent.size() >= limit || firstSeq <= 1) {
+            return recent;
+        }
+
+        List<ConferenceMessageDTO> result = new ArrayList<>();
+        for (ConferenceMessage older : conferenceMessageService.getByRoomIdBeforeSeq(
+                roomId, since(actor), firstSeq, limit - recent.size())) {
+            result.add(toDTO(older));
+        }
+        result.addAll(recent);
+        return result;
+    }
+
+    /**
+     * 获取序号大于afterSeq的消息（增量拉取），已经淘汰出缓冲区的部分从数据库读取
+     */
+    public List<ConferenceMessageDTO> getMessagesAfter(String roomId, long afterSeq, int limit) {
+        ConferenceRoomActor actor = getActor(roomId);
+
+        ConferenceMessageBuffer buffer = actor.getMessages();
+        long firstSeq = buffer.getFirstSeq();
+        if (!isBehindBuffer(buffer, afterSeq)) {
+            return buffer.after(afterSeq, limit);
         }
 
-        return room.getRecentMessages(limit);
+        List<ConferenceMessageDTO> result = new ArrayList<>();
+        for (ConferenceMessage older : conferenceMessageService.getByRoomIdAfterSeq(
+                roomId, since(actor), afterSeq, (int) Math.min(limit, firstSeq - 1 - afterSeq))) {
+            result.add(toDTO(older));
+        }
+        if (result.size() < limit) {
+            result.addAll(buffer.after(firstSeq - 1, limit - result.size()));
+        }
+        return result;
+    }
+
+    /**
+     * 长轮询：有比afterSeq新的消息立即返回，否则挂起到下一条消息到达（会议室关闭时返回空列表）。
+     * 调用方超时后应取消返回的future
+     */
+    public CompletableFuture<List<ConferenceMessageDTO>> awaitMessagesAfter(String roomId, long afterSeq, int limit) {
+        ConferenceRoomActor actor = getActor(roomId);
+        if (isBehindBuffer(actor.getMessages(), afterSeq)) {
+            // 落后太多，缺的部分已经不在缓冲区，直接从数据库补
+            return CompletableFuture.completedFuture(getMessagesAfter(roomId, afterSeq, limit));
+        }
+        return actor.awaitMessagesAfter(afterSeq, limit);
+    }
+
+    /**
+     * afterSeq之后紧接着的消息已经不在缓冲区（被淘汰，或者会议室是重启后恢复的）
+     */
+    private boolean isBehindBuffer(ConferenceMessageBuffer buffer, long afterSeq) {
+        return afterSeq < buffer.getLastSeq() && afterSeq + 1 < buffer.getFirstSeq();
+    }
+
+    /**
+     * 数据库按会议室创建时间过滤消息；created_at只精确到秒，这里也截到秒
+     */
+    private LocalDateTime since(ConferenceRoomActor actor) {
+        return actor.getCreatedAt().withNano(0);
+    }
+
+    /**
+     * 所有会议室消息缓冲区的内存占用（估算）
+     */
+    public Map<String, Object> getMessageBufferStats() {
+        long messageCount = 0;
+        long estimatedBytes = 0;
+        for (ConferenceRoomActor actor : activeRooms.values()) {
+            messageCount += actor.getMessages().size();
+            estimatedBytes += actor.getMessages().getEstimatedBytes();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("rooms", activeRooms.size());
+        stats.put("capacityPerRoom", messageBufferCapacity);
+        stats.put("bufferedMessages", messageCount);
+        stats.put("estimatedBytes", estimatedBytes);
+        return stats;
+    }
+
+    private ConferenceMessageDTO toDTO(ConferenceMessage message) {
+        return new ConferenceMessageDTO(message.getRoomId(), message.getFromUser(), message.getContent(),
+                message.getCreatedAt() != null ? message.getCreatedAt().format(TIMESTAMP_FORMATTER) : null,
+                message.getMessageType(), message.getSeq());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiryWheel.stop();
+        if (journal != null) {
+            journal.close();
+        }
+        roomExecutor.shutdown();
+        recordExecutor.shutdown();
+        storeExecutor.shutdown();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
     }
 }
@@ -0,0 +1,163 @@
+package com.sipex.server.service;
+
+import com.sipex.common.dto.ContactInfoDTO;
+import com.sipex.server.sip.LocationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户联系地址解析
+ * 数据来源：内嵌注册服务器的REGISTER绑定（优先）和客户端登录后上报的Contact。
+ * 地址变化时推送到 /topic/contact/{username}，客户端据此让本地缓存失效
+ */
+@Service
+public class ContactResolutionService implements LocationService.BindingListener {
+
+    private static final int DEFAULT_TTL_SECONDS = 60;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    // 客户端上报的地址
+    private final Map<String, ContactInfoDTO> reported = new ConcurrentHashMap<>();
+
+    // 每个用户地址的当前版本号
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong versionCounter = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        locationService.addListener(this);
+    }
+
+    /**
+     * 客户端上报自己的地址（登录、重新注册后）
+     */
+    public ContactInfoDTO report(ContactInfoDTO info) {
+        if (info.getUsername() == null || info.getSipContact() == null) {
+            throw new IllegalArgumentException("用户名和Contact不能为空");
+        }
+        fillAddress(info);
+        info.setSource("LOGIN");
+        info.setUpdatedAt(System.currentTimeMillis());
+        if (info.getTtlSeconds() == null || info.getTtlSeconds() <= 0) {
+            info.setTtlSeconds(DEFAULT_TTL_SECONDS);
+        }
+
+        ContactInfoDTO previous = reported.get(info.getUsername());
+        boolean changed = previous == null || !previous.getSipContact().equals(info.getSipContact())
+            || !String.valueOf(previous.getMediaHost()).equals(String.valueOf(info.getMediaHost()));
+        if (changed) {
+            info.setVersion(nextVersion(info.getUsername()));
+        } else {
+            info.setVersion(previous.getVersion());
+        }
+        reported.put(info.getUsername(), info);
+
+        if (changed) {
+            publish(info.getUsername(), resolve(info.getUsername()));
+        }
+        return info;
+    }
+
+    /**
+     * 解析用户当前地址，未知返回null
+     */
+    public ContactInfoDTO resolve(String username) {
+        LocationService.Binding binding = locationService.lookup(username);
+        ContactInfoDTO client = reported.get(username);
+        if (binding == null) {
+            return client;
+        }
+
+        ContactInfoDTO info = new ContactInfoDTO();
+        info.setUsername(username);
+        info.setSipContact(binding.getContactUri());
+        fillAddress(info);
+        info.setMediaHost(client != null && client.getMediaHost() != null ? client.getMediaHost() : info.getSipHost());
+        info.setSource("REGISTER");
+        info.setVersion(versions.getOrDefault(username, 0L));
+        info.setUpdatedAt(System.currentTimeMillis());
+        // 缓存不要超过注册剩余有效期
+        long remaining = (binding.getExpiresAt() - System.currentTimeMillis()) / 1000;
+        info.setTtlSeconds((int) Math.max(1, Math.min(DEFAULT_TTL_SECONDS, remaining)));
+        return info;
+    }
+
+    /**
+     * 用户下线
+     */
+    public void remove(String username) {
+        if (reported.remove(username) != null) {
+            nextVersion(username);
+            publish(username, resolve(username));
+        }
+    }
+
+    @Override
+    public void onBindingChanged(String username, LocationService.Binding binding) {
+        nextVersion(username);
+        publish(username, resolve(username));
+    }
+
+    private long nextVersion(String username) {
+        long version = versionCounter.incrementAndGet();
+        versions.put(username, version);
+        return version;
+    }
+
+    /**
+     * 推送地址变化；地址不存在时推送只有用户名和版本号的记录，客户端直接删除缓存
+     */
+    private void publish(String username, ContactInfoDTO current) {
+        ContactInfoDTO payload = current;
+        if (payload == null) {
+            payload = new ContactInfoDTO();
+            payload.setUsername(username);
+            payload.setVersion(versions.getOrDefault(username, 0L));
+            payload.setUpdatedAt(System.currentTimeMillis());
+        }
+        messagingTemplate.convertAndSend("/topic/contact/" + username, payload);
+    }
+
+    /**
+     * 从Contact URI（sip:user@host:port;transport=tcp）解析主机、端口和传输
+     */
+    private void fillAddress(ContactInfoDTO info) {
+        String uri = info.getSipContact();
+        String rest = uri.startsWith("sips:") ? uri.substring(5) : uri.startsWith("sip:") ? uri.substring(4) : uri;
+        if (rest.contains("@")) {
+            rest = rest.substring(rest.indexOf('@') + 1);
+        }
+
+        String params = "";
+        if (rest.contains(";")) {
+            params = rest.substring(rest.indexOf(';'));
+            rest = rest.substring(0, rest.indexOf(';'));
+        }
+        if (rest.contains(":")) {
+            info.setSipHost(rest.substring(0, rest.indexOf(':')));
+            info.setSipPort(Integer.parseInt(rest.substring(rest.indexOf(':') + 1)));
+        } else {
+            info.setSipHost(rest);
+            info.setSipPort(5060);
+        }
+
+        String transport = "udp";
+        for (String param : params.split(";")) {
+            if (param.toLowerCase().startsWith("transport=")) {
+                transport = param.substring("transport=".length()).toLowerCase();
+            }
+        }
+        info.setTransport(transport);
+    }
+}
@@ -0,0 +1,66 @@
+package com.sipex.server.service;
+
+import com.sipex.server.mapper.ConferenceRoomMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 多节点共享的会议室目录（conference_rooms / conference_room_members 表）
+ * 房间号靠主键去重；成员变化由 ConferenceService 在记录线程池上异步写入，不占用会议室线程
+ */
+@Service
+@ConditionalOnProperty(prefix = "conference", name = "store", havingValue = "database")
+public class DatabaseConferenceRoomStore implements ConferenceRoomStore {
+
+    @Autowired
+    private ConferenceRoomMapper roomMapper;
+
+    @Override
+    public boolean claim(String roomId, String node) {
+        return roomMapper.insert(roomId, node) == 1;
+    }
+
+    @Override
+    public void release(String roomId) {
+        roomMapper.deleteMembers(roomId);
+        roomMapper.delete(roomId);
+    }
+
+    @Override
+    public void retainOwned(String node, Set<String> roomIds) {
+        for (String roomId : roomMapper.findByOwner(node)) {
+            if (!roomIds.contains(roomId)) {
+                release(roomId);
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(String roomId) {
+        return roomMapper.countByRoomId(roomId) > 0;
+    }
+
+    @Override
+    public int count() {
+        return roomMapper.countAll();
+    }
+
+    @Override
+    public void addMember(String roomId, String username) {
+        roomMapper.insertMember(roomId, username);
+    }
+
+    @Override
+    public void removeMember(String roomId, String username) {
+        roomMapper.deleteMember(roomId, username);
+    }
+
+    @Override
+    public Set<String> getRoomsOf(String username) {
+        return new HashSet<>(roomMapper.findRoomIdsByUsername(username));
+    }
+}
@@ -0,0 +1,59 @@
+package com.sipex.server.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单节点的会议室目录
+ * 只有一个节点，成员索引就是本机的 ConferenceRoomRegistry，这里不再重复保存
+ */
+@Service
+@ConditionalOnProperty(prefix = "conference", name = "store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryConferenceRoomStore implements ConferenceRoomStore {
+
+    // 房间号 -> 所属节点
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean claim(String roomId, String node) {
+        return owners.putIfAbsent(roomId, node) == null;
+    }
+
+    @Override
+    public void release(String roomId) {
+        owners.remove(roomId);
+    }
+
+    @Override
+    public void retainOwned(String node, Set<String> roomIds) {
+        owners.entrySet().removeIf(e -> e.getValue().equals(node) && !roomIds.contains(e.getKey()));
+    }
+
+    @Override
+    public boolean exists(String roomId) {
+        return owners.containsKey(roomId);
+    }
+
+    @Override
+    public int count() {
+        return owners.size();
+    }
+
+    @Override
+    public void addMember(String roomId, String username) {
+    }
+
+    @Override
+    public void removeMember(String roomId, String username) {
+    }
+
+    @Override
+    public Set<String> getRoomsOf(String username) {
+        return Collections.emptySet();
+    }
+}
@@ -2,10 +2,17 @@ package com.sipex.server.service;
 
 import com.sipex.common.entity.Message;
 import com.sipex.server.mapper.MessageMapper;
+import com.sipex.server.util.WriteBehindQueue;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class MessageService {
@@ -13,12 +20,56 @@ public class MessageService {
     @Autowired
     private MessageMapper messageMapper;
 
+    @Value("${write-behind.capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${write-behind.offer-timeout-ms:200}")
+    private long offerTimeoutMs;
+
+    // 消息先进队列，由后台线程批量写库，发送不再等数据库
+    private WriteBehindQueue<Message> writeQueue;
+
+    // 已读水位：发送方 -> 接收方 的会话标记已读的时间；还在写入队列里的更早的消息入库时直接写成已读
+    private final Map<String, LocalDateTime> readUpTo = new ConcurrentHashMap<>();
+    // 队列写空后水位再保留一会儿，覆盖刚设置了创建时间还没放进队列的消息
+    private static final long READ_MARK_RETAIN_SECONDS = 5;
+    // 标记已读和批量入库互斥，免得一批消息在查水位之后、标记已读之后才入库
+    private final Object readLock = new Object();
+
+    @PostConstruct
+    public void init() {
+        writeQueue = new WriteBehindQueue<>("Message-Writer", queueCapacity, batchSize, flushIntervalMs,
+                offerTimeoutMs, this::writeBatch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeQueue.stop(10000);
+    }
+
+    /**
+     * 保存消息：放入写入队列后立即返回（此时还没有id，已读用 markConversationRead 按会话标记），队列满时抛异常
+     */
     public Message saveMessage(Message message) {
         message.setIsRead(false);
-        messageMapper.insert(message);
+        message.setCreatedAt(LocalDateTime.now());
+        writeQueue.offer(message);
         return message;
     }
 
+    /**
+     * 写入队列深度和批量写入耗时
+     */
+    public Map<String, Object> getWriteStats() {
+        return writeQueue.getStats();
+    }
+
     public List<Message> getChatHistory(String user1, String user2, int limit) {
         return messageMapper.findChatHistory(user1, user2, limit);
     }
@@ -27,8 +78,41 @@ public class MessageService {
         return messageMapper.findUnreadMessages(username);
     }
 
-    public void markAsRead(Long messageId) {
-        messageMapper.markAsRead(messageId);
+    /**
+     * 把fromUser发给toUser的私聊消息标记为已读，包括还在写入队列里没入库的
+     */
+    public void markConversationRead(String fromUser, String toUser) {
+        synchronized (readLock) {
+            LocalDateTime now = LocalDateTime.now();
+            readUpTo.merge(conversationKey(fromUser, toUser), now, (a, b) -> a.isAfter(b) ? a : b);
+            messageMapper.markConversationRead(fromUser, toUser, now);
+        }
+    }
+
+    private void writeBatch(List<Message> batch) {
+        synchronized (readLock) {
+            for (Message message : batch) {
+                if (readUpTo.isEmpty()) {
+                    break;
+                }
+                if (Boolean.TRUE.equals(message.getIsGroup())) {
+                    continue;
+                }
+                LocalDateTime readAt = readUpTo.get(conversationKey(message.getFromUser(), message.getToUser()));
+                if (readAt != null && !message.getCreatedAt().isAfter(readAt)) {
+                    message.setIsRead(true);
+                }
+            }
+            messageMapper.insertBatch(batch);
+        }
+        if (writeQueue.size() == 0 && !readUpTo.isEmpty()) {
+            LocalDateTime cutoff = LocalDateTime.now().minusSeconds(READ_MARK_RETAIN_SECONDS);
+            readUpTo.values().removeIf(readAt -> readAt.isBefore(cutoff));
+        }
+    }
+
+    private static String conversationKey(String fromUser, String toUser) {
+        return fromUser + "\n" + toUser;
     }
 
     public int countTodayMessages() {
@@ -2,6 +2,7 @@ package com.sipex.server.service;
 
 import com.sipex.common.entity.User;
 import com.sipex.server.mapper.UserMapper;
+import com.sipex.server.sip.LocationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -14,6 +15,9 @@ public class UserService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private LocationService locationService;
+
     @Value("${kamailio.host}")
     private String kamailioHost;
 
@@ -50,7 +54,7 @@ public class UserService {
     }
 
     public List<User> getFriends(Long userId) {
-        return userMapper.findFriends(userId);
+        return applySipPresence(userMapper.findFriends(userId));
     }
 
     public User findByUsername(String username) {
@@ -58,7 +62,29 @@ public class UserService {
     }
 
     public List<User> getAllUsers() {
-        return userMapper.findAll();
+        return applySipPresence(userMapper.findAll());
+    }
+
+    /**
+     * 是否在内嵌SIP代理的位置表中有有效注册
+     */
+    public boolean isSipRegistered(String username) {
+        return locationService.isRegistered(username);
+    }
+
+    /**
+     * 用位置表修正在线状态：有有效SIP注册的用户视为在线（只上调，不覆盖数据库里的其它状态）
+     */
+    private List<User> applySipPresence(List<User> users) {
+        if (locationService.size() == 0) {
+            return users;
+        }
+        for (User user : users) {
+            if (locationService.isRegistered(user.getUsername())) {
+                user.setStatus("ONLINE");
+            }
+        }
+        return users;
     }
 
     public int countAllUsers() {
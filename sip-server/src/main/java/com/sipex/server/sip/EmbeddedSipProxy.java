@@ -0,0 +1,261 @@
+package com.sipex.server.sip;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sip.*;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.SipURI;
+import javax.sip.address.URI;
+import javax.sip.header.*;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ListIterator;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * 内嵌SIP注册服务器 + 无状态代理
+ * REGISTER写入LocationService；其余请求按Request-URI中的用户名查位置表，改写Request-URI后直接转发，
+ * 不加Record-Route，对话建立后的请求（ACK/BYE）在客户端之间直连。
+ * 配置 sip.embedded.enabled=true 时启用，用于本地测试和压测，代替外部Kamailio
+ */
+@Component
+@ConditionalOnProperty(prefix = "sip.embedded", name = "enabled", havingValue = "true")
+public class EmbeddedSipProxy implements SipListener {
+
+    @Autowired
+    private LocationService locationService;
+
+    @Value("${sip.embedded.host:}")
+    private String host;
+
+    @Value("${sip.embedded.port:5060}")
+    private int port;
+
+    @Value("${sip.embedded.default-expires:3600}")
+    private int defaultExpires;
+
+    @Value("${sip.embedded.max-expires:7200}")
+    private int maxExpires;
+
+    private SipStack sipStack;
+    private SipProvider sipProvider;
+    private AddressFactory addressFactory;
+    private HeaderFactory headerFactory;
+    private MessageFactory messageFactory;
+
+    @PostConstruct
+    public void start() {
+        try {
+            if (host == null || host.isEmpty()) {
+                host = InetAddress.getLocalHost().getHostAddress();
+            }
+
+            SipFactory sipFactory = SipFactory.getInstance();
+            sipFactory.setPathName("gov.nist");
+
+            Properties properties = new Properties();
+            properties.setProperty("javax.sip.STACK_NAME", "EmbeddedSipProxy");
+            properties.setProperty("javax.sip.AUTOMATIC_DIALOG_SUPPORT", "off");
+            properties.setProperty("gov.nist.javax.sip.TRACE_LEVEL", "0");
+            properties.setProperty("gov.nist.javax.sip.THREAD_POOL_SIZE", "8");
+            properties.setProperty("gov.nist.javax.sip.REENTRANT_LISTENER", "true");
+            properties.setProperty("gov.nist.javax.sip.CACHE_SERVER_CONNECTIONS", "true");
+            properties.setProperty("gov.nist.javax.sip.CACHE_CLIENT_CONNECTIONS", "true");
+            sipStack = sipFactory.createSipStack(properties);
+
+            addressFactory = sipFactory.createAddressFactory();
+            headerFactory = sipFactory.createHeaderFactory();
+            messageFactory = sipFactory.createMessageFactory();
+
+            sipProvider = sipStack.createSipProvider(sipStack.createListeningPoint(host, port, "udp"));
+            sipProvider.addListeningPoint(sipStack.createListeningPoint(host, port, "tcp"));
+            sipProvider.addSipListener(this);
+
+            System.out.println("✅ 内嵌SIP注册服务器/代理已启动: " + host + ":" + port + " (udp/tcp)");
+        } catch (Exception e) {
+            System.err.println("❌ 内嵌SIP代理启动失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sipStack != null) {
+            sipStack.stop();
+            System.out.println("内嵌SIP代理已停止");
+        }
+    }
+
+    @Override
+    public void processRequest(RequestEvent requestEvent) {
+        Request request = requestEvent.getRequest();
+        try {
+            if (Request.REGISTER.equals(request.getMethod())) {
+                handleRegister(request);
+            } else {
+                forwardRequest(request);
+            }
+        } catch (Exception e) {
+            System.err.println("处理SIP请求失败: " + request.getMethod() + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * 处理注册：每个Contact按自身expires参数或Expires头登记，0表示注销
+     */
+    private void handleRegister(Request request) throws Exception {
+        ToHeader toHeader = (ToHeader) request.getHeader(ToHeader.NAME);
+        String username = ((SipURI) toHeader.getAddress().getURI()).getUser();
+        if (username == null) {
+            reply(request, Response.BAD_REQUEST);
+            return;
+        }
+
+        ExpiresHeader expiresHeader = request.getExpires();
+        int requestExpires = expiresHeader != null ? expiresHeader.getExpires() : defaultExpires;
+
+        Response response = messageFactory.createResponse(Response.OK, request);
+        ListIterator<?> contacts = request.getHeaders(ContactHeader.NAME);
+        while (contacts.hasNext()) {
+            ContactHeader contact = (ContactHeader) contacts.next();
+            if (contact.isWildCard()) {
+                locationService.unregister(username);
+                continue;
+            }
+            int expires = contact.getExpires() >= 0 ? contact.getExpires() : requestExpires;
+            expires = Math.min(expires, maxExpires);
+            locationService.register(username, contact.getAddress().getURI().toString(), expires);
+
+            if (expires > 0) {
+                ContactHeader accepted = (ContactHeader) contact.clone();
+                accepted.setExpires(expires);
+                response.addHeader(accepted);
+            }
+        }
+        sipProvider.sendResponse(response);
+    }
+
+    /**
+     * 无状态转发：按用户名查位置表，改写Request-URI，加一层Via后发出
+     */
+    private void forwardRequest(Request request) throws Exception {
+        boolean isAck = Request.ACK.equals(request.getMethod());
+        URI requestUri = request.getRequestURI();
+        String username = requestUri.isSipURI() ? ((SipURI) requestUri).getUser() : null;
+        LocationService.Binding binding = username != null ? locationService.lookup(username) : null;
+
+        if (binding == null) {
+            if (!isAck) {
+                reply(request, noBindingStatus(request, requestUri, username));
+            }
+            return;
+        }
+
+        Request forwarded = (Request) request.clone();
+        SipURI target = (SipURI) addressFactory.createURI(binding.getContactUri());
+        forwarded.setRequestURI(target);
+
+        MaxForwardsHeader maxForwards = (MaxForwardsHeader) forwarded.getHeader(MaxForwardsHeader.NAME);
+        if (maxForwards != null) {
+            if (maxForwards.getMaxForwards() <= 0) {
+                if (!isAck) {
+                    reply(request, Response.TOO_MANY_HOPS);
+                }
+                return;
+            }
+            maxForwards.decrementMaxForwards();
+        }
+
+        String transport = target.getTransportParam() != null ? target.getTransportParam().toLowerCase() : "udp";
+        ListeningPoint listeningPoint = sipProvider.getListeningPoint(transport);
+        if (listeningPoint == null) {
+            transport = "udp";
+            listeningPoint = sipProvider.getListeningPoint(transport);
+        }
+
+        // 无状态代理的branch必须由请求确定性地算出：重传、CANCEL和非2xx的ACK都会得到与原INVITE相同的branch
+        ViaHeader topVia = (ViaHeader) request.getHeader(ViaHeader.NAME);
+        String seed = topVia.getBranch() + "|" + binding.getContactUri();
+        String branch = "z9hG4bK" + UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8)).toString().replace("-", "");
+        ViaHeader via = headerFactory.createViaHeader(listeningPoint.getIPAddress(), listeningPoint.getPort(), transport, branch);
+        forwarded.addFirst(via);
+
+        sipProvider.sendRequest(forwarded);
+    }
+
+    /**
+     * 找不到转发目标时的响应：发给代理本身的OPTIONS（探活、心跳）回200，非SIP的URI回416，其余回404
+     */
+    private static int noBindingStatus(Request request, URI requestUri, String username) {
+        if (!requestUri.isSipURI()) {
+            return Response.UNSUPPORTED_URI_SCHEME;
+        }
+        if (username == null && Request.OPTIONS.equals(request.getMethod())) {
+            return Response.OK;
+        }
+        return Response.NOT_FOUND;
+    }
+
+    @Override
+    public void processResponse(ResponseEvent responseEvent) {
+        Response response = responseEvent.getResponse();
+        try {
+            ViaHeader topVia = (ViaHeader) response.getHeader(ViaHeader.NAME);
+            if (topVia == null || !isOwnVia(topVia)) {
+                return;
+            }
+            Response forwarded = (Response) response.clone();
+            forwarded.removeFirst(ViaHeader.NAME);
+            if (forwarded.getHeader(ViaHeader.NAME) == null) {
+                return;
+            }
+            sipProvider.sendResponse(forwarded);
+        } catch (Exception e) {
+            System.err.println("转发SIP响应失败: " + response.getStatusCode() + " - " + e.getMessage());
+        }
+    }
+
+    private boolean isOwnVia(ViaHeader via) {
+        if (!host.equals(via.getHost())) {
+            return false;
+        }
+        for (ListeningPoint listeningPoint : sipProvider.getListeningPoints()) {
+            if (listeningPoint.getPort() == via.getPort()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reply(Request request, int statusCode) throws Exception {
+        sipProvider.sendResponse(messageFactory.createResponse(statusCode, request));
+    }
+
+    @Override
+    public void processTimeout(TimeoutEvent timeoutEvent) {
+        // 无状态代理没有事务，不会超时
+    }
+
+    @Override
+    public void processIOException(IOExceptionEvent exceptionEvent) {
+        System.err.println("SIP IO异常: " + exceptionEvent.getHost() + ":" + exceptionEvent.getPort()
+            + " (" + exceptionEvent.getTransport() + ")");
+    }
+
+    @Override
+    public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
+    }
+
+    @Override
+    public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
+    }
+}
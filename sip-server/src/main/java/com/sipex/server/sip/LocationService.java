@@ -0,0 +1,149 @@
+package com.sipex.server.sip;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * SIP位置服务（内存）
+ * 用户名 -> 注册的Contact，带过期时间；内嵌代理按它路由，UserService按它判断在线
+ */
+@Service
+public class LocationService {
+
+    private final Map<String, Binding> bindings = new ConcurrentHashMap<>();
+    private final List<BindingListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 绑定变化监听（Contact改变或注销时回调，单纯的刷新不回调）
+     */
+    public interface BindingListener {
+        /**
+         * @param binding 新绑定，注销或过期时为null
+         */
+        void onBindingChanged(String username, Binding binding);
+    }
+
+    public void addListener(BindingListener listener) {
+        listeners.add(listener);
+    }
+
+    private void fireChanged(String username, Binding binding) {
+        for (BindingListener listener : listeners) {
+            try {
+                listener.onBindingChanged(username, binding);
+            } catch (Exception e) {
+                System.err.println("位置变化通知失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 一条注册绑定
+     */
+    public static class Binding {
+        private final String username;
+        private final String contactUri;
+        private final long expiresAt;
+
+        public Binding(String username, String contactUri, long expiresAt) {
+            this.username = username;
+            this.contactUri = contactUri;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getContactUri() {
+            return contactUri;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * 注册或刷新（每个用户只保留最新的一个Contact）
+     */
+    public void register(String username, String contactUri, int expiresSeconds) {
+        if (expiresSeconds <= 0) {
+            unregister(username);
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + expiresSeconds * 1000L;
+        Binding binding = new Binding(username, contactUri, expiresAt);
+        Binding previous = bindings.put(username, binding);
+        if (previous == null || !previous.getContactUri().equals(contactUri)) {
+            System.out.println("📍 SIP注册: " + username + " -> " + contactUri + " (" + expiresSeconds + "s)");
+            fireChanged(username, binding);
+        }
+    }
+
+    public void unregister(String username) {
+        if (bindings.remove(username) != null) {
+            System.out.println("📍 SIP注销: " + username);
+            fireChanged(username, null);
+        }
+    }
+
+    /**
+     * 查找有效的绑定，过期的顺便移除
+     */
+    public Binding lookup(String username) {
+        Binding binding = bindings.get(username);
+        if (binding == null) {
+            return null;
+        }
+        if (binding.isExpired(System.currentTimeMillis())) {
+            if (bindings.remove(username, binding)) {
+                fireChanged(username, null);
+            }
+            return null;
+        }
+        return binding;
+    }
+
+    public boolean isRegistered(String username) {
+        return lookup(username) != null;
+    }
+
+    public List<String> getRegisteredUsers() {
+        long now = System.currentTimeMillis();
+        List<String> users = new ArrayList<>();
+        for (Binding binding : bindings.values()) {
+            if (!binding.isExpired(now)) {
+                users.add(binding.getUsername());
+            }
+        }
+        return users;
+    }
+
+    public int size() {
+        return bindings.size();
+    }
+
+    /**
+     * 定期清理过期绑定
+     */
+    @Scheduled(fixedRate = 60 * 1000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (Binding binding : bindings.values()) {
+            if (binding.isExpired(now) && bindings.remove(binding.getUsername(), binding)) {
+                fireChanged(binding.getUsername(), null);
+            }
+        }
+    }
+}
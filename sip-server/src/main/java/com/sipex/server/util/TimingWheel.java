@@ -0,0 +1,96 @@
+package com.sipex.server.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮：按截止时间触发回调
+ * 每个tick只处理当前槽位，登记和触发都是O(1)；超过一圈的截止时间记录剩余圈数，轮到时再判断。
+ * 精度为一个tick，回调在时间轮线程上执行，不要在回调里做耗时操作
+ */
+public class TimingWheel<T> {
+
+    private static class Timeout<T> {
+        final T item;
+        final long deadlineTick;
+
+        Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<Timeout<T>>[] slots;
+    private final Consumer<T> onExpire;
+    private final ScheduledExecutorService ticker;
+    private final long startMillis;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(String name, long tickMillis, int slotCount, Consumer<T> onExpire) {
+        this.tickMillis = tickMillis;
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.onExpire = onExpire;
+        this.startMillis = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 登记截止时间（毫秒时间戳），已经过了的在下一个tick触发
+     */
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(currentTick + 1, (deadlineMillis - startMillis + tickMillis - 1) / tickMillis);
+        slots[(int) (tick % slots.length)].add(new Timeout<>(item, tick));
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            // 时间轮线程被耽误时把落下的tick补上
+            long targetTick = (System.currentTimeMillis() - startMillis) / tickMillis;
+            while (currentTick < targetTick) {
+                currentTick++;
+                Iterator<Timeout<T>> it = slots[(int) (currentTick % slots.length)].iterator();
+                while (it.hasNext()) {
+                    Timeout<T> timeout = it.next();
+                    if (timeout.deadlineTick <= currentTick) {
+                        it.remove();
+                        size--;
+                        expired.add(timeout.item);
+                    }
+                }
+            }
+        }
+        for (T item : expired) {
+            try {
+                onExpire.accept(item);
+            } catch (Exception e) {
+                System.err.println("时间轮回调失败: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.sipex.server.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 延迟批量写入队列
+ * 调用方只把记录放进有界队列就返回，后台线程攒够 batchSize 条或等满 flushIntervalMillis 后整批交给 writer 写入。
+ * 写入失败时拿着这一批退避重试，不丢弃：数据库不可用期间队列逐渐填满，offer 最多等待 offerTimeoutMillis，
+ * 仍然放不进去就抛异常（反压）。stop() 会把队列里剩下的写完再退出，只有停止时超过等待时间仍写不进去的才丢弃。
+ * 不能阻塞的调用方（比如会议室Actor）可以先在自己的线程上 reserve() 占一个位置，之后用 offerReserved() 非阻塞放入
+ */
+public class WriteBehindQueue<T> {
+
+    private static final long RETRY_DELAY_MS = 500;
+    private static final long MAX_RETRY_DELAY_MS = 10 * 1000;
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    // 每条排队中的记录占一个许可，先占许可再入队，入队本身就不会阻塞
+    private final Semaphore slots;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final Consumer<List<T>> writer;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private volatile long stopDeadlineNanos;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile int maxBatch;
+
+    public WriteBehindQueue(String name, int capacity, int batchSize, long flushIntervalMillis,
+                            long offerTimeoutMillis, Consumer<List<T>> writer) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.slots = new Semaphore(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.writer = writer;
+        this.flusher = new Thread(this::run, name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 放入一条待写记录；队列满且等待超时时抛出异常
+     */
+    public void offer(T item) {
+        reserve();
+        try {
+            offerReserved(item);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * 预占一个队列位置，队列满时最多等待offerTimeoutMillis，仍占不到就抛出异常；
+     * 占到的位置必须用 offerReserved() 放入记录，或者用 release() 归还
+     */
+    public void reserve() {
+        if (!running) {
+            throw new IllegalStateException(name + " 已停止");
+        }
+        try {
+            if (slots.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.incrementAndGet();
+        throw new RuntimeException("消息写入繁忙，请稍后重试");
+    }
+
+    /**
+     * 用 reserve() 占到的位置放入一条记录，不会阻塞
+     */
+    public void offerReserved(T item) {
+        if (!queue.offer(item)) {
+            throw new IllegalStateException(name + " 没有预占位置");
+        }
+    }
+
+    /**
+     * 归还 reserve() 占到但没有使用的位置
+     */
+    public void release() {
+        slots.release();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * 停止接收新记录，等队列写完后返回（最多等待timeoutMillis）
+     */
+    public void stop(long timeoutMillis) {
+        // 不中断后台线程，免得打断正在进行的数据库写入；它最多在一个flushIntervalMillis后发现已停止
+        stopDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        running = false;
+        // 正在退避等待的话提前醒来
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(timeoutMillis + RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            System.err.println(name + " 停止超时，还有 " + queue.size() + " 条记录未写入");
+        }
+    }
+
+    /**
+     * 队列深度、写入条数和每批耗时
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queue.size() + queue.remainingCapacity());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("rejected", rejected.get());
+        stats.put("failures", failures.get());
+        stats.put("batches", batchCount);
+        stats.put("maxBatch", maxBatch);
+        stats.put("lastFlushMs", lastFlushNanos / 1_000_000.0);
+        stats.put("avgFlushMs", batchCount == 0 ? 0.0 : totalFlushNanos.get() / batchCount / 1_000_000.0);
+        stats.put("maxFlushMs", maxFlushNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            if (!running && System.nanoTime() - stopDeadlineNanos > 0) {
+                drop(queue.size());
+                return;
+            }
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+            // 取出队列的记录不再占位置，写入失败重试期间新记录照样可以排队直到队列满
+            slots.release(batch.size());
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 等第一条记录到达，再在flushIntervalMillis内尽量攒满一批
+     */
+    private void collect(List<T> batch) throws InterruptedException {
+        if (!running) {
+            queue.drainTo(batch, batchSize);
+            return;
+        }
+        T first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 写入一批，失败时退避重试直到成功；只有停止时超过等待时间才放弃
+     */
+    private void flush(List<T> batch) {
+        long start = System.nanoTime();
+        long delay = RETRY_DELAY_MS;
+        while (!write(batch)) {
+            failures.incrementAndGet();
+            if (!running && System.nanoTime() - stopDeadlineNanos > 0) {
+                drop(batch.size() + queue.size());
+                queue.clear();
+                return;
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(running ? delay : RETRY_DELAY_MS));
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+        }
+        long elapsed = System.nanoTime() - start;
+        written.addAndGet(batch.size());
+        batches.incrementAndGet();
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        lastFlushNanos = elapsed;
+        maxBatch = Math.max(maxBatch, batch.size());
+    }
+
+    private void drop(int count) {
+        if (count > 0) {
+            dropped.addAndGet(count);
+            System.err.println(name + " 停止时数据库仍不可用，丢弃 " + count + " 条未写入的记录");
+        }
+    }
+
+    private boolean write(List<T> batch) {
+        try {
+            writer.accept(batch);
+            return true;
+        } catch (Exception e) {
+            System.err.println(name + " 批量写入失败: " + e.getMessage());
+            return false;
+        }
+    }
+}